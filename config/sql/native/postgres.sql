@@ -842,72 +842,252 @@ CREATE INDEX m_ref_object_parent_org_targetOidRelationId_idx
 
 -- region org-closure
 /*
-Trigger on m_ref_object_parent_org marks this view for refresh in one m_global_metadata row.
-Closure contains also identity (org = org) entries because:
-* It's easier to do optimized matrix-multiplication based refresh with them later.
+Org closure table is maintained incrementally by triggers on m_ref_object_parent_org and m_org,
+in the same transaction that changes the org hierarchy, so it is always up to date for queries.
+Only parent-org refs owned by orgs form the hierarchy; refs to orgs that do not exist (yet) are
+applied when the target org is added.
+Closure contains also identity (org = org) entries for each org because:
+* Incremental update is then a simple "matrix multiplication" of ancestors and descendants.
 * It actually makes some query easier and requires AND instead of OR conditions.
 * While the table shows that o => o (=> means "is parent of"), this is not the semantics
 of isParent/ChildOf searches and they never return parameter OID as a result.
+Column paths stores the number of different paths from the ancestor to the descendant,
+the row is deleted only when the last path is removed.
+Edges that would create a cycle are not applied, they are stored in m_org_closure_ignored_edge
+instead and applied later when the cycle is broken.
+All closure changes are serialized by a single transaction-scoped advisory lock (47),
+so parallel transactions changing the org hierarchy (adding/deleting orgs or their parent-org refs)
+wait for each other until commit, while other writes (including users and their parent-org refs)
+and all reads are not affected.
+The work under the lock is proportional to the size of the changed subtree.
+Narrower locking (e.g. per subtree) is not safe, as one edge can connect two subtrees changed in parallel.
 */
-CREATE MATERIALIZED VIEW m_org_closure AS
-WITH RECURSIVE org_h (
-    ancestor_oid, -- ref.targetoid
-    descendant_oid --ref.ownerOid
-    -- paths -- number of different paths, not used for materialized view version
-    -- depth -- possible later, but cycle detected must be added to the recursive term
-) AS (
-    -- non-recursive term:
-    -- Gather all organization oids from parent-org refs and initialize identity lines (o => o).
-    -- We don't want the orgs not in org hierarchy, that would require org triggers too.
-    SELECT o.oid, o.oid FROM m_org o
-        WHERE EXISTS(
-            SELECT 1 FROM m_ref_object_parent_org r
-                WHERE r.targetOid = o.oid OR r.ownerOid = o.oid)
-    UNION
-    -- recursive (iterative) term:
-    -- Generate their parents (anc => desc, that is target => owner), => means "is parent of".
-    SELECT par.targetoid, chi.descendant_oid -- leaving original child there generates closure
-        FROM m_ref_object_parent_org as par, org_h as chi
-        WHERE par.ownerOid = chi.ancestor_oid
-)
-SELECT * FROM org_h;
+CREATE TABLE m_org_closure (
+    ancestor_oid UUID NOT NULL, -- ref.targetOid
+    descendant_oid UUID NOT NULL, -- ref.ownerOid
+    paths BIGINT NOT NULL,
+
+    PRIMARY KEY (ancestor_oid, descendant_oid)
+);
 
--- unique index is like PK if it was table
-CREATE UNIQUE INDEX m_org_closure_asc_desc_idx
-    ON m_org_closure (ancestor_oid, descendant_oid);
 CREATE INDEX m_org_closure_desc_asc_idx
     ON m_org_closure (descendant_oid, ancestor_oid);
 
--- The trigger for m_ref_object_parent_org that flags the view for refresh.
-CREATE OR REPLACE FUNCTION mark_org_closure_for_refresh()
+-- Edges parent => child not applied to the closure because they would create a cycle.
+-- Column edges counts the refs with the same parent and child (e.g. with different relations).
+CREATE TABLE m_org_closure_ignored_edge (
+    parent_oid UUID NOT NULL, -- ref.targetOid
+    child_oid UUID NOT NULL, -- ref.ownerOid
+    edges INTEGER NOT NULL,
+
+    PRIMARY KEY (parent_oid, child_oid)
+);
+
+-- Adds paths created by a new edge parent => child: each ancestor of the parent gets paths
+-- to each descendant of the child (including the parent and the child themselves).
+-- Edges creating a cycle are ignored (with a warning), closure of a cyclic hierarchy makes no sense.
+-- Ignored edges are remembered and applied by m_org_closure_apply_ignored_edges when possible.
+CREATE OR REPLACE FUNCTION m_org_closure_add_edge(parent_oid UUID, child_oid UUID)
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    -- All closure changes are serialized, otherwise parallel transactions would miss each other's paths.
+    -- The lock is released at the end of the transaction, each statement below sees the committed changes.
+    PERFORM pg_advisory_xact_lock(47);
+    IF parent_oid = child_oid THEN
+        RETURN; -- self-reference is never applied, nothing to remember either
+    END IF;
+    IF EXISTS(SELECT 1 FROM m_org_closure
+            WHERE ancestor_oid = child_oid AND descendant_oid = parent_oid) THEN
+        RAISE WARNING 'Org closure: ignoring parent org reference % => % that creates a cycle',
+            parent_oid, child_oid;
+        INSERT INTO m_org_closure_ignored_edge (parent_oid, child_oid, edges)
+            VALUES (parent_oid, child_oid, 1)
+        ON CONFLICT ON CONSTRAINT m_org_closure_ignored_edge_pkey
+            DO UPDATE SET edges = m_org_closure_ignored_edge.edges + 1;
+        RETURN;
+    END IF;
+
+    INSERT INTO m_org_closure (ancestor_oid, descendant_oid, paths)
+        SELECT a.ancestor_oid, d.descendant_oid, a.paths * d.paths
+            FROM m_org_closure a, m_org_closure d
+            WHERE a.descendant_oid = parent_oid AND d.ancestor_oid = child_oid
+    ON CONFLICT (ancestor_oid, descendant_oid)
+        DO UPDATE SET paths = m_org_closure.paths + excluded.paths;
+END $$;
+
+-- Removes paths going through the edge parent => child, reverse to m_org_closure_add_edge.
+-- If the edge was ignored, only its ignored record is removed, nothing was added to the closure.
+-- Ignored edges are never mixed with applied edges for the same parent and child:
+-- both can't exist in the closure without a cycle and ignored edges are applied as soon as possible.
+CREATE OR REPLACE FUNCTION m_org_closure_remove_edge(parent_oid UUID, child_oid UUID)
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    ignored_edges INTEGER;
+BEGIN
+    PERFORM pg_advisory_xact_lock(47);
+    IF parent_oid = child_oid THEN
+        RETURN; -- self-reference was never applied
+    END IF;
+    SELECT edges INTO ignored_edges FROM m_org_closure_ignored_edge i
+        WHERE i.parent_oid = m_org_closure_remove_edge.parent_oid
+            AND i.child_oid = m_org_closure_remove_edge.child_oid;
+    IF ignored_edges > 1 THEN
+        UPDATE m_org_closure_ignored_edge i SET edges = edges - 1
+            WHERE i.parent_oid = m_org_closure_remove_edge.parent_oid
+                AND i.child_oid = m_org_closure_remove_edge.child_oid;
+        RETURN;
+    ELSIF ignored_edges = 1 THEN
+        DELETE FROM m_org_closure_ignored_edge i
+            WHERE i.parent_oid = m_org_closure_remove_edge.parent_oid
+                AND i.child_oid = m_org_closure_remove_edge.child_oid;
+        RETURN;
+    END IF;
+
+    UPDATE m_org_closure c SET paths = c.paths - a.paths * d.paths
+        FROM m_org_closure a, m_org_closure d
+        WHERE a.descendant_oid = parent_oid AND d.ancestor_oid = child_oid
+            AND c.ancestor_oid = a.ancestor_oid AND c.descendant_oid = d.descendant_oid;
+    DELETE FROM m_org_closure c
+        USING m_org_closure a, m_org_closure d
+        WHERE a.descendant_oid = parent_oid AND d.ancestor_oid = child_oid
+            AND c.ancestor_oid = a.ancestor_oid AND c.descendant_oid = d.descendant_oid
+            AND c.paths <= 0;
+
+    -- removed edge could have been a part of the cycle preventing some ignored edge
+    PERFORM m_org_closure_apply_ignored_edges();
+END $$;
+
+-- Applies ignored edges that do not create a cycle anymore.
+-- The ignored edge table is empty unless the hierarchy contains cycles, so this is usually cheap.
+CREATE OR REPLACE FUNCTION m_org_closure_apply_ignored_edges()
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    edge record;
+BEGIN
+    FOR edge IN SELECT parent_oid, child_oid, edges FROM m_org_closure_ignored_edge LOOP
+        IF NOT EXISTS(SELECT 1 FROM m_org_closure
+                WHERE ancestor_oid = edge.child_oid AND descendant_oid = edge.parent_oid) THEN
+            DELETE FROM m_org_closure_ignored_edge
+                WHERE parent_oid = edge.parent_oid AND child_oid = edge.child_oid;
+            -- Each applied edge can make other ignored edges cyclic again, add_edge checks it.
+            FOR i IN 1..edge.edges LOOP
+                PERFORM m_org_closure_add_edge(edge.parent_oid, edge.child_oid);
+            END LOOP;
+        END IF;
+    END LOOP;
+END $$;
+
+-- Adds identity row for a new org and applies existing refs of its children,
+-- these can exist if the children were added before the parent (e.g. during import).
+CREATE OR REPLACE FUNCTION m_org_closure_add_org(org_oid UUID)
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    child record;
+BEGIN
+    PERFORM pg_advisory_xact_lock(47);
+    INSERT INTO m_org_closure (ancestor_oid, descendant_oid, paths)
+        VALUES (org_oid, org_oid, 1)
+        ON CONFLICT (ancestor_oid, descendant_oid) DO NOTHING;
+    FOR child IN SELECT ownerOid FROM m_ref_object_parent_org
+            WHERE targetOid = org_oid AND ownerType = 'ORG' AND ownerOid <> org_oid LOOP
+        PERFORM m_org_closure_add_edge(org_oid, child.ownerOid);
+    END LOOP;
+END $$;
+
+-- Removes all paths going through the org and all its rows.
+-- Works regardless of whether refs of the org were already deleted or not.
+CREATE OR REPLACE FUNCTION m_org_closure_remove_org(org_oid UUID)
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+BEGIN
+    PERFORM pg_advisory_xact_lock(47);
+    UPDATE m_org_closure c SET paths = c.paths - a.paths * d.paths
+        FROM m_org_closure a, m_org_closure d
+        WHERE a.descendant_oid = org_oid AND a.ancestor_oid <> org_oid
+            AND d.ancestor_oid = org_oid AND d.descendant_oid <> org_oid
+            AND c.ancestor_oid = a.ancestor_oid AND c.descendant_oid = d.descendant_oid;
+    DELETE FROM m_org_closure c
+        USING m_org_closure a, m_org_closure d
+        WHERE a.descendant_oid = org_oid AND a.ancestor_oid <> org_oid
+            AND d.ancestor_oid = org_oid AND d.descendant_oid <> org_oid
+            AND c.ancestor_oid = a.ancestor_oid AND c.descendant_oid = d.descendant_oid
+            AND c.paths <= 0;
+    DELETE FROM m_org_closure WHERE ancestor_oid = org_oid OR descendant_oid = org_oid;
+    DELETE FROM m_org_closure_ignored_edge WHERE parent_oid = org_oid OR child_oid = org_oid;
+
+    -- removed org could have been a part of the cycle preventing some ignored edge
+    PERFORM m_org_closure_apply_ignored_edges();
+END $$;
+
+-- Computes the whole closure from scratch, it is not needed during normal operation.
+CREATE OR REPLACE FUNCTION m_org_closure_rebuild()
+    RETURNS void
+    LANGUAGE plpgsql
+AS $$
+DECLARE
+    edge record;
+BEGIN
+    PERFORM pg_advisory_xact_lock(47);
+    DELETE FROM m_org_closure;
+    DELETE FROM m_org_closure_ignored_edge;
+    INSERT INTO m_org_closure (ancestor_oid, descendant_oid, paths)
+        SELECT oid, oid, 1 FROM m_org;
+    FOR edge IN SELECT targetOid, ownerOid FROM m_ref_object_parent_org WHERE ownerType = 'ORG' LOOP
+        PERFORM m_org_closure_add_edge(edge.targetOid, edge.ownerOid);
+    END LOOP;
+END $$;
+
+-- The trigger for m_ref_object_parent_org that updates the closure.
+CREATE OR REPLACE FUNCTION m_org_closure_ref_change()
     RETURNS trigger
     LANGUAGE plpgsql
 AS $$
 BEGIN
-    IF TG_OP = 'TRUNCATE' OR OLD.ownerType = 'ORG' OR NEW.ownerType = 'ORG' THEN
-        INSERT INTO m_global_metadata VALUES ('orgClosureRefreshNeeded', 'true')
-            ON CONFLICT (name) DO UPDATE SET value = 'true';
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM m_org_closure_rebuild();
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.ownerType = 'ORG' THEN
+        PERFORM m_org_closure_remove_edge(OLD.targetOid, OLD.ownerOid);
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.ownerType = 'ORG' THEN
+        PERFORM m_org_closure_add_edge(NEW.targetOid, NEW.ownerOid);
     END IF;
 
     -- after trigger returns null
     RETURN NULL;
 END $$;
 
-CREATE TRIGGER m_ref_object_parent_mark_refresh_tr
+CREATE TRIGGER m_ref_object_parent_org_closure_tr
     AFTER INSERT OR UPDATE OR DELETE ON m_ref_object_parent_org
-    FOR EACH ROW EXECUTE FUNCTION mark_org_closure_for_refresh();
-CREATE TRIGGER m_ref_object_parent_mark_refresh_trunc_tr
+    FOR EACH ROW EXECUTE FUNCTION m_org_closure_ref_change();
+CREATE TRIGGER m_ref_object_parent_org_closure_trunc_tr
     AFTER TRUNCATE ON m_ref_object_parent_org
-    FOR EACH STATEMENT EXECUTE FUNCTION mark_org_closure_for_refresh();
+    FOR EACH STATEMENT EXECUTE FUNCTION m_org_closure_ref_change();
 
--- The trigger that flags the view for refresh after m_org changes.
-CREATE OR REPLACE FUNCTION mark_org_closure_for_refresh_org()
+-- The trigger for m_org that adds/removes the org to/from the closure.
+CREATE OR REPLACE FUNCTION m_org_closure_org_change()
     RETURNS trigger
     LANGUAGE plpgsql
 AS $$
 BEGIN
-    INSERT INTO m_global_metadata VALUES ('orgClosureRefreshNeeded', 'true')
-        ON CONFLICT (name) DO UPDATE SET value = 'true';
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM m_org_closure_rebuild();
+    ELSIF TG_OP = 'INSERT' THEN
+        PERFORM m_org_closure_add_org(NEW.oid);
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM m_org_closure_remove_org(OLD.oid);
+    END IF;
 
     -- after trigger returns null
     RETURN NULL;
@@ -915,39 +1095,23 @@ END $$;
 
 -- Update is not necessary, it does not change relations between orgs.
 -- If it does, it is handled by trigger on m_ref_object_parent_org.
-CREATE TRIGGER m_org_mark_refresh_tr
+CREATE TRIGGER m_org_closure_tr
     AFTER INSERT OR DELETE ON m_org
-    FOR EACH ROW EXECUTE FUNCTION mark_org_closure_for_refresh_org();
-CREATE TRIGGER m_org_mark_refresh_trunc_tr
+    FOR EACH ROW EXECUTE FUNCTION m_org_closure_org_change();
+CREATE TRIGGER m_org_closure_trunc_tr
     AFTER TRUNCATE ON m_org
-    FOR EACH STATEMENT EXECUTE FUNCTION mark_org_closure_for_refresh_org();
+    FOR EACH STATEMENT EXECUTE FUNCTION m_org_closure_org_change();
 
--- This procedure for conditional refresh when needed is called from the application code.
--- The refresh can be forced, e.g. after many changes with triggers off (or just to be sure).
+-- The closure is maintained incrementally, this procedure is kept for a forced full rebuild,
+-- e.g. after many changes with triggers off (or just to be sure). Without force it does nothing.
 CREATE OR REPLACE PROCEDURE m_refresh_org_closure(force boolean = false)
     LANGUAGE plpgsql
 AS $$
-DECLARE
-    flag_val text;
 BEGIN
-    -- We use advisory session lock only for the check + refresh, then release it immediately.
-    -- This can still dead-lock two transactions in a single thread on the select/delete combo,
-    -- (I mean, who would do that?!) but works fine for parallel transactions.
-    PERFORM pg_advisory_lock(47);
-    BEGIN
-        SELECT value INTO flag_val FROM m_global_metadata WHERE name = 'orgClosureRefreshNeeded';
-        IF flag_val = 'true' OR force THEN
-            REFRESH MATERIALIZED VIEW m_org_closure;
-            DELETE FROM m_global_metadata WHERE name = 'orgClosureRefreshNeeded';
-        END IF;
-        PERFORM pg_advisory_unlock(47);
-    EXCEPTION WHEN OTHERS THEN
-        -- Whatever happens we definitely want to release the lock.
-        PERFORM pg_advisory_unlock(47);
-        RAISE;
-    END;
-END;
-$$;
+    IF force THEN
+        PERFORM m_org_closure_rebuild();
+    END IF;
+END $$;
 -- endregion
 
 -- region OTHER object tables
@@ -2305,4 +2469,4 @@ END $$;
 -- This is important to avoid applying any change more than once.
 -- Also update SqaleUtils.CURRENT_SCHEMA_CHANGE_NUMBER
 -- repo/repo-sqale/src/main/java/com/evolveum/midpoint/repo/sqale/SqaleUtils.java
-call apply_change(33, $$ SELECT 1 $$, true);
+call apply_change(34, $$ SELECT 1 $$, true);
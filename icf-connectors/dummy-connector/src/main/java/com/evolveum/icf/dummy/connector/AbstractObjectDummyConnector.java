@@ -64,6 +64,15 @@ public abstract class AbstractObjectDummyConnector
      */
     @Override
     public Uid create(ObjectClass objectClass, Set<Attribute> createAttributes, OperationOptions options) {
+        resource.connectorOperationStarted();
+        try {
+            return createInternal(objectClass, createAttributes);
+        } finally {
+            resource.connectorOperationFinished();
+        }
+    }
+
+    private Uid createInternal(ObjectClass objectClass, Set<Attribute> createAttributes) {
         LOG.info("create::begin attributes {0}", createAttributes);
         validate(objectClass);
 
@@ -130,6 +139,15 @@ public abstract class AbstractObjectDummyConnector
      */
     @Override
     public void delete(ObjectClass objectClass, Uid uid, OperationOptions options) {
+        resource.connectorOperationStarted();
+        try {
+            deleteInternal(objectClass, uid);
+        } finally {
+            resource.connectorOperationFinished();
+        }
+    }
+
+    private void deleteInternal(ObjectClass objectClass, Uid uid) {
         LOG.info("delete::begin");
         validate(objectClass);
         validate(uid);
@@ -108,6 +108,10 @@ public class DummyResource implements DebugDumpable {
     private boolean caseIgnoreValues = false;
     private int connectionCount = 0;
     private int writeOperationCount = 0;
+
+    /** Create and delete operations being executed by the connector instances (including waiting for this resource). */
+    private final AtomicInteger connectorOperationsInProgress = new AtomicInteger();
+    private final AtomicInteger maxConnectorOperationsInProgress = new AtomicInteger();
     private int groupMembersReadCount = 0;
 
     /** Names of objects that this connector rejects to add, with "Already exists" exception. */
@@ -215,6 +219,7 @@ public class DummyResource implements DebugDumpable {
         latestSyncToken.set(0);
         writeOperationCount = 0;
         groupMembersReadCount = 0;
+        resetMaxConnectorOperationsInProgress();
     }
 
     public static DummyResource getInstance() {
@@ -422,6 +427,25 @@ public class DummyResource implements DebugDumpable {
         return writeOperationCount;
     }
 
+    /** Called by the connector when a (create or delete) operation starts, to record the concurrency of the operations. */
+    public void connectorOperationStarted() {
+        int inProgress = connectorOperationsInProgress.incrementAndGet();
+        maxConnectorOperationsInProgress.accumulateAndGet(inProgress, Math::max);
+    }
+
+    public void connectorOperationFinished() {
+        connectorOperationsInProgress.decrementAndGet();
+    }
+
+    /** Maximal number of connector operations executed at the same time, since the last reset. */
+    public int getMaxConnectorOperationsInProgress() {
+        return maxConnectorOperationsInProgress.get();
+    }
+
+    public void resetMaxConnectorOperationsInProgress() {
+        maxConnectorOperationsInProgress.set(connectorOperationsInProgress.get());
+    }
+
     public int getGroupMembersReadCount() {
         return groupMembersReadCount;
     }
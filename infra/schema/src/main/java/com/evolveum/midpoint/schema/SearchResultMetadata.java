@@ -7,6 +7,8 @@
 package com.evolveum.midpoint.schema;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import com.evolveum.midpoint.util.DebugDumpable;
@@ -24,6 +26,7 @@ public class SearchResultMetadata implements Serializable, DebugDumpable, ShortD
     private String pagingCookie;
     private Integer approxNumberOfAllResults;
     private boolean partialResults = false;
+    private List<PageStatistics> pageStatistics;
 
     /**
      * Returns the paging cookie. The paging cookie is used for optimization of paged searches.
@@ -93,6 +96,31 @@ public class SearchResultMetadata implements Serializable, DebugDumpable, ShortD
         return this;
     }
 
+    /**
+     * Returns statistics for individual pages fetched by the repository during the (iterative) search.
+     * This is diagnostic information only, it is null if the repository does not provide it.
+     */
+    public List<PageStatistics> getPageStatistics() {
+        return pageStatistics;
+    }
+
+    public void setPageStatistics(List<PageStatistics> pageStatistics) {
+        this.pageStatistics = pageStatistics;
+    }
+
+    public SearchResultMetadata pageStatistics(List<PageStatistics> pageStatistics) {
+        this.pageStatistics = pageStatistics;
+        return this;
+    }
+
+    public void addPageStatistics(PageStatistics statistics) {
+        if (pageStatistics == null) {
+            pageStatistics = new ArrayList<>();
+        }
+        pageStatistics.add(statistics);
+    }
+
+    // pageStatistics are not part of equals/hashCode, these are timings that differ for each run
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -130,7 +158,11 @@ public class SearchResultMetadata implements Serializable, DebugDumpable, ShortD
         if (partialResults) {
             sb.append("partialResults=true,");
         }
-        if (pagingCookie != null || approxNumberOfAllResults != null || partialResults) {
+        if (pageStatistics != null) {
+            sb.append("pages=").append(pageStatistics.size()).append(",");
+        }
+        if (pagingCookie != null || approxNumberOfAllResults != null || partialResults
+                || pageStatistics != null) {
             sb.setLength(sb.length() - 1);
         }
     }
@@ -151,6 +183,22 @@ public class SearchResultMetadata implements Serializable, DebugDumpable, ShortD
         clone.pagingCookie = pagingCookie;
         clone.approxNumberOfAllResults = approxNumberOfAllResults;
         clone.partialResults = partialResults;
+        clone.pageStatistics = pageStatistics != null ? new ArrayList<>(pageStatistics) : null;
         return clone;
     }
+
+    /**
+     * Timings for a single page of the search, all times are in nanoseconds.
+     *
+     * * `fetchNanos` is time spent by executing the query and reading the rows,
+     * * `parseNanos` is time spent by converting the rows to the returned objects (e.g. parsing full objects),
+     * * `handleNanos` is time spent in the result handler, this is relevant for iterative search only.
+     */
+    public record PageStatistics(int objectCount, long fetchNanos, long parseNanos, long handleNanos)
+            implements Serializable {
+
+        public PageStatistics withHandleNanos(long handleNanos) {
+            return new PageStatistics(objectCount, fetchNanos, parseNanos, handleNanos);
+        }
+    }
 }
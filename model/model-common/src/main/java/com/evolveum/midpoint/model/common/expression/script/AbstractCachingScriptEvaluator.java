@@ -11,6 +11,7 @@ import org.jetbrains.annotations.NotNull;
 import com.evolveum.midpoint.common.LocalizationService;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.crypto.Protector;
+import com.evolveum.midpoint.schema.expression.ExpressionProfile;
 import com.evolveum.midpoint.schema.internals.InternalCounters;
 import com.evolveum.midpoint.schema.internals.InternalMonitor;
 import com.evolveum.midpoint.util.exception.ExpressionEvaluationException;
@@ -36,7 +37,7 @@ public abstract class AbstractCachingScriptEvaluator<I, C> extends AbstractScrip
         this.scriptCache = new ScriptCache<>();
     }
 
-    protected @NotNull ScriptCache<I, C> getScriptCache() {
+    public @NotNull ScriptCache<I, C> getScriptCache() {
         return scriptCache;
     }
 
@@ -57,7 +58,30 @@ public abstract class AbstractCachingScriptEvaluator<I, C> extends AbstractScrip
         if (cachedCompiledScript != null) {
             return cachedCompiledScript;
         }
+        return compileAndCache(codeString, context);
+    }
+
+    /**
+     * Compiles the script and puts it into the cache (unless it's there already), so that its first evaluation
+     * does not need to wait for the compilation. Returns true if the script was compiled.
+     */
+    public boolean precompile(
+            @NotNull String codeString, @NotNull ExpressionProfile expressionProfile, @NotNull String contextDescription)
+            throws ExpressionEvaluationException, SecurityViolationException {
+        if (scriptCache.containsCode(expressionProfile, codeString)) {
+            return false;
+        }
+        ScriptExpressionEvaluationContext context = new ScriptExpressionEvaluationContext();
+        context.setExpressionProfile(expressionProfile);
+        context.setContextDescription(contextDescription);
+        compileAndCache(codeString, context);
+        return true;
+    }
+
+    private C compileAndCache(String codeString, ScriptExpressionEvaluationContext context)
+            throws ExpressionEvaluationException, SecurityViolationException {
         InternalMonitor.recordCount(InternalCounters.SCRIPT_COMPILE_COUNT);
+        long start = System.nanoTime();
         C compiledScript;
         try {
             compiledScript = compileScript(codeString, context);
@@ -65,6 +89,8 @@ public abstract class AbstractCachingScriptEvaluator<I, C> extends AbstractScrip
             throw e;
         } catch (Exception e) {
             throw new ExpressionEvaluationException(e.getMessage() + " while compiling " + context.getContextDescription(), e);
+        } finally {
+            scriptCache.recordCompilation(System.nanoTime() - start);
         }
         scriptCache.putCode(context.getExpressionProfile(), codeString, compiledScript);
         return compiledScript;
@@ -6,55 +6,202 @@
  */
 package com.evolveum.midpoint.model.common.expression.script;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
 
 import com.evolveum.midpoint.schema.expression.ExpressionProfile;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCachePerformanceInformationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInformationType;
 
 /**
  * Cache for compiled scripts and interpreters, aware of expression profiles.
  *
+ * Compiled code is keyed by the profile and the source code. The source string caches its own hash code, so the lookup
+ * is cheap for the (usual) case of the same source string instance being evaluated repeatedly.
+ * The cache is limited by {@link #maxSize}; when the limit is exceeded, the least recently used entries are evicted.
+ * Reading and writing does not lock; the eviction is done by a single thread at a time, others do not wait for it.
+ *
  * @param <C> compiled code
  * @author Radovan Semancik
  */
 public class ScriptCache<I,C> {
 
-    private final Map<String, I> interpreterCache = new HashMap<>();
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /** When evicting, we remove a bit more than needed, so we don't have to evict on each subsequent insertion. */
+    private static final double EVICTION_TARGET = 0.9;
+
+    /** Used instead of the (null) key for the "no profile" case. */
+    private static final String NO_PROFILE_KEY = "";
+
+    private final Map<String, I> interpreterCache = new ConcurrentHashMap<>();
+
+    private final Map<CodeKey, CodeEntry<C>> codeCache = new ConcurrentHashMap<>();
+
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    /** Source of "last access" timestamps; using a counter instead of time makes the ordering strict. */
+    private final AtomicLong accessCounter = new AtomicLong();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong compilations = new AtomicLong();
+    private final AtomicLong compilationTime = new AtomicLong();
+
+    /** Profile key plus the source code. */
+    private record CodeKey(@NotNull String profileKey, @NotNull String sourceCode) {
+    }
+
+    private static class CodeEntry<C> {
+        @NotNull private final C code;
+        private volatile long lastAccess;
 
-    /**
-     * Profile ID (key; nullable) -> Source code (key) -> Compiled code (value)
-     */
-    private final Map<String, Map<String, C>> codeCache = new HashMap<>();
+        private CodeEntry(@NotNull C code, long lastAccess) {
+            this.code = code;
+            this.lastAccess = lastAccess;
+        }
+    }
 
-    public synchronized I getInterpreter(ExpressionProfile profile) {
+    public I getInterpreter(ExpressionProfile profile) {
         return interpreterCache.get(getProfileKey(profile));
     }
 
-    public synchronized void putInterpreter(ExpressionProfile profile, I interpreter) {
+    public void putInterpreter(ExpressionProfile profile, I interpreter) {
         interpreterCache.put(getProfileKey(profile), interpreter);
     }
 
-    synchronized C getCode(ExpressionProfile profile, String sourceCodeKey) {
-        String profileKey = getProfileKey(profile);
-        Map<String, C> profileCache = codeCache.get(profileKey);
-        return profileCache != null ? profileCache.get(sourceCodeKey) : null;
+    C getCode(ExpressionProfile profile, String sourceCode) {
+        CodeEntry<C> entry = codeCache.get(createKey(profile, sourceCode));
+        if (entry != null) {
+            entry.lastAccess = accessCounter.incrementAndGet();
+            hits.incrementAndGet();
+            return entry.code;
+        } else {
+            misses.incrementAndGet();
+            return null;
+        }
     }
 
-    synchronized void putCode(ExpressionProfile profile, String sourceCodeKey, C compiledCode) {
-        String profileKey = getProfileKey(profile);
-        Map<String, C> profileCache = codeCache.computeIfAbsent(profileKey, k -> new HashMap<>());
-        profileCache.put(sourceCodeKey, compiledCode);
+    /** Does not count as a hit or miss, nor it affects the eviction order. */
+    boolean containsCode(ExpressionProfile profile, String sourceCode) {
+        return codeCache.containsKey(createKey(profile, sourceCode));
     }
 
-    private String getProfileKey(ExpressionProfile profile) {
+    void putCode(ExpressionProfile profile, String sourceCode, @NotNull C compiledCode) {
+        codeCache.put(
+                createKey(profile, sourceCode),
+                new CodeEntry<>(compiledCode, accessCounter.incrementAndGet()));
+        if (codeCache.size() > maxSize) {
+            evictIfNeeded();
+        }
+    }
+
+    void recordCompilation(long durationNanos) {
+        compilations.incrementAndGet();
+        compilationTime.addAndGet(durationNanos);
+    }
+
+    private void evictIfNeeded() {
+        if (!evicting.compareAndSet(false, true)) {
+            return; // someone else is doing that
+        }
+        try {
+            int limit = maxSize;
+            int size = codeCache.size();
+            if (size <= limit) {
+                return;
+            }
+            int toRemove = size - (int) (limit * EVICTION_TARGET);
+            List<Map.Entry<CodeKey, CodeEntry<C>>> entries = new ArrayList<>(codeCache.entrySet());
+            entries.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+            for (int i = 0; i < toRemove && i < entries.size(); i++) {
+                var entry = entries.get(i);
+                if (codeCache.remove(entry.getKey(), entry.getValue())) {
+                    evictions.incrementAndGet();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static @NotNull CodeKey createKey(ExpressionProfile profile, String sourceCode) {
+        return new CodeKey(getProfileKey(profile), sourceCode);
+    }
+
+    private static @NotNull String getProfileKey(ExpressionProfile profile) {
         if (profile == null) {
-            return null;
+            return NO_PROFILE_KEY;
         } else {
             return profile.getIdentifier();
         }
     }
 
-    public synchronized void clear() {
+    /** Sets the maximum number of compiled scripts; zero or negative value means the default. */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize > 0 ? maxSize : DEFAULT_MAX_SIZE;
+        if (codeCache.size() > this.maxSize) {
+            evictIfNeeded();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int size() {
+        return codeCache.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getCompilations() {
+        return compilations.get();
+    }
+
+    public void clear() {
         codeCache.clear();
     }
+
+    public @NotNull SingleCacheStateInformationType getStateInformation(@NotNull String name) {
+        return new SingleCacheStateInformationType()
+                .name(name)
+                .size(codeCache.size())
+                .secondarySize(interpreterCache.size())
+                .performance(new SingleCachePerformanceInformationType()
+                        .name(name)
+                        .hitCount(toInt(hits.get()))
+                        .missCount(toInt(misses.get()))
+                        .evictionCount(toInt(evictions.get()))
+                        .loadCount(toInt(compilations.get()))
+                        .loadTime(TimeUnit.NANOSECONDS.toMillis(compilationTime.get())));
+    }
+
+    private static int toInt(long value) {
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        return "ScriptCache{size=" + codeCache.size() + ", maxSize=" + maxSize + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + ", compilations=" + compilations + "}";
+    }
 }
@@ -30,6 +30,7 @@ import com.evolveum.midpoint.schema.expression.ScriptLanguageExpressionProfile;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.MiscUtil;
 import com.evolveum.midpoint.util.QNameUtil;
+import com.evolveum.midpoint.util.exception.ExpressionEvaluationException;
 import com.evolveum.midpoint.util.exception.SecurityViolationException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ScriptExpressionEvaluatorType;
 
@@ -208,6 +209,35 @@ public class ScriptExpressionFactory {
         throw new ExpressionSyntaxException("Unsupported language " + languageUri + " used in script in " + shortDesc);
     }
 
+    /**
+     * Compiles the script in advance, if its evaluator caches compiled scripts. Returns true if the script was compiled,
+     * false if it was already cached (or there's nothing to compile).
+     */
+    public boolean precompile(
+            @NotNull ScriptExpressionEvaluatorType scriptExpressionBean,
+            @NotNull ExpressionProfile expressionProfile,
+            @NotNull String shortDesc)
+            throws ExpressionSyntaxException, ExpressionEvaluationException, SecurityViolationException {
+        String code = scriptExpressionBean.getCode();
+        if (code == null) {
+            return false;
+        }
+        ScriptEvaluator evaluator = getEvaluator(getLanguage(scriptExpressionBean), shortDesc);
+        return evaluator instanceof AbstractCachingScriptEvaluator<?, ?> cachingEvaluator
+                && cachingEvaluator.precompile(code, expressionProfile, shortDesc);
+    }
+
+    /** Caches of compiled scripts, indexed by language URL. */
+    public @NotNull Map<String, ScriptCache<?, ?>> getScriptCaches() {
+        Map<String, ScriptCache<?, ?>> caches = new TreeMap<>();
+        evaluatorMap.forEach((language, evaluator) -> {
+            if (evaluator instanceof AbstractCachingScriptEvaluator<?, ?> cachingEvaluator) {
+                caches.put(language, cachingEvaluator.getScriptCache());
+            }
+        });
+        return caches;
+    }
+
     @VisibleForTesting
     public @Nullable ScriptEvaluator getEvaluatorSimple(String languageUri) {
         return evaluatorMap.get(languageUri);
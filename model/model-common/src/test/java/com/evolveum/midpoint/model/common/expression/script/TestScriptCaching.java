@@ -7,6 +7,9 @@
 package com.evolveum.midpoint.model.common.expression.script;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
 import static org.testng.AssertJUnit.assertTrue;
 
 import static com.evolveum.midpoint.prism.util.PrismTestUtil.getPrismContext;
@@ -40,6 +43,7 @@ import com.evolveum.midpoint.prism.crypto.Protector;
 import com.evolveum.midpoint.prism.util.PrismTestUtil;
 import com.evolveum.midpoint.repo.common.DirectoryFileObjectResolver;
 import com.evolveum.midpoint.repo.common.ObjectResolver;
+import com.evolveum.midpoint.schema.expression.ExpressionProfile;
 import com.evolveum.midpoint.schema.expression.VariablesMap;
 import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
 import com.evolveum.midpoint.schema.constants.MidPointConstants;
@@ -120,6 +124,69 @@ public class TestScriptCaching extends AbstractUnitTest
         assertTrue("Even Horatio was wrong! " + horatio1Time + " -> " + horatio2Time, horatio2Time <= horatio1Time);
     }
 
+    /** Precompiled script is not compiled again, and it is counted in the cache statistics. */
+    @Test
+    public void testPrecompile() throws Exception {
+        given("fresh evaluator and a script");
+        Protector protector = KeyStoreBasedProtectorBuilder.create(getPrismContext()).buildOnly();
+        Jsr223ScriptEvaluator freshEvaluator = new Jsr223ScriptEvaluator(
+                "groovy", getPrismContext(), protector, LocalizationTestUtil.getLocalizationService());
+        ScriptExpressionFactory freshFactory =
+                new ScriptExpressionFactory(new ArrayList<>(), new DirectoryFileObjectResolver(OBJECTS_DIR));
+        freshFactory.registerEvaluator(freshEvaluator);
+        ScriptExpressionEvaluatorType script = parseScriptType("expression-string-variables.xml");
+        InternalMonitor.reset();
+
+        when("script is precompiled twice");
+        boolean first = freshFactory.precompile(script, ExpressionProfile.full(), "first");
+        boolean second = freshFactory.precompile(script, ExpressionProfile.full(), "second");
+
+        then("it is compiled only once");
+        assertTrue("not compiled first time", first);
+        assertFalse("compiled second time", second);
+        assertScriptMonitor(1, 0, "precompilation");
+
+        and("the cache knows about it");
+        ScriptCache<?, ?> cache = freshEvaluator.getScriptCache();
+        display("Cache: " + cache);
+        assertEquals("wrong cache size", 1, cache.size());
+        assertEquals("wrong # of compilations", 1, cache.getCompilations());
+        assertNotNull("compiled code is not there", cache.getCode(ExpressionProfile.full(), script.getCode()));
+        assertEquals("wrong # of hits", 1, cache.getHits());
+        assertEquals("wrong # of misses", 0, cache.getMisses());
+        assertTrue("cache is not provided by the factory", freshFactory.getScriptCaches().containsValue(cache));
+    }
+
+    /** Least recently used entries are evicted when the maximal size is exceeded. */
+    @Test
+    public void testEviction() {
+        given("cache limited to 10 entries");
+        ScriptCache<Object, String> cache = new ScriptCache<>();
+        cache.setMaxSize(10);
+
+        when("10 scripts are cached and the first one is used");
+        for (int i = 0; i < 10; i++) {
+            cache.putCode(null, "script" + i, "code" + i);
+        }
+        assertEquals("script0 not cached", "code0", cache.getCode(null, "script0"));
+
+        and("another script is added");
+        cache.putCode(null, "script10", "code10");
+
+        then("least recently used scripts are evicted");
+        display("Cache: " + cache);
+        assertEquals("wrong cache size", 9, cache.size());
+        assertEquals("wrong # of evictions", 2, cache.getEvictions());
+        assertEquals("script0 evicted", "code0", cache.getCode(null, "script0"));
+        assertEquals("script10 evicted", "code10", cache.getCode(null, "script10"));
+        assertNull("script1 not evicted", cache.getCode(null, "script1"));
+        assertNull("script2 not evicted", cache.getCode(null, "script2"));
+        assertEquals("script3 evicted", "code3", cache.getCode(null, "script3"));
+
+        and("profiles are distinguished");
+        assertNull("script found under another profile", cache.getCode(ExpressionProfile.full(), "script0"));
+    }
+
     private void assertScriptMonitor(int expCompilations, int expExecutions, String desc) {
         assertEquals("Unexpected number of script compilations after " + desc, expCompilations, InternalMonitor.getCount(InternalCounters.SCRIPT_COMPILE_COUNT));
         assertEquals("Unexpected number of script executions after " + desc, expExecutions, InternalMonitor.getCount(InternalCounters.SCRIPT_EXECUTION_COUNT));
@@ -6,12 +6,17 @@
  */
 package com.evolveum.midpoint.model.impl;
 
+import java.util.List;
+
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.ws.rs.core.Response;
 
 import com.evolveum.midpoint.model.api.util.ClusterServiceConsts;
 
+import org.apache.cxf.jaxrs.client.WebClient;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -21,6 +26,8 @@ import com.evolveum.midpoint.CacheInvalidationContext;
 import com.evolveum.midpoint.authentication.api.config.NodeAuthenticationToken;
 import com.evolveum.midpoint.repo.api.CacheDispatcher;
 import com.evolveum.midpoint.repo.api.CacheListener;
+import com.evolveum.midpoint.repo.api.SystemConfigurationChangeDispatcher;
+import com.evolveum.midpoint.repo.api.SystemConfigurationChangeListener;
 import com.evolveum.midpoint.schema.constants.ObjectTypes;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.ClusterExecutionHelper;
@@ -28,20 +35,47 @@ import com.evolveum.midpoint.task.api.Task;
 import com.evolveum.midpoint.task.api.TaskManager;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
-import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.api_types_3.CacheInvalidationEventListType;
+import com.evolveum.midpoint.xml.ns._public.common.api_types_3.CacheInvalidationEventType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 
+/**
+ * Distributes cluster-wide cache invalidations to other nodes.
+ *
+ * Invalidations go through {@link ClusterInvalidationBatcher}: by default they are sent immediately, one REST call
+ * per invalidation and node. If `internals/caching/clusterInvalidation/maxDelay` is set in system configuration,
+ * they are coalesced and sent in batches.
+ */
 @Component
-public class ClusterCacheListener implements CacheListener {
+public class ClusterCacheListener implements CacheListener, SystemConfigurationChangeListener {
 
     private static final Trace LOGGER = TraceManager.getTrace(ClusterCacheListener.class);
 
     @Autowired private TaskManager taskManager;
     @Autowired private CacheDispatcher cacheDispatcher;
     @Autowired private ClusterExecutionHelper clusterExecutionHelper;
+    @Autowired private SystemConfigurationChangeDispatcher systemConfigurationChangeDispatcher;
+
+    private final ClusterInvalidationBatcher batcher = new ClusterInvalidationBatcher(this::sendInvalidations);
 
     @PostConstruct
     public void addListener() {
         cacheDispatcher.registerCacheListener(this);
+        systemConfigurationChangeDispatcher.registerListener(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        systemConfigurationChangeDispatcher.unregisterListener(this);
+        batcher.shutdown();
+        LOGGER.debug("Cluster cache invalidation statistics: {}", batcher);
+    }
+
+    @Override
+    public void update(@Nullable SystemConfigurationType value) {
+        InternalsConfigurationType internals = value != null ? value.getInternals() : null;
+        CachingConfigurationType caching = internals != null ? internals.getCaching() : null;
+        batcher.configure(caching != null ? caching.getClusterInvalidation() : null);
     }
 
     @Override
@@ -52,40 +86,80 @@ public class ClusterCacheListener implements CacheListener {
             return;
         }
 
+        LOGGER.trace("Cache invalidation context {}", context);
+
+        if (type == null && oid != null) {
+            LOGGER.warn("Cannot invalidate object type null with specific OID. Converting to global invalidation (type=null, oid=null).");
+        }
+        batcher.invalidate(type, type != null ? oid : null);
+    }
+
+    private void sendInvalidations(@NotNull List<ClusterInvalidationBatcher.Invalidation> invalidations) {
         Task task = taskManager.createTaskInstance("invalidate");
         OperationResult result = task.getResult();
 
-        LOGGER.trace("Cache invalidation context {}", context);
-
         // Regular cache invalidation can be skipped for nodes not checking in. Cache entries will expire on such nodes
         // eventually. (We can revisit this design decision if needed.)
         clusterExecutionHelper.execute((client, node, result1) -> {
-            client.path(getInvalidationRestPath(type, oid));
-            var response = client.post(null);
+            Response response;
+            if (invalidations.size() == 1) {
+                // The original single-invalidation call, understood also by nodes running older versions.
+                var invalidation = invalidations.get(0);
+                client.path(getInvalidationRestPath(invalidation.type(), invalidation.oid()));
+                response = client.post(null);
+            } else {
+                client.path(ClusterServiceConsts.EVENT_INVALIDATION_BATCH);
+                response = client.post(createEventList(invalidations));
+                if (response.getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
+                    response.close();
+                    response = invalidateAllOnOlderNode(client, node);
+                }
+            }
             var statusInfo = response.getStatusInfo();
             if (statusInfo.getFamily() != Response.Status.Family.SUCCESSFUL) {
                 LOGGER.warn("Cluster-wide cache clearance finished on {} with status {}, {}", node.getNodeIdentifier(),
                         statusInfo.getStatusCode(), statusInfo.getReasonPhrase());
             } else {
-                LOGGER.debug("Cluster-wide cache clearance finished on {} with status {}, {}", node.getNodeIdentifier(),
-                        statusInfo.getStatusCode(), statusInfo.getReasonPhrase());
+                LOGGER.debug("Cluster-wide cache clearance ({} invalidation(s)) finished on {} with status {}, {}",
+                        invalidations.size(), node.getNodeIdentifier(), statusInfo.getStatusCode(), statusInfo.getReasonPhrase());
             }
             response.close();
         }, null, "cache invalidation", result);
     }
 
+    /**
+     * Node without the batch endpoint (e.g. during rolling upgrade) - instead of many single calls
+     * we invalidate all its caches, which is always correct.
+     */
+    private Response invalidateAllOnOlderNode(WebClient client, NodeType node) {
+        LOGGER.debug("Node {} does not support batched cache invalidation, invalidating all its caches",
+                node.getNodeIdentifier());
+        client.back(true);
+        client.path(ClusterServiceConsts.EVENT_INVALIDATION);
+        return client.post(null);
+    }
+
+    private CacheInvalidationEventListType createEventList(List<ClusterInvalidationBatcher.Invalidation> invalidations) {
+        CacheInvalidationEventListType list = new CacheInvalidationEventListType();
+        for (ClusterInvalidationBatcher.Invalidation invalidation : invalidations) {
+            CacheInvalidationEventType event = new CacheInvalidationEventType();
+            if (invalidation.type() != null) {
+                event.setType(ObjectTypes.getRestTypeFromClass(invalidation.type()));
+                event.setOid(invalidation.oid());
+            }
+            list.getEvent().add(event);
+        }
+        return list;
+    }
+
     @NotNull
-    private <O extends ObjectType> String getInvalidationRestPath(Class<O> type, String oid) {
+    private String getInvalidationRestPath(Class<? extends ObjectType> type, String oid) {
         StringBuilder sb = new StringBuilder(ClusterServiceConsts.EVENT_INVALIDATION);
         if (type != null) {
             sb.append(ObjectTypes.getRestTypeFromClass(type));
             if (oid != null) {
                 sb.append("/").append(oid);
             }
-        } else {
-            if (oid != null) {
-                LOGGER.warn("Cannot invalidate object type null with specific OID. Converting to global invalidation (type=null, oid=null).");
-            }
         }
         return sb.toString();
     }
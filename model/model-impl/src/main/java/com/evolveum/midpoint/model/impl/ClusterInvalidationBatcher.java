@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ClusterCacheInvalidationConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Write-behind buffer for cluster-wide cache invalidations, used by {@link ClusterCacheListener}.
+ *
+ * Invalidations are collected for at most {@link #maxDelay} milliseconds (or until {@link #maxBatchSize} is reached)
+ * and then handed over to the {@link Sender} as one batch. While in the buffer, they are coalesced:
+ *
+ * . duplicate invalidations of the same object are sent only once,
+ * . invalidations of objects are dropped if the whole type (or everything) is to be invalidated,
+ * . if more than {@link #typeEscalationThreshold} objects of the same type are buffered, they are replaced
+ * by a single invalidation of the type (_escalation_).
+ *
+ * All other nodes get the same set of invalidations, so there is a single buffer that is sent to each of them
+ * by the sender; it is the sender that takes care of individual nodes.
+ *
+ * If max delay is zero (the default), each invalidation is passed to the sender immediately, as a batch of one.
+ */
+class ClusterInvalidationBatcher {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ClusterInvalidationBatcher.class);
+
+    static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+    static final int DEFAULT_TYPE_ESCALATION_THRESHOLD = 100;
+
+    /**
+     * Single invalidation to be sent to other nodes.
+     * Null type means invalidation of everything, null OID means invalidation of the whole type.
+     */
+    record Invalidation(@Nullable Class<? extends ObjectType> type, @Nullable String oid) {
+
+        static final Invalidation ALL = new Invalidation(null, null);
+
+        @Override
+        public String toString() {
+            return (type != null ? type.getSimpleName() : "*") + ":" + (oid != null ? oid : "*");
+        }
+    }
+
+    /** Delivers the batch to all other nodes. Called outside of the buffer lock. */
+    @FunctionalInterface
+    interface Sender {
+        void send(@NotNull List<Invalidation> invalidations);
+    }
+
+    @NotNull private final Sender sender;
+
+    /** Lazily created flusher thread, used only when max delay is set. */
+    private ScheduledExecutorService scheduler;
+
+    // Configuration and the buffer below are guarded by "this".
+
+    private long maxDelay;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private int typeEscalationThreshold = DEFAULT_TYPE_ESCALATION_THRESHOLD;
+
+    private boolean allPending;
+    private final Set<Class<? extends ObjectType>> pendingTypes = new LinkedHashSet<>();
+    private final Map<Class<? extends ObjectType>, Set<String>> pendingOids = new LinkedHashMap<>();
+    private int pendingCount;
+    private boolean flushScheduled;
+
+    private final AtomicLong requestedCount = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong escalatedCount = new AtomicLong();
+
+    ClusterInvalidationBatcher(@NotNull Sender sender) {
+        this.sender = sender;
+    }
+
+    /** Applies the configuration; switching to immediate mode sends the pending invalidations right away. */
+    void configure(@Nullable ClusterCacheInvalidationConfigurationType config) {
+        Integer maxDelay = config != null ? config.getMaxDelay() : null;
+        Integer maxBatchSize = config != null ? config.getMaxBatchSize() : null;
+        Integer threshold = config != null ? config.getTypeEscalationThreshold() : null;
+        long newMaxDelay = maxDelay != null ? Math.max(maxDelay, 0) : 0;
+        synchronized (this) {
+            this.maxDelay = newMaxDelay;
+            this.maxBatchSize = maxBatchSize != null && maxBatchSize > 0 ? maxBatchSize : DEFAULT_MAX_BATCH_SIZE;
+            this.typeEscalationThreshold = threshold != null ? threshold : DEFAULT_TYPE_ESCALATION_THRESHOLD;
+        }
+        if (newMaxDelay == 0) {
+            flush();
+        }
+    }
+
+    void invalidate(@Nullable Class<? extends ObjectType> type, @Nullable String oid) {
+        requestedCount.incrementAndGet();
+        boolean flushNow;
+        synchronized (this) {
+            if (maxDelay == 0) {
+                flushNow = true;
+                add(type, oid);
+            } else {
+                add(type, oid);
+                flushNow = pendingCount >= maxBatchSize;
+                if (!flushNow && !flushScheduled && pendingCount > 0) {
+                    flushScheduled = true;
+                    getScheduler().schedule(this::flushSafely, maxDelay, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        if (flushNow) {
+            flush();
+        }
+    }
+
+    /** Must be called under the lock. */
+    private void add(Class<? extends ObjectType> type, String oid) {
+        if (allPending) {
+            coalescedCount.incrementAndGet();
+        } else if (type == null) {
+            coalescedCount.addAndGet(pendingCount);
+            clearPending();
+            allPending = true;
+            pendingCount = 1;
+        } else if (pendingTypes.contains(type)) {
+            coalescedCount.incrementAndGet();
+        } else if (oid == null) {
+            Set<String> oids = pendingOids.remove(type);
+            if (oids != null) {
+                coalescedCount.addAndGet(oids.size());
+                pendingCount -= oids.size();
+            }
+            pendingTypes.add(type);
+            pendingCount++;
+        } else {
+            Set<String> oids = pendingOids.computeIfAbsent(type, k -> new LinkedHashSet<>());
+            if (!oids.add(oid)) {
+                coalescedCount.incrementAndGet();
+            } else if (typeEscalationThreshold > 0 && oids.size() > typeEscalationThreshold) {
+                LOGGER.debug("More than {} invalidations of {} pending, escalating to invalidation of the whole type",
+                        typeEscalationThreshold, type.getSimpleName());
+                pendingOids.remove(type);
+                pendingTypes.add(type);
+                escalatedCount.incrementAndGet();
+                // the new OID was not counted yet; the already counted ones are replaced by the type
+                coalescedCount.addAndGet(oids.size() - 1);
+                pendingCount = pendingCount - (oids.size() - 1) + 1;
+            } else {
+                pendingCount++;
+            }
+        }
+    }
+
+    private void clearPending() {
+        allPending = false;
+        pendingTypes.clear();
+        pendingOids.clear();
+        pendingCount = 0;
+    }
+
+    /** Sends all pending invalidations (if any) in the current thread. */
+    void flush() {
+        List<Invalidation> batch;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pendingCount == 0) {
+                return;
+            }
+            batch = new ArrayList<>(pendingCount);
+            if (allPending) {
+                batch.add(Invalidation.ALL);
+            } else {
+                pendingTypes.forEach(type -> batch.add(new Invalidation(type, null)));
+                pendingOids.forEach((type, oids) -> oids.forEach(oid -> batch.add(new Invalidation(type, oid))));
+            }
+            clearPending();
+        }
+
+        LOGGER.trace("Sending {} cache invalidation(s) to other nodes: {}", batch.size(), batch);
+        sentCount.addAndGet(batch.size());
+        batchCount.incrementAndGet();
+        sender.send(batch);
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Throwable t) {
+            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't send cache invalidations to other nodes", t);
+        }
+    }
+
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "cluster-cache-invalidation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+
+    /** Sends pending invalidations and stops the flusher thread. Later invalidations are sent immediately. */
+    void shutdown() {
+        ScheduledExecutorService schedulerToStop;
+        synchronized (this) {
+            maxDelay = 0;
+            schedulerToStop = scheduler;
+            scheduler = null;
+        }
+        if (schedulerToStop != null) {
+            schedulerToStop.shutdownNow();
+        }
+        flush();
+    }
+
+    synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    /** Number of invalidations requested by the local node. */
+    long getRequestedCount() {
+        return requestedCount.get();
+    }
+
+    /** Number of invalidations handed over to the sender (each of them goes to every other node). */
+    long getSentCount() {
+        return sentCount.get();
+    }
+
+    long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /** Number of invalidations that were not sent, because they were covered by other ones. */
+    long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /** How many times were object invalidations replaced by invalidation of the whole type. */
+    long getEscalatedCount() {
+        return escalatedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterInvalidationBatcher{" +
+                "maxDelay=" + maxDelay +
+                ", requested=" + requestedCount +
+                ", sent=" + sentCount +
+                ", batches=" + batchCount +
+                ", coalesced=" + coalescedCount +
+                ", escalated=" + escalatedCount +
+                '}';
+    }
+}
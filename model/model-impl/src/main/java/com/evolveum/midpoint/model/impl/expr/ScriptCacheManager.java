@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.expr;
+
+import static com.evolveum.midpoint.schema.GetOperationOptions.createReadOnlyCollection;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.xml.bind.JAXBElement;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.CacheInvalidationContext;
+import com.evolveum.midpoint.model.common.expression.script.ScriptCache;
+import com.evolveum.midpoint.model.common.expression.script.ScriptExpressionFactory;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismPropertyValue;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.repo.api.Cache;
+import com.evolveum.midpoint.repo.api.CacheRegistry;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.repo.api.SystemConfigurationChangeDispatcher;
+import com.evolveum.midpoint.repo.api.SystemConfigurationChangeListener;
+import com.evolveum.midpoint.schema.expression.ExpressionProfile;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Makes the caches of compiled scripts (see {@link ScriptCache}) manageable:
+ *
+ * . registers them in the {@link CacheRegistry}, so their size and hit/miss/compilation statistics are reported
+ * along with other caches;
+ * . applies the configuration from {@link ScriptCachingConfigurationType};
+ * . if requested, compiles the scripts found in selected objects in advance. This is done in a background thread at the start
+ * (when the system configuration is first seen), on each system configuration change, and on changes of the respective objects.
+ *
+ * The precompilation is a best-effort activity: scripts that cannot be compiled are skipped (they will fail in the usual way
+ * when evaluated).
+ */
+@Component
+public class ScriptCacheManager implements Cache, SystemConfigurationChangeListener {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ScriptCacheManager.class);
+    private static final Trace LOGGER_CACHE_CONTENT = TraceManager.getTrace(ScriptCacheManager.class.getName() + ".content");
+
+    private static final String CACHE_NAME_PREFIX = ScriptCache.class.getName() + ".";
+
+    private static final String OP_PRECOMPILE = ScriptCacheManager.class.getName() + ".precompile";
+
+    /** Objects whose scripts are compiled in advance. */
+    private static final List<Class<? extends ObjectType>> PRECOMPILED_TYPES = List.of(
+            ResourceType.class,
+            ObjectTemplateType.class,
+            AbstractRoleType.class,
+            FunctionLibraryType.class);
+
+    @Autowired private ScriptExpressionFactory scriptExpressionFactory;
+    @Autowired @Qualifier("cacheRepositoryService") private RepositoryService repositoryService;
+    @Autowired private CacheRegistry cacheRegistry;
+    @Autowired private SystemConfigurationChangeDispatcher systemConfigurationChangeDispatcher;
+
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    /** Single thread, so the precompilation requests are processed one after another. */
+    private final ExecutorService precompilationExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "midpoint-script-precompiler-" + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean precompile;
+
+    @PostConstruct
+    public void init() {
+        cacheRegistry.registerCache(this);
+        systemConfigurationChangeDispatcher.registerListener(this);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        systemConfigurationChangeDispatcher.unregisterListener(this);
+        cacheRegistry.unregisterCache(this);
+        precompilationExecutor.shutdownNow();
+    }
+
+    @Override
+    public void update(@Nullable SystemConfigurationType value) {
+        SystemConfigurationExpressionsType expressions = value != null ? value.getExpressions() : null;
+        ScriptCachingConfigurationType config = expressions != null ? expressions.getScriptCaching() : null;
+
+        int maxSize = config != null && config.getMaxSize() != null ? config.getMaxSize() : ScriptCache.DEFAULT_MAX_SIZE;
+        scriptExpressionFactory.getScriptCaches().values()
+                .forEach(cache -> cache.setMaxSize(maxSize));
+
+        precompile = config != null && Boolean.TRUE.equals(config.isPrecompile());
+        if (precompile) {
+            for (Class<? extends ObjectType> type : PRECOMPILED_TYPES) {
+                schedulePrecompilation(type, null);
+            }
+        }
+    }
+
+    @Override
+    public void invalidate(Class<?> type, String oid, CacheInvalidationContext context) {
+        if (!precompile || type == null) {
+            return; // compiled scripts are keyed by their source code, so they never become stale
+        }
+        for (Class<? extends ObjectType> precompiledType : PRECOMPILED_TYPES) {
+            if (precompiledType.isAssignableFrom(type)) {
+                //noinspection unchecked
+                schedulePrecompilation((Class<? extends ObjectType>) type, oid);
+            }
+        }
+    }
+
+    private void schedulePrecompilation(@NotNull Class<? extends ObjectType> type, @Nullable String oid) {
+        try {
+            precompilationExecutor.execute(() -> precompile(type, oid));
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Couldn't schedule precompilation of scripts in {}:{}: {}", type.getSimpleName(), oid, e.getMessage());
+        }
+    }
+
+    /** Compiles scripts in objects of given type (all or the one with given OID). */
+    private void precompile(@NotNull Class<? extends ObjectType> type, @Nullable String oid) {
+        if (!precompile) {
+            return;
+        }
+        OperationResult result = new OperationResult(OP_PRECOMPILE);
+        int[] counts = new int[2]; // scripts seen, scripts compiled
+        long start = System.currentTimeMillis();
+        try {
+            ObjectQuery query = oid != null ?
+                    PrismContext.get().queryFor(type).id(oid).build() :
+                    null;
+            repositoryService.searchObjectsIterative(
+                    type, query,
+                    (object, lResult) -> {
+                        precompile(object, counts);
+                        return precompile; // stop if precompilation was switched off in the meanwhile
+                    },
+                    createReadOnlyCollection(), true, result);
+            LOGGER.debug("Precompiled {} of {} scripts in {}{} in {} ms", counts[1], counts[0], type.getSimpleName(),
+                    oid != null ? ":" + oid : " objects", System.currentTimeMillis() - start);
+        } catch (Throwable t) {
+            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't precompile scripts in {}{}", t, type.getSimpleName(),
+                    oid != null ? ":" + oid : " objects");
+        }
+    }
+
+    private void precompile(@NotNull PrismObject<? extends ObjectType> object, int[] counts) {
+        for (ScriptExpressionEvaluatorType script : findScripts(object)) {
+            counts[0]++;
+            try {
+                if (scriptExpressionFactory.precompile(script, ExpressionProfile.full(), "script in " + object)) {
+                    counts[1]++;
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Couldn't precompile script in {}, skipping it: {}", object, e.getMessage(), e);
+            }
+        }
+    }
+
+    private static @NotNull List<ScriptExpressionEvaluatorType> findScripts(@NotNull PrismObject<? extends ObjectType> object) {
+        List<ScriptExpressionEvaluatorType> scripts = new ArrayList<>();
+        object.accept(visitable -> {
+            if (visitable instanceof PrismPropertyValue<?> propertyValue
+                    && propertyValue.getValue() instanceof ExpressionType expression) {
+                for (JAXBElement<?> evaluator : expression.getExpressionEvaluator()) {
+                    if (evaluator.getValue() instanceof ScriptExpressionEvaluatorType script) {
+                        scripts.add(script);
+                    }
+                }
+            }
+        });
+        return scripts;
+    }
+
+    @NotNull
+    @Override
+    public Collection<SingleCacheStateInformationType> getStateInformation() {
+        List<SingleCacheStateInformationType> rv = new ArrayList<>();
+        scriptExpressionFactory.getScriptCaches().forEach(
+                (language, cache) -> rv.add(cache.getStateInformation(CACHE_NAME_PREFIX + getLanguageName(language))));
+        return rv;
+    }
+
+    @Override
+    public void dumpContent() {
+        if (LOGGER_CACHE_CONTENT.isInfoEnabled()) {
+            scriptExpressionFactory.getScriptCaches().forEach(
+                    (language, cache) -> LOGGER_CACHE_CONTENT.info("Script cache for {}: {}", language, cache));
+        }
+    }
+
+    private static String getLanguageName(String languageUrl) {
+        int i = languageUrl.lastIndexOf('#');
+        return i >= 0 ? languageUrl.substring(i + 1) : languageUrl;
+    }
+}
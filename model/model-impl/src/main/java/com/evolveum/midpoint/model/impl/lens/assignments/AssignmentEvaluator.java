@@ -6,6 +6,7 @@
  */
 package com.evolveum.midpoint.model.impl.lens.assignments;
 
+import java.util.Collection;
 import java.util.List;
 import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
@@ -86,6 +87,7 @@ public class AssignmentEvaluator<AH extends AssignmentHolderType> {
     // Evaluation state
 
     final EvaluatedAssignmentTargetCache evaluatedAssignmentTargetCache;
+    final PrefetchedAssignmentTargets prefetchedTargets;
     private final MemberOfEngine memberOfEngine;
 
     private AssignmentEvaluator(Builder<AH> builder) {
@@ -97,6 +99,7 @@ public class AssignmentEvaluator<AH extends AssignmentHolderType> {
         loginMode = builder.loginMode;
         systemConfiguration = builder.systemConfiguration;
         evaluatedAssignmentTargetCache = new EvaluatedAssignmentTargetCache();
+        prefetchedTargets = new PrefetchedAssignmentTargets(relationRegistry, ModelBeans.get().roleInducementGraphCache);
         memberOfEngine = new MemberOfEngine();
 
         LensFocusContext<AH> focusContext = lensContext.getFocusContext();
@@ -109,11 +112,21 @@ public class AssignmentEvaluator<AH extends AssignmentHolderType> {
 
     public void reset(boolean alsoMemberOfInvocations) {
         evaluatedAssignmentTargetCache.reset();
+        prefetchedTargets.clear();
         if (alsoMemberOfInvocations) {
             memberOfEngine.clearInvocations();
         }
     }
 
+    /**
+     * Fetches the targets of given (direct) assignments - and the targets of their inducements and assignments, recursively -
+     * in bulk, level by level, so they need not be resolved one by one during the evaluation of individual assignments.
+     * Optional; it is just an optimization. See {@link PrefetchedAssignmentTargets}.
+     */
+    public void prefetchTargets(@NotNull Collection<AssignmentType> assignments, @NotNull OperationResult result) {
+        prefetchedTargets.prefetch(assignments, result);
+    }
+
     /**
      * Main entry point: evaluates a given focus-attached (direct) assignment.
      * Returns a complex structure called {@link EvaluatedAssignmentImpl}.
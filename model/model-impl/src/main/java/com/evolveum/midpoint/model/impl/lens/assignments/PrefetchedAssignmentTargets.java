@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl.lens.assignments;
+
+import java.util.*;
+import javax.xml.namespace.QName;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.model.impl.ModelBeans;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.RelationRegistry;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Assignment targets (roles, orgs, archetypes, ...) fetched in advance, before the assignments are evaluated.
+ *
+ * The targets are fetched breadth-first: the targets of the assignments themselves form the first level; the targets
+ * of their inducements and assignments form the second one, and so on. Each level is fetched by a single `getObjects`
+ * call (per object type), instead of one `getObject` call per target as it is done by the lazy resolution in
+ * {@link TargetsEvaluation}. The evaluation then takes the targets from here, falling back to the repository
+ * for anything that was not prefetched (e.g. targets given by filters, or objects that were not found).
+ *
+ * Only references with OID and with relations that are processed on recompute are followed. Others are either
+ * not evaluated at all, or they are rare enough to be resolved lazily.
+ *
+ * The targets are read through the repository cache. So, if the caching profile enables the global repository cache
+ * for roles (or other target types), the commonly used parts of the role graph are not fetched from the repository at all,
+ * subject to the usual time-to-live and version checks of that cache.
+ *
+ * The structure of the graph below the roles assigned directly is taken from {@link RoleInducementGraphCache}, if it is
+ * there for the current versions of the roles. The whole graph below such a role is then fetched by a single call
+ * (per object type) instead of being walked level by level. The graphs that had to be walked are stored there
+ * for the next time.
+ *
+ * The prefetching never fails: if there is a problem, the targets are simply resolved one by one, which reports
+ * the problem in the usual way.
+ */
+class PrefetchedAssignmentTargets {
+
+    private static final Trace LOGGER = TraceManager.getTrace(PrefetchedAssignmentTargets.class);
+
+    private static final String OP_PREFETCH = PrefetchedAssignmentTargets.class.getName() + ".prefetch";
+
+    /** Safety limit for the depth of role hierarchies being prefetched. Deeper targets are resolved lazily. */
+    private static final int MAX_LEVELS = 10;
+
+    /** Safety limit for the number of objects requested (and kept) here. Other targets are resolved lazily. */
+    private static final int MAX_OBJECTS = 5000;
+
+    @NotNull private final RelationRegistry relationRegistry;
+
+    @NotNull private final RoleInducementGraphCache graphCache;
+
+    /** Prefetched targets, indexed by OID. */
+    @NotNull private final Map<String, PrismObject<? extends ObjectType>> objects = new HashMap<>();
+
+    /** OIDs that were requested (found or not), to avoid asking for them again. */
+    @NotNull private final Set<String> requestedOids = new HashSet<>();
+
+    /** OIDs of targets whose edges were followed, or need not be, as they are covered by a cached graph expansion. */
+    @NotNull private final Set<String> expandedOids = new HashSet<>();
+
+    /** Outgoing edges of the prefetched targets, indexed by OID; computed once for each target. */
+    @NotNull private final Map<String, List<Edge>> edgesByOid = new HashMap<>();
+
+    PrefetchedAssignmentTargets(@NotNull RelationRegistry relationRegistry, @NotNull RoleInducementGraphCache graphCache) {
+        this.relationRegistry = relationRegistry;
+        this.graphCache = graphCache;
+    }
+
+    void clear() {
+        objects.clear();
+        requestedOids.clear();
+        expandedOids.clear();
+        edgesByOid.clear();
+    }
+
+    /**
+     * Returns the prefetched target for given reference, if there's one (and it is of the type the reference requires).
+     */
+    @Nullable PrismObject<? extends ObjectType> get(@NotNull ObjectReferenceType targetRef) {
+        String oid = targetRef.getOid();
+        if (oid == null || targetRef.asReferenceValue().getObject() != null) {
+            return null;
+        }
+        PrismObject<? extends ObjectType> object = objects.get(oid);
+        if (object == null) {
+            return null;
+        }
+        Class<? extends ObjectType> targetClass = determineClass(targetRef.getType());
+        if (targetClass == null || !targetClass.isInstance(object.asObjectable())) {
+            return null;
+        }
+        return object;
+    }
+
+    /**
+     * Fetches the targets of given assignments (and their inducements and assignments, recursively), level by level.
+     * The graphs below the roles that have a cached expansion are fetched at once, see {@link RoleInducementGraphCache}.
+     */
+    void prefetch(@NotNull Collection<AssignmentType> assignments, OperationResult parentResult) {
+        List<Edge> level = createEdges(assignments);
+        if (level.isEmpty()) {
+            return;
+        }
+
+        OperationResult result = parentResult.createMinorSubresult(OP_PREFETCH);
+        try {
+            long invalidationCount = graphCache.getInvalidationCount();
+            List<PrismObject<? extends ObjectType>> roots = fetchLevel(level, result);
+            List<PrismObject<? extends ObjectType>> rootsToExpand = fetchCachedExpansions(roots, result);
+
+            int levels = 1;
+            level = createEdgesToFollow(roots);
+            while (!level.isEmpty() && levels < MAX_LEVELS && requestedOids.size() < MAX_OBJECTS) {
+                levels++;
+                level = createEdgesToFollow(fetchLevel(level, result));
+            }
+
+            storeExpansions(rootsToExpand, invalidationCount);
+
+            LOGGER.trace("Prefetched {} assignment targets in {} level(s), graphs of {} of {} root(s) were walked",
+                    objects.size(), levels, rootsToExpand.size(), roots.size());
+            result.addReturn("levels", levels);
+            result.addReturn("objects", objects.size());
+            result.addReturn("walkedRoots", rootsToExpand.size());
+        } catch (Exception e) {
+            LoggingUtils.logExceptionOnDebugLevel(
+                    LOGGER, "Couldn't prefetch assignment targets, they will be resolved one by one", e);
+            result.recordHandledError(e);
+        } finally {
+            result.close();
+        }
+    }
+
+    /**
+     * For the roles that have an expansion in the graph cache, fetches all the targets in it (by a single call per
+     * object type) and checks that they are still in the recorded versions.
+     *
+     * @return Roles whose graph has to be walked, because it was not cached or the cached expansion is out of date.
+     */
+    private @NotNull List<PrismObject<? extends ObjectType>> fetchCachedExpansions(
+            @NotNull List<PrismObject<? extends ObjectType>> roots, OperationResult result) throws SchemaException {
+        List<CachedRoot> cachedRoots = new ArrayList<>();
+        List<PrismObject<? extends ObjectType>> toExpand = new ArrayList<>();
+        List<Edge> members = new ArrayList<>();
+        for (PrismObject<? extends ObjectType> root : roots) {
+            if (!(root.asObjectable() instanceof AbstractRoleType)) {
+                continue; // such graphs are not cached
+            }
+            RoleInducementGraphCache.Expansion expansion = graphCache.get(root);
+            if (expansion != null) {
+                cachedRoots.add(new CachedRoot(root, expansion));
+                for (RoleInducementGraphCache.Member member : expansion.members().values()) {
+                    members.add(new Edge(member.type(), member.oid()));
+                }
+            } else {
+                toExpand.add(root);
+            }
+        }
+
+        fetchLevel(members, result);
+
+        for (CachedRoot cachedRoot : cachedRoots) {
+            PrismObject<? extends ObjectType> root = cachedRoot.root();
+            if (isUpToDate(cachedRoot.expansion())) {
+                expandedOids.add(root.getOid());
+                expandedOids.addAll(cachedRoot.expansion().members().keySet());
+                graphCache.recordHit();
+            } else {
+                LOGGER.trace("Cached graph expansion of {} is out of date", root);
+                graphCache.remove(root);
+                toExpand.add(root);
+            }
+        }
+        toExpand.forEach(root -> graphCache.recordMiss());
+        return toExpand;
+    }
+
+    /** Were all the members of the expansion fetched in the versions recorded in it? */
+    private boolean isUpToDate(@NotNull RoleInducementGraphCache.Expansion expansion) {
+        for (RoleInducementGraphCache.Member member : expansion.members().values()) {
+            PrismObject<? extends ObjectType> object = objects.get(member.oid());
+            if (object == null
+                    || !member.type().isInstance(object.asObjectable())
+                    || !member.version().equals(object.getVersion())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Stores the expansions of the graphs below given roles; only the complete ones (within the limits) are stored. */
+    private void storeExpansions(@NotNull List<PrismObject<? extends ObjectType>> roots, long invalidationCount) {
+        for (PrismObject<? extends ObjectType> root : roots) {
+            RoleInducementGraphCache.Expansion expansion = createExpansion(root);
+            if (expansion != null) {
+                graphCache.put(root, expansion, invalidationCount);
+            }
+        }
+    }
+
+    /** Collects all targets reachable from the root; returns null if any of them was not prefetched. */
+    private @Nullable RoleInducementGraphCache.Expansion createExpansion(@NotNull PrismObject<? extends ObjectType> root) {
+        Map<String, RoleInducementGraphCache.Member> members = new HashMap<>();
+        Deque<PrismObject<? extends ObjectType>> toProcess = new ArrayDeque<>();
+        toProcess.push(root);
+        while (!toProcess.isEmpty()) {
+            for (Edge edge : getEdges(toProcess.pop())) {
+                String oid = edge.oid();
+                if (oid.equals(root.getOid()) || members.containsKey(oid)) {
+                    continue;
+                }
+                PrismObject<? extends ObjectType> object = objects.get(oid);
+                if (object == null || object.getVersion() == null || !edge.type().isInstance(object.asObjectable())) {
+                    return null; // not found, or not prefetched because of the limits
+                }
+                members.put(oid, new RoleInducementGraphCache.Member(edge.type(), oid, object.getVersion()));
+                toProcess.push(object);
+            }
+        }
+        return new RoleInducementGraphCache.Expansion(Map.copyOf(members));
+    }
+
+    /** Edges of given targets that were not followed yet. */
+    private @NotNull List<Edge> createEdgesToFollow(@NotNull List<PrismObject<? extends ObjectType>> targets) {
+        List<Edge> edges = new ArrayList<>();
+        for (PrismObject<? extends ObjectType> target : targets) {
+            if (expandedOids.add(target.getOid())) {
+                edges.addAll(getEdges(target));
+            }
+        }
+        return edges;
+    }
+
+    /** Edges leading to the targets of given assignments or inducements, if they are worth following. */
+    private @NotNull List<Edge> createEdges(@NotNull Collection<AssignmentType> assignments) {
+        List<Edge> edges = new ArrayList<>();
+        for (AssignmentType assignment : assignments) {
+            ObjectReferenceType targetRef = assignment.getTargetRef();
+            if (targetRef == null
+                    || StringUtils.isBlank(targetRef.getOid())
+                    || targetRef.asReferenceValue().getObject() != null
+                    || !relationRegistry.isProcessedOnRecompute(relationRegistry.normalizeRelation(targetRef.getRelation()))) {
+                continue;
+            }
+            Class<? extends ObjectType> targetClass = determineClass(targetRef.getType());
+            if (targetClass != null && AssignmentHolderType.class.isAssignableFrom(targetClass)) {
+                edges.add(new Edge(targetClass, targetRef.getOid()));
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Provides the targets for given edges: the ones already prefetched, and the rest from the repository, by a single call
+     * per object type (served from the repository cache as far as possible).
+     */
+    private @NotNull List<PrismObject<? extends ObjectType>> fetchLevel(@NotNull List<Edge> level, OperationResult result)
+            throws SchemaException {
+        List<PrismObject<? extends ObjectType>> provided = new ArrayList<>();
+        Set<String> providedOids = new HashSet<>();
+        Map<Class<? extends ObjectType>, Set<String>> toSearch = new HashMap<>();
+        for (Edge edge : level) {
+            String oid = edge.oid();
+            if (!providedOids.add(oid)) {
+                continue; // the same OID may be referenced multiple times, even with different types
+            }
+            PrismObject<? extends ObjectType> existing = objects.get(oid);
+            if (existing != null) {
+                provided.add(existing);
+            } else if (requestedOids.size() >= MAX_OBJECTS) {
+                LOGGER.trace("Reached the limit of {} prefetched assignment targets, {} will be resolved lazily",
+                        MAX_OBJECTS, oid);
+            } else if (requestedOids.add(oid)) {
+                toSearch.computeIfAbsent(edge.type(), k -> new HashSet<>())
+                        .add(oid);
+            }
+        }
+
+        for (var entry : toSearch.entrySet()) {
+            Class<? extends ObjectType> type = entry.getKey();
+            Set<String> oids = entry.getValue();
+            var found = ModelBeans.get().cacheRepositoryService.getObjects(
+                    type, oids, GetOperationOptions.createReadOnlyCollection(), result);
+            LOGGER.trace("Prefetched {} of {} assignment targets of type {}", found.size(), oids.size(), type.getSimpleName());
+            for (PrismObject<? extends ObjectType> object : found) {
+                objects.put(object.getOid(), object);
+                provided.add(object);
+            }
+        }
+        return provided;
+    }
+
+    private @NotNull List<Edge> getEdges(@NotNull PrismObject<? extends ObjectType> object) {
+        return edgesByOid.computeIfAbsent(object.getOid(), oid -> createEdges(object));
+    }
+
+    /** Edges leading to the targets of inducements and assignments of given (already fetched) target. */
+    private @NotNull List<Edge> createEdges(@NotNull PrismObject<? extends ObjectType> object) {
+        ObjectType bean = object.asObjectable();
+        List<Edge> edges = new ArrayList<>();
+        if (bean instanceof AbstractRoleType role) {
+            edges.addAll(createEdges(role.getInducement()));
+        }
+        if (bean instanceof AssignmentHolderType holder) {
+            edges.addAll(createEdges(holder.getAssignment()));
+        }
+        return edges;
+    }
+
+    private @Nullable Class<? extends ObjectType> determineClass(@Nullable QName type) {
+        if (type == null) {
+            return null;
+        }
+        //noinspection unchecked
+        Class<? extends ObjectType> clazz = (Class<? extends ObjectType>)
+                PrismContext.get().getSchemaRegistry().determineCompileTimeClass(type);
+        return clazz != null && ObjectType.class.isAssignableFrom(clazz) ? clazz : null;
+    }
+
+    /** A reference to an assignment target: its OID and the type required by the reference. */
+    private record Edge(@NotNull Class<? extends ObjectType> type, @NotNull String oid) {
+    }
+
+    /** A role assigned directly, with the expansion of its graph found in the cache. */
+    private record CachedRoot(
+            @NotNull PrismObject<? extends ObjectType> root, @NotNull RoleInducementGraphCache.Expansion expansion) {
+    }
+}
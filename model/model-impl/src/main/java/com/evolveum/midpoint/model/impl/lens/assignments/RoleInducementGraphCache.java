@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl.lens.assignments;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.CacheInvalidationContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.api.Cache;
+import com.evolveum.midpoint.repo.api.CacheRegistry;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Node-level cache of the role (inducement) graph, shared by all clockwork runs.
+ *
+ * For a role (or any other abstract role) in a given version, it keeps the expansion of the graph: all the assignment
+ * targets reachable from the role via its inducements and assignments, with their versions. So, when the role is
+ * assigned to a focus, the whole graph below it can be prefetched by a single call (per object type), instead of
+ * being walked level by level, see {@link PrefetchedAssignmentTargets}.
+ *
+ * The cache keeps only the structure (OIDs, types and versions), not the objects themselves. The objects are always
+ * fetched through the repository cache, so the caching profiles and the usual time-to-live and version checks apply
+ * to them. The expansion is used only if the versions of all the fetched objects match the ones recorded in it.
+ * In addition, the standard cache invalidation events remove the expansions containing a changed role;
+ * a change of the system configuration (where relations are defined) clears the whole cache.
+ *
+ * The evaluation of the inducements themselves (constructions, mappings, policy rules) is still done for each focus,
+ * as it depends on the assignment path (evaluation orders, conditions, path variables) and on the focus itself.
+ */
+@Component
+public class RoleInducementGraphCache implements Cache {
+
+    private static final Trace LOGGER_CONTENT = TraceManager.getTrace(RoleInducementGraphCache.class.getName() + ".content");
+
+    /** When the cache grows over this size, it is simply cleared. The role graphs are usually much smaller than this. */
+    private static final int MAX_SIZE = 10000;
+
+    @Autowired private CacheRegistry cacheRegistry;
+
+    private final Map<Key, Expansion> expansions = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on each relevant invalidation. Expansions built from objects fetched before an invalidation
+     * are not stored, as they could be stale.
+     */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void register() {
+        cacheRegistry.registerCache(this);
+    }
+
+    @PreDestroy
+    public void unregister() {
+        cacheRegistry.unregisterCache(this);
+    }
+
+    /** Returns the expansion of given role, if it is cached for the role version. Does not count as a hit or miss. */
+    @Nullable Expansion get(@NotNull PrismObject<? extends ObjectType> role) {
+        Key key = createKey(role);
+        return key != null ? expansions.get(key) : null;
+    }
+
+    /** To be obtained before fetching the objects the expansion is to be built from. */
+    long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    /** Stores the expansion, if there was no invalidation since the objects were fetched. */
+    void put(@NotNull PrismObject<? extends ObjectType> role, @NotNull Expansion expansion, long invalidationCountBeforeFetch) {
+        Key key = createKey(role);
+        if (key == null || invalidationCount.get() != invalidationCountBeforeFetch) {
+            return;
+        }
+        if (expansions.size() >= MAX_SIZE) {
+            expansions.clear();
+        }
+        expansions.put(key, expansion);
+        if (invalidationCount.get() != invalidationCountBeforeFetch) {
+            expansions.remove(key, expansion); // an invalidation came in the meanwhile
+        }
+    }
+
+    /** Removes the expansion that turned out to be out of date. */
+    void remove(@NotNull PrismObject<? extends ObjectType> role) {
+        Key key = createKey(role);
+        if (key != null) {
+            expansions.remove(key);
+        }
+    }
+
+    void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /** Number of roles whose graph was taken from the cache. */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** Number of roles whose graph had to be walked, because it was not cached (or the cached one was out of date). */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return expansions.size();
+    }
+
+    private static @Nullable Key createKey(@NotNull PrismObject<? extends ObjectType> role) {
+        String oid = role.getOid();
+        String version = role.getVersion();
+        if (oid == null || version == null || !(role.asObjectable() instanceof AbstractRoleType)) {
+            return null;
+        }
+        return new Key(oid, version);
+    }
+
+    @Override
+    public void invalidate(Class<?> type, String oid, CacheInvalidationContext context) {
+        if (type == null || SystemConfigurationType.class.equals(type)) {
+            invalidationCount.incrementAndGet();
+            expansions.clear();
+        } else if (AbstractRoleType.class.isAssignableFrom(type) || type.isAssignableFrom(AbstractRoleType.class)) {
+            // Other targets (e.g. users as deputies) are rare in the graphs; they are covered by the version checks.
+            invalidationCount.incrementAndGet();
+            if (oid != null) {
+                expansions.entrySet().removeIf(
+                        e -> e.getKey().oid().equals(oid) || e.getValue().members().containsKey(oid));
+            } else {
+                expansions.clear();
+            }
+        }
+    }
+
+    @Override
+    public @NotNull Collection<SingleCacheStateInformationType> getStateInformation() {
+        return Collections.singleton(new SingleCacheStateInformationType()
+                .name(RoleInducementGraphCache.class.getName())
+                .size(expansions.size())
+                .performance(new SingleCachePerformanceInformationType()
+                        .name(RoleInducementGraphCache.class.getName())
+                        .hitCount((int) Math.min(hits.get(), Integer.MAX_VALUE))
+                        .missCount((int) Math.min(misses.get(), Integer.MAX_VALUE))));
+    }
+
+    @Override
+    public void dumpContent() {
+        if (LOGGER_CONTENT.isInfoEnabled()) {
+            expansions.forEach((key, expansion) -> LOGGER_CONTENT.info("Cached role graph: {}: {}", key, expansion));
+        }
+    }
+
+    /** The role OID and version. A new version of the role is never served the expansion of the old one. */
+    private record Key(@NotNull String oid, @NotNull String version) {
+    }
+
+    /** All the assignment targets reachable from a role (except for the role itself), indexed by OID. */
+    record Expansion(@NotNull Map<String, Member> members) {
+
+        @Override
+        public String toString() {
+            return members.size() + " member(s): " + members.values();
+        }
+    }
+
+    /** An assignment target reachable from a role: the type required by the reference, OID and the version. */
+    record Member(@NotNull Class<? extends ObjectType> type, @NotNull String oid, @NotNull String version) {
+    }
+}
@@ -228,6 +228,11 @@ class TargetsEvaluation<AH extends AssignmentHolderType> extends AbstractEvaluat
     private List<PrismObject<? extends ObjectType>> resolveTargets()
             throws SchemaException, ObjectNotFoundException, ExpressionEvaluationException,
             CommunicationException, ConfigurationException, SecurityViolationException {
+        PrismObject<? extends ObjectType> prefetched = ctx.ae.prefetchedTargets.get(targetRef);
+        if (prefetched != null) {
+            LOGGER.trace("Using prefetched target {}", prefetched);
+            return List.of(prefetched);
+        }
         var filterExpressionEvaluator =
                 createFilterExpressionEvaluator(segment.assignmentOrigin.child(AssignmentType.F_TARGET_REF));
         return ctx.ae.referenceResolver.resolve(
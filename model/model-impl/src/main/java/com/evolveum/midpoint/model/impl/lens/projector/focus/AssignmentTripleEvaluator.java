@@ -130,6 +130,8 @@ public class AssignmentTripleEvaluator<AH extends AssignmentHolderType> {
 
         LOGGER.trace("Assignment collection:\n{}", assignmentCollection.debugDumpLazily(1));
 
+        prefetchAssignmentTargets(assignmentCollection);
+
         // Iterate over all the assignments. I mean really all. This is a union of the existing and changed assignments
         // therefore it contains all three types of assignments (plus, minus and zero). As it is an union each assignment
         // will be processed only once. Inside the loop we determine whether it was added, deleted or remains unchanged.
@@ -144,6 +146,18 @@ public class AssignmentTripleEvaluator<AH extends AssignmentHolderType> {
         return evaluatedAssignmentTriple;
     }
 
+    /**
+     * Fetches the targets of all the assignments (and of their inducements, recursively) in bulk. This is much cheaper
+     * than resolving them one by one during the evaluation, namely for focus objects with many assignments.
+     */
+    private void prefetchAssignmentTargets(SmartAssignmentCollection<AH> assignmentCollection) {
+        List<AssignmentType> assignments = new ArrayList<>();
+        for (SmartAssignmentElement assignmentElement : assignmentCollection) {
+            assignments.add(assignmentElement.getAssignment());
+        }
+        assignmentEvaluator.prefetchTargets(assignments, result);
+    }
+
     // [EP:APSO] DONE
     private @NotNull Collection<AssignmentConfigItem> getVirtualAssignments()
             throws SchemaException, ObjectNotFoundException, CommunicationException, ConfigurationException,
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.lens.projector.loader;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.evolveum.midpoint.model.impl.ModelBeans;
+import com.evolveum.midpoint.model.impl.lens.LensContext;
+import com.evolveum.midpoint.model.impl.lens.LensProjectionContext;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.cache.RepositoryCache;
+import com.evolveum.midpoint.repo.cache.local.LocalRepoCacheScope;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.util.CloneUtil;
+import com.evolveum.midpoint.util.exception.*;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.InternalsConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
+
+/**
+ * Loads full resource objects for projection contexts concurrently, before the contexts are updated one by one
+ * in {@link ProjectionUpdateOperation}. This is useful e.g. for reconciliation, where each projection is loaded from its
+ * resource, and the resources can be slow to respond.
+ *
+ * Only the provisioning `getObject` calls run concurrently; everything else (including the processing of the objects
+ * loaded or the exceptions) is done by {@link ProjectionUpdateOperation} in the clockwork thread, just as if the objects
+ * were loaded there. Objects on the same resource are loaded one after another, in a single thread. The number of threads
+ * used by an operation is limited by {@link InternalsConfigurationType#getMaxConcurrentProjectionLoads()}; if it's not
+ * set (or is 1), nothing is loaded here.
+ *
+ * Each load has its own operation result (created in the clockwork thread), so the time spent on individual loads
+ * is visible in the traces and in the operation performance information, as usual. As {@link Task} is not thread-safe,
+ * each thread gets its own transient subtask of the clockwork task (with the same channel, owner, execution mode and
+ * execution environment). The threads share the local repository caches of the clockwork thread.
+ *
+ * The threads are taken from node-wide {@link ProjectionLoadExecutor}. If none is available, the loads are executed
+ * by the clockwork thread itself.
+ *
+ * Intentionally package-private.
+ */
+class ConcurrentProjectionLoads {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ConcurrentProjectionLoads.class);
+
+    private static final String OP_LOAD = ConcurrentProjectionLoads.class.getName() + ".load";
+    private static final String OP_LOAD_PROJECTION = ConcurrentProjectionLoads.class.getName() + ".loadProjection";
+
+    @NotNull private final Map<LensProjectionContext, Load> loads;
+
+    private ConcurrentProjectionLoads(@NotNull Map<LensProjectionContext, Load> loads) {
+        this.loads = loads;
+    }
+
+    /**
+     * Loads the objects for all projection contexts that will need a full object, if they are on at least two resources.
+     * Returns `null` if nothing was loaded. Does not throw exceptions related to individual loads:
+     * they are re-thrown when the respective object is taken.
+     */
+    static <F extends ObjectType> @Nullable ConcurrentProjectionLoads execute(
+            @NotNull LensContext<F> context, @NotNull Task task, @NotNull OperationResult parentResult)
+            throws SchemaException, ConfigurationException {
+
+        int maxThreads = getMaxConcurrentProjectionLoads(context.getSystemConfigurationBean());
+        if (maxThreads <= 1) {
+            return null;
+        }
+
+        Map<String, List<Load>> loadsByResource = new LinkedHashMap<>();
+        for (LensProjectionContext projCtx : context.getProjectionContexts()) {
+            var options = new ProjectionUpdateOperation<>(context, projCtx, task, null)
+                    .getOptionsForConcurrentLoad();
+            if (options != null) {
+                loadsByResource
+                        .computeIfAbsent(projCtx.getResourceOid(), k -> new ArrayList<>())
+                        .add(new Load(projCtx, options));
+            }
+        }
+        if (loadsByResource.size() < 2) {
+            LOGGER.trace("Full objects needed on {} resource(s), not loading them concurrently", loadsByResource.size());
+            return null;
+        }
+
+        int threads = Math.min(maxThreads, loadsByResource.size());
+        List<List<Load>> loadsByThread = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            loadsByThread.add(new ArrayList<>());
+        }
+        int resourceIndex = 0;
+        for (List<Load> resourceLoads : loadsByResource.values()) {
+            loadsByThread.get(resourceIndex++ % threads).addAll(resourceLoads);
+        }
+
+        Map<LensProjectionContext, Load> loads = new IdentityHashMap<>();
+        OperationResult result = parentResult.subresult(OP_LOAD)
+                .setMinor()
+                .addParam("resources", loadsByResource.size())
+                .addParam("threads", threads)
+                .build();
+        try {
+            // Results are created here, as the parent result must not be touched by other threads.
+            for (List<Load> threadLoads : loadsByThread) {
+                for (Load load : threadLoads) {
+                    load.result = result.subresult(OP_LOAD_PROJECTION)
+                            .setMinor()
+                            .addParam("context", String.valueOf(load.projCtx))
+                            .build();
+                    loads.put(load.projCtx, load);
+                }
+            }
+            LOGGER.trace("Loading {} full objects on {} resources in {} threads",
+                    loads.size(), loadsByResource.size(), threads);
+
+            ProjectionLoadExecutor executor = ModelBeans.get().projectionLoadExecutor;
+            Thread clockworkThread = Thread.currentThread();
+            SecurityContext securityContext = SecurityContextHolder.getContext();
+            LocalRepoCacheScope cacheScope = RepositoryCache.getLocalCachesScope();
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<Load> threadLoads : loadsByThread) {
+                Task threadTask = createThreadTask(task);
+                futures.add(executor.submit(
+                        () -> executeInThread(threadLoads, clockworkThread, securityContext, cacheScope, threadTask)));
+            }
+            waitForAll(futures);
+            result.addReturn("loaded", (int) loads.values().stream().filter(load -> load.done).count());
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            throw t;
+        } finally {
+            result.close();
+        }
+        return new ConcurrentProjectionLoads(loads);
+    }
+
+    private static int getMaxConcurrentProjectionLoads(@Nullable SystemConfigurationType systemConfiguration) {
+        InternalsConfigurationType internals = systemConfiguration != null ? systemConfiguration.getInternals() : null;
+        Integer value = internals != null ? internals.getMaxConcurrentProjectionLoads() : null;
+        return value != null ? value : 1;
+    }
+
+    /** Created in the clockwork thread, as the task is not thread-safe. */
+    private static @NotNull Task createThreadTask(@NotNull Task task) {
+        Task threadTask = task.createSubtask();
+        threadTask.setExecutionMode(task.getExecutionMode());
+        threadTask.setExecutionEnvironment(CloneUtil.clone(task.getExecutionEnvironment()));
+        return threadTask;
+    }
+
+    /**
+     * Executes the loads in a loader thread, or in the clockwork thread itself if there was no loader thread available.
+     * In the latter case the security context is already there.
+     */
+    private static void executeInThread(
+            @NotNull List<Load> threadLoads,
+            @NotNull Thread clockworkThread,
+            @NotNull SecurityContext securityContext,
+            @Nullable LocalRepoCacheScope cacheScope,
+            @NotNull Task threadTask) {
+        boolean inClockworkThread = Thread.currentThread() == clockworkThread;
+        if (!inClockworkThread) {
+            SecurityContextHolder.setContext(securityContext);
+        }
+        if (cacheScope != null) {
+            RepositoryCache.enterLocalCaches(cacheScope);
+        }
+        try {
+            for (Load load : threadLoads) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return; // the rest will be loaded by the clockwork thread
+                }
+                load.execute(threadTask);
+            }
+        } finally {
+            if (cacheScope != null) {
+                RepositoryCache.exitLocalCaches();
+            }
+            if (!inClockworkThread) {
+                SecurityContextHolder.clearContext();
+            }
+        }
+    }
+
+    private static void waitForAll(@NotNull List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                LOGGER.debug("Interrupted while waiting for projection loads, the remaining objects will be loaded directly");
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // Should not occur, as the loads catch everything.
+                LoggingUtils.logUnexpectedException(LOGGER, "Unexpected problem while loading projections", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Returns the load for given projection context, if it was executed with the same options. Each load can be taken
+     * only once, as the object (or exception) is then processed by the caller.
+     */
+    @Nullable Load take(
+            @NotNull LensProjectionContext projCtx, @NotNull Collection<SelectorOptions<GetOperationOptions>> options) {
+        Load load = loads.get(projCtx);
+        if (load == null || !load.done || !load.options.equals(options)) {
+            return null;
+        }
+        loads.remove(projCtx);
+        return load;
+    }
+
+    /** Loading of a single object. Fields are written by the loading thread and read after {@link #done} is set. */
+    static class Load {
+
+        @NotNull private final LensProjectionContext projCtx;
+        @NotNull private final Collection<SelectorOptions<GetOperationOptions>> options;
+        private OperationResult result;
+        private PrismObject<ShadowType> object;
+        private Throwable exception;
+        private volatile boolean done;
+
+        private Load(
+                @NotNull LensProjectionContext projCtx, @NotNull Collection<SelectorOptions<GetOperationOptions>> options) {
+            this.projCtx = projCtx;
+            this.options = options;
+        }
+
+        private void execute(@NotNull Task task) {
+            try {
+                object = ModelBeans.get().provisioningService
+                        .getObject(ShadowType.class, projCtx.getOid(), options, task, result);
+            } catch (ObjectNotFoundException e) {
+                // This is how the error is treated by the caller, see ProjectionUpdateOperation.
+                result.muteLastSubresultError();
+                exception = e;
+            } catch (Throwable t) {
+                exception = t;
+            } finally {
+                result.close();
+                done = true;
+            }
+        }
+
+        /** Returns the object loaded, or re-throws the exception that occurred. */
+        @NotNull PrismObject<ShadowType> getObject()
+                throws ObjectNotFoundException, CommunicationException, SchemaException, ConfigurationException,
+                SecurityViolationException, ExpressionEvaluationException {
+            if (exception == null) {
+                return object;
+            } else if (exception instanceof ObjectNotFoundException e) {
+                throw e;
+            } else if (exception instanceof CommunicationException e) {
+                throw e;
+            } else if (exception instanceof SchemaException e) {
+                throw e;
+            } else if (exception instanceof ConfigurationException e) {
+                throw e;
+            } else if (exception instanceof SecurityViolationException e) {
+                throw e;
+            } else if (exception instanceof ExpressionEvaluationException e) {
+                throw e;
+            } else if (exception instanceof RuntimeException e) {
+                throw e;
+            } else if (exception instanceof Error e) {
+                throw e;
+            } else {
+                throw new SystemException(exception.getMessage(), exception);
+            }
+        }
+    }
+}
@@ -100,9 +100,10 @@ class ContextLoadOperation<F extends ObjectType> {
 
             context.checkConsistenceIfNeeded();
 
+            var concurrentLoads = ConcurrentProjectionLoads.execute(context, task, result);
             for (LensProjectionContext projectionContext : context.getProjectionContexts()) {
                 context.checkAbortRequested();
-                updateProjection(projectionContext, result);
+                updateProjection(projectionContext, concurrentLoads, result);
             }
 
             context.checkConsistenceIfNeeded();
@@ -123,10 +124,11 @@ class ContextLoadOperation<F extends ObjectType> {
         }
     }
 
-    private void updateProjection(LensProjectionContext projectionContext, OperationResult result)
+    private void updateProjection(
+            LensProjectionContext projectionContext, ConcurrentProjectionLoads concurrentLoads, OperationResult result)
             throws SchemaException, ExpressionEvaluationException, CommunicationException, SecurityViolationException,
             ConfigurationException, ObjectNotFoundException {
-        new ProjectionUpdateOperation<>(context, projectionContext, task)
+        new ProjectionUpdateOperation<>(context, projectionContext, task, concurrentLoads)
                 .update(result);
     }
 
@@ -138,7 +138,7 @@ public class ContextLoader implements ProjectorProcessor {
             OperationResult result)
             throws ObjectNotFoundException, CommunicationException, SchemaException, ConfigurationException,
             SecurityViolationException, ExpressionEvaluationException {
-        new ProjectionUpdateOperation<>(context, projectionContext, task)
+        new ProjectionUpdateOperation<>(context, projectionContext, task, null)
                 .update(result);
     }
 
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.lens.projector.loader;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.annotation.PreDestroy;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.stereotype.Component;
+
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Node-wide pool of threads for {@link ConcurrentProjectionLoads}.
+ *
+ * The pool is bounded: if all its threads are busy (e.g. because of many clockwork runs loading projections at once),
+ * the loads are executed by the clockwork thread itself, as they would be without the concurrent loading.
+ * Idle threads are terminated after a while.
+ */
+@Component
+public class ProjectionLoadExecutor {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ProjectionLoadExecutor.class);
+
+    /** Maximum number of loader threads on the node. */
+    private static final int MAX_THREADS = 32;
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            0, MAX_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            r -> {
+                Thread thread = new Thread(r, "midpoint-projection-loader-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            // Unlike CallerRunsPolicy, this runs the loads also after the shutdown, so nobody waits for them forever.
+            (r, e) -> r.run());
+
+    /**
+     * Executes the loads in a pool thread or, if there is none available, in the current thread.
+     * In the latter case the returned future is already completed.
+     */
+    @NotNull Future<?> submit(@NotNull Runnable loads) {
+        return executor.submit(loads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        LOGGER.debug("Shutting down projection loader threads");
+        executor.shutdownNow();
+    }
+}
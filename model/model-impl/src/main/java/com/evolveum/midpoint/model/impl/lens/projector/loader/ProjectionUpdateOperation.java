@@ -32,6 +32,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
 
 import org.apache.commons.lang3.Validate;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
 import java.util.List;
@@ -64,6 +65,9 @@ class ProjectionUpdateOperation<F extends ObjectType> {
     @NotNull private final Task task;
     @NotNull private final ModelBeans beans;
 
+    /** Objects loaded in advance (concurrently with other projections), if any. */
+    @Nullable private final ConcurrentProjectionLoads concurrentLoads;
+
     /**
      * OID of the projection object. Remembered before manipulating with the projection.
      */
@@ -77,12 +81,14 @@ class ProjectionUpdateOperation<F extends ObjectType> {
     ProjectionUpdateOperation(
             @NotNull LensContext<F> context,
             @NotNull LensProjectionContext projectionContext,
-            @NotNull Task task) {
+            @NotNull Task task,
+            @Nullable ConcurrentProjectionLoads concurrentLoads) {
         this.context = context;
         this.projectionContext = projectionContext;
         this.projectionObjectOid = projectionContext.getOid();
         this.task = task;
         this.beans = ModelBeans.get();
+        this.concurrentLoads = concurrentLoads;
     }
 
     public void update(OperationResult parentResult)
@@ -134,7 +140,7 @@ class ProjectionUpdateOperation<F extends ObjectType> {
     }
 
     /**
-     * Loads the current object, if needed. See {@link #shouldLoadCurrentObject()} for the exact algorithm.
+     * Loads the current object, if needed. See {@link #shouldLoadCurrentObject(boolean)} for the exact algorithm.
      *
      * Returns true if an error occurred.
      */
@@ -144,7 +150,7 @@ class ProjectionUpdateOperation<F extends ObjectType> {
 
         projectionObject = asObjectable(projectionContext.getObjectCurrent());
 
-        if (shouldLoadCurrentObject()) {
+        if (shouldLoadCurrentObject(projectionContext.isDoReconciliation())) {
             return loadCurrentObject(result);
         } else {
             if (projectionObjectOid != null) {
@@ -158,18 +164,19 @@ class ProjectionUpdateOperation<F extends ObjectType> {
     /**
      * Should the object be loaded or reloaded?
      *
-     * Coupled with {@link #createProjectionLoadingOptions()} regarding whether `noFetch` option should be used.
+     * Coupled with {@link #createProjectionLoadingOptions(boolean)} regarding whether `noFetch` option should be used.
+     * The value of the reconciliation flag is provided by the caller, so this method has no side effects.
      *
      * There is an interesting side effect of "no fetch" loading of already-loaded object: the "full shadow" flag is discarded
      * in such cases. This may ensure the consistency at the cost of resource object re-loading.
      */
-    private boolean shouldLoadCurrentObject() throws SchemaException, ConfigurationException {
+    private boolean shouldLoadCurrentObject(boolean doReconciliation) throws SchemaException, ConfigurationException {
         if (projectionContext.getObjectCurrent() == null) {
             LOGGER.trace("Will load current object, as there is none loaded");
             return true;
         }
 
-        if (projectionContext.isDoReconciliation() && !projectionContext.isFullShadow()) {
+        if (doReconciliation && !projectionContext.isFullShadow()) {
             LOGGER.trace("Will reload current object, because we are doing reconciliation and we do not have full shadow");
             return true; // Note that the loading options will ensure that the full object is loaded.
         }
@@ -206,7 +213,7 @@ class ProjectionUpdateOperation<F extends ObjectType> {
 
         LOGGER.trace("No explicit reason for reloading current object "
                         + "(recon: {}, full: {}, order: {}, wave: {}, modified deps: {})",
-                projectionContext.isDoReconciliation(),
+                doReconciliation,
                 projectionContext.isFullShadow(),
                 projectionContext.getOrder(),
                 projectionContext.getWave(),
@@ -214,6 +221,30 @@ class ProjectionUpdateOperation<F extends ObjectType> {
         return false;
     }
 
+    /**
+     * Returns the options for loading the full object in advance by {@link ConcurrentProjectionLoads}, or `null` if the object
+     * will not be loaded from the resource by {@link #update(OperationResult)}. This is a conservative estimate: we skip e.g.
+     * contexts without the resource loaded.
+     *
+     * The context is not modified here: the reconciliation flag that {@link #update(OperationResult)} would set
+     * for volatile objects is only taken into account.
+     */
+    @Nullable Collection<SelectorOptions<GetOperationOptions>> getOptionsForConcurrentLoad()
+            throws SchemaException, ConfigurationException {
+        if (projectionContext.getSynchronizationPolicyDecision() == SynchronizationPolicyDecision.BROKEN
+                || projectionContext.getResource() == null
+                || projectionObjectOid == null
+                || projectionContext.isAdd() && !projectionContext.isCompleted()) {
+            return null;
+        }
+        boolean doReconciliation = projectionContext.isDoReconciliation() || projectionContext.isVolatilityUnpredictable();
+        if (!shouldLoadCurrentObject(doReconciliation)) {
+            return null;
+        }
+        var options = createProjectionLoadingOptions(doReconciliation);
+        return isNoFetch(options) ? null : options;
+    }
+
     /**
      * If "limit propagation" option is set, we set `canProject` to `false` for resources other than triggering one.
      */
@@ -290,15 +321,22 @@ class ProjectionUpdateOperation<F extends ObjectType> {
             return false;
         }
 
-        Collection<SelectorOptions<GetOperationOptions>> options = createProjectionLoadingOptions();
+        Collection<SelectorOptions<GetOperationOptions>> options =
+                createProjectionLoadingOptions(projectionContext.isDoReconciliation());
+        var concurrentLoad = concurrentLoads != null ? concurrentLoads.take(projectionContext, options) : null;
 
         try {
-            LOGGER.trace("Loading shadow {} for projection {}, options={}",
-                    projectionObjectOid, projectionContext.getHumanReadableName(), options);
-
-            PrismObject<ShadowType> object =
-                    beans.provisioningService.getObject(
-                            ShadowType.class, projectionObjectOid, options, task, result);
+            PrismObject<ShadowType> object;
+            if (concurrentLoad != null) {
+                LOGGER.trace("Using shadow {} loaded in advance for projection {}, options={}",
+                        projectionObjectOid, projectionContext.getHumanReadableName(), options);
+                object = concurrentLoad.getObject();
+            } else {
+                LOGGER.trace("Loading shadow {} for projection {}, options={}",
+                        projectionObjectOid, projectionContext.getHumanReadableName(), options);
+                object = beans.provisioningService.getObject(
+                        ShadowType.class, projectionObjectOid, options, task, result);
+            }
 
             logLoadedShadow(object, options);
             checkLoadedShadowConsistency(object);
@@ -321,7 +359,9 @@ class ProjectionUpdateOperation<F extends ObjectType> {
             // TODO if the shadow was deleted only on resource (not in repo), would we get ObjectNotFoundException here?
             //  Probably not. We need to reconsider the above comment.
 
-            result.muteLastSubresultError();
+            if (concurrentLoad == null) {
+                result.muteLastSubresultError(); // for the concurrent load, this was done when loading
+            }
             projectionContext.clearCurrentObject();
             projectionContext.markGone();
             projectionContext.setShadowExistsInRepo(false);
@@ -410,7 +450,7 @@ class ProjectionUpdateOperation<F extends ObjectType> {
         }
     }
 
-    private Collection<SelectorOptions<GetOperationOptions>> createProjectionLoadingOptions() {
+    private Collection<SelectorOptions<GetOperationOptions>> createProjectionLoadingOptions(boolean doReconciliation) {
         GetOperationOptionsBuilder builder = beans.schemaService.getOperationOptionsBuilder()
                 //.readOnly() [not yet]
                 .futurePointInTime()
@@ -419,7 +459,7 @@ class ProjectionUpdateOperation<F extends ObjectType> {
         if (projectionContext.isInMaintenance()) {
             LOGGER.trace("Using 'no fetch' mode because of resource maintenance (to avoid errors being reported)");
             builder = builder.noFetch();
-        } else if (projectionContext.isDoReconciliation() || context.isDoReconciliationForAllProjections()) {
+        } else if (doReconciliation || context.isDoReconciliationForAllProjections()) {
             // Most probably reconciliation for all projections implies reconciliation for projContext
             // but we include both conditions just to be sure.
             builder = builder.forceRefresh();
@@ -35,6 +35,7 @@ import com.evolveum.midpoint.model.impl.ModelBeans;
 import com.evolveum.midpoint.prism.delta.ChangeType;
 import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.delta.ReferenceDelta;
+import com.evolveum.midpoint.repo.cache.RepositoryCache;
 import com.evolveum.midpoint.schema.GetOperationOptions;
 import com.evolveum.midpoint.schema.SchemaService;
 import com.evolveum.midpoint.schema.SelectorOptions;
@@ -45,6 +46,7 @@ import com.evolveum.midpoint.util.Holder;
 import com.evolveum.midpoint.util.MiscUtil;
 import com.evolveum.midpoint.util.annotation.Experimental;
 import com.evolveum.midpoint.util.exception.*;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 
@@ -69,6 +71,8 @@ public class ProjectionsLoadOperation<F extends FocusType> {
     private static final Trace LOGGER = TraceManager.getTrace(ProjectionsLoadOperation.class);
 
     private static final String OP_LOAD = ProjectionsLoadOperation.class.getName() + "." + "load";
+    private static final String OP_PREFETCH_LINKED_SHADOWS =
+            ProjectionsLoadOperation.class.getName() + "." + "prefetchLinkedShadows";
 
     @NotNull private final LensContext<F> context;
     @NotNull private final LensFocusContext<F> focusContext;
@@ -124,6 +128,8 @@ public class ProjectionsLoadOperation<F extends FocusType> {
         PrismObject<F> focus = focusContext.getObjectCurrent();
         List<ObjectReferenceType> linkRefs = focus != null ? focus.asObjectable().getLinkRef() : List.of();
 
+        prefetchLinkedShadows(linkRefs, result);
+
         for (ObjectReferenceType linkRef : linkRefs) {
             new LinkLevelLoadOperation(linkRef)
                     .getOrCreateFromExistingValue(result);
@@ -134,6 +140,49 @@ public class ProjectionsLoadOperation<F extends FocusType> {
         LOGGER.trace("Loading projection contexts from focus linkRefs done ({} linkRefs considered)", linkRefs.size());
     }
 
+    /**
+     * Loads the repository shadows for (not yet known) linkRefs by a single search, so that they are in the local repository
+     * cache when they are requested by provisioning one by one (with `noFetch` option) in {@link LinkLevelLoadOperation}.
+     * The provisioning processing of individual shadows (definitions, shadow state, quick refresh) is not affected.
+     *
+     * Never fails: if there is a problem, shadows are simply loaded individually, which reports the problem in the usual way.
+     */
+    private void prefetchLinkedShadows(List<ObjectReferenceType> linkRefs, OperationResult parentResult) {
+        if (!RepositoryCache.isLocalObjectCacheActive(ShadowType.class)) {
+            return;
+        }
+        List<String> oids = new ArrayList<>();
+        for (ObjectReferenceType linkRef : linkRefs) {
+            String oid = linkRef.getOid();
+            if (StringUtils.isNotBlank(oid)
+                    && linkRef.asReferenceValue().getObject() == null
+                    && (isInactive(linkRef) || context.findProjectionContextByOid(oid) == null)) {
+                oids.add(oid);
+            }
+        }
+        if (oids.size() < 2) {
+            return; // nothing to gain
+        }
+        OperationResult result = parentResult.createMinorSubresult(OP_PREFETCH_LINKED_SHADOWS);
+        try {
+            var shadows = beans.cacheRepositoryService.searchObjects(
+                    ShadowType.class,
+                    PrismContext.get().queryFor(ShadowType.class)
+                            .id(oids.toArray(new String[0]))
+                            .build(),
+                    GetOperationOptions.createReadOnlyCollection(),
+                    result);
+            LOGGER.trace("Prefetched {} of {} linked shadows", shadows.size(), oids.size());
+            result.addReturn("requested", oids.size());
+            result.addReturn("found", shadows.size());
+        } catch (Exception e) {
+            LoggingUtils.logExceptionOnDebugLevel(LOGGER, "Couldn't prefetch linked shadows, they will be loaded one by one", e);
+            result.recordHandledError(e);
+        } finally {
+            result.close();
+        }
+    }
+
     private void getOrCreateProjectionContextsFromFocusPrimaryDelta(OperationResult result) throws SchemaException,
             ObjectNotFoundException, CommunicationException, ConfigurationException,
             SecurityViolationException, PolicyViolationException, ExpressionEvaluationException {
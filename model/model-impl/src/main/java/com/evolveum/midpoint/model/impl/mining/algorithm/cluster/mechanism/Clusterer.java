@@ -22,6 +22,10 @@ public abstract class Clusterer<T extends Clusterable> {
 
     public abstract List<? extends Cluster<T>> cluster(Collection<T> var1, RoleAnalysisProgressIncrement handler);
 
+    protected DistanceMeasure getMeasure() {
+        return measure;
+    }
+
     protected double accessDistance(
             @NotNull Clusterable p1,
             @NotNull Clusterable p2) {
@@ -16,6 +16,9 @@ public class DensityBasedClustering<T extends Clusterable> extends Clusterer<T>
     int minPropertiesOverlap;
     boolean rule;
 
+    /** Used to find neighbors instead of scanning all the points, if applicable. Created for each clustering run. */
+    private JaccardNeighborIndex<T> neighborIndex;
+
     private static final Trace LOGGER = TraceManager.getTrace(DensityBasedClustering.class);
 
     /**
@@ -60,6 +63,8 @@ public class DensityBasedClustering<T extends Clusterable> extends Clusterer<T>
 
         Set<ClusterExplanation> explanation = new HashSet<>();
 
+        neighborIndex = createNeighborIndex(points);
+
         handler.setActive(true);
         handler.enterNewStep("Clustering");
         handler.setOperationCountToProcess(points.size());
@@ -88,6 +93,18 @@ public class DensityBasedClustering<T extends Clusterable> extends Clusterer<T>
         return clusters;
     }
 
+    private JaccardNeighborIndex<T> createNeighborIndex(Collection<T> points) {
+        if (!(getMeasure() instanceof JaccardDistancesMeasure jaccardMeasure)
+                || !JaccardNeighborIndex.isApplicable(eps)) {
+            LOGGER.debug("Neighbor index is not applicable (eps={}), all points will be scanned", eps);
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        JaccardNeighborIndex<T> index = new JaccardNeighborIndex<>(points, eps, jaccardMeasure.getMinIntersection());
+        LOGGER.debug("Neighbor index for {} points created in {} ms", index.size(), System.currentTimeMillis() - start);
+        return index;
+    }
+
     private Cluster<T> expandCluster(Cluster<T> cluster, T point, List<T> neighbors, Collection<T> points,
             Map<Clusterable, PointStatus> visited, Set<ClusterExplanation> explanation) {
         cluster.addPoint(point);
@@ -123,6 +140,10 @@ public class DensityBasedClustering<T extends Clusterable> extends Clusterer<T>
     }
 
     private List<T> getNeighborsClean(T point, Collection<T> points) {
+        if (neighborIndex != null) {
+            return neighborIndex.getNeighbors(point);
+        }
+
         List<T> neighbors = new ArrayList<>();
 
         for (T neighbor : points) {
@@ -137,9 +158,8 @@ public class DensityBasedClustering<T extends Clusterable> extends Clusterer<T>
     private List<T> getNeighborsRule(T point, Collection<T> points, Set<ClusterExplanation> explanation) {
         List<T> neighbors = new ArrayList<>();
 
-        for (T neighbor : points) {
-            if (point != neighbor && this.accessDistance(neighbor, point) <= this.eps
-                    && this.rulesDistance(neighbor.getExtensionProperties(), point.getExtensionProperties(), explanation) == 0) {
+        for (T neighbor : getNeighborsClean(point, points)) {
+            if (this.rulesDistance(neighbor.getExtensionProperties(), point.getExtensionProperties(), explanation) == 0) {
                 neighbors.add(neighbor);
             }
         }
@@ -41,6 +41,10 @@ public class JaccardDistancesMeasure implements DistanceMeasure {
         this.attributesMatch = attributesMatch;
     }
 
+    public int getMinIntersection() {
+        return minIntersection;
+    }
+
     /**
      * Computes the Jaccard distance between two sets of values.
      *
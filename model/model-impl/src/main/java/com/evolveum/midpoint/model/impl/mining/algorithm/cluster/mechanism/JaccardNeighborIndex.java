@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Finds the neighbors of data points (i.e. points within given Jaccard distance) without comparing each point with all
+ * the others. Gives the same results as {@link JaccardDistancesMeasure} applied on all pairs of points, including the order
+ * of the neighbors returned.
+ *
+ * Property OIDs are mapped to dense int ids, ordered from the least frequent to the most frequent property.
+ * Each point is then represented by a sorted array of these ids, so the intersections are computed by merging two int arrays
+ * instead of hash lookups on strings.
+ *
+ * Candidate neighbors are found using prefix filtering: two sets can have Jaccard similarity of at least `t` only if they
+ * share one of the first `|x| - ceil(t * |x|) + 1` (i.e., least frequent) properties. Only these properties are indexed,
+ * so the frequently assigned ones (like a basic role held by everyone) do not produce any candidates by themselves.
+ * The candidates are then filtered by size and verified exactly. Large candidate lists are verified in parallel.
+ *
+ * Applicable only if the maximal distance is less than 1; otherwise, all pairs are potential neighbors.
+ *
+ * Not thread-safe: {@link #getNeighbors(Clusterable)} is meant to be called from a single (clustering) thread.
+ */
+public class JaccardNeighborIndex<T extends Clusterable> {
+
+    /** Candidate lists at least this long are verified in parallel. */
+    private static final int PARALLEL_VERIFICATION_THRESHOLD = 4096;
+
+    /** To avoid missing neighbors at the threshold boundary because of rounding errors. */
+    private static final double TOLERANCE = 1e-9;
+
+    @NotNull private final List<T> points;
+
+    @NotNull private final Map<Clusterable, Integer> pointIndices = new IdentityHashMap<>();
+
+    /** Properties of each point, as sorted dense ids. Indexed by the point index. */
+    private final int[][] properties;
+
+    /** Points having given property in their prefix. Indexed by the property id; values are sorted point indices. */
+    private final int[][] postings;
+
+    private final double eps;
+    private final double threshold;
+    private final int minIntersection;
+
+    /** Marks candidates already seen by the current query (by {@link #queryStamp}). */
+    private final int[] seen;
+    private int queryStamp;
+
+    /**
+     * @param eps The maximal distance of the neighbors; must be less than 1.
+     * @param minIntersection The minimal number of common properties (see {@link JaccardDistancesMeasure}).
+     */
+    public JaccardNeighborIndex(@NotNull Collection<T> points, double eps, int minIntersection) {
+        if (!isApplicable(eps)) {
+            throw new IllegalArgumentException("Neighbor index is not applicable for eps=" + eps);
+        }
+        this.points = new ArrayList<>(points);
+        this.eps = eps;
+        this.threshold = 1 - eps;
+        this.minIntersection = minIntersection;
+
+        Map<String, Integer> propertyIds = createPropertyIds(this.points);
+
+        int size = this.points.size();
+        properties = new int[size][];
+        int[] postingSizes = new int[propertyIds.size()];
+        for (int i = 0; i < size; i++) {
+            T point = this.points.get(i);
+            pointIndices.put(point, i);
+            int[] pointProperties = point.getPoint().stream()
+                    .mapToInt(propertyIds::get)
+                    .sorted()
+                    .toArray();
+            properties[i] = pointProperties;
+            int prefixLength = getPrefixLength(pointProperties.length);
+            for (int k = 0; k < prefixLength; k++) {
+                postingSizes[pointProperties[k]]++;
+            }
+        }
+
+        postings = new int[propertyIds.size()][];
+        for (int p = 0; p < postings.length; p++) {
+            postings[p] = new int[postingSizes[p]];
+        }
+        int[] postingFill = new int[postings.length];
+        for (int i = 0; i < size; i++) {
+            int[] pointProperties = properties[i];
+            int prefixLength = getPrefixLength(pointProperties.length);
+            for (int k = 0; k < prefixLength; k++) {
+                int p = pointProperties[k];
+                postings[p][postingFill[p]++] = i;
+            }
+        }
+
+        seen = new int[size];
+    }
+
+    /** Can the index be used for given maximal distance? */
+    public static boolean isApplicable(double eps) {
+        return eps < 1.0;
+    }
+
+    /** Assigns the ids to properties: the less frequent the property, the lower its id. */
+    private static @NotNull Map<String, Integer> createPropertyIds(@NotNull List<? extends Clusterable> points) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (Clusterable point : points) {
+            for (String property : point.getPoint()) {
+                frequencies.merge(property, 1, Integer::sum);
+            }
+        }
+        List<String> ordered = new ArrayList<>(frequencies.keySet());
+        ordered.sort(Comparator.<String>comparingInt(frequencies::get)
+                .thenComparing(Comparator.naturalOrder()));
+        Map<String, Integer> propertyIds = new HashMap<>(ordered.size() * 2);
+        for (int id = 0; id < ordered.size(); id++) {
+            propertyIds.put(ordered.get(id), id);
+        }
+        return propertyIds;
+    }
+
+    /** The minimal intersection a point of given size must have with any of its neighbors. */
+    private int getRequiredOverlap(int size) {
+        int bySimilarity = (int) Math.ceil(threshold * size - TOLERANCE);
+        return Math.max(Math.max(bySimilarity, minIntersection), 1);
+    }
+
+    /** Zero means the point cannot have any neighbors. */
+    private int getPrefixLength(int size) {
+        return Math.max(size - getRequiredOverlap(size) + 1, 0);
+    }
+
+    /**
+     * Returns the neighbors of given point (excluding the point itself), in the order in which the points were provided
+     * to the index.
+     */
+    public @NotNull List<T> getNeighbors(@NotNull T point) {
+        Integer pointIndex = pointIndices.get(point);
+        if (pointIndex == null) {
+            throw new IllegalArgumentException("Point is not indexed: " + point);
+        }
+        int[] pointProperties = properties[pointIndex];
+        int prefixLength = getPrefixLength(pointProperties.length);
+        if (prefixLength == 0) {
+            return new ArrayList<>();
+        }
+
+        // Size filter: |y| >= t * |x| and |y| <= |x| / t
+        double minSize = threshold * pointProperties.length - TOLERANCE;
+        double maxSize = pointProperties.length / threshold + TOLERANCE;
+
+        int stamp = ++queryStamp;
+        int[] candidates = new int[16];
+        int candidatesCount = 0;
+        for (int k = 0; k < prefixLength; k++) {
+            for (int candidate : postings[pointProperties[k]]) {
+                if (seen[candidate] == stamp || candidate == pointIndex) {
+                    continue;
+                }
+                seen[candidate] = stamp;
+                int candidateSize = properties[candidate].length;
+                if (candidateSize >= minSize && candidateSize <= maxSize) {
+                    if (candidatesCount == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, candidatesCount * 2);
+                    }
+                    candidates[candidatesCount++] = candidate;
+                }
+            }
+        }
+        Arrays.sort(candidates, 0, candidatesCount);
+
+        IntStream stream = Arrays.stream(candidates, 0, candidatesCount);
+        if (candidatesCount >= PARALLEL_VERIFICATION_THRESHOLD) {
+            stream = stream.parallel(); // the encounter order is preserved
+        }
+        int[] neighborIndices = stream
+                .filter(candidate -> isNeighbor(pointProperties, properties[candidate]))
+                .toArray();
+
+        List<T> neighbors = new ArrayList<>(neighborIndices.length);
+        for (int neighborIndex : neighborIndices) {
+            neighbors.add(points.get(neighborIndex));
+        }
+        return neighbors;
+    }
+
+    /** Computes the distance in the same way as {@link JaccardDistancesMeasure#compute(Set, Set)}. */
+    private boolean isNeighbor(int[] a, int[] b) {
+        int intersection = getIntersectionSize(a, b);
+        if (intersection < minIntersection) {
+            return false; // the distance is 1, and eps < 1
+        }
+        int union = a.length + b.length - intersection;
+        return 1 - (double) intersection / union <= eps;
+    }
+
+    static int getIntersectionSize(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    public int size() {
+        return points.size();
+    }
+}
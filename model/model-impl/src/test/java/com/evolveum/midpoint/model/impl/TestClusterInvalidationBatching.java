@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.xml.sax.SAXException;
+
+import com.evolveum.midpoint.model.impl.ClusterInvalidationBatcher.Invalidation;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.util.PrismTestUtil;
+import com.evolveum.midpoint.schema.MidPointPrismContextFactory;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ClusterCacheInvalidationConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests {@link ClusterInvalidationBatcher} using a simulated cluster running in a single JVM.
+ *
+ * Each {@link Node} has its own batcher; the sender delivers the batch directly to all other nodes,
+ * which record what would be invalidated in their caches. REST transport is not involved.
+ */
+public class TestClusterInvalidationBatching extends AbstractUnitTest {
+
+    private static final int NODES = 3;
+
+    private final List<Node> cluster = new ArrayList<>();
+
+    @BeforeClass
+    public void initPrismContextIfNeeded() throws SchemaException, IOException, SAXException {
+        // can be ready if other tests were run around, this fixes it for solo run
+        if (PrismContext.get() == null) {
+            PrismTestUtil.resetPrismContext(MidPointPrismContextFactory.FACTORY);
+        }
+    }
+
+    @AfterMethod
+    public void stopCluster() {
+        cluster.forEach(node -> node.batcher.shutdown());
+        cluster.clear();
+    }
+
+    @Test
+    public void test100ImmediateModeSendsEachInvalidation() {
+        given("cluster with default configuration");
+        startCluster(null);
+        Node node = cluster.get(0);
+
+        when("objects are invalidated on the first node");
+        node.batcher.invalidate(RoleType.class, "oid-1");
+        node.batcher.invalidate(RoleType.class, "oid-1");
+        node.batcher.invalidate(UserType.class, "oid-2");
+
+        then("each invalidation is sent immediately as a separate call");
+        assertThat(node.batcher.getSentCount()).isEqualTo(3);
+        assertThat(node.batcher.getBatchCount()).isEqualTo(3);
+        assertThat(node.batcher.getCoalescedCount()).isZero();
+        assertThat(node.batcher.getPendingCount()).isZero();
+        for (Node other : otherNodes(node)) {
+            assertThat(other.calls).isEqualTo(3);
+            assertThat(other.isInvalidated(RoleType.class, "oid-1")).isTrue();
+            assertThat(other.isInvalidated(UserType.class, "oid-2")).isTrue();
+        }
+        assertThat(node.received).isEmpty();
+    }
+
+    @Test
+    public void test200DuplicatesAreCoalescedAndSentAfterMaxDelay() throws Exception {
+        given("cluster with batching");
+        startCluster(new ClusterCacheInvalidationConfigurationType()
+                .maxDelay(500));
+        Node node = cluster.get(0);
+
+        when("the same objects are invalidated repeatedly");
+        for (int i = 0; i < 10; i++) {
+            node.batcher.invalidate(RoleType.class, "oid-1");
+            node.batcher.invalidate(UserType.class, "oid-2");
+        }
+
+        then("nothing is sent before max delay");
+        assertThat(node.batcher.getPendingCount()).isEqualTo(2);
+        assertThat(otherNodes(node)).allMatch(other -> other.calls == 0);
+
+        and("single batch with two invalidations is sent after max delay");
+        for (Node other : otherNodes(node)) {
+            assertThat(other.awaitCalls(1)).isTrue();
+            assertThat(other.calls).isEqualTo(1);
+            assertThat(other.received).containsExactly(
+                    new Invalidation(RoleType.class, "oid-1"),
+                    new Invalidation(UserType.class, "oid-2"));
+        }
+        assertThat(node.batcher.getRequestedCount()).isEqualTo(20);
+        assertThat(node.batcher.getSentCount()).isEqualTo(2);
+        assertThat(node.batcher.getCoalescedCount()).isEqualTo(18);
+        assertThat(node.batcher.getEscalatedCount()).isZero();
+    }
+
+    @Test
+    public void test300BulkInvalidationIsEscalatedToType() {
+        given("cluster with batching and escalation threshold of 100");
+        startCluster(new ClusterCacheInvalidationConfigurationType()
+                .maxDelay(60_000)
+                .typeEscalationThreshold(100));
+        Node node = cluster.get(0);
+
+        when("many roles and a single user are invalidated (e.g. role import)");
+        for (int i = 0; i < 10_000; i++) {
+            node.batcher.invalidate(RoleType.class, "role-" + i);
+        }
+        node.batcher.invalidate(UserType.class, "user-1");
+        node.batcher.flush();
+
+        then("other nodes get single batch with role type invalidation and the user");
+        for (Node other : otherNodes(node)) {
+            assertThat(other.calls).isEqualTo(1);
+            assertThat(other.received).containsExactlyInAnyOrder(
+                    new Invalidation(RoleType.class, null),
+                    new Invalidation(UserType.class, "user-1"));
+            assertThat(other.isInvalidated(RoleType.class, "role-9999")).isTrue();
+        }
+        assertThat(node.batcher.getEscalatedCount()).isEqualTo(1);
+        assertThat(node.batcher.getSentCount()).isEqualTo(2);
+        assertThat(node.batcher.getCoalescedCount()).isEqualTo(10_000 - 1);
+    }
+
+    @Test
+    public void test400MaxBatchSizeAndGlobalInvalidation() {
+        given("cluster with batching and small batch size");
+        startCluster(new ClusterCacheInvalidationConfigurationType()
+                .maxDelay(60_000)
+                .maxBatchSize(5)
+                .typeEscalationThreshold(0));
+        Node node = cluster.get(0);
+
+        when("more objects than batch size are invalidated");
+        for (int i = 0; i < 12; i++) {
+            node.batcher.invalidate(RoleType.class, "role-" + i);
+        }
+
+        then("full batches are sent without waiting");
+        assertThat(node.batcher.getBatchCount()).isEqualTo(2);
+        assertThat(node.batcher.getPendingCount()).isEqualTo(2);
+        assertThat(node.batcher.getEscalatedCount()).isZero();
+
+        when("global invalidation comes");
+        node.batcher.invalidate(null, null);
+        node.batcher.invalidate(UserType.class, "user-1");
+        node.batcher.flush();
+
+        then("it replaces all pending invalidations");
+        for (Node other : otherNodes(node)) {
+            assertThat(other.calls).isEqualTo(3);
+            assertThat(other.received).endsWith(Invalidation.ALL);
+            assertThat(other.received).hasSize(11);
+        }
+    }
+
+    @Test
+    public void test500ConcurrentInvalidationsReachAllNodes() throws Exception {
+        given("cluster with batching");
+        startCluster(new ClusterCacheInvalidationConfigurationType()
+                .maxDelay(50)
+                .typeEscalationThreshold(0));
+
+        when("all nodes invalidate objects concurrently");
+        int perNode = 2_000;
+        CountDownLatch done = new CountDownLatch(NODES);
+        for (Node node : cluster) {
+            new Thread(() -> {
+                for (int i = 0; i < perNode; i++) {
+                    node.batcher.invalidate(UserType.class, node.name + "-user-" + (i % 700));
+                }
+                done.countDown();
+            }).start();
+        }
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        cluster.forEach(node -> node.batcher.flush());
+
+        then("each node has seen invalidations of all objects modified on other nodes");
+        for (Node node : cluster) {
+            for (Node other : otherNodes(node)) {
+                for (int i = 0; i < 700; i++) {
+                    assertThat(node.isInvalidated(UserType.class, other.name + "-user-" + i))
+                            .as("invalidation of %s-user-%d on %s", other.name, i, node.name)
+                            .isTrue();
+                }
+            }
+            ClusterInvalidationBatcher batcher = node.batcher;
+            assertThat(batcher.getRequestedCount()).isEqualTo(perNode);
+            assertThat(batcher.getSentCount() + batcher.getCoalescedCount()).isEqualTo(perNode);
+            assertThat(batcher.getSentCount()).isLessThan(perNode);
+        }
+    }
+
+    private void startCluster(ClusterCacheInvalidationConfigurationType config) {
+        for (int i = 0; i < NODES; i++) {
+            cluster.add(new Node("node" + i));
+        }
+        cluster.forEach(node -> node.batcher.configure(config));
+    }
+
+    private List<Node> otherNodes(Node node) {
+        return cluster.stream().filter(n -> n != node).toList();
+    }
+
+    /** Simulated cluster node, delivering invalidations directly to other nodes. */
+    private class Node {
+
+        private final String name;
+        private final ClusterInvalidationBatcher batcher;
+
+        /** What was received from other nodes, in order. */
+        private final List<Invalidation> received = Collections.synchronizedList(new ArrayList<>());
+        private final Set<Invalidation> receivedSet = ConcurrentHashMap.newKeySet();
+        private volatile int calls;
+
+        Node(String name) {
+            this.name = name;
+            this.batcher = new ClusterInvalidationBatcher(this::sendToOthers);
+        }
+
+        private void sendToOthers(@NotNull List<Invalidation> invalidations) {
+            otherNodes(this).forEach(other -> other.receive(invalidations));
+        }
+
+        private synchronized void receive(List<Invalidation> invalidations) {
+            received.addAll(invalidations);
+            receivedSet.addAll(invalidations);
+            calls++;
+            notifyAll();
+        }
+
+        synchronized boolean awaitCalls(int expected) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (calls < expected && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+            return calls >= expected;
+        }
+
+        boolean isInvalidated(Class<? extends ObjectType> type, String oid) {
+            return receivedSet.contains(Invalidation.ALL)
+                    || receivedSet.contains(new Invalidation(type, null))
+                    || receivedSet.contains(new Invalidation(type, oid));
+        }
+    }
+}
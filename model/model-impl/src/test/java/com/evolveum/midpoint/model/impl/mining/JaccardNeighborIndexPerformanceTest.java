@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl.mining;
+
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.common.mining.objects.handler.RoleAnalysisProgressIncrement;
+import com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism.DataPoint;
+import com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism.DensityBasedClustering;
+import com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism.JaccardDistancesMeasure;
+import com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism.JaccardNeighborIndex;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Measures the neighbor search and clustering on synthetic data of the size of a larger role analysis session
+ * (points are unique sets of roles, as produced by the data preparation).
+ *
+ * Currently not a part of automated test suite. The sizes can be changed by system properties, e.g.
+ * `-Dpoints=100000 -Droles=20000`.
+ */
+public class JaccardNeighborIndexPerformanceTest extends AbstractUnitTest {
+
+    private static final int POINTS = Integer.getInteger("points", 20000);
+    private static final int ROLES = Integer.getInteger("roles", 5000);
+    private static final int MAX_ROLES_PER_POINT = Integer.getInteger("maxRolesPerPoint", 30);
+    private static final double EPS = 0.3;
+    private static final int MIN_INTERSECTION = 3;
+    private static final int ITERATIONS = 3;
+
+    @Test
+    public void test100NeighborSearch() {
+        given();
+        List<DataPoint> points = TestJaccardNeighborIndex.generatePoints(
+                new Random(42), POINTS, ROLES, MAX_ROLES_PER_POINT);
+        JaccardDistancesMeasure measure = new JaccardDistancesMeasure(MIN_INTERSECTION);
+
+        when("full scan (sample of points)");
+        int sample = Math.min(points.size(), 1000);
+        long start = System.nanoTime();
+        long scanned = 0;
+        for (int i = 0; i < sample; i++) {
+            DataPoint point = points.get(i);
+            for (DataPoint neighbor : points) {
+                if (point != neighbor && measure.compute(neighbor.getPoint(), point.getPoint()) <= EPS) {
+                    scanned++;
+                }
+            }
+        }
+        long scanTime = System.nanoTime() - start;
+        display(String.format("Full scan: %,.3f ms per point (%d neighbors in sample)",
+                scanTime / 1e6 / sample, scanned));
+
+        and("index");
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            start = System.nanoTime();
+            JaccardNeighborIndex<DataPoint> index = new JaccardNeighborIndex<>(points, EPS, MIN_INTERSECTION);
+            long buildTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long found = 0;
+            for (DataPoint point : points) {
+                found += index.getNeighbors(point).size();
+            }
+            long queryTime = System.nanoTime() - start;
+            display(String.format("Index #%d: build %,.1f ms, query %,.3f ms per point (%d neighbors)",
+                    iteration, buildTime / 1e6, queryTime / 1e6 / points.size(), found));
+        }
+    }
+
+    @Test
+    public void test200Clustering() {
+        given();
+        List<DataPoint> points = TestJaccardNeighborIndex.generatePoints(
+                new Random(42), POINTS, ROLES, MAX_ROLES_PER_POINT);
+
+        when();
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            long start = System.currentTimeMillis();
+            var clusters = new DensityBasedClustering<DataPoint>(
+                    EPS, 2, new JaccardDistancesMeasure(MIN_INTERSECTION), MIN_INTERSECTION, false)
+                    .cluster(points, new RoleAnalysisProgressIncrement("clustering", 1));
+            display(String.format("Clustering #%d: %d clusters in %,d ms",
+                    iteration, clusters.size(), System.currentTimeMillis() - start));
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.impl.mining;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.*;
+
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.common.mining.objects.handler.RoleAnalysisProgressIncrement;
+import com.evolveum.midpoint.model.impl.mining.algorithm.cluster.mechanism.*;
+import com.evolveum.midpoint.model.impl.mining.algorithm.cluster.object.ExtensionProperties;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Checks that {@link JaccardNeighborIndex} finds exactly the same neighbors as the full scan using
+ * {@link JaccardDistancesMeasure}, and that {@link DensityBasedClustering} produces the same clusters with and without it.
+ */
+public class TestJaccardNeighborIndex extends AbstractUnitTest {
+
+    @Test
+    public void test100NeighborsMatchFullScan() {
+        for (double eps : new double[] { 0.0, 0.2, 0.35, 0.5, 0.8, 0.99 }) {
+            for (int minIntersection : new int[] { 0, 1, 3 }) {
+                given("random points, eps = " + eps + ", min intersection = " + minIntersection);
+                List<DataPoint> points = generatePoints(new Random(42), 800, 150, 12);
+                JaccardDistancesMeasure measure = new JaccardDistancesMeasure(minIntersection);
+
+                when("neighbors are found by the index");
+                JaccardNeighborIndex<DataPoint> index = new JaccardNeighborIndex<>(points, eps, minIntersection);
+
+                then("they are the same as found by the full scan");
+                for (DataPoint point : points) {
+                    assertThat(index.getNeighbors(point))
+                            .as("neighbors of %s", point.getProperties())
+                            .containsExactlyElementsOf(getNeighborsByFullScan(point, points, measure, eps));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test110EdgeCases() {
+        given("points with empty, identical and disjoint properties");
+        DataPoint empty1 = point(Set.of());
+        DataPoint empty2 = point(Set.of());
+        DataPoint same1 = point(Set.of("a", "b"));
+        DataPoint same2 = point(Set.of("a", "b"));
+        DataPoint disjoint = point(Set.of("c"));
+        List<DataPoint> points = List.of(empty1, empty2, same1, same2, disjoint);
+
+        when("index with zero distance is created");
+        JaccardNeighborIndex<DataPoint> index = new JaccardNeighborIndex<>(points, 0.0, 0);
+
+        then("only identical non-empty points are neighbors");
+        assertThat(index.getNeighbors(empty1)).isEmpty();
+        assertThat(index.getNeighbors(same1)).containsExactly(same2);
+        assertThat(index.getNeighbors(same2)).containsExactly(same1);
+        assertThat(index.getNeighbors(disjoint)).isEmpty();
+
+        and("the index is not applicable for maximal distance");
+        assertThat(JaccardNeighborIndex.isApplicable(1.0)).isFalse();
+    }
+
+    @Test
+    public void test200ClustersMatchFullScan() {
+        given("random points with some structure");
+        List<DataPoint> points = generatePoints(new Random(7), 2000, 300, 15);
+        double eps = 0.3;
+        int minPts = 3;
+        int minIntersection = 2;
+
+        when("points are clustered with and without the index");
+        var indexed = new DensityBasedClustering<DataPoint>(
+                eps, minPts, new JaccardDistancesMeasure(minIntersection), minIntersection, false)
+                .cluster(points, new RoleAnalysisProgressIncrement("indexed", 1));
+        var scanned = new DensityBasedClustering<DataPoint>(
+                eps, minPts, new NonIndexableMeasure(new JaccardDistancesMeasure(minIntersection)), minIntersection, false)
+                .cluster(points, new RoleAnalysisProgressIncrement("scanned", 1));
+
+        then("the clusters are the same");
+        display("Clusters: " + indexed.size());
+        assertThat(indexed).as("clusters").isNotEmpty();
+        assertThat(indexed.stream().map(Cluster::getPoints).toList())
+                .containsExactlyElementsOf(scanned.stream().map(Cluster::getPoints).toList());
+    }
+
+    private List<DataPoint> getNeighborsByFullScan(
+            DataPoint point, List<DataPoint> points, JaccardDistancesMeasure measure, double eps) {
+        List<DataPoint> neighbors = new ArrayList<>();
+        for (DataPoint neighbor : points) {
+            if (point != neighbor && measure.compute(neighbor.getPoint(), point.getPoint()) <= eps) {
+                neighbors.add(neighbor);
+            }
+        }
+        return neighbors;
+    }
+
+    /**
+     * Points whose properties are drawn from overlapping "business roles", so that there are both close
+     * and distant points. Lower property numbers are more frequent.
+     */
+    static @NotNull List<DataPoint> generatePoints(Random random, int count, int propertiesCount, int maxPropertiesPerPoint) {
+        int templatesCount = Math.max(count / 20, 1);
+        List<Set<String>> templates = new ArrayList<>();
+        for (int t = 0; t < templatesCount; t++) {
+            templates.add(randomProperties(random, propertiesCount, 1 + random.nextInt(maxPropertiesPerPoint)));
+        }
+        List<DataPoint> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Set<String> properties = new HashSet<>(templates.get(random.nextInt(templatesCount)));
+            // some noise: remove one, add a few
+            if (!properties.isEmpty() && random.nextBoolean()) {
+                properties.remove(properties.iterator().next());
+            }
+            properties.addAll(randomProperties(random, propertiesCount, random.nextInt(3)));
+            points.add(new DataPoint(Set.of("user-" + i), properties));
+        }
+        return points;
+    }
+
+    private static Set<String> randomProperties(Random random, int propertiesCount, int size) {
+        Set<String> properties = new HashSet<>();
+        for (int k = 0; k < size; k++) {
+            // skewed distribution, similar to real role assignments
+            int p = (int) (propertiesCount * Math.pow(random.nextDouble(), 2));
+            properties.add("role-" + p);
+        }
+        return properties;
+    }
+
+    private static DataPoint point(Set<String> properties) {
+        return new DataPoint(Set.of(UUID.randomUUID().toString()), properties);
+    }
+
+    /** The same measure, but not recognized as Jaccard one, so the full scan is used. */
+    private record NonIndexableMeasure(@NotNull DistanceMeasure delegate) implements DistanceMeasure {
+
+        @Override
+        public double compute(@NotNull Set<String> valueA, @NotNull Set<String> valueB) {
+            return delegate.compute(valueA, valueB);
+        }
+
+        @Override
+        public double computeMultiValueAttributes(@NotNull Set<String> valueA, @NotNull Set<String> valueB) {
+            return delegate.computeMultiValueAttributes(valueA, valueB);
+        }
+
+        @Override
+        public double compute(@NotNull ExtensionProperties valueA, @NotNull ExtensionProperties valueB,
+                @NotNull Set<ClusterExplanation> explanation) {
+            return delegate.compute(valueA, valueB, explanation);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.intest.multi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static com.evolveum.midpoint.test.DummyResourceContoller.DUMMY_ACCOUNT_ATTRIBUTE_FULLNAME_NAME;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.icf.dummy.resource.DummyResource;
+import com.evolveum.midpoint.model.intest.AbstractInitializedModelIntegrationTest;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.InternalsConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemObjectsType;
+
+/**
+ * Tests loading of full projection objects on more resources concurrently
+ * (`internals/maxConcurrentProjectionLoads` system configuration property).
+ */
+@ContextConfiguration(locations = { "classpath:ctx-model-intest-test-main.xml" })
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestConcurrentProjectionLoads extends AbstractInitializedModelIntegrationTest {
+
+    private static final String LOADER_THREAD_NAME_PREFIX = "midpoint-projection-loader-";
+
+    private static final long BLOCKED_LOADS_TIMEOUT = 30000;
+
+    @Override
+    public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+        super.initSystem(initTask, initResult);
+
+        modifyObjectReplaceProperty(
+                SystemConfigurationType.class, SystemObjectsType.SYSTEM_CONFIGURATION.value(),
+                ItemPath.create(SystemConfigurationType.F_INTERNALS, InternalsConfigurationType.F_MAX_CONCURRENT_PROJECTION_LOADS),
+                initTask, initResult, 4);
+    }
+
+    /** Jack gets accounts on default and red resources. Nothing special here, just the preparation. */
+    @Test
+    public void test100AssignAccounts() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        when();
+        assignAccountToUser(USER_JACK_OID, RESOURCE_DUMMY_OID, null, task, result);
+        assignAccountToUser(USER_JACK_OID, RESOURCE_DUMMY_RED_OID, null, task, result);
+
+        then();
+        assertSuccess(result);
+        assertUserAfter(USER_JACK_OID)
+                .assertLiveLinks(2);
+        assertDummyAccount(null, ACCOUNT_JACK_DUMMY_USERNAME, ACCOUNT_JACK_DUMMY_FULLNAME, true);
+        assertDummyAccount(RESOURCE_DUMMY_RED_NAME, ACCOUNT_JACK_DUMMY_USERNAME, ACCOUNT_JACK_DUMMY_FULLNAME, true);
+    }
+
+    /**
+     * The objects loaded concurrently must be the same as if they were loaded one by one: the change done directly
+     * on the red resource must be found and fixed by the (strong) mapping.
+     */
+    @Test
+    public void test110ReconcileFixesChangedAccount() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given("fullname is changed on the red resource");
+        getDummyAccount(RESOURCE_DUMMY_RED_NAME, ACCOUNT_JACK_DUMMY_USERNAME)
+                .replaceAttributeValue(DUMMY_ACCOUNT_ATTRIBUTE_FULLNAME_NAME, "Captain Jack");
+
+        when();
+        reconcileUser(USER_JACK_OID, task, result);
+
+        then();
+        assertSuccess(result);
+        assertUserAfter(USER_JACK_OID)
+                .assertLiveLinks(2);
+        assertDummyAccount(null, ACCOUNT_JACK_DUMMY_USERNAME, ACCOUNT_JACK_DUMMY_FULLNAME, true);
+        assertDummyAccount(RESOURCE_DUMMY_RED_NAME, ACCOUNT_JACK_DUMMY_USERNAME, ACCOUNT_JACK_DUMMY_FULLNAME, true);
+    }
+
+    /**
+     * The objects on both resources must be loaded at the same time, in loader threads.
+     *
+     * Operations on both dummy resources are blocked, and we wait until there is a thread blocked on each of them.
+     * If the objects were loaded one after another, this would never happen.
+     */
+    @Test
+    public void test120ObjectsAreLoadedConcurrently() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given("operations on both resources are blocked");
+        DummyResource defaultResource = getDummyResource();
+        DummyResource redResource = getDummyResource(RESOURCE_DUMMY_RED_NAME);
+        defaultResource.setBlockOperations(true);
+        redResource.setBlockOperations(true);
+
+        CompletableFuture<List<String>> blockedThreadsFuture = CompletableFuture.supplyAsync(() -> {
+            try {
+                return waitForBlockedThreads(2);
+            } finally {
+                defaultResource.unblockAll();
+                redResource.unblockAll();
+            }
+        });
+
+        when();
+        reconcileUser(USER_JACK_OID, task, result);
+
+        then();
+        assertSuccess(result);
+        List<String> blockedThreads = blockedThreadsFuture.get(BLOCKED_LOADS_TIMEOUT, TimeUnit.MILLISECONDS);
+        displayValue("threads blocked on dummy resources", blockedThreads);
+        assertThat(blockedThreads)
+                .as("threads blocked on dummy resources at the same time")
+                .hasSize(2)
+                .allMatch(name -> name.startsWith(LOADER_THREAD_NAME_PREFIX));
+
+        assertDummyAccount(null, ACCOUNT_JACK_DUMMY_USERNAME, ACCOUNT_JACK_DUMMY_FULLNAME, true);
+        assertDummyAccount(RESOURCE_DUMMY_RED_NAME, ACCOUNT_JACK_DUMMY_USERNAME, ACCOUNT_JACK_DUMMY_FULLNAME, true);
+    }
+
+    /** Returns the names of threads blocked on dummy resources, when there are the expected number of them (or timeout). */
+    private List<String> waitForBlockedThreads(int expected) {
+        long deadline = System.currentTimeMillis() + BLOCKED_LOADS_TIMEOUT;
+        List<String> blocked;
+        do {
+            blocked = getThreadsBlockedOnDummyResources();
+            if (blocked.size() >= expected) {
+                break;
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                break;
+            }
+        } while (System.currentTimeMillis() < deadline);
+        return blocked;
+    }
+
+    private List<String> getThreadsBlockedOnDummyResources() {
+        return Thread.getAllStackTraces().entrySet().stream()
+                .filter(e -> isBlockedOnDummyResource(e.getValue()))
+                .map(Map.Entry::getKey)
+                .map(Thread::getName)
+                .toList();
+    }
+
+    private boolean isBlockedOnDummyResource(StackTraceElement[] stackTrace) {
+        for (StackTraceElement element : stackTrace) {
+            if (element.getClassName().equals(DummyResource.class.getName())
+                    && element.getMethodName().equals("checkBlockOperations")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
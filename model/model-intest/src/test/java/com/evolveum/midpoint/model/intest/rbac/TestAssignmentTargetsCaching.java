@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.intest.rbac;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.model.intest.AbstractInitializedModelIntegrationTest;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Tests that the assignment targets (prefetched level by level before the assignments are evaluated) are taken
+ * from the global repository cache, if the caching profile enables it for roles, and that the cached roles
+ * are invalidated when they are changed.
+ *
+ * The user has a business role that induces an application role, which in turn induces an account on the default
+ * dummy resource.
+ */
+@ContextConfiguration(locations = { "classpath:ctx-model-intest-test-main.xml" })
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestAssignmentTargetsCaching extends AbstractInitializedModelIntegrationTest {
+
+    private static final String USER_NAME = "cached-roles-user";
+
+    /** Long enough not to expire (nor be version-checked) during the test. */
+    private static final int CACHE_TIME = 3600;
+
+    private String applicationRoleOid;
+    private String businessRoleOid;
+    private String userOid;
+
+    @Override
+    public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+        super.initSystem(initTask, initResult);
+
+        modifyObjectReplaceContainer(
+                SystemConfigurationType.class, SystemObjectsType.SYSTEM_CONFIGURATION.value(),
+                ItemPath.create(SystemConfigurationType.F_INTERNALS, InternalsConfigurationType.F_CACHING),
+                initTask, initResult,
+                new CachingConfigurationType()
+                        .profile(new CachingProfileType()
+                                .global(true)
+                                .globalRepoObjectCache(new CacheSettingsType()
+                                        .objectTypeSettings(new CacheObjectTypeSettingsType()
+                                                .objectType(RoleType.COMPLEX_TYPE)
+                                                .timeToLive(CACHE_TIME)
+                                                .timeToVersionCheck(CACHE_TIME)))));
+
+        applicationRoleOid = addObject(
+                new RoleType()
+                        .name("cached-application")
+                        .inducement(new AssignmentType()
+                                .construction(new ConstructionType()
+                                        .resourceRef(RESOURCE_DUMMY_OID, ResourceType.COMPLEX_TYPE))),
+                initTask, initResult);
+        businessRoleOid = addObject(
+                new RoleType()
+                        .name("cached-business")
+                        .inducement(new AssignmentType()
+                                .targetRef(applicationRoleOid, RoleType.COMPLEX_TYPE)),
+                initTask, initResult);
+    }
+
+    /** The user gets the account via the roles. The roles get into the global cache. */
+    @Test
+    public void test100AddUserWithBusinessRole() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        when();
+        userOid = addObject(
+                new UserType()
+                        .name(USER_NAME)
+                        .assignment(new AssignmentType()
+                                .targetRef(businessRoleOid, RoleType.COMPLEX_TYPE)),
+                task, result);
+
+        then();
+        assertSuccess(result);
+        assertUserAfter(userOid)
+                .assertLiveLinks(1);
+        assertDummyAccount(null, USER_NAME);
+    }
+
+    /**
+     * The application role is changed directly in the repository, bypassing the caches (and their invalidation).
+     * The recomputation must still see the cached version of the role, with the inducement. So the account stays.
+     */
+    @Test
+    public void test110RolesAreTakenFromGlobalCache() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given("the inducement is removed from the application role behind the back of the caches");
+        plainRepositoryService.modifyObject(
+                RoleType.class, applicationRoleOid,
+                deltaFor(RoleType.class)
+                        .item(RoleType.F_INDUCEMENT)
+                        .replace()
+                        .asItemDeltas(),
+                result);
+
+        when();
+        recomputeUser(userOid, task, result);
+
+        then();
+        assertSuccess(result);
+        assertUserAfter(userOid)
+                .assertLiveLinks(1);
+        assertDummyAccount(null, USER_NAME);
+    }
+
+    /**
+     * Now the application role is changed in a regular way, which invalidates its cached version.
+     * The recomputation must see the role as it is in the repository, without the inducement. So the account is gone.
+     */
+    @Test
+    public void test120ChangedRoleIsInvalidated() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given("the application role is changed");
+        modifyObjectReplaceProperty(
+                RoleType.class, applicationRoleOid, RoleType.F_DESCRIPTION, task, result, "changed");
+
+        when();
+        recomputeUser(userOid, task, result);
+
+        then();
+        assertSuccess(result);
+        assertUserAfter(userOid)
+                .assertLiveLinks(0);
+        assertNoDummyAccount(null, USER_NAME);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.intest.rbac;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.model.intest.AbstractInitializedModelIntegrationTest;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Tests that the assignment targets are prefetched level by level (by a search per level),
+ * instead of being fetched one by one, and that the result of the evaluation is the same.
+ *
+ * The user has a business role that induces a number of application roles. One of them induces an account
+ * on the default dummy resource and also another (technical) role, so there are three levels of targets.
+ */
+@ContextConfiguration(locations = { "classpath:ctx-model-intest-test-main.xml" })
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestAssignmentTargetsPrefetch extends AbstractInitializedModelIntegrationTest {
+
+    private static final String USER_NAME = "prefetched-roles-user";
+
+    private static final String OP_GET_OBJECT = "SqaleRepositoryService." + RepositoryService.OP_GET_OBJECT;
+
+    private static final int APPLICATION_ROLES = 20;
+
+    /** Business role, application roles and the technical role. */
+    private static final int ALL_ROLES = APPLICATION_ROLES + 2;
+
+    private String businessRoleOid;
+    private String userOid;
+
+    @Override
+    public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+        super.initSystem(initTask, initResult);
+
+        String technicalRoleOid = addObject(
+                new RoleType().name("prefetched-technical"),
+                initTask, initResult);
+
+        RoleType businessRole = new RoleType().name("prefetched-business");
+        for (int i = 0; i < APPLICATION_ROLES; i++) {
+            RoleType applicationRole = new RoleType().name("prefetched-application-" + i);
+            if (i == 0) {
+                applicationRole
+                        .inducement(new AssignmentType()
+                                .construction(new ConstructionType()
+                                        .resourceRef(RESOURCE_DUMMY_OID, ResourceType.COMPLEX_TYPE)))
+                        .inducement(new AssignmentType()
+                                .targetRef(technicalRoleOid, RoleType.COMPLEX_TYPE));
+            }
+            String applicationRoleOid = addObject(applicationRole, initTask, initResult);
+            businessRole.inducement(new AssignmentType()
+                    .targetRef(applicationRoleOid, RoleType.COMPLEX_TYPE));
+        }
+        businessRoleOid = addObject(businessRole, initTask, initResult);
+    }
+
+    @Test
+    public void test100AddUserWithBusinessRole() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        when();
+        userOid = addObject(
+                new UserType()
+                        .name(USER_NAME)
+                        .assignment(new AssignmentType()
+                                .targetRef(businessRoleOid, RoleType.COMPLEX_TYPE)),
+                task, result);
+
+        then();
+        assertSuccess(result);
+        assertUserAfter(userOid)
+                .assertRoleMembershipRefs(ALL_ROLES)
+                .assertLiveLinks(1);
+        assertDummyAccount(null, USER_NAME);
+    }
+
+    /**
+     * The recomputation must not fetch the roles one by one. Other objects (the user itself, for example)
+     * are still fetched by `getObject`, but there must be fewer such calls than there are roles.
+     */
+    @Test
+    public void test110RecomputeDoesNotFetchRolesOneByOne() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given();
+        repositoryService.getPerformanceMonitor().startThreadLocalPerformanceInformationCollection();
+
+        when();
+        recomputeUser(userOid, task, result);
+
+        then();
+        assertSuccess(result);
+        createRepoOpAsserter()
+                .display()
+                .assertOp(OP_GET_OBJECT, 0, ALL_ROLES - 1);
+
+        and("the evaluation result is the same");
+        assertUserAfter(userOid)
+                .assertRoleMembershipRefs(ALL_ROLES)
+                .assertLiveLinks(1);
+        assertDummyAccount(null, USER_NAME);
+    }
+}
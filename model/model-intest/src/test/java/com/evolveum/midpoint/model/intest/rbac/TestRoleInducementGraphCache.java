@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.model.intest.rbac;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.model.impl.lens.assignments.RoleInducementGraphCache;
+import com.evolveum.midpoint.model.intest.AbstractInitializedModelIntegrationTest;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Tests that the role graph (the targets reachable from an assigned role) is taken from {@link RoleInducementGraphCache}
+ * instead of being walked level by level, if the roles did not change, and that it is walked (and cached) again
+ * when a role in it is modified.
+ *
+ * The user has a business role that induces a number of application roles. One of them induces an account
+ * on the default dummy resource and also another (technical) role, so there are three levels of targets.
+ */
+@ContextConfiguration(locations = { "classpath:ctx-model-intest-test-main.xml" })
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+public class TestRoleInducementGraphCache extends AbstractInitializedModelIntegrationTest {
+
+    private static final String USER_NAME = "graph-cached-user";
+
+    private static final int APPLICATION_ROLES = 5;
+
+    /** Business role, application roles and the technical role. */
+    private static final int ALL_ROLES = APPLICATION_ROLES + 2;
+
+    @Autowired private RoleInducementGraphCache roleInducementGraphCache;
+
+    private String businessRoleOid;
+    private String firstApplicationRoleOid;
+    private String userOid;
+
+    @Override
+    public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+        super.initSystem(initTask, initResult);
+
+        String technicalRoleOid = addObject(
+                new RoleType().name("graph-technical"),
+                initTask, initResult);
+
+        RoleType businessRole = new RoleType().name("graph-business");
+        for (int i = 0; i < APPLICATION_ROLES; i++) {
+            RoleType applicationRole = new RoleType().name("graph-application-" + i);
+            if (i == 0) {
+                applicationRole
+                        .inducement(new AssignmentType()
+                                .construction(new ConstructionType()
+                                        .resourceRef(RESOURCE_DUMMY_OID, ResourceType.COMPLEX_TYPE)))
+                        .inducement(new AssignmentType()
+                                .targetRef(technicalRoleOid, RoleType.COMPLEX_TYPE));
+            }
+            String applicationRoleOid = addObject(applicationRole, initTask, initResult);
+            if (i == 0) {
+                firstApplicationRoleOid = applicationRoleOid;
+            }
+            businessRole.inducement(new AssignmentType()
+                    .targetRef(applicationRoleOid, RoleType.COMPLEX_TYPE));
+        }
+        businessRoleOid = addObject(businessRole, initTask, initResult);
+    }
+
+    /** The graph is walked for the first time, and it gets into the cache. */
+    @Test
+    public void test100AddUserWithBusinessRole() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        long missesBefore = roleInducementGraphCache.getMisses();
+
+        when();
+        userOid = addObject(
+                new UserType()
+                        .name(USER_NAME)
+                        .assignment(new AssignmentType()
+                                .targetRef(businessRoleOid, RoleType.COMPLEX_TYPE)),
+                task, result);
+
+        then();
+        assertSuccess(result);
+        assertThat(roleInducementGraphCache.getMisses()).as("misses").isGreaterThan(missesBefore);
+        assertThat(roleInducementGraphCache.size()).as("cache size").isPositive();
+        assertUserAfter(userOid)
+                .assertRoleMembershipRefs(ALL_ROLES)
+                .assertLiveLinks(1);
+        assertDummyAccount(null, USER_NAME);
+    }
+
+    /** The graph is not walked again, it is taken from the cache. */
+    @Test
+    public void test110RecomputeUsesCachedGraph() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        long hitsBefore = roleInducementGraphCache.getHits();
+        long missesBefore = roleInducementGraphCache.getMisses();
+
+        when();
+        recomputeUser(userOid, task, result);
+
+        then();
+        assertSuccess(result);
+        assertThat(roleInducementGraphCache.getHits()).as("hits").isGreaterThan(hitsBefore);
+        assertThat(roleInducementGraphCache.getMisses()).as("misses").isEqualTo(missesBefore);
+        assertUserAfter(userOid)
+                .assertRoleMembershipRefs(ALL_ROLES)
+                .assertLiveLinks(1);
+        assertDummyAccount(null, USER_NAME);
+    }
+
+    /** A role in the graph gets a new inducement, so the cached graph is invalidated, and the graph is walked again. */
+    @Test
+    public void test120RecomputeAfterRoleModification() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given("an application role induces a new role");
+        String newRoleOid = addObject(new RoleType().name("graph-new"), task, result);
+        modifyObjectAddContainer(
+                RoleType.class, firstApplicationRoleOid, RoleType.F_INDUCEMENT, task, result,
+                new AssignmentType()
+                        .targetRef(newRoleOid, RoleType.COMPLEX_TYPE));
+        long hitsBefore = roleInducementGraphCache.getHits();
+        long missesBefore = roleInducementGraphCache.getMisses();
+
+        when();
+        recomputeUser(userOid, task, result);
+
+        then("the graph is walked again, and the new role is there");
+        assertSuccess(result);
+        assertThat(roleInducementGraphCache.getMisses()).as("misses").isGreaterThan(missesBefore);
+        assertThat(roleInducementGraphCache.getHits()).as("hits").isEqualTo(hitsBefore);
+        assertUserAfter(userOid)
+                .assertRoleMembershipRefs(ALL_ROLES + 1)
+                .assertLiveLinks(1);
+    }
+
+    /** The graph walked after the modification was cached again. */
+    @Test
+    public void test130RecomputeUsesRebuiltGraph() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+        long hitsBefore = roleInducementGraphCache.getHits();
+        long missesBefore = roleInducementGraphCache.getMisses();
+
+        when();
+        recomputeUser(userOid, task, result);
+
+        then();
+        assertSuccess(result);
+        assertThat(roleInducementGraphCache.getHits()).as("hits").isGreaterThan(hitsBefore);
+        assertThat(roleInducementGraphCache.getMisses()).as("misses").isEqualTo(missesBefore);
+        assertUserAfter(userOid)
+                .assertRoleMembershipRefs(ALL_ROLES + 1)
+                .assertLiveLinks(1);
+    }
+}
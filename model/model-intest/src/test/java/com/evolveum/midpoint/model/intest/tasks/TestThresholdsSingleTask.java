@@ -66,6 +66,7 @@ public abstract class TestThresholdsSingleTask extends TestThresholds {
                     .previewModePolicyRulesCounters()
                         .display()
                         .assertCounterMinMax(ruleAddId, USER_ADD_ALLOWED + 1, USER_ADD_ALLOWED + getThreads())
+                        .assertNoReservations()
                     .end()
                     .progress().display().end()
                     .itemProcessingStatistics().display().end();
@@ -163,6 +164,7 @@ public abstract class TestThresholdsSingleTask extends TestThresholds {
                     .previewModePolicyRulesCounters()
                         .display()
                         .assertCounterMinMax(ruleModifyCostCenterId, USER_MODIFY_ALLOWED + 1, USER_MODIFY_ALLOWED + getThreads())
+                        .assertNoReservations()
                     .end()
                     .itemProcessingStatistics().display().end()
                     .progress()
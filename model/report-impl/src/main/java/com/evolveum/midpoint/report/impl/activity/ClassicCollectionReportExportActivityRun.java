@@ -82,6 +82,7 @@ public final class ClassicCollectionReportExportActivityRun<T>
         searchSpecificationHolder = new PrismableReportDataSource<>(support);
         dataWriter = ReportUtils.createDataWriter(
                 report, FileFormatTypeType.CSV, getActivityHandler().reportService, support.getCompiledCollectionView(result));
+        dataWriter.startStreaming();
         controller = new CollectionExportController<>(
                 searchSpecificationHolder,
                 dataWriter,
@@ -134,7 +135,11 @@ public final class ClassicCollectionReportExportActivityRun<T>
 
     @Override
     public void afterRun(OperationResult result) throws CommonException {
-        support.saveSimpleReportData(dataWriter, result);
+        try {
+            support.saveSimpleReportData(dataWriter, result);
+        } finally {
+            dataWriter.reset(); // deletes the spooled data
+        }
     }
 
     @Override
@@ -20,6 +20,7 @@ import com.evolveum.midpoint.repo.common.activity.run.ActivityRunException;
 import com.evolveum.midpoint.report.impl.ReportServiceImpl;
 import com.evolveum.midpoint.report.impl.controller.ExportedReportDataRow;
 import com.evolveum.midpoint.report.impl.controller.ExportedReportHeaderRow;
+import com.evolveum.midpoint.report.impl.controller.ReportDataSpool;
 import com.evolveum.midpoint.report.impl.controller.ReportDataWriter;
 import com.evolveum.midpoint.schema.GetOperationOptions;
 import com.evolveum.midpoint.schema.ObjectHandler;
@@ -65,10 +66,10 @@ public class ExportActivitySupport extends ReportActivitySupport {
 
     /**
      * Save exported report to a file. This is the variant for distributed reports that assumes we have the
-     * aggregated data as a String, plus pre-existing (empty) aggregated {@link ReportDataType} object.
+     * aggregated data in a {@link ReportDataSpool}, plus pre-existing (empty) aggregated {@link ReportDataType} object.
      */
     void saveAggregatedReportData(
-            @NotNull String aggregatedData,
+            @NotNull ReportDataSpool aggregatedData,
             @NotNull ReportDataWriter<? extends ExportedReportDataRow, ? extends ExportedReportHeaderRow> completingDataWriter,
             @NotNull ObjectReferenceType aggregatedDataRef,
             @NotNull OperationResult result) throws CommonException {
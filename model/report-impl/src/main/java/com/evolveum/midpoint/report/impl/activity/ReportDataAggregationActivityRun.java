@@ -16,6 +16,7 @@ import com.evolveum.midpoint.repo.common.activity.run.processing.ItemProcessingR
 import com.evolveum.midpoint.report.impl.ReportUtils;
 import com.evolveum.midpoint.report.impl.controller.ExportedReportDataRow;
 import com.evolveum.midpoint.report.impl.controller.ExportedReportHeaderRow;
+import com.evolveum.midpoint.report.impl.controller.ReportDataSpool;
 import com.evolveum.midpoint.report.impl.controller.ReportDataWriter;
 import com.evolveum.midpoint.task.api.RunningTask;
 import com.evolveum.midpoint.util.logging.Trace;
@@ -46,11 +47,10 @@ final class ReportDataAggregationActivityRun
     @NotNull private final DistributedReportExportActivitySupport support;
 
     /**
-     * Data from all the partial reports.
-     *
-     * TODO eliminate gathering in memory: write to a file immediately after getting the data.
+     * Data from all the partial reports. They are kept in a temporary file, not in memory; and are written
+     * into the report file directly from there.
      */
-    private final StringBuilder aggregatedData = new StringBuilder();
+    @NotNull private final ReportDataSpool aggregatedData = new ReportDataSpool();
 
     /** Data writer which completes the content of the report (e.g. by providing HTML code at the end) */
     private ReportDataWriter<ExportedReportDataRow, ExportedReportHeaderRow> completingDataWriter;
@@ -106,7 +106,7 @@ final class ReportDataAggregationActivityRun
             throws CommonException {
         LOGGER.info("Appending data from {} (and deleting the object)", reportData);
         checkSequentialNumber(reportData); // TODO check also the total # of buckets (after we know it at the start!)
-        aggregatedData.append(reportData.getData());
+        aggregatedData.append(reportData.getSequentialNumber(), Objects.requireNonNullElse(reportData.getData(), ""));
         getActivityHandler().commonTaskBeans.repositoryService.deleteObject(ReportDataType.class, reportData.getOid(), result);
         return true;
     }
@@ -122,10 +122,14 @@ final class ReportDataAggregationActivityRun
 
     @Override
     public void afterRun(OperationResult result) throws CommonException {
-        support.saveAggregatedReportData(
-                aggregatedData.toString(),
-                completingDataWriter,
-                support.getGlobalReportDataRef(),
-                result);
+        try {
+            support.saveAggregatedReportData(
+                    aggregatedData,
+                    completingDataWriter,
+                    support.getGlobalReportDataRef(),
+                    result);
+        } finally {
+            aggregatedData.clear();
+        }
     }
 }
@@ -118,6 +118,7 @@ public final class ReportDataCreationActivityRun
         SearchSpecificationHolder searchSpecificationHolder = new SearchSpecificationHolder();
         ReportDataWriter<ExportedReportDataRow, ExportedReportHeaderRow> dataWriter = ReportUtils.createDataWriter(
                 report, FileFormatTypeType.CSV, getActivityHandler().reportService, support.getCompiledCollectionView(result));
+        dataWriter.startStreaming();
         controller = new CollectionDistributedExportController<>(
                 searchSpecificationHolder,
                 dataWriter,
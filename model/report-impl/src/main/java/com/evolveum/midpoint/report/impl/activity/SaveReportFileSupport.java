@@ -6,8 +6,7 @@
  */
 package com.evolveum.midpoint.report.impl.activity;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -31,6 +30,7 @@ import com.evolveum.midpoint.report.impl.ReportServiceImpl;
 import com.evolveum.midpoint.report.impl.controller.DashboardReportDataWriter;
 import com.evolveum.midpoint.report.impl.controller.ExportedReportDataRow;
 import com.evolveum.midpoint.report.impl.controller.ExportedReportHeaderRow;
+import com.evolveum.midpoint.report.impl.controller.ReportDataSpool;
 import com.evolveum.midpoint.report.impl.controller.ReportDataWriter;
 import com.evolveum.midpoint.schema.ObjectDeltaOperation;
 import com.evolveum.midpoint.schema.SearchResultList;
@@ -92,24 +92,27 @@ class SaveReportFileSupport {
     void saveSimpleReportData(
             ReportDataWriter<? extends ExportedReportDataRow, ? extends ExportedReportHeaderRow> dataWriter,
             OperationResult result) throws CommonException {
-        saveReportData(dataWriter.completeReport(), dataWriter, null, result);
+        saveReportData(dataWriter::writeCompleteReport, dataWriter, null, result);
     }
 
-    /** @see #saveAggregatedReportData(String, ReportDataWriter, ObjectReferenceType, OperationResult) */
+    /** @see ExportActivitySupport#saveAggregatedReportData(ReportDataSpool, ReportDataWriter, ObjectReferenceType, OperationResult) */
     void saveAggregatedReportData(
-            @NotNull String aggregatedData,
+            @NotNull ReportDataSpool aggregatedData,
             @NotNull ReportDataWriter<? extends ExportedReportDataRow, ? extends ExportedReportHeaderRow> completingDataWriter,
             @NotNull ObjectReferenceType preExistingDataRef,
             @NotNull OperationResult result) throws CommonException {
         saveReportData(
-                completingDataWriter.completeReport(aggregatedData),
+                output -> completingDataWriter.writeCompleteReport(aggregatedData, output),
                 completingDataWriter,
                 preExistingDataRef,
                 result);
     }
 
+    /**
+     * @param completedReport Writes the complete report to the file. (So the report does not need to be kept in memory.)
+     */
     private void saveReportData(
-            String completedReport,
+            CompletedReportWriter completedReport,
             ReportDataWriter<? extends ExportedReportDataRow, ? extends ExportedReportHeaderRow> dataWriter,
             @Nullable ObjectReferenceType emptyExportedDataObjectRef,
             OperationResult result) throws CommonException {
@@ -200,11 +203,12 @@ class SaveReportFileSupport {
         return formatDate.format(createDate);
     }
 
-    private void writeToReportFile(String contextOfFile, String aggregatedFilePath, @NotNull Charset encoding) {
-        try {
-            FileUtils.writeByteArrayToFile(
-                    new File(aggregatedFilePath),
-                    contextOfFile.getBytes(encoding));
+    private void writeToReportFile(
+            CompletedReportWriter completedReport, String aggregatedFilePath, @NotNull Charset encoding) {
+        // Unlike Files.newBufferedWriter, this replaces unmappable characters instead of failing (as String.getBytes does).
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(FileUtils.openOutputStream(new File(aggregatedFilePath)), encoding))) {
+            completedReport.write(writer);
         } catch (IOException e) {
             throw new SystemException("Couldn't write aggregated report to " + aggregatedFilePath, e);
         }
@@ -386,4 +390,9 @@ class SaveReportFileSupport {
             LOGGER.error("An exception has occurred during post report script execution {}", e.getLocalizedMessage(), e);
         }
     }
+
+    @FunctionalInterface
+    private interface CompletedReportWriter {
+        void write(Writer output) throws IOException;
+    }
 }
@@ -6,12 +6,19 @@
  */
 package com.evolveum.midpoint.report.impl.controller;
 
+import static com.evolveum.midpoint.util.MiscUtil.stateCheck;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.report.impl.ReportServiceImpl;
+import com.evolveum.midpoint.util.exception.SystemException;
 
 /**
  * Creates and manipulates exported reports.
@@ -29,6 +36,12 @@ public abstract class AbstractReportDataWriter<ED extends ExportedReportDataRow,
      */
     @NotNull private final List<ED> dataRows = new ArrayList<>();
 
+    /**
+     * If present, data rows are formatted and spooled here as they arrive, instead of being kept in {@link #dataRows}.
+     * See {@link #startStreaming()}.
+     */
+    @Nullable private ReportDataSpool spool;
+
     @NotNull protected final ReportServiceImpl reportService;
 
     protected AbstractReportDataWriter(@NotNull ReportServiceImpl reportService) {
@@ -49,6 +62,62 @@ public abstract class AbstractReportDataWriter<ED extends ExportedReportDataRow,
         return dataRows;
     }
 
+    @Override
+    public boolean startStreaming() {
+        if (!supportsStreaming()) {
+            return false;
+        }
+        stateCheck(dataRows.isEmpty(), "Data rows were already appended to %s", this);
+        if (spool == null) {
+            spool = new ReportDataSpool();
+        }
+        return true;
+    }
+
+    /** Can the rows be formatted individually, see {@link #formatDataRow(ExportedReportDataRow)}? */
+    protected boolean supportsStreaming() {
+        return false;
+    }
+
+    protected boolean isStreaming() {
+        return spool != null;
+    }
+
+    /**
+     * Formats a single data row, as it should appear in the data (see {@link #getStringData()}).
+     * Called from multiple threads when streaming.
+     */
+    protected abstract String formatDataRow(ED row);
+
+    protected boolean hasDataRows() {
+        return spool != null ? !spool.isEmpty() : !dataRows.isEmpty();
+    }
+
+    /** Writes formatted data rows in the correct order, whether they are kept in memory or spooled. */
+    protected void writeDataRows(@NotNull Writer writer) throws IOException {
+        if (spool != null) {
+            spool.writeTo(writer);
+        } else {
+            for (ED row : dataRows) {
+                writer.write(formatDataRow(row));
+            }
+        }
+    }
+
+    /** Writes the data, i.e. what {@link #getStringData()} returns. */
+    protected abstract void writeData(@NotNull Writer writer) throws IOException;
+
+    /** Implementation of {@link #getStringData()} for writers that support {@link #writeData(Writer)}. */
+    protected String getStringDataByWriting() {
+        try {
+            StringWriter writer = new StringWriter();
+            writeData(writer);
+            return writer.toString();
+        } catch (IOException e) {
+            throw new SystemException("Unexpected IOException: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Thread safety: Guarded by `this`.
      *
@@ -62,10 +131,21 @@ public abstract class AbstractReportDataWriter<ED extends ExportedReportDataRow,
      * sequential number. They are produced within the same thread, so their order is guaranteed now: the insertion algorithm
      * places them into the order they are generated in.
      *
+     * In the streaming mode, the row is formatted and spooled right away, without any global locking.
+     *
      * @param row Formatted (string) values for the row.
      */
     @Override
-    public synchronized void appendDataRow(ED row) {
+    public void appendDataRow(ED row) {
+        ReportDataSpool spool = this.spool;
+        if (spool != null) {
+            spool.append(row.getSequentialNumber(), formatDataRow(row));
+        } else {
+            insertDataRow(row);
+        }
+    }
+
+    private synchronized void insertDataRow(ED row) {
         int i;
         for (i = getDataRows().size() - 1; i >= 0; i--) {
             if (getDataRows().get(i).getSequentialNumber() <= row.getSequentialNumber()) {
@@ -79,6 +159,9 @@ public abstract class AbstractReportDataWriter<ED extends ExportedReportDataRow,
     public void reset() {
         headerRow = null;
         dataRows.clear();
+        if (spool != null) {
+            spool.clear();
+        }
     }
 
     @Override
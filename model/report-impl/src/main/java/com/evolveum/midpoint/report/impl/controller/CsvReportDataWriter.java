@@ -8,6 +8,7 @@ package com.evolveum.midpoint.report.impl.controller;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.List;
@@ -35,42 +36,61 @@ public class CsvReportDataWriter extends AbstractReportDataWriter<ExportedReport
 
     @NotNull private final Map<String, String> widgetsData = new HashMap<>();
 
+    /** Format for individual data rows (without header). */
+    @NotNull private final CSVFormat rowFormat;
+
     public CsvReportDataWriter(
             ReportServiceImpl reportService,
             @Nullable FileFormatConfigurationType configuration) {
         super(reportService);
         this.support = new CommonCsvSupport(configuration);
         this.configuration = configuration;
+        this.rowFormat = support.createCsvFormat().withSkipHeaderRecord(true);
     }
 
     @Override
-    public synchronized void appendDataRow(ExportedReportDataRow row) {
+    public void appendDataRow(ExportedReportDataRow row) {
         if (row instanceof ExportedDashboardReportDataRow
                 && ((ExportedDashboardReportDataRow) row).isBasicWidgetRow()) {
-            widgetsData.put(
-                    ((ExportedDashboardReportDataRow) row).getWidgetIdentifier(),
-                    String.join("", row.getValues().get(CommonHtmlSupport.getIndexOfNumberColumn())));
+            synchronized (widgetsData) {
+                widgetsData.put(
+                        ((ExportedDashboardReportDataRow) row).getWidgetIdentifier(),
+                        String.join("", row.getValues().get(CommonHtmlSupport.getIndexOfNumberColumn())));
+            }
         }
         super.appendDataRow(row);
     }
 
     @Override
-    public String getStringData() {
+    protected boolean supportsStreaming() {
+        return true;
+    }
+
+    @Override
+    protected String formatDataRow(ExportedReportDataRow row) {
         try {
             StringWriter stringWriter = new StringWriter();
-            CSVFormat csvFormat = createCsvFormat();
-            CSVPrinter printer = new CSVPrinter(stringWriter, csvFormat);
-
-            for (ExportedReportDataRow row : getDataRows()) {
-                printer.printRecord(createPhysicalColumnsList(row));
-            }
-            printer.flush();
+            new CSVPrinter(stringWriter, rowFormat)
+                    .printRecord(createPhysicalColumnsList(row));
             return stringWriter.toString();
         } catch (IOException e) {
             throw new SystemException("Unexpected IOException: " + e.getMessage(), e);
         }
     }
 
+    @Override
+    public String getStringData() {
+        return getStringDataByWriting();
+    }
+
+    @Override
+    protected void writeData(@NotNull Writer writer) throws IOException {
+        // Prints the header (if there's any)
+        new CSVPrinter(writer, createCsvFormat())
+                .flush();
+        writeDataRows(writer);
+    }
+
     @Override
     public boolean shouldWriteHeader() {
         return support.isHeader();
@@ -137,6 +157,25 @@ public class CsvReportDataWriter extends AbstractReportDataWriter<ExportedReport
         return reportContent;
     }
 
+    @Override
+    public void writeCompleteReport(@NotNull ReportDataSpool aggregatedData, @NotNull Writer output) throws IOException {
+        aggregatedData.writeTo(output);
+        writeSubscriptionFooter(output);
+    }
+
+    @Override
+    public void writeCompleteReport(@NotNull Writer output) throws IOException {
+        writeData(output);
+        writeSubscriptionFooter(output);
+    }
+
+    private void writeSubscriptionFooter(@NotNull Writer output) throws IOException {
+        String subscriptionFooter = reportService.missingSubscriptionFooter();
+        if (subscriptionFooter != null) {
+            output.write(subscriptionFooter + System.lineSeparator());
+        }
+    }
+
     @Override
     public @NotNull Charset getEncoding() {
         String encoding = support.getEncoding();
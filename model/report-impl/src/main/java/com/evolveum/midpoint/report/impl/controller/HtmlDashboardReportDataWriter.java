@@ -6,6 +6,8 @@
  */
 package com.evolveum.midpoint.report.impl.controller;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.*;
 import java.util.function.Function;
 
@@ -156,6 +158,21 @@ public class HtmlDashboardReportDataWriter
         return body.toString();
     }
 
+    @Override
+    protected boolean supportsStreaming() {
+        return false;
+    }
+
+    @Override
+    public void writeCompleteReport(@NotNull ReportDataSpool aggregatedData, @NotNull Writer output) throws IOException {
+        output.write(completeReport(aggregatedData.getAsString()));
+    }
+
+    @Override
+    public void writeCompleteReport(@NotNull Writer output) throws IOException {
+        output.write(completeReport());
+    }
+
     @Override
     public String completeReport() {
         CommonHtmlSupport support = getDefaultSupport();
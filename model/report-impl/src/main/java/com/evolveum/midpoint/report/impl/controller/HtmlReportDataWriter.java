@@ -6,6 +6,8 @@
  */
 package com.evolveum.midpoint.report.impl.controller;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 
 import j2html.TagCreator;
@@ -25,6 +27,9 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.FileFormatConfigurat
 public class HtmlReportDataWriter<ED extends ExportedReportDataRow, EH extends ExportedReportHeaderRow>
         extends AbstractReportDataWriter<ED, EH> {
 
+    private static final String THEAD_END = "</thead>";
+    private static final String TABLE_BOX_END = "</table></div>";
+
     @NotNull private final CommonHtmlSupport support;
 
     final LocalizationService localizationService;
@@ -43,7 +48,7 @@ public class HtmlReportDataWriter<ED extends ExportedReportDataRow, EH extends E
 
     @Override
     public String getStringData() {
-        return getStringDataInternal(getHeaderRow(), getDataRows());
+        return getStringDataByWriting();
     }
 
     protected String getStringDataInternal(ExportedReportHeaderRow headerRow, List<ED> dataRows) {
@@ -51,25 +56,47 @@ public class HtmlReportDataWriter<ED extends ExportedReportDataRow, EH extends E
         if (headerRow != null) {
             sb.append(createTHead(headerRow));
         }
-        ContainerTag tBody = TagCreator.tbody();
-        dataRows.forEach(row -> {
-            ContainerTag tr = TagCreator.tr();
-            row.getValues().forEach(values -> {
-                if (values.size() == 1 && values.iterator().next().startsWith(CommonHtmlSupport.VALUE_CSS_STYLE_TAG)) {
-                    String value = values.iterator().next();
-                    tr.with(TagCreator.th().withStyle(value.substring((value.indexOf("{") + 1), value.indexOf("}"))));
-                } else {
-                    tr.with(TagCreator.th(formatColumn(values)));
-                }
-            });
-            tBody.with(tr);
-        });
-        if (tBody.getNumChildren() != 0) {
-            sb.append(tBody.render());
+        if (!dataRows.isEmpty()) {
+            sb.append("<tbody>");
+            dataRows.forEach(row -> sb.append(formatDataRow(row)));
+            sb.append("</tbody>");
         }
         return sb.toString();
     }
 
+    @Override
+    protected boolean supportsStreaming() {
+        return true;
+    }
+
+    @Override
+    protected String formatDataRow(ED row) {
+        ContainerTag tr = TagCreator.tr();
+        row.getValues().forEach(values -> {
+            if (values.size() == 1 && values.iterator().next().startsWith(CommonHtmlSupport.VALUE_CSS_STYLE_TAG)) {
+                String value = values.iterator().next();
+                tr.with(TagCreator.th().withStyle(value.substring((value.indexOf("{") + 1), value.indexOf("}"))));
+            } else {
+                tr.with(TagCreator.th(formatColumn(values)));
+            }
+        });
+        return tr.render();
+    }
+
+    /** The same as {@link #getStringData()} returns. */
+    @Override
+    protected void writeData(@NotNull Writer writer) throws IOException {
+        ExportedReportHeaderRow headerRow = getHeaderRow();
+        if (headerRow != null) {
+            writer.write(createTHead(headerRow));
+        }
+        if (hasDataRows()) {
+            writer.write("<tbody>");
+            writeDataRows(writer);
+            writer.write("</tbody>");
+        }
+    }
+
     @Override
     public boolean shouldWriteHeader() {
         return true;
@@ -124,26 +151,55 @@ public class HtmlReportDataWriter<ED extends ExportedReportDataRow, EH extends E
     }
 
     private String completeReportInternal(String aggregatedData, boolean parseData) {
-        String cssStyle = support.getCssStyle();
+        return createReportStart()
+                + createTableBox(aggregatedData, support, parseData)
+                + createReportEnd();
+    }
 
-        StringBuilder body = new StringBuilder();
-        body.append("<div> <style> ").append(cssStyle).append(" </style>");
+    @Override
+    public void writeCompleteReport(@NotNull ReportDataSpool aggregatedData, @NotNull Writer output) throws IOException {
+        output.write(createReportStart());
+        output.write(createTableBoxStart(support));
+        writeAggregatedData(aggregatedData, output);
+        output.write(TABLE_BOX_END);
+        output.write(createReportEnd());
+    }
+
+    @Override
+    public void writeCompleteReport(@NotNull Writer output) throws IOException {
+        output.write(createReportStart());
+        output.write(createTableBoxStart(support));
+        writeData(output);
+        output.write(TABLE_BOX_END);
+        output.write(createReportEnd());
+    }
 
-        String table = createTableBox(aggregatedData, support, parseData);
-        body.append(table).append("</div>");
+    private String createReportStart() {
+        return "<div> <style> " + support.getCssStyle() + " </style>";
+    }
 
+    private String createReportEnd() {
+        StringBuilder end = new StringBuilder("</div>");
         String subscriptionFooter = reportService.missingSubscriptionFooter();
         if (subscriptionFooter != null) {
-            body.append("<div>")
+            end.append("<div>")
                     .append(subscriptionFooter)
                     .append("</div>");
         }
-
-        return body.toString();
+        return end.toString();
     }
 
     protected String createTableBox(String aggregatedData, CommonHtmlSupport support, boolean parseData) {
-        StringBuilder table = new StringBuilder();
+        String parsedData;
+        if (parseData) {
+            parsedData = parseAggregatedData(aggregatedData);
+        } else {
+            parsedData = aggregatedData;
+        }
+        return createTableBoxStart(support) + parsedData + TABLE_BOX_END;
+    }
+
+    private String createTableBoxStart(CommonHtmlSupport support) {
         String style = support.getCssStyleOfTable();
         String classes = support.getCssClassOfTable();
 
@@ -153,19 +209,7 @@ public class HtmlReportDataWriter<ED extends ExportedReportDataRow, EH extends E
         String tableBox = TagCreator.div().withClasses("box", "boxed-table", classes).withStyle(style).with(div).render();
         tableBox = tableBox.substring(0, tableBox.length() - 6);
 
-        String parsedData;
-        if (parseData) {
-            parsedData = parseAggregatedData(aggregatedData);
-        } else {
-            parsedData = aggregatedData;
-        }
-
-        table.append(tableBox)
-                .append("<table class=\"table table-striped table-hover table-bordered\">")
-                .append(parsedData)
-                .append("</table>")
-                .append("</div>");
-        return table.toString();
+        return tableBox + "<table class=\"table table-striped table-hover table-bordered\">";
     }
 
     private String parseAggregatedData(String aggregatedData) {
@@ -174,14 +218,46 @@ public class HtmlReportDataWriter<ED extends ExportedReportDataRow, EH extends E
         }
         StringBuilder sb = new StringBuilder();
         String formattedData = aggregatedData;
-        if (aggregatedData.contains("</thead>")) {
-            String tHeader = aggregatedData.substring(0, aggregatedData.indexOf("</thead>") + 8);
+        if (aggregatedData.contains(THEAD_END)) {
+            String tHeader = aggregatedData.substring(0, aggregatedData.indexOf(THEAD_END) + THEAD_END.length());
             sb.append(tHeader);
             formattedData = formattedData.replace(tHeader, "");
         }
         sb.append("<tbody>");
-        sb.append(formattedData.replaceAll("<tbody>", "").replaceAll("</tbody>", ""));
+        sb.append(stripTBody(formattedData));
         sb.append("</tbody>");
         return sb.toString();
     }
+
+    /**
+     * Streaming version of {@link #parseAggregatedData(String)}: the header is taken from the first piece of data (bucket),
+     * the header repetitions and bodies of the individual pieces are removed, and all the rows are put into a single body.
+     */
+    private void writeAggregatedData(ReportDataSpool aggregatedData, Writer output) throws IOException {
+        if (aggregatedData.isEmpty()) {
+            return;
+        }
+        String[] tHeader = new String[1];
+        boolean[] started = new boolean[1];
+        aggregatedData.forEach(piece -> {
+            String data = piece;
+            if (!started[0]) {
+                if (data.contains(THEAD_END)) {
+                    tHeader[0] = data.substring(0, data.indexOf(THEAD_END) + THEAD_END.length());
+                    output.write(tHeader[0]);
+                }
+                output.write("<tbody>");
+                started[0] = true;
+            }
+            if (tHeader[0] != null) {
+                data = data.replace(tHeader[0], "");
+            }
+            output.write(stripTBody(data));
+        });
+        output.write("</tbody>");
+    }
+
+    private static String stripTBody(String data) {
+        return data.replace("<tbody>", "").replace("</tbody>", "");
+    }
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.report.impl.controller;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Formatted data of a report, kept in temporary files instead of memory. The data are appended in pieces: either individual
+ * data rows (see {@link AbstractReportDataWriter#startStreaming()}) or partial report data from individual buckets
+ * (when aggregating distributed report exports).
+ *
+ * Rows are appended by multiple worker threads. Each thread writes into its own file ("run"), so there is no locking,
+ * and - as each thread gets the items in the order of their sequential numbers - each run is sorted. (If a thread gets
+ * a lower sequential number than before, it simply starts a new run.) The rows are put into the final order by merging
+ * the runs when the data are written out. Rows with the same sequential number are kept in the order they were appended in.
+ *
+ * Thread safety: {@link #append(long, String)} can be called concurrently; other methods must not be called
+ * while rows are being appended.
+ */
+public class ReportDataSpool {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ReportDataSpool.class);
+
+    private static final String FILE_PREFIX = "midpoint-report-rows-";
+    private static final String FILE_SUFFIX = ".tmp";
+
+    /** All runs created so far, in the order of creation. */
+    @NotNull private final ConcurrentLinkedQueue<Run> runs = new ConcurrentLinkedQueue<>();
+
+    /** Orders the runs by creation, to keep the order of rows with the same sequential number. */
+    @NotNull private final AtomicInteger runCounter = new AtomicInteger();
+
+    /**
+     * The run the current thread is writing into. Replaced on {@link #clear()}, to forget all the runs.
+     * Volatile, as the threads appending after the clearing may differ from the one that cleared the spool.
+     */
+    @NotNull private volatile ThreadLocal<Run> currentRun = new ThreadLocal<>();
+
+    /** Appends a piece of formatted data (e.g. a row) with given sequential number. */
+    public void append(long sequentialNumber, @NotNull String formattedRow) {
+        Run run = currentRun.get();
+        if (run == null || run.lastSequentialNumber > sequentialNumber) {
+            run = createRun();
+            currentRun.set(run);
+        }
+        run.append(sequentialNumber, formattedRow);
+    }
+
+    private @NotNull Run createRun() {
+        try {
+            Run run = new Run(runCounter.getAndIncrement(), Files.createTempFile(FILE_PREFIX, FILE_SUFFIX));
+            runs.add(run);
+            return run;
+        } catch (IOException e) {
+            throw new SystemException("Couldn't create temporary file for report data: " + e.getMessage(), e);
+        }
+    }
+
+    /** Returns true if there are no data, i.e. no pieces or only empty ones. */
+    public boolean isEmpty() {
+        return runs.stream().allMatch(run -> run.length == 0);
+    }
+
+    /** Writes all the data, ordered by the sequential numbers of the pieces. */
+    public void writeTo(@NotNull Writer writer) throws IOException {
+        forEach(writer::write);
+    }
+
+    /** Returns all the data as a string. Use only if the data are known to be reasonably small. */
+    public @NotNull String getAsString() {
+        try {
+            StringWriter writer = new StringWriter();
+            writeTo(writer);
+            return writer.toString();
+        } catch (IOException e) {
+            throw new SystemException("Couldn't read report data: " + e.getMessage(), e);
+        }
+    }
+
+    /** Passes all the pieces to the consumer, ordered by their sequential numbers. */
+    public void forEach(@NotNull PieceConsumer consumer) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                    Comparator.comparingLong((RunReader r) -> r.sequentialNumber)
+                            .thenComparingInt(r -> r.run.index));
+            for (Run run : runs) {
+                run.flush();
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            RunReader reader;
+            while ((reader = queue.poll()) != null) {
+                consumer.accept(reader.row);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /** Deletes all the data (and the files). */
+    public void clear() {
+        currentRun = new ThreadLocal<>();
+        Run run;
+        while ((run = runs.poll()) != null) {
+            run.delete();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{runs=" + runs.size() + "}";
+    }
+
+    @FunctionalInterface
+    public interface PieceConsumer {
+        void accept(@NotNull String piece) throws IOException;
+    }
+
+    /** Sorted sequence of rows appended by a single thread. */
+    private static class Run {
+
+        private final int index;
+        @NotNull private final Path file;
+        @NotNull private final DataOutputStream output;
+        private long lastSequentialNumber = Long.MIN_VALUE;
+        private int rows;
+        private long length;
+
+        private Run(int index, @NotNull Path file) throws IOException {
+            this.index = index;
+            this.file = file;
+            this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        }
+
+        private void append(long sequentialNumber, @NotNull String formattedRow) {
+            byte[] bytes = formattedRow.getBytes(StandardCharsets.UTF_8);
+            try {
+                output.writeLong(sequentialNumber);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            } catch (IOException e) {
+                throw new SystemException("Couldn't write report data to " + file + ": " + e.getMessage(), e);
+            }
+            lastSequentialNumber = sequentialNumber;
+            rows++;
+            length += bytes.length;
+        }
+
+        private void flush() throws IOException {
+            output.flush();
+        }
+
+        private void delete() {
+            try {
+                output.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOGGER.warn("Couldn't delete temporary report data file {}: {}", file, e.getMessage(), e);
+            }
+        }
+    }
+
+    /** Reads the rows of a run one by one. */
+    private static class RunReader implements Closeable {
+
+        @NotNull private final Run run;
+        @NotNull private final DataInputStream input;
+        private int remaining;
+
+        private long sequentialNumber;
+        private String row;
+
+        private RunReader(@NotNull Run run) throws IOException {
+            this.run = run;
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.file)));
+            this.remaining = run.rows;
+        }
+
+        /** Moves to the next row; returns false if there's none. */
+        private boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            sequentialNumber = input.readLong();
+            byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            row = new String(bytes, StandardCharsets.UTF_8);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
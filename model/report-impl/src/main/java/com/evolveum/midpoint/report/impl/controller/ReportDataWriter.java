@@ -6,6 +6,8 @@
  */
 package com.evolveum.midpoint.report.impl.controller;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.function.Function;
@@ -21,7 +23,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.FileFormatConfigurat
  * Responsibilities:
  *
  * 1. Buffers semi-formatted ({@link ExportedReportHeaderRow} and {@link ExportedReportDataRow}) objects,
- * maintaining their correct order.
+ * maintaining their correct order. (Or, in the streaming mode, formats them right away, and spools them to temporary files.)
  *
  * 2. Produces final string form when asked to do so.
  *
@@ -46,6 +48,17 @@ public interface ReportDataWriter<ED extends ExportedReportDataRow, EH extends E
     /** Resets the state of the writer, e.g. erasing all stored data. */
     void reset();
 
+    /**
+     * Switches the writer into the streaming mode, if it supports it: data rows are formatted as they arrive,
+     * and stored in temporary files instead of memory. (They are deleted by {@link #reset()}.)
+     * Must be called before any data rows are appended.
+     *
+     * Returns true if the writer is in the streaming mode now.
+     */
+    default boolean startStreaming() {
+        return false;
+    }
+
     /**
      * Returns the final text output of the writer, formatted according to the rules of the file format (CSV/HTML)
      * and a particular configuration.
@@ -71,6 +84,21 @@ public interface ReportDataWriter<ED extends ExportedReportDataRow, EH extends E
      */
     String completeReport();
 
+    /**
+     * Writes the same as {@link #completeReport(String)} returns, with aggregated data being taken from the spool.
+     * Writers that can, do that without having all the data in memory.
+     */
+    default void writeCompleteReport(@NotNull ReportDataSpool aggregatedData, @NotNull Writer output) throws IOException {
+        output.write(completeReport(aggregatedData.getAsString()));
+    }
+
+    /**
+     * Writes the same as {@link #completeReport()} returns. Writers that can, do that without having all the data in memory.
+     */
+    default void writeCompleteReport(@NotNull Writer output) throws IOException {
+        output.write(completeReport());
+    }
+
     @Nullable
     default Function<String, String> getFunctionForWidgetStatus() {
         return null;
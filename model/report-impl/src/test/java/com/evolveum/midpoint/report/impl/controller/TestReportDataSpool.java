@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.report.impl.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Tests the ordering of the pieces in {@link ReportDataSpool}, i.e. splitting into runs and merging them.
+ */
+public class TestReportDataSpool extends AbstractUnitTest {
+
+    @Test
+    public void test100SortedPiecesInSingleRun() throws Exception {
+        ReportDataSpool spool = new ReportDataSpool();
+        try {
+            when();
+            for (int i = 0; i < 5; i++) {
+                spool.append(i, row(i));
+            }
+
+            then();
+            assertThat(spool.isEmpty()).isFalse();
+            assertThat(spool.getAsString()).isEqualTo(rows(0, 5));
+        } finally {
+            spool.clear();
+        }
+    }
+
+    /** A lower sequential number starts a new run; the runs are merged. */
+    @Test
+    public void test110UnsortedPiecesAreMerged() throws Exception {
+        ReportDataSpool spool = new ReportDataSpool();
+        try {
+            when();
+            for (int i : List.of(3, 5, 1, 4, 0, 2)) {
+                spool.append(i, row(i));
+            }
+
+            then();
+            assertThat(spool.getAsString()).isEqualTo(rows(0, 6));
+        } finally {
+            spool.clear();
+        }
+    }
+
+    /** Pieces with the same sequential number are kept in the order they were appended in, also across the runs. */
+    @Test
+    public void test120SameSequentialNumbersKeepOrder() throws Exception {
+        ReportDataSpool spool = new ReportDataSpool();
+        try {
+            when();
+            spool.append(1, "a");
+            spool.append(1, "b");
+            spool.append(0, "c"); // new run
+            spool.append(1, "d");
+
+            then();
+            assertThat(spool.getAsString()).isEqualTo("cabd");
+        } finally {
+            spool.clear();
+        }
+    }
+
+    /** Each thread appends its own (sorted) share of the pieces; the result is in the global order. */
+    @Test
+    public void test200ConcurrentAppends() throws Exception {
+        int threads = 4;
+        int pieces = 1000;
+        ReportDataSpool spool = new ReportDataSpool();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            when();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < pieces; i += threads) {
+                        spool.append(i, row(i));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            then();
+            assertThat(spool.getAsString()).isEqualTo(rows(0, pieces));
+        } finally {
+            executor.shutdownNow();
+            spool.clear();
+        }
+    }
+
+    @Test
+    public void test300EmptyAndCleared() throws Exception {
+        ReportDataSpool spool = new ReportDataSpool();
+        try {
+            expect("no pieces or only empty ones mean no data");
+            assertThat(spool.isEmpty()).isTrue();
+            spool.append(0, "");
+            assertThat(spool.isEmpty()).isTrue();
+
+            when("pieces are appended and the spool is cleared");
+            spool.append(1, row(1));
+            assertThat(spool.isEmpty()).isFalse();
+            spool.clear();
+
+            then("there are no data");
+            assertThat(spool.isEmpty()).isTrue();
+            assertThat(spool.getAsString()).isEmpty();
+
+            and("the spool can be used again");
+            spool.append(0, row(0));
+            assertThat(spool.getAsString()).isEqualTo(row(0));
+        } finally {
+            spool.clear();
+        }
+    }
+
+    private static String row(int i) {
+        return "row " + i + "\n";
+    }
+
+    private static String rows(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(TestReportDataSpool::row)
+                .collect(Collectors.joining());
+    }
+}
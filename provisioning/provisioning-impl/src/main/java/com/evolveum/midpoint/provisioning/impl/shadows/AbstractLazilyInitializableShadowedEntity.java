@@ -118,9 +118,18 @@ public abstract class AbstractLazilyInitializableShadowedEntity implements Lazil
     /** Looks up and creates (if needed) a shadow for the resource object. Deals with errors. */
     @NotNull RepoShadow acquireRepoShadow(@NotNull ExistingResourceObject resourceObject, OperationResult result)
             throws SchemaException, ConfigurationException, EncryptionException {
+        return acquireRepoShadow(resourceObject, null, result);
+    }
+
+    /** As {@link #acquireRepoShadow(ExistingResourceObject, OperationResult)}; prefetched shadows are used for the first try. */
+    @NotNull RepoShadow acquireRepoShadow(
+            @NotNull ExistingResourceObject resourceObject,
+            @Nullable PrefetchedRepoShadows prefetchedShadows,
+            OperationResult result)
+            throws SchemaException, ConfigurationException, EncryptionException {
 
         try {
-            return ShadowAcquisition.acquireRepoShadow(effectiveCtx, resourceObject, result);
+            return ShadowAcquisition.acquireRepoShadow(effectiveCtx, resourceObject, prefetchedShadows, result);
         } catch (Exception e) {
             // No need to log stack trace now. It will be logged at the place where the exception is processed.
             LoggingUtils.logExceptionAsWarning(
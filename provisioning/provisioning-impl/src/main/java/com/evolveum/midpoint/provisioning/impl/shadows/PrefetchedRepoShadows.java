@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.provisioning.impl.shadows;
+
+import java.util.*;
+import javax.xml.namespace.QName;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.provisioning.impl.ProvisioningContext;
+import com.evolveum.midpoint.provisioning.impl.RepoShadow;
+import com.evolveum.midpoint.provisioning.impl.resourceobjects.ExistingResourceObject;
+import com.evolveum.midpoint.schema.processor.ResourceObjectIdentification.WithPrimary;
+import com.evolveum.midpoint.schema.processor.ResourceObjectIdentifier;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.RawRepoShadow;
+import com.evolveum.midpoint.schema.util.ShadowUtil;
+import com.evolveum.midpoint.util.exception.ConfigurationException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.LoggingUtils;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Live repository shadows for a batch of resource objects found by a search, looked up by a single repository query
+ * per object class. Used by {@link ShadowAcquisition} instead of looking up the shadow for each object separately.
+ *
+ * The query is the same as the one used for individual lookups, only the primary identifiers are OR-ed together.
+ * The shadows found are assigned to the objects by the (normalized) value of their primary identifier. If any live shadow
+ * cannot be assigned this way, no object of that class is covered, and the shadows are looked up one by one, as usual.
+ *
+ * Each object is covered at most once: if the same object is found repeatedly, the second lookup goes to the repository,
+ * as the shadow could have been created in the meantime. The creation of missing shadows (including the handling of
+ * conflicts with shadows created concurrently) and the classification are not affected.
+ */
+class PrefetchedRepoShadows {
+
+    private static final Trace LOGGER = TraceManager.getTrace(PrefetchedRepoShadows.class);
+
+    private static final String OP_FETCH = PrefetchedRepoShadows.class.getName() + ".fetch";
+
+    private record Key(@NotNull QName objectClassName, @NotNull String primaryIdentifierValue) {
+
+        static Key of(@NotNull WithPrimary primaryIdentification) {
+            return new Key(
+                    primaryIdentification.getObjectClassName(),
+                    getKeyValue(primaryIdentification.getPrimaryIdentifier()));
+        }
+    }
+
+    /** Shadows found for the covered objects; live ones only. Empty list means there is no live shadow. */
+    @NotNull private final Map<Key, List<PrismObject<ShadowType>>> shadows;
+
+    private PrefetchedRepoShadows(@NotNull Map<Key, List<PrismObject<ShadowType>>> shadows) {
+        this.shadows = shadows;
+    }
+
+    /** Looks up shadows for given objects. Never fails: objects that could not be covered are simply left out. */
+    static @NotNull PrefetchedRepoShadows fetch(
+            @NotNull ProvisioningContext ctx,
+            @NotNull Collection<ExistingResourceObject> resourceObjects,
+            @NotNull OperationResult parentResult) {
+
+        Map<QName, Map<String, WithPrimary>> identificationsByClass = new HashMap<>();
+        for (ExistingResourceObject resourceObject : resourceObjects) {
+            try {
+                var primaryIdentification = resourceObject.getPrimaryIdentification();
+                identificationsByClass
+                        .computeIfAbsent(primaryIdentification.getObjectClassName(), k -> new LinkedHashMap<>())
+                        .put(getKeyValue(primaryIdentification.getPrimaryIdentifier()), primaryIdentification);
+            } catch (Exception e) {
+                LOGGER.trace("No usable primary identification for {}, its shadow will be looked up separately",
+                        resourceObject, e);
+            }
+        }
+
+        Map<Key, List<PrismObject<ShadowType>>> shadows = new HashMap<>();
+        OperationResult result = parentResult.createMinorSubresult(OP_FETCH);
+        try {
+            for (var entry : identificationsByClass.entrySet()) {
+                QName objectClassName = entry.getKey();
+                Map<String, WithPrimary> identifications = entry.getValue();
+                var shadowsFound = ShadowsLocalBeans.get().shadowFinder
+                        .searchShadowsByAnyPrimaryIdentifier(ctx, objectClassName, identifications.values(), result);
+                var assigned = assign(ctx, identifications.keySet(), shadowsFound);
+                if (assigned != null) {
+                    assigned.forEach((value, list) -> shadows.put(new Key(objectClassName, value), list));
+                }
+            }
+            result.addReturn("covered", shadows.size());
+        } catch (Exception e) {
+            // Any real problem (e.g. with the repository) will be reported by the individual lookups.
+            LoggingUtils.logExceptionOnDebugLevel(LOGGER,
+                    "Couldn't look up shadows for {} objects, they will be looked up separately", e, resourceObjects.size());
+            result.recordHandledError(e);
+        } finally {
+            result.close();
+        }
+        return new PrefetchedRepoShadows(shadows);
+    }
+
+    /** Returns the shadows for each primary identifier value, or `null` if some live shadow cannot be assigned. */
+    private static @Nullable Map<String, List<PrismObject<ShadowType>>> assign(
+            @NotNull ProvisioningContext ctx,
+            @NotNull Set<String> values,
+            @NotNull List<PrismObject<ShadowType>> shadowsFound)
+            throws SchemaException, ConfigurationException {
+        Map<String, List<PrismObject<ShadowType>>> assigned = new HashMap<>();
+        values.forEach(value -> assigned.put(value, new ArrayList<>()));
+        for (PrismObject<ShadowType> shadow : shadowsFound) {
+            if (ShadowUtil.isDead(shadow)) {
+                continue; // they are ignored when selecting the live shadow anyway
+            }
+            // The adoption makes a copy, so the original shadow can be adopted again when it's used.
+            var primaryIdentifier = ctx.adoptRawRepoShadow(shadow).getPrimaryIdentifierAttribute();
+            var list = primaryIdentifier != null ?
+                    assigned.get(getKeyValue(ResourceObjectIdentifier.Primary.of(primaryIdentifier))) : null;
+            if (list == null) {
+                LOGGER.debug("Live shadow {} does not correspond to any of the {} objects found, "
+                        + "their shadows will be looked up separately", shadow, values.size());
+                return null;
+            }
+            list.add(shadow);
+        }
+        return assigned;
+    }
+
+    private static @NotNull String getKeyValue(@NotNull ResourceObjectIdentifier<?> primaryIdentifier) {
+        // This is how the primaryIdentifierValue is determined
+        return primaryIdentifier.getNormValue().toString();
+    }
+
+    /** Is the shadow for given object known? If so, it can be obtained (only once) via {@link #removeLiveShadow}. */
+    boolean covers(@NotNull WithPrimary primaryIdentification) {
+        return shadows.containsKey(Key.of(primaryIdentification));
+    }
+
+    /** Returns the live shadow for given object (if there's one). Should be called only for covered objects. */
+    @Nullable RepoShadow removeLiveShadow(@NotNull ProvisioningContext ctx, @NotNull WithPrimary primaryIdentification)
+            throws SchemaException, ConfigurationException {
+        var shadowsFound = shadows.remove(Key.of(primaryIdentification));
+        if (shadowsFound == null) {
+            throw new IllegalStateException("Shadow for " + primaryIdentification + " was not prefetched");
+        }
+        var rawRepoShadow = RawRepoShadow.selectLiveShadow(
+                shadowsFound, "by primary identifier " + primaryIdentification + " (prefetched)");
+        return rawRepoShadow != null ? ctx.adoptRawRepoShadow(rawRepoShadow) : null;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{covered=" + shadows.size() + "}";
+    }
+}
@@ -16,6 +16,7 @@ import com.evolveum.midpoint.provisioning.impl.RepoShadow;
 import com.evolveum.midpoint.schema.processor.ResourceObjectIdentification;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.prism.crypto.EncryptionException;
 import com.evolveum.midpoint.provisioning.impl.ProvisioningContext;
@@ -64,15 +65,20 @@ class ShadowAcquisition {
     /** The resource object we try to acquire shadow for. May be minimalistic in extreme cases (sync changes, emergency). */
     @NotNull private final ExistingResourceObject resourceObject;
 
+    /** Shadows looked up in advance for a batch of objects found by a search. Used instead of the initial lookup. */
+    @Nullable private final PrefetchedRepoShadows prefetchedShadows;
+
     private final ShadowsLocalBeans b = ShadowsLocalBeans.get();
 
     private ShadowAcquisition(
             @NotNull ProvisioningContext ctx,
-            @NotNull ExistingResourceObject resourceObject) throws SchemaException {
+            @NotNull ExistingResourceObject resourceObject,
+            @Nullable PrefetchedRepoShadows prefetchedShadows) throws SchemaException {
         this.ctx = ctx;
         this.primaryIdentification = resourceObject.getPrimaryIdentification();
         this.objectClass = resourceObject.getObjectClassName();
         this.resourceObject = resourceObject;
+        this.prefetchedShadows = prefetchedShadows;
     }
 
 
@@ -90,14 +96,25 @@ class ShadowAcquisition {
             @NotNull OperationResult result)
             throws SchemaException, ConfigurationException, EncryptionException {
 
-        return new ShadowAcquisition(ctx, resourceObject)
+        return acquireRepoShadow(ctx, resourceObject, null, result);
+    }
+
+    /** As {@link #acquireRepoShadow(ProvisioningContext, ExistingResourceObject, OperationResult)}, using prefetched shadows. */
+    @NotNull static RepoShadow acquireRepoShadow(
+            @NotNull ProvisioningContext ctx,
+            @NotNull ExistingResourceObject resourceObject,
+            @Nullable PrefetchedRepoShadows prefetchedShadows,
+            @NotNull OperationResult result)
+            throws SchemaException, ConfigurationException, EncryptionException {
+
+        return new ShadowAcquisition(ctx, resourceObject, prefetchedShadows)
                 .execute(result);
     }
 
     public @NotNull RepoShadow execute(OperationResult result)
             throws SchemaException, ConfigurationException, EncryptionException {
 
-        var existingLiveRepoShadow = b.shadowFinder.lookupLiveRepoShadowByPrimaryId(ctx, primaryIdentification, result);
+        var existingLiveRepoShadow = lookupLiveRepoShadow(result);
         if (existingLiveRepoShadow != null) {
             LOGGER.trace("Found live shadow object in the repository {}", existingLiveRepoShadow.shortDumpLazily());
             return existingLiveRepoShadow;
@@ -129,6 +146,15 @@ class ShadowAcquisition {
 //        }
     }
 
+    private @Nullable RepoShadow lookupLiveRepoShadow(OperationResult result)
+            throws SchemaException, ConfigurationException {
+        if (prefetchedShadows != null && prefetchedShadows.covers(primaryIdentification)) {
+            return prefetchedShadows.removeLiveShadow(ctx, primaryIdentification);
+        } else {
+            return b.shadowFinder.lookupLiveRepoShadowByPrimaryId(ctx, primaryIdentification, result);
+        }
+    }
+
 //    private @NotNull RepoShadow classifyAndFixTheShadow(RepoShadow repoShadow, OperationResult result)
 //            throws SchemaException, ObjectNotFoundException, ConfigurationException, CommunicationException,
 //            ExpressionEvaluationException, SecurityViolationException {
@@ -27,6 +27,7 @@ import com.evolveum.midpoint.provisioning.impl.resourceobjects.ResourceObjectFou
 import com.evolveum.midpoint.provisioning.impl.resourceobjects.ResourceObjectHandler;
 import com.evolveum.midpoint.provisioning.util.DefinitionsUtil;
 import com.evolveum.midpoint.provisioning.util.ProvisioningUtil;
+import com.evolveum.midpoint.repo.cache.RepositoryCache;
 import com.evolveum.midpoint.schema.*;
 import com.evolveum.midpoint.schema.internals.InternalCounters;
 import com.evolveum.midpoint.schema.internals.InternalMonitor;
@@ -151,22 +152,57 @@ class ShadowSearchLikeOperation {
         // We need to record the fetch down here. Now it is certain that we are going to fetch from resource.
         InternalMonitor.recordCount(InternalCounters.SHADOW_FETCH_OPERATION_COUNT);
 
-        ResourceObjectHandler shadowHandler = (ResourceObjectFound objectFound, OperationResult lResult) -> {
+        int shadowLookupBatchSize = ProvisioningUtil.getShadowLookupBatchSize(ctx);
+        if (shadowLookupBatchSize > 1) {
+            return executeIterativeSearchOnResourceInBatches(
+                    handler, ucfErrorReportingMethod, shadowLookupBatchSize, result);
+        }
+
+        ResourceObjectHandler shadowHandler = (ResourceObjectFound objectFound, OperationResult lResult) ->
+                handleObjectFound(new ShadowedObjectFound(objectFound), handler, ucfErrorReportingMethod, lResult);
+
+        return searchResourceObjects(shadowHandler, ucfErrorReportingMethod, result);
+    }
 
-            ShadowedObjectFound shadowedObjectFound = new ShadowedObjectFound(objectFound);
-            shadowedObjectFound.initialize(ctx.getTask(), lResult);
-            ShadowType shadowedObject = shadowedObjectFound.getResultingObject(ucfErrorReportingMethod, lResult);
+    /**
+     * Objects found on the resource are collected into batches, and their repo shadows are looked up using a single
+     * repository query for each batch. The objects are then processed (i.e. shadowed and passed to the handler)
+     * in the original order.
+     */
+    private SearchResultMetadata executeIterativeSearchOnResourceInBatches(
+            ResultHandler<ShadowType> handler,
+            FetchErrorReportingMethodType ucfErrorReportingMethod,
+            int batchSize,
+            OperationResult result)
+            throws ObjectNotFoundException, SchemaException, CommunicationException, ConfigurationException,
+            ExpressionEvaluationException, SecurityViolationException {
 
+        var batch = new ShadowLookupBatch(handler, ucfErrorReportingMethod, batchSize);
+        SearchResultMetadata metadata;
+        try {
+            metadata = searchResourceObjects(batch, ucfErrorReportingMethod, result);
+        } catch (Throwable t) {
+            // Objects found before the failure are processed, just like when not batching.
             try {
-                return handler.handle(shadowedObject.asPrismObject(), lResult);
-            } catch (Throwable t) {
-                lResult.recordException(t);
-                throw t;
-            } finally {
-                lResult.close();
+                batch.processRemaining(result);
+            } catch (Throwable t2) {
+                t.addSuppressed(t2);
             }
-        };
+            throw t;
+        }
+        try {
+            batch.processRemaining(result);
+        } catch (TunnelException e) {
+            unwrapAndThrowSearchingTunnelException(e);
+            throw new AssertionError();
+        }
+        return metadata;
+    }
 
+    private SearchResultMetadata searchResourceObjects(
+            ResourceObjectHandler shadowHandler, FetchErrorReportingMethodType ucfErrorReportingMethod, OperationResult result)
+            throws ObjectNotFoundException, SchemaException, CommunicationException, ConfigurationException,
+            ExpressionEvaluationException, SecurityViolationException {
         boolean fetchAssociations = SelectorOptions.hasToIncludePath(ShadowType.F_ASSOCIATIONS, options, true);
         try {
             return b.resourceObjectConverter.searchResourceObjects(
@@ -177,6 +213,26 @@ class ShadowSearchLikeOperation {
         }
     }
 
+    /** Shadows the object found on the resource and passes it to the handler. Closes the result. */
+    private boolean handleObjectFound(
+            ShadowedObjectFound shadowedObjectFound,
+            ResultHandler<ShadowType> handler,
+            FetchErrorReportingMethodType ucfErrorReportingMethod,
+            OperationResult lResult) {
+
+        shadowedObjectFound.initialize(ctx.getTask(), lResult);
+        ShadowType shadowedObject = shadowedObjectFound.getResultingObject(ucfErrorReportingMethod, lResult);
+
+        try {
+            return handler.handle(shadowedObject.asPrismObject(), lResult);
+        } catch (Throwable t) {
+            lResult.recordException(t);
+            throw t;
+        } finally {
+            lResult.close();
+        }
+    }
+
     private ObjectQuery createOnResourceQuery() throws SchemaException {
         if (query == null) {
             return null;
@@ -395,4 +451,85 @@ class ShadowSearchLikeOperation {
     private boolean isMaxStaleness() {
         return GetOperationOptions.isMaxStaleness(rootOptions);
     }
+
+    /**
+     * Collects objects found on the resource, and processes them when there is enough of them.
+     * See {@link #executeIterativeSearchOnResourceInBatches(ResultHandler, FetchErrorReportingMethodType, int, OperationResult)}.
+     */
+    private class ShadowLookupBatch implements ResourceObjectHandler {
+
+        @NotNull private final ResultHandler<ShadowType> handler;
+        @Nullable private final FetchErrorReportingMethodType ucfErrorReportingMethod;
+        private final int size;
+
+        @NotNull private final List<ResourceObjectFound> objectsFound = new ArrayList<>();
+
+        /** Set when the handler asks to stop (or fails). No more objects are processed after that. */
+        private boolean stopped;
+
+        ShadowLookupBatch(
+                @NotNull ResultHandler<ShadowType> handler,
+                @Nullable FetchErrorReportingMethodType ucfErrorReportingMethod,
+                int size) {
+            this.handler = handler;
+            this.ucfErrorReportingMethod = ucfErrorReportingMethod;
+            this.size = size;
+        }
+
+        @Override
+        public boolean handle(@NotNull ResourceObjectFound objectFound, @NotNull OperationResult result) {
+            if (stopped) {
+                return false;
+            }
+            objectsFound.add(objectFound);
+            return objectsFound.size() < size || process(result);
+        }
+
+        /** Processes objects collected so far; called when the search is over. */
+        void processRemaining(OperationResult result) {
+            if (stopped || objectsFound.isEmpty()) {
+                return;
+            }
+            // The same as the resource object search does for each object (when called from within the search).
+            RepositoryCache.enterLocalCaches(b.cacheConfigurationManager);
+            try {
+                process(result);
+            } finally {
+                RepositoryCache.exitLocalCaches();
+            }
+        }
+
+        /** Looks up shadows for the collected objects and processes the objects. Returns false if we should stop. */
+        private boolean process(OperationResult result) {
+            var batch = List.copyOf(objectsFound);
+            objectsFound.clear();
+
+            var prefetchedShadows = PrefetchedRepoShadows.fetch(
+                    ctx,
+                    batch.stream().map(ResourceObjectFound::getResourceObject).toList(),
+                    result);
+
+            for (ResourceObjectFound objectFound : batch) {
+                // The original result for the object is closed by now, so we need a new one.
+                OperationResult lResult = result.createMinorSubresult(ShadowsFacade.OP_HANDLE_OBJECT);
+                boolean cont;
+                try {
+                    cont = handleObjectFound(
+                            new ShadowedObjectFound(objectFound, prefetchedShadows), handler, ucfErrorReportingMethod, lResult);
+                } catch (Throwable t) {
+                    stopped = true;
+                    if (!lResult.isClosed()) {
+                        lResult.recordException(t);
+                        lResult.close();
+                    }
+                    throw t;
+                }
+                if (!cont) {
+                    stopped = true;
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
@@ -45,6 +45,9 @@ public class ShadowedObjectFound extends AbstractLazilyInitializableShadowedEnti
     /** The resource object that corresponds to this instance. */
     @NotNull private final ResourceObjectFound resourceObjectFound;
 
+    /** Repo shadows looked up for a batch of objects found, if the search is done in batches. */
+    @Nullable private final PrefetchedRepoShadows prefetchedShadows;
+
 //    /**
 //     * The object after "shadowization". Fulfills the following:
 //     *
@@ -63,8 +66,14 @@ public class ShadowedObjectFound extends AbstractLazilyInitializableShadowedEnti
 //     */
 
     ShadowedObjectFound(@NotNull ResourceObjectFound resourceObjectFound) {
+        this(resourceObjectFound, null);
+    }
+
+    ShadowedObjectFound(
+            @NotNull ResourceObjectFound resourceObjectFound, @Nullable PrefetchedRepoShadows prefetchedShadows) {
         super(resourceObjectFound);
         this.resourceObjectFound = resourceObjectFound;
+        this.prefetchedShadows = prefetchedShadows;
     }
 
     @Override
@@ -76,7 +85,7 @@ public class ShadowedObjectFound extends AbstractLazilyInitializableShadowedEnti
     @Override
     protected RepoShadow acquireOrLookupRepoShadow(OperationResult result)
             throws SchemaException, ConfigurationException, EncryptionException {
-        return acquireRepoShadow(resourceObjectFound.getResourceObject(), result);
+        return acquireRepoShadow(resourceObjectFound.getResourceObject(), prefetchedShadows, result);
     }
 
     @Override
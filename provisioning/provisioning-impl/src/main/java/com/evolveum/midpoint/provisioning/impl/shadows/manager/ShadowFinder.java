@@ -13,6 +13,7 @@ import static com.evolveum.midpoint.util.DebugUtil.lazy;
 
 import java.util.Collection;
 import java.util.List;
+import javax.xml.namespace.QName;
 
 import com.evolveum.midpoint.schema.util.RawRepoShadow;
 
@@ -314,6 +315,38 @@ public class ShadowFinder {
         return searchRepoShadows(query, null, result);
     }
 
+    /**
+     * Search shadows having any of given primary identifiers (OR clause is created). May return dead ones.
+     *
+     * This is a batch variant of {@link #lookupLiveRepoShadowByPrimaryId(ProvisioningContext, WithPrimary, OperationResult)}
+     * used when objects found on the resource are processed in batches. All identifications must have the given object class.
+     * Like the single-object lookup, the search goes directly to the repository.
+     */
+    public @NotNull List<PrismObject<ShadowType>> searchShadowsByAnyPrimaryIdentifier(
+            @NotNull ProvisioningContext ctx,
+            @NotNull QName objectClassName,
+            @NotNull Collection<? extends WithPrimary> primaryIdentifications,
+            @NotNull OperationResult result)
+            throws SchemaException {
+
+        // this is guaranteed; but double checking to avoid massive searches
+        Preconditions.checkArgument(!primaryIdentifications.isEmpty());
+
+        S_FilterEntry q = prismContext.queryFor(ShadowType.class)
+                .block();
+        for (WithPrimary primaryIdentification : primaryIdentifications) {
+            q = q.filter(primaryIdentification.getPrimaryIdentifier().normalizationAwareEqFilter()).or();
+        }
+        ObjectQuery query = q.none().endBlock()
+                .and().item(ShadowType.F_OBJECT_CLASS).eq(objectClassName)
+                .and().item(ShadowType.F_RESOURCE_REF).ref(ctx.getResourceOid())
+                .build();
+        LOGGER.trace("Searching for shadows by {} primary identifiers using query:\n{}",
+                primaryIdentifications.size(), query.debugDumpLazily(1));
+
+        return searchRepoShadows(query, zeroStalenessOptions(), result); // no caching!
+    }
+
     private void checkConsistency(RepoShadow shadow) {
         ProvisioningUtil.checkShadowActivationConsistency(shadow);
     }
@@ -323,6 +323,13 @@ public class ProvisioningUtil {
         return period != null ? period : DEFAULT_DEAD_SHADOW_RETENTION_PERIOD_DURATION;
     }
 
+    /** Returns the configured batch size for repo shadow lookups during searches; 1 means no batching. */
+    public static int getShadowLookupBatchSize(ProvisioningContext ctx) {
+        ResourceConsistencyType consistency = ctx.getResource().getConsistency();
+        Integer size = consistency != null ? consistency.getShadowLookupBatchSize() : null;
+        return size != null ? Math.max(size, 1) : 1;
+    }
+
     public static int getMaxRetryAttempts(ProvisioningContext ctx) {
         ResourceConsistencyType consistency = ctx.getResource().getConsistency();
         if (consistency == null) {
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.provisioning.impl.misc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static com.evolveum.midpoint.test.util.MidPointTestConstants.TEST_RESOURCES_DIR;
+
+import java.io.File;
+import java.util.List;
+
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.provisioning.impl.AbstractProvisioningIntegrationTest;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.constants.SchemaConstants;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.Resource;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.test.DummyTestResource;
+import com.evolveum.midpoint.test.asserter.RepoOpAsserter;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowKindType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
+
+/**
+ * Tests that repo shadows for objects found by a resource search are looked up in batches
+ * (`shadowLookupBatchSize` is set on the resource), and that the shadows are the same as without batching.
+ */
+@ContextConfiguration(locations = "classpath:ctx-provisioning-test-main.xml")
+@DirtiesContext
+public class TestShadowLookupBatching extends AbstractProvisioningIntegrationTest {
+
+    private static final File TEST_DIR = new File(TEST_RESOURCES_DIR, "misc/shadow-lookup");
+
+    private static final DummyTestResource RESOURCE_DUMMY = new DummyTestResource(
+            TEST_DIR, "resource-dummy.xml", "3c1b8d4e-5a0f-4b8e-9f64-2d7e1a9c6b53", "shadow-lookup");
+
+    /** As set in the resource. */
+    private static final int BATCH_SIZE = 3;
+
+    private static final int INITIAL_ACCOUNTS = 7;
+    private static final int ADDED_ACCOUNTS = 2;
+
+    private List<String> shadowOids;
+
+    @Override
+    public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+        super.initSystem(initTask, initResult);
+
+        RESOURCE_DUMMY.initAndTest(this, initTask, initResult);
+        for (int i = 0; i < INITIAL_ACCOUNTS; i++) {
+            RESOURCE_DUMMY.addAccount(accountName(i));
+        }
+    }
+
+    /** Shadows are created for all the objects found, each of them once. */
+    @Test
+    public void test100SearchCreatesShadows() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        when();
+        List<PrismObject<ShadowType>> objects = searchAccounts(task, result);
+
+        then();
+        assertSuccess(result);
+        assertAccounts(objects, INITIAL_ACCOUNTS);
+        shadowOids = getOids(objects);
+    }
+
+    /** Existing shadows are looked up by a single repository search per batch, not by a search per object. */
+    @Test
+    public void test110SearchLooksUpShadowsInBatches() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given();
+        repositoryService.getPerformanceMonitor().startThreadLocalPerformanceInformationCollection();
+
+        when();
+        List<PrismObject<ShadowType>> objects = searchAccounts(task, result);
+
+        then();
+        assertSuccess(result);
+        createRepoOpAsserter()
+                .display()
+                .assertOp(getSearchObjectsOpName(), 1, batches(INITIAL_ACCOUNTS));
+        repositoryService.getPerformanceMonitor().stopThreadLocalPerformanceInformationCollection();
+
+        and("the existing shadows are used");
+        assertAccounts(objects, INITIAL_ACCOUNTS);
+        assertThat(getOids(objects)).as("shadow OIDs").isEqualTo(shadowOids);
+    }
+
+    /** Batches mixing objects with and without shadows: the missing shadows are created, the existing ones are used. */
+    @Test
+    public void test120SearchWithNewAndExistingShadows() throws Exception {
+        Task task = getTestTask();
+        OperationResult result = task.getResult();
+
+        given("new accounts are added on the resource");
+        for (int i = INITIAL_ACCOUNTS; i < INITIAL_ACCOUNTS + ADDED_ACCOUNTS; i++) {
+            RESOURCE_DUMMY.addAccount(accountName(i));
+        }
+
+        when();
+        List<PrismObject<ShadowType>> objects = searchAccounts(task, result);
+
+        then();
+        assertSuccess(result);
+        assertAccounts(objects, INITIAL_ACCOUNTS + ADDED_ACCOUNTS);
+        assertThat(getOids(objects))
+                .as("shadow OIDs")
+                .startsWith(shadowOids.toArray(new String[0]));
+    }
+
+    private List<PrismObject<ShadowType>> searchAccounts(Task task, OperationResult result) throws Exception {
+        ObjectQuery query = Resource.of(RESOURCE_DUMMY.get())
+                .queryFor(ShadowKindType.ACCOUNT, SchemaConstants.INTENT_DEFAULT)
+                .build();
+        List<PrismObject<ShadowType>> objects = provisioningService.searchObjects(ShadowType.class, query, null, task, result);
+        // The dummy resource does not guarantee any order.
+        return objects.stream()
+                .sorted((o1, o2) -> o1.getName().getOrig().compareTo(o2.getName().getOrig()))
+                .toList();
+    }
+
+    /** Checks the objects found as well as the shadows in the repository: there must be exactly one per account. */
+    private void assertAccounts(List<PrismObject<ShadowType>> objects, int expected) throws Exception {
+        assertThat(objects).as("objects found").hasSize(expected);
+        for (int i = 0; i < expected; i++) {
+            assertThat(objects.get(i).getName().getOrig()).as("name of object #" + i).isEqualTo(accountName(i));
+            assertThat(objects.get(i).getOid()).as("OID of object #" + i).isNotNull();
+        }
+        ObjectQuery shadowsQuery = prismContext.queryFor(ShadowType.class)
+                .item(ShadowType.F_RESOURCE_REF).ref(RESOURCE_DUMMY.oid)
+                .build();
+        assertThat(repositoryService.countObjects(ShadowType.class, shadowsQuery, null, getTestOperationResult()))
+                .as("shadows in repository")
+                .isEqualTo(expected);
+    }
+
+    private List<String> getOids(List<PrismObject<ShadowType>> objects) {
+        return objects.stream()
+                .map(PrismObject::getOid)
+                .toList();
+    }
+
+    private RepoOpAsserter createRepoOpAsserter() {
+        return new RepoOpAsserter(
+                repositoryService.getPerformanceMonitor().getThreadLocalPerformanceInformation(), getTestNameShort());
+    }
+
+    private String getSearchObjectsOpName() {
+        return isNativeRepository()
+                ? "SqaleRepositoryService." + RepositoryService.OP_SEARCH_OBJECTS
+                : RepositoryService.OP_SEARCH_OBJECTS;
+    }
+
+    private static String accountName(int i) {
+        return String.format("account-%02d", i);
+    }
+
+    private static int batches(int objects) {
+        return (objects + BATCH_SIZE - 1) / BATCH_SIZE;
+    }
+}
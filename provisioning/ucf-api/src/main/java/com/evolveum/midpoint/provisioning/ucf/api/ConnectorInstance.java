@@ -403,6 +403,16 @@ public interface ConnectorInstance {
     @NotNull CapabilityCollectionType getNativeCapabilities(OperationResult result)
             throws CommunicationException, GenericFrameworkException, ConfigurationException;
 
+    /**
+     * Returns the pipeline that can be used to execute independent operations (add, modify, delete) on the resource
+     * concurrently, or null if this connector instance does not support that. See {@link UcfOperationPipeline}.
+     *
+     * The pipeline belongs to the connector instance; it is replaced on re-configuration and shut down on dispose.
+     */
+    default @Nullable UcfOperationPipeline getOperationPipeline() {
+        return null;
+    }
+
     /** Get description usable e.g. in exception messages. */
     default String getHumanReadableDescription() {
         return toString();
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.provisioning.ucf.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Executes independent connector operations (typically add, modify, delete) on a single resource concurrently,
+ * so the caller does not wait for each round-trip to the resource in turn. The results are provided as futures.
+ *
+ * At most {@link #getMaxInFlight()} operations are executed at once; this limit is usually derived from the size
+ * of the connector instance pool, so that each running operation gets its own pooled connector instance.
+ * Other operations wait in the queue.
+ *
+ * Each operation gets its own child of the operation result provided when submitting it. That child must not be touched
+ * by the caller until the operation completes; in particular, the caller must wait for the futures before closing
+ * (or computing the status of) the parent result.
+ *
+ * Statistics: the current and maximal queue depth, the number of operations in flight, and the histogram of operation
+ * latencies (measured from submission to completion, so including the time spent in the queue); see {@link #getStatistics()}.
+ */
+public class UcfOperationPipeline {
+
+    private static final Trace LOGGER = TraceManager.getTrace(UcfOperationPipeline.class);
+
+    private static final String OP_EXECUTE_PIPELINED = UcfOperationPipeline.class.getName() + ".executePipelined";
+
+    /** Upper bounds of the latency histogram buckets (the last bucket is unbounded). */
+    public static final long[] LATENCY_BUCKETS_MILLIS = { 10, 50, 100, 500, 1000, 5000 };
+
+    /** Human-readable name, e.g. the resource name. Used also for thread names. */
+    @NotNull private final String name;
+
+    private final int maxInFlight;
+
+    @NotNull private final ThreadPoolExecutor executor;
+
+    @NotNull private final AtomicInteger inFlight = new AtomicInteger();
+    @NotNull private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    @NotNull private final AtomicLong completed = new AtomicLong();
+    @NotNull private final AtomicLong failed = new AtomicLong();
+    @NotNull private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS_MILLIS.length + 1);
+
+    public UcfOperationPipeline(@NotNull String name, int maxInFlight) {
+        this.name = name;
+        this.maxInFlight = Math.max(maxInFlight, 1);
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                this.maxInFlight, this.maxInFlight, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "midpoint-ucf-pipeline-" + name + "-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** A connector operation to be executed in the pipeline. */
+    @FunctionalInterface
+    public interface PipelinedOperation<T> {
+        T execute(@NotNull OperationResult result) throws Exception;
+    }
+
+    /**
+     * Submits the operation for execution. The returned future completes with the value returned by the operation,
+     * or exceptionally with the exception thrown by it.
+     *
+     * @param parentResult Parent of the result given to the operation; see the class javadoc for the constraints.
+     */
+    public <T> @NotNull CompletableFuture<T> submit(
+            @NotNull PipelinedOperation<T> operation, @NotNull OperationResult parentResult) {
+        OperationResult result = parentResult.subresult(OP_EXECUTE_PIPELINED)
+                .addParam("pipeline", name)
+                .build();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long submitted = System.nanoTime();
+        try {
+            executor.execute(() -> execute(operation, result, future, submitted));
+        } catch (RejectedExecutionException e) {
+            result.recordFatalError("Connector operation pipeline is shut down", e);
+            result.close();
+            future.completeExceptionally(e);
+            return future;
+        }
+        maxQueueDepth.accumulateAndGet(executor.getQueue().size(), Math::max);
+        return future;
+    }
+
+    private <T> void execute(
+            PipelinedOperation<T> operation, OperationResult result, CompletableFuture<T> future, long submitted) {
+        inFlight.incrementAndGet();
+        try {
+            T value = operation.execute(result);
+            result.computeStatusIfUnknown();
+            completed.incrementAndGet();
+            future.complete(value);
+        } catch (Throwable t) {
+            LOGGER.debug("Pipelined operation in {} failed: {}", name, t.getMessage(), t);
+            result.recordException(t);
+            failed.incrementAndGet();
+            future.completeExceptionally(t);
+        } finally {
+            result.close();
+            inFlight.decrementAndGet();
+            recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitted));
+        }
+    }
+
+    private void recordLatency(long millis) {
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS_MILLIS.length && millis >= LATENCY_BUCKETS_MILLIS[bucket]) {
+            bucket++;
+        }
+        latencyHistogram.incrementAndGet(bucket);
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public @NotNull Statistics getStatistics() {
+        List<Long> histogram = new ArrayList<>();
+        for (int i = 0; i < latencyHistogram.length(); i++) {
+            histogram.add(latencyHistogram.get(i));
+        }
+        return new Statistics(
+                executor.getQueue().size(), maxQueueDepth.get(), inFlight.get(), completed.get(), failed.get(), histogram);
+    }
+
+    /**
+     * Stops accepting new operations. Operations already submitted are executed; this method does not wait for them.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" + name + ", maxInFlight=" + maxInFlight + ", " + getStatistics() + "}";
+    }
+
+    /**
+     * Snapshot of pipeline statistics.
+     *
+     * @param latencyHistogram Number of operations for each bucket defined by {@link #LATENCY_BUCKETS_MILLIS}
+     * (plus the last one for longer operations).
+     */
+    public record Statistics(
+            int queueDepth, int maxQueueDepth, int inFlight, long completed, long failed, @NotNull List<Long> latencyHistogram) {
+    }
+}
@@ -110,6 +110,11 @@ public class ConnectorFactoryConnIdImpl implements ConnectorFactory {
             CONNECTOR_SCHEMA_LEGACY_SCHEMA_XML_ELEMENT_NAME);
     public static final QName CONNECTOR_SCHEMA_LEGACY_SCHEMA_TYPE = DOMUtil.XSD_BOOLEAN;
 
+    public static final String CONNECTOR_SCHEMA_MAX_CONCURRENT_OPERATIONS_XML_ELEMENT_NAME = "maxConcurrentOperations";
+    public static final QName CONNECTOR_SCHEMA_MAX_CONCURRENT_OPERATIONS_ELEMENT = new QName(SchemaConstants.NS_ICF_CONFIGURATION,
+            CONNECTOR_SCHEMA_MAX_CONCURRENT_OPERATIONS_XML_ELEMENT_NAME);
+    public static final QName CONNECTOR_SCHEMA_MAX_CONCURRENT_OPERATIONS_TYPE = DOMUtil.XSD_INT;
+
     public static final String CONNECTOR_SCHEMA_TIMEOUTS_XML_ELEMENT_NAME = "timeouts";
     public static final QName CONNECTOR_SCHEMA_TIMEOUTS_ELEMENT = new QName(SchemaConstants.NS_ICF_CONFIGURATION,
             CONNECTOR_SCHEMA_TIMEOUTS_XML_ELEMENT_NAME);
@@ -448,6 +453,9 @@ public class ConnectorFactoryConnIdImpl implements ConnectorFactory {
         configurationContainerDef.mutator().createPropertyDefinition(
                 ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_LEGACY_SCHEMA_ELEMENT,
                 ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_LEGACY_SCHEMA_TYPE, 0, 1);
+        configurationContainerDef.mutator().createPropertyDefinition(
+                ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_MAX_CONCURRENT_OPERATIONS_ELEMENT,
+                ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_MAX_CONCURRENT_OPERATIONS_TYPE, 0, 1);
 
         configurationContainerDef.mutator().createContainerDefinition(
                 SchemaConstants.ICF_CONFIGURATION_PROPERTIES_NAME,
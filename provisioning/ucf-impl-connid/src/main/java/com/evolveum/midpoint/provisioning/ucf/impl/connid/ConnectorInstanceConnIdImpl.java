@@ -135,6 +135,15 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
     private Boolean configuredLegacySchema = null;
     private Boolean detectedLegacySchema = null;
 
+    /** Limits concurrent ConnId operations on the resource, see `maxConcurrentOperations` configuration property. */
+    @NotNull private final ConnectorOperationLimiter operationLimiter = new ConnectorOperationLimiter();
+
+    /** Value of `maxConcurrentOperations` configuration property, if set. */
+    private Integer maxConcurrentOperations;
+
+    /** Created on first use; replaced on re-configuration. See {@link #getOperationPipeline()}. */
+    private UcfOperationPipeline operationPipeline;
+
     private String description;
     private String instanceName; // resource name
 
@@ -238,6 +247,16 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
             }
             LOGGER.trace("Legacy schema (config): {}", configuredLegacySchema);
 
+            PrismProperty<Integer> maxConcurrentOperationsProperty = configurationCloned.findProperty(new ItemName(
+                    SchemaConstants.NS_ICF_CONFIGURATION,
+                    ConnectorFactoryConnIdImpl.CONNECTOR_SCHEMA_MAX_CONCURRENT_OPERATIONS_XML_ELEMENT_NAME));
+            maxConcurrentOperations =
+                    maxConcurrentOperationsProperty != null ? maxConcurrentOperationsProperty.getRealValue() : null;
+            operationLimiter.setLimit(maxConcurrentOperations);
+            LOGGER.trace("Max concurrent operations (config): {}", maxConcurrentOperations);
+
+            shutdownOperationPipeline(); // the pool configuration may have changed
+
         } catch (Throwable ex) {
             Throwable midpointEx = processConnIdException(ex, this, result);
             result.computeStatus("Configuration operation failed");
@@ -539,6 +558,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
 
         InternalMonitor.recordConnectorOperation("getObject");
         ConnIdOperation operation = recordIcfOperationStart(reporter, ProvisioningOperation.ICF_GET, objectDefinition, uid);
+        ConnectorOperationLimiter.Permit permit = operationLimiter.acquire();
 
         LOGGER.trace("Fetching connector object ObjectClass={}, UID={}, operation id={}, options={}",
                 icfObjectClass, uid, getIdentifier(operation), ConnIdUtil.dumpOptionsLazily(options));
@@ -578,6 +598,8 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
                 throw new SystemException(midpointEx.getClass().getName()+": "+midpointEx.getMessage(), midpointEx);
             }
 
+        } finally {
+            permit.release();
         }
 
         return co;
@@ -778,6 +800,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
         InternalMonitor.recordConnectorOperation("create");
         InternalMonitor.recordConnectorModification("create");
         ConnIdOperation operation = recordIcfOperationStart(ctx, ProvisioningOperation.ICF_CREATE, objDef, null);
+        ConnectorOperationLimiter.Permit permit = operationLimiter.acquire();
 
         Uid uid;
         try {
@@ -816,6 +839,8 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
             } else {
                 throw new SystemException("Got unexpected exception: " + ex.getClass().getName() + ": " + ex.getMessage(), ex);
             }
+        } finally {
+            permit.release();
         }
 
         if (uid == null || uid.getUidValue() == null || uid.getUidValue().isEmpty()) {
@@ -979,6 +1004,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
             InternalMonitor.recordConnectorOperation("update");
             InternalMonitor.recordConnectorModification("update");
             ConnIdOperation operation = recordIcfOperationStart(reporter, ProvisioningOperation.ICF_UPDATE, objectClassDef, uid);
+            ConnectorOperationLimiter.Permit permit = operationLimiter.acquire();
 
             LOGGER.trace("Invoking ICF update(), objectclass={}, uid={}, operation id={}, attributes delta: {}",
                     objClass, uid, getIdentifier(operation), lazy(() -> dumpAttributesDelta(attributesDelta)));
@@ -1019,6 +1045,8 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
                 } else {
                     throw new SystemException("Got unexpected exception: " + ex.getClass().getName() + ": " + ex.getMessage(), ex);
                 }
+            } finally {
+                permit.release();
             }
         } else {
             knownExecutedChanges = emptySet();
@@ -1132,6 +1160,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
             InternalMonitor.recordConnectorModification("addAttributeValues");
             @Nullable ConnIdOperation operation =
                     recordIcfOperationStart(reporter, ProvisioningOperation.ICF_UPDATE, objectClassDef, uid);
+            ConnectorOperationLimiter.Permit permit = operationLimiter.acquire();
 
             LOGGER.trace(
                     "Invoking ConnId addAttributeValues(), objectclass={}, uid={}, operation id={}, attributes: {}",
@@ -1174,6 +1203,8 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
                 } else {
                     throw new SystemException("Got unexpected exception: " + ex.getClass().getName() + ": " + ex.getMessage(), ex);
                 }
+            } finally {
+                permit.release();
             }
         }
 
@@ -1191,6 +1222,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
             InternalMonitor.recordConnectorModification("update");
             @Nullable ConnIdOperation operation =
                     recordIcfOperationStart(reporter, ProvisioningOperation.ICF_UPDATE, objectClassDef, uid);
+            ConnectorOperationLimiter.Permit permit = operationLimiter.acquire();
 
             LOGGER.trace("Invoking ConnId update(), objectclass={}, uid={}, operation id={}, attributes: {}",
                     objClass, uid, getIdentifier(operation), lazy(() -> dumpAttributes(attributesToUpdate)));
@@ -1232,6 +1264,8 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
                 } else {
                     throw new SystemException("Got unexpected exception: " + ex.getClass().getName() + ": " + ex.getMessage(), ex);
                 }
+            } finally {
+                permit.release();
             }
         }
 
@@ -1250,6 +1284,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
             InternalMonitor.recordConnectorModification("removeAttributeValues");
             @Nullable ConnIdOperation operation =
                     recordIcfOperationStart(reporter, ProvisioningOperation.ICF_UPDATE, objectClassDef, uid);
+            ConnectorOperationLimiter.Permit permit = operationLimiter.acquire();
 
             LOGGER.trace(
                     "Invoking ConnId removeAttributeValues(), objectclass={}, uid={}, operation id={}, attributes: {}",
@@ -1290,6 +1325,8 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
                 } else {
                     throw new SystemException("Got unexpected exception: " + ex.getClass().getName() + ": " + ex.getMessage(), ex);
                 }
+            } finally {
+                permit.release();
             }
         }
         result.computeStatus();
@@ -1412,6 +1449,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
             InternalMonitor.recordConnectorOperation("delete");
             InternalMonitor.recordConnectorModification("delete");
             ConnIdOperation operation = recordIcfOperationStart(ctx, ProvisioningOperation.ICF_DELETE, objectDefinition, uid);
+            ConnectorOperationLimiter.Permit permit = operationLimiter.acquire();
 
             OperationResult icfResult = result.createSubresult(ConnectorFacade.class.getName() + ".delete");
             icfResult.addArbitraryObjectAsParam("uid", uid);
@@ -1447,6 +1485,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
                     throw new SystemException("Got unexpected exception: " + ex.getClass().getName() + ": " + ex.getMessage(), ex);
                 }
             } finally {
+                permit.release();
                 icfResult.close();
             }
         } catch (Throwable t) {
@@ -1480,6 +1519,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
         SyncToken syncToken;
         InternalMonitor.recordConnectorOperation("getLatestSyncToken");
         ConnIdOperation operation = recordIcfOperationStart(ctx, ProvisioningOperation.ICF_GET_LATEST_SYNC_TOKEN, objectDefinition);
+        ConnectorOperationLimiter.Permit permit = operationLimiter.acquire();
         LOGGER.trace("Invoking ConnId getLatestSyncToken operation: {}", operation);
         try {
             syncToken = connIdConnectorFacade.getLatestSyncToken(icfObjectClass);
@@ -1503,6 +1543,8 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
             } else {
                 throw new SystemException("Got unexpected exception: " + ex.getClass().getName() + ": " + ex.getMessage(), ex);
             }
+        } finally {
+            permit.release();
         }
 
         if (syncToken != null) {
@@ -1568,6 +1610,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
 
                 InternalMonitor.recordConnectorOperation("sync");
                 ConnIdOperation operation = recordIcfOperationStart(ctx, ProvisioningOperation.ICF_SYNC, objectDefinition);
+                ConnectorOperationLimiter.Permit permit = operationLimiter.acquire();
 
                 /*
                  * We assume that the only way how changes are _not_ fetched is that we explicitly tell ConnId to stop
@@ -1586,6 +1629,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
                     }
 
                     recordIcfOperationSuspend(ctx, operation);
+                    permit.suspend();
                     LOGGER.trace("Received sync delta: {}", syncDelta);
                     OperationResult handleResult;
                     // We can reasonably assume that this handler is NOT called in concurrent threads.
@@ -1627,6 +1671,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
                         handleResult.computeStatusIfUnknown();
                         handleResult.cleanup();
                         connIdResult.summarize(true);
+                        permit.resume();
                         recordIcfOperationResume(ctx, operation);
                     }
                 };
@@ -1663,6 +1708,8 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
                     } else {
                         throw new SystemException("Got unexpected exception: " + ex.getClass().getName() + ": " + ex.getMessage(), ex);
                     }
+                } finally {
+                    permit.release();
                 }
                 if (!canRun(ctx)) {
                     result.recordStatus(OperationResultStatus.SUCCESS, "Interrupted by task suspension");
@@ -1847,6 +1894,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
 
         InternalMonitor.recordConnectorOperation("search");
         ConnIdOperation operation = recordIcfOperationStart(ctx, ProvisioningOperation.ICF_SEARCH, objectDefinition);
+        ConnectorOperationLimiter.Permit permit = operationLimiter.acquire();
 
         try {
 
@@ -1906,6 +1954,8 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
             } else {
                 throw new SystemException("Got unexpected exception: " + ex.getClass().getName() + ": " + ex.getMessage(), ex);
             }
+        } finally {
+            permit.release();
         }
 
         if (result.isUnknown()) {
@@ -2018,6 +2068,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
         icfResult.addContext("connector", connIdConnectorFacade.getClass());
 
         ConnIdOperation operation = recordIcfOperationStart(reporter, ProvisioningOperation.ICF_SCRIPT, null);
+        ConnectorOperationLimiter.Permit permit = operationLimiter.acquire();
 
         Object output = null;
 
@@ -2072,6 +2123,8 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
                 icfResult.setStatus(OperationResultStatus.PARTIAL_ERROR);
                 parentResult.computeStatus();
             }
+        } finally {
+            permit.release();
         }
 
         return output;
@@ -2105,6 +2158,7 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
 
     @Override
     public void dispose() {
+        shutdownOperationPipeline();
         if (connIdConnectorFacade != null) {
             LOGGER.debug("Disposing ConnId ConnectorFacade for instance: {} (dispose explicitly invoked on ConnectorInstance)", instanceName);
             connIdConnectorFacade.dispose();
@@ -2112,6 +2166,42 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
         }
     }
 
+    /**
+     * The number of operations in flight is the size of the connector pool (each operation needs its own connector
+     * instance), further limited by `maxConcurrentOperations`, if set. Connectors that are not pooled get a new connector
+     * instance for each operation, so the `maxConcurrentOperations` (if set) is the only limit for them; or, if not set,
+     * the default size of the pool is used.
+     */
+    @Override
+    public synchronized @NotNull UcfOperationPipeline getOperationPipeline() {
+        if (operationPipeline == null) {
+            int maxInFlight = getPipelineMaxInFlight();
+            LOGGER.debug("Creating operation pipeline for {} with max {} operation(s) in flight", instanceName, maxInFlight);
+            operationPipeline = new UcfOperationPipeline(String.valueOf(instanceName), maxInFlight);
+        }
+        return operationPipeline;
+    }
+
+    private int getPipelineMaxInFlight() {
+        ObjectPoolConfiguration poolConfiguration = apiConfig != null ? apiConfig.getConnectorPoolConfiguration() : null;
+        int maxInFlight = poolConfiguration != null ? poolConfiguration.getMaxObjects() : new ObjectPoolConfiguration().getMaxObjects();
+        if (maxInFlight <= 0) {
+            maxInFlight = new ObjectPoolConfiguration().getMaxObjects(); // 0 means "unlimited" for the pool
+        }
+        if (maxConcurrentOperations != null && maxConcurrentOperations > 0) {
+            maxInFlight = Math.min(maxInFlight, maxConcurrentOperations);
+        }
+        return maxInFlight;
+    }
+
+    private synchronized void shutdownOperationPipeline() {
+        if (operationPipeline != null) {
+            LOGGER.debug("Shutting down operation pipeline: {}", operationPipeline);
+            operationPipeline.shutdown();
+            operationPipeline = null;
+        }
+    }
+
     @Override
     public @NotNull CapabilityCollectionType getNativeCapabilities(OperationResult result)
             throws CommunicationException, ConfigurationException, GenericFrameworkException {
@@ -2141,6 +2231,11 @@ public class ConnectorInstanceConnIdImpl implements ConnectorInstance, Connector
         return recordIcfOperationStart(reporter, operation, objectDefinition, null);
     }
 
+    /** Waits until a ConnId operation can be executed, see {@link ConnectorOperationLimiter}. */
+    ConnectorOperationLimiter.Permit acquireOperationPermit() {
+        return operationLimiter.acquire();
+    }
+
     void recordIcfOperationResume(UcfExecutionContext reporter, ConnIdOperation operation) {
         if (reporter != null) {
             reporter.recordIcfOperationResume(operation);
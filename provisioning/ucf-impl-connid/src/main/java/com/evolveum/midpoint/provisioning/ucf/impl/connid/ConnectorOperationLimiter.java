@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.provisioning.ucf.impl.connid;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Limits the number of ConnId operations executed concurrently by a connector instance (i.e. on a resource),
+ * see `maxConcurrentOperations` connector configuration property.
+ *
+ * Each operation obtains a {@link Permit} by {@link #acquire()} and releases it in `finally` block around the operation.
+ * Search and sync operations {@link Permit#suspend()} the permit while the results are being processed by midPoint
+ * and {@link Permit#resume()} it afterwards. The permit is not bound to a thread, so this works also if the results
+ * are handled by a different thread.
+ *
+ * Limit can be changed at any time (on reconfiguration), operations running at that moment are not affected.
+ *
+ * Waiting uses {@link ReentrantLock}, so it does not pin carrier threads when running on virtual threads.
+ */
+class ConnectorOperationLimiter {
+
+    private static final Trace LOGGER = TraceManager.getTrace(ConnectorOperationLimiter.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+
+    /** Maximum number of concurrent operations, 0 or less means no limit. Guarded by {@link #lock}. */
+    private int limit;
+
+    /** Number of held permits. Guarded by {@link #lock}. */
+    private int active;
+
+    void setLimit(Integer limit) {
+        lock.lock();
+        try {
+            this.limit = limit != null ? limit : 0;
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the operation can be started and returns its permit.
+     *
+     * Waiting is not interruptible, otherwise the limit could be exceeded by interrupted threads.
+     * The interrupt flag is preserved for the operation.
+     */
+    Permit acquire() {
+        Permit permit = new Permit();
+        permit.resume();
+        return permit;
+    }
+
+    @VisibleForTesting
+    int getActive() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void acquireSlot() {
+        lock.lock();
+        try {
+            while (limit > 0 && active >= limit) {
+                LOGGER.trace("Waiting for connector operation permit, limit {}", limit);
+                permitReleased.awaitUninterruptibly();
+            }
+            active++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            active--;
+            permitReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Permit of a single operation. All methods are idempotent, so the permit can be safely released in `finally`. */
+    class Permit implements AutoCloseable {
+
+        /** Whether this permit occupies a slot. Guarded by {@link #lock}. */
+        private boolean held;
+
+        /** Gives the slot up temporarily, e.g. while the search results are being processed. */
+        void suspend() {
+            release();
+        }
+
+        /** Takes the slot again after {@link #suspend()}, waits if necessary. */
+        void resume() {
+            lock.lock();
+            try {
+                if (held) {
+                    return;
+                }
+                acquireSlot();
+                held = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** Releases the slot, if held. */
+        void release() {
+            lock.lock();
+            try {
+                if (!held) {
+                    return;
+                }
+                held = false;
+                releaseSlot();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            release();
+        }
+    }
+}
@@ -220,6 +220,7 @@ class SearchExecutor {
         SearchResult connIdSearchResult;
         InternalMonitor.recordConnectorOperation("search");
         ConnIdOperation operation = recordIcfOperationStart();
+        ConnectorOperationLimiter.Permit permit = connectorInstance.acquireOperationPermit();
 
         try {
             LOGGER.trace("Executing ConnId search operation: {}", operation);
@@ -227,7 +228,7 @@ class SearchExecutor {
                     .search(
                             icfObjectClass,
                             connIdFilter,
-                            new SearchResultsHandler(operation, result),
+                            new SearchResultsHandler(operation, permit, result),
                             connIdOptions);
             recordIcfOperationEnd(operation, null);
 
@@ -244,6 +245,7 @@ class SearchExecutor {
             throwProperException(midpointEx, ex);
             throw new AssertionError("should not get here");
         } finally {
+            permit.release();
             result.computeStatusIfUnknown();
         }
         return connIdSearchResult;
@@ -323,10 +325,13 @@ class SearchExecutor {
     private class SearchResultsHandler implements ResultsHandler {
 
         @NotNull private final ConnIdOperation operation;
+        @NotNull private final ConnectorOperationLimiter.Permit permit;
         private final OperationResult result;
 
-        SearchResultsHandler(@NotNull ConnIdOperation operation, OperationResult result) {
+        SearchResultsHandler(@NotNull ConnIdOperation operation, @NotNull ConnectorOperationLimiter.Permit permit,
+                OperationResult result) {
             this.operation = operation;
+            this.permit = permit;
             this.result = result;
         }
 
@@ -335,6 +340,7 @@ class SearchExecutor {
             Validate.notNull(connectorObject, "null connector object"); // todo apply error reporting method?
 
             recordIcfOperationSuspend(operation);
+            permit.suspend();
             try {
                 int number = objectsFetched.getAndIncrement(); // The numbering starts at 0
                 if (isNoConnectorPaging()) {
@@ -358,6 +364,7 @@ class SearchExecutor {
             } catch (SchemaException e) {
                 throw new IntermediateException(e);
             } finally {
+                permit.resume();
                 recordIcfOperationResume(operation);
             }
         }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.provisioning.ucf.impl.connid;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Tests {@link ConnectorOperationLimiter} without a connector, operations are simulated the same way
+ * as in {@link ConnectorInstanceConnIdImpl}.
+ */
+public class TestConnectorOperationLimiter extends AbstractUnitTest {
+
+    @Test
+    public void test100LimitIsNotExceeded() throws Exception {
+        ConnectorOperationLimiter limiter = new ConnectorOperationLimiter();
+        limiter.setLimit(3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(executor.submit(() -> {
+                ConnectorOperationLimiter.Permit permit = limiter.acquire();
+                try {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(2);
+                    running.decrementAndGet();
+                } finally {
+                    permit.release();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(maxRunning.get()).isEqualTo(3);
+        assertThat(limiter.getActive()).isZero();
+    }
+
+    @Test
+    public void test110NoLimit() {
+        ConnectorOperationLimiter limiter = new ConnectorOperationLimiter();
+        limiter.setLimit(null);
+
+        List<ConnectorOperationLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            permits.add(limiter.acquire());
+        }
+        assertThat(limiter.getActive()).isEqualTo(100);
+
+        permits.forEach(ConnectorOperationLimiter.Permit::release);
+        assertThat(limiter.getActive()).isZero();
+    }
+
+    @Test
+    public void test200PermitIsReleasedOnException() {
+        ConnectorOperationLimiter limiter = new ConnectorOperationLimiter();
+        limiter.setLimit(1);
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> {
+                ConnectorOperationLimiter.Permit permit = limiter.acquire();
+                try {
+                    throw new IllegalStateException("operation failed");
+                } finally {
+                    permit.release();
+                }
+            }).isInstanceOf(IllegalStateException.class);
+            // with a leaked permit, the next acquire would wait forever
+            assertThat(limiter.getActive()).isZero();
+        }
+    }
+
+    @Test
+    public void test210ReleaseIsIdempotent() {
+        ConnectorOperationLimiter limiter = new ConnectorOperationLimiter();
+        limiter.setLimit(2);
+
+        ConnectorOperationLimiter.Permit permit = limiter.acquire();
+        ConnectorOperationLimiter.Permit other = limiter.acquire();
+        permit.release();
+        permit.release();
+        permit.suspend();
+
+        assertThat(limiter.getActive()).isEqualTo(1);
+        other.release();
+        assertThat(limiter.getActive()).isZero();
+    }
+
+    /** Search results can be handled in a different thread than the one that started the search. */
+    @Test
+    public void test300SuspendAndResumeInDifferentThread() throws Exception {
+        ConnectorOperationLimiter limiter = new ConnectorOperationLimiter();
+        limiter.setLimit(1);
+        ConnectorOperationLimiter.Permit permit = limiter.acquire();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(permit::suspend).get(5, TimeUnit.SECONDS);
+        assertThat(limiter.getActive()).isZero();
+
+        // another operation can run while the results are processed
+        limiter.acquire().release();
+
+        executor.submit(permit::resume).get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertThat(limiter.getActive()).isEqualTo(1);
+
+        permit.release();
+        assertThat(limiter.getActive()).isZero();
+    }
+
+    @Test
+    public void test400InterruptedAcquireDoesNotExceedLimit() throws Exception {
+        ConnectorOperationLimiter limiter = new ConnectorOperationLimiter();
+        limiter.setLimit(1);
+        ConnectorOperationLimiter.Permit first = limiter.acquire();
+
+        CompletableFuture<Boolean> interruptedWhenAcquired = new CompletableFuture<>();
+        Thread waiting = new Thread(() -> {
+            ConnectorOperationLimiter.Permit permit = limiter.acquire();
+            interruptedWhenAcquired.complete(Thread.currentThread().isInterrupted());
+            permit.release();
+        });
+        waiting.start();
+        Thread.sleep(100);
+        waiting.interrupt();
+        Thread.sleep(100);
+
+        assertThat(interruptedWhenAcquired).as("acquired while the limit is reached").isNotDone();
+        assertThat(limiter.getActive()).isEqualTo(1);
+
+        first.release();
+        assertThat(interruptedWhenAcquired.get(5, TimeUnit.SECONDS))
+                .as("interrupt flag preserved")
+                .isTrue();
+        waiting.join(5000);
+        assertThat(limiter.getActive()).isZero();
+    }
+}
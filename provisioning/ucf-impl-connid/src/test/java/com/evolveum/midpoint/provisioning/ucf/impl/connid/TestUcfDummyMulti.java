@@ -15,10 +15,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import com.evolveum.midpoint.provisioning.ucf.api.UcfAddReturnValue;
 import com.evolveum.midpoint.provisioning.ucf.api.UcfExecutionContext;
+import com.evolveum.midpoint.provisioning.ucf.api.UcfOperationPipeline;
 import com.evolveum.midpoint.schema.processor.ResourceObjectClassDefinition;
 import com.evolveum.midpoint.schema.processor.ResourceSchemaFactory;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
@@ -312,6 +315,75 @@ public class TestUcfDummyMulti extends AbstractUcfDummyTest {
         displayDumpable("Search result 2", searchResult2);
     }
 
+    /**
+     * Adds accounts through the operation pipeline, with each operation taking some time on the resource.
+     * The operations should be executed by the connector concurrently, using multiple pooled connector instances.
+     * (The dummy resource itself executes them one after another, which does not matter here.)
+     */
+    @Test
+    public void test300PipelinedAdds() throws Exception {
+        given("operations on the resource are slow");
+        OperationResult result = createOperationResult();
+        int accounts = 5;
+        dummyResource.setOperationDelayOffset(500);
+        dummyResource.resetMaxConnectorOperationsInProgress();
+
+        UcfOperationPipeline pipeline = cc.getOperationPipeline();
+        assertNotNull("No operation pipeline", pipeline);
+        displayValue("pipeline", pipeline);
+        assertTrue("Pipeline does not allow concurrent operations", pipeline.getMaxInFlight() >= accounts);
+
+        try {
+            when("accounts are added through the pipeline");
+            List<CompletableFuture<UcfAddReturnValue>> futures = new ArrayList<>();
+            for (int i = 0; i < accounts; i++) {
+                PrismObject<ShadowType> shadow = createAccountShadow("pipelined-" + i);
+                futures.add(pipeline.submit(opResult -> cc.addObject(shadow, null, opResult), result));
+            }
+            for (CompletableFuture<UcfAddReturnValue> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            then("all accounts are created, and the connector executed the operations concurrently");
+            result.computeStatus();
+            TestUtil.assertSuccess(result);
+            for (int i = 0; i < accounts; i++) {
+                assertNotNull("Account " + i + " was not created", dummyResource.getAccountByName("pipelined-" + i));
+            }
+            int maxConcurrent = dummyResource.getMaxConnectorOperationsInProgress();
+            displayValue("max concurrent connector operations", maxConcurrent);
+            assertTrue("Operations were not executed concurrently: " + maxConcurrent, maxConcurrent > 1);
+            assertTrue("Too many concurrent operations: " + maxConcurrent, maxConcurrent <= pipeline.getMaxInFlight());
+
+            UcfOperationPipeline.Statistics statistics = pipeline.getStatistics();
+            displayValue("statistics", statistics);
+            assertEquals("Wrong # of completed operations", accounts, statistics.completed());
+            assertEquals("Wrong # of failed operations", 0, statistics.failed());
+            assertEquals("Wrong # of operations in flight", 0, statistics.inFlight());
+            assertEquals("Wrong # of operations in latency histogram",
+                    accounts, statistics.latencyHistogram().stream().mapToLong(Long::longValue).sum());
+        } finally {
+            dummyResource.setOperationDelayOffset(0);
+        }
+    }
+
+    private PrismObject<ShadowType> createAccountShadow(String name) throws SchemaException {
+        ResourceObjectClassDefinition defaultAccountDefinition =
+                resourceSchema.findObjectClassDefinitionRequired(RI_ACCOUNT_OBJECT_CLASS);
+        ShadowType shadowType = new ShadowType();
+        PrismTestUtil.getPrismContext().adopt(shadowType);
+        shadowType.setName(PrismTestUtil.createPolyStringType(name));
+        ObjectReferenceType resourceRef = new ObjectReferenceType();
+        resourceRef.setOid(resource.getOid());
+        shadowType.setResourceRef(resourceRef);
+        shadowType.setObjectClass(defaultAccountDefinition.getTypeName());
+        PrismObject<ShadowType> shadow = shadowType.asPrismObject();
+        ResourceAttributeContainer attributesContainer = ShadowUtil.getOrCreateAttributesContainer(shadow, defaultAccountDefinition);
+        ResourceAttribute<String> icfsNameProp = attributesContainer.findOrCreateAttribute(SchemaConstants.ICFS_NAME);
+        icfsNameProp.setRealValue(name);
+        return shadow;
+    }
+
     private void checkUcfShadow(PrismObject<ShadowType> shadow, ResourceObjectClassDefinition objectClassDefinition) {
         assertNotNull("No objectClass in shadow " + shadow, shadow.asObjectable().getObjectClass());
         assertEquals("Wrong objectClass in shadow " + shadow, objectClassDefinition.getTypeName(), shadow.asObjectable().getObjectClass());
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.api;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Result of adding or modifying a single object within a batch,
+ * see {@link RepositoryService#addObjects} and {@link RepositoryService#modifyObjects}.
+ */
+public class RepoBatchItemResult {
+
+    /** OID of the object. It is null only if an object without OID could not be added. */
+    @Nullable private final String oid;
+
+    /** Information about the modification (if the item was a successful modification). */
+    @Nullable private final ModifyObjectResult<?> modifyObjectResult;
+
+    /** The problem, if the item failed. Null means success. */
+    @Nullable private final Throwable exception;
+
+    private RepoBatchItemResult(
+            @Nullable String oid, @Nullable ModifyObjectResult<?> modifyObjectResult, @Nullable Throwable exception) {
+        this.oid = oid;
+        this.modifyObjectResult = modifyObjectResult;
+        this.exception = exception;
+    }
+
+    public static RepoBatchItemResult added(@NotNull String oid) {
+        return new RepoBatchItemResult(oid, null, null);
+    }
+
+    public static RepoBatchItemResult modified(@NotNull String oid, @NotNull ModifyObjectResult<?> modifyObjectResult) {
+        return new RepoBatchItemResult(oid, modifyObjectResult, null);
+    }
+
+    public static RepoBatchItemResult failed(@Nullable String oid, @NotNull Throwable exception) {
+        return new RepoBatchItemResult(oid, null, exception);
+    }
+
+    public @Nullable String getOid() {
+        return oid;
+    }
+
+    public @Nullable ModifyObjectResult<?> getModifyObjectResult() {
+        return modifyObjectResult;
+    }
+
+    public @Nullable Throwable getException() {
+        return exception;
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    @Override
+    public String toString() {
+        return "RepoBatchItemResult{" +
+                "oid=" + oid +
+                (exception != null ? ", exception=" + exception : ", success") +
+                '}';
+    }
+}
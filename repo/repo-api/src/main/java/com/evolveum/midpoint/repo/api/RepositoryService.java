@@ -6,7 +6,9 @@
  */
 package com.evolveum.midpoint.repo.api;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import com.evolveum.midpoint.prism.*;
 
@@ -22,11 +24,13 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.repo.api.perf.PerformanceMonitor;
 import com.evolveum.midpoint.schema.selector.eval.ObjectFilterExpressionEvaluator;
 import com.evolveum.midpoint.schema.*;
 import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.MiscUtil;
 import com.evolveum.midpoint.util.annotation.Experimental;
 import com.evolveum.midpoint.util.exception.*;
 import com.evolveum.midpoint.util.logging.Trace;
@@ -125,6 +129,8 @@ public interface RepositoryService extends OrgTreeEvaluator, CaseSupportMixin, A
     String OP_COUNT_OBJECTS = "countObjects";
     String OP_MODIFY_OBJECT = "modifyObject";
     String OP_MODIFY_OBJECT_DYNAMICALLY = "modifyObjectDynamically";
+    String OP_ADD_OBJECTS = "addObjects";
+    String OP_MODIFY_OBJECTS = "modifyObjects";
     String OP_GET_VERSION = "getVersion";
     String OP_IS_DESCENDANT = "isDescendant";
     String OP_IS_ANCESTOR = "isAncestor";
@@ -200,6 +206,31 @@ public interface RepositoryService extends OrgTreeEvaluator, CaseSupportMixin, A
             Collection<SelectorOptions<GetOperationOptions>> options, OperationResult parentResult)
             throws ObjectNotFoundException, SchemaException;
 
+    /**
+     * Returns objects with provided OIDs, in a single operation (instead of calling {@link #getObject} for each of them).
+     *
+     * Unlike {@link #getObject}, this does not fail if some of the objects do not exist: they are simply not present
+     * in the returned list. The order of the returned objects is not guaranteed to correspond to the order of the OIDs.
+     *
+     * The default implementation uses a single search by OIDs (i.e. `oid IN (...)` query for the native repository).
+     * Caching implementations serve the cached objects locally and fetch only the rest from the repository.
+     *
+     * @param oids OIDs of the objects to get; duplicates are ignored
+     */
+    default @NotNull <O extends ObjectType> SearchResultList<PrismObject<O>> getObjects(
+            @NotNull Class<O> type, @NotNull Collection<String> oids,
+            Collection<SelectorOptions<GetOperationOptions>> options, OperationResult parentResult)
+            throws SchemaException {
+        if (oids.isEmpty()) {
+            return new SearchResultList<>();
+        }
+        ObjectQuery query = PrismContext.get()
+                .queryFor(type)
+                .id(oids.stream().distinct().toArray(String[]::new))
+                .build();
+        return searchObjects(type, query, options, parentResult);
+    }
+
     /**
      * Returns object version for provided OID.
      * <p>
@@ -344,6 +375,77 @@ public interface RepositoryService extends OrgTreeEvaluator, CaseSupportMixin, A
         @NotNull Collection<? extends ItemDelta<?, ?>> get(T object) throws SchemaException;
     }
 
+    /**
+     * Adds given objects in a single operation. Implementations may use a single transaction for the whole batch,
+     * avoiding the per-object overhead of {@link #addObject}.
+     *
+     * In all-or-nothing mode, either all objects are added, or none of them is; in the latter case the (first) problem
+     * is thrown as an exception. Otherwise, the objects are added independently of each other: the problems are
+     * reported in the respective item results, and the other objects are added nevertheless.
+     *
+     * The all-or-nothing mode is available only if {@link #supportsAllOrNothingBatches()} is `true`;
+     * otherwise, {@link UnsupportedOperationException} is thrown. The default implementation adds the objects one by one,
+     * and does not support the all-or-nothing mode.
+     *
+     * @param options Options to be applied to each of the objects; overwrite is not supported
+     * @param allOrNothing Whether the batch should be applied atomically
+     * @return Results for the individual objects, in the order of the objects
+     */
+    default @NotNull List<RepoBatchItemResult> addObjects(
+            @NotNull List<? extends PrismObject<? extends ObjectType>> objects,
+            @Nullable RepoAddOptions options,
+            boolean allOrNothing,
+            @NotNull OperationResult parentResult)
+            throws ObjectAlreadyExistsException, SchemaException {
+        if (allOrNothing) {
+            throw new UnsupportedOperationException("All-or-nothing batch is not supported by " + getClass().getSimpleName());
+        }
+        List<RepoBatchItemResult> results = new ArrayList<>(objects.size());
+        for (PrismObject<? extends ObjectType> object : objects) {
+            try {
+                results.add(RepoBatchItemResult.added(addObject(object, options, parentResult)));
+            } catch (ObjectAlreadyExistsException | SchemaException | RuntimeException e) {
+                results.add(RepoBatchItemResult.failed(object.getOid(), e));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Applies given modify deltas in a single operation. Implementations may use a single transaction for the whole batch,
+     * avoiding the per-object overhead of {@link #modifyObject}.
+     *
+     * The all-or-nothing mode (including its availability) and the item results are the same as for {@link #addObjects}.
+     * The default implementation modifies the objects one by one, and does not support the all-or-nothing mode.
+     *
+     * @param deltas Modify deltas (with OIDs) of the objects; each object should be present at most once
+     * @param options Options to be applied to each of the modifications
+     * @param allOrNothing Whether the batch should be applied atomically
+     * @return Results for the individual deltas, in the order of the deltas
+     */
+    default @NotNull List<RepoBatchItemResult> modifyObjects(
+            @NotNull List<? extends ObjectDelta<? extends ObjectType>> deltas,
+            @Nullable RepoModifyOptions options,
+            boolean allOrNothing,
+            @NotNull OperationResult parentResult)
+            throws ObjectNotFoundException, SchemaException, ObjectAlreadyExistsException {
+        if (allOrNothing) {
+            throw new UnsupportedOperationException("All-or-nothing batch is not supported by " + getClass().getSimpleName());
+        }
+        List<RepoBatchItemResult> results = new ArrayList<>(deltas.size());
+        for (ObjectDelta<? extends ObjectType> delta : deltas) {
+            String oid = delta.getOid();
+            try {
+                MiscUtil.argCheck(delta.isModify() && oid != null, "Not a modify delta with OID: %s", delta);
+                results.add(RepoBatchItemResult.modified(oid,
+                        modifyObject(delta.getObjectTypeClass(), oid, delta.getModifications(), options, parentResult)));
+            } catch (ObjectNotFoundException | SchemaException | ObjectAlreadyExistsException | RuntimeException e) {
+                results.add(RepoBatchItemResult.failed(oid, e));
+            }
+        }
+        return results;
+    }
+
     /**
      * <p>Deletes object with specified OID.</p>
      * <p>
@@ -679,6 +781,14 @@ public interface RepositoryService extends OrgTreeEvaluator, CaseSupportMixin, A
         return supports(MarkType.class);
     }
 
+    /**
+     * Returns `true` if {@link #addObjects} and {@link #modifyObjects} can be called in the all-or-nothing mode.
+     * Callers should check this before using the mode, and fall back to the independent processing of the items if needed.
+     */
+    default boolean supportsAllOrNothingBatches() {
+        return false;
+    }
+
     /**
      * Runs a short, non-destructive repository self test.
      * This methods should never throw a (checked) exception. All the results
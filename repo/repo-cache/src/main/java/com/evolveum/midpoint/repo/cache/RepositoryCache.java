@@ -26,6 +26,7 @@ import com.evolveum.midpoint.CacheInvalidationContext;
 import com.evolveum.midpoint.prism.Containerable;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.repo.api.*;
 import com.evolveum.midpoint.repo.api.perf.PerformanceMonitor;
@@ -38,6 +39,7 @@ import com.evolveum.midpoint.repo.cache.handlers.ModificationOpHandler;
 import com.evolveum.midpoint.repo.cache.handlers.SearchOpHandler;
 import com.evolveum.midpoint.repo.cache.invalidation.Invalidator;
 import com.evolveum.midpoint.repo.cache.local.LocalRepoCacheCollection;
+import com.evolveum.midpoint.repo.cache.local.LocalRepoCacheScope;
 import com.evolveum.midpoint.schema.*;
 import com.evolveum.midpoint.schema.cache.CacheConfigurationManager;
 import com.evolveum.midpoint.schema.result.OperationResult;
@@ -84,6 +86,14 @@ public class RepositoryCache implements RepositoryService, Cache {
         LocalRepoCacheCollection.enter(mgr);
     }
 
+    /**
+     * Enters thread-local caches of given scope, obtained by {@link #getLocalCachesScope()} in the parent thread.
+     * To be used by worker threads that should share the caches with the operation that started them.
+     */
+    public static void enterLocalCaches(@NotNull LocalRepoCacheScope parentScope) {
+        LocalRepoCacheCollection.enter(parentScope);
+    }
+
     /**
      * Exits thread-local caches.
      */
@@ -91,6 +101,20 @@ public class RepositoryCache implements RepositoryService, Cache {
         LocalRepoCacheCollection.exit();
     }
 
+    /** Returns the scope of thread-local caches the current thread is in, if any. */
+    public static @Nullable LocalRepoCacheScope getLocalCachesScope() {
+        return LocalRepoCacheCollection.currentScope();
+    }
+
+    /**
+     * Are objects of given type retrieved by this thread kept in the local object cache? If so, a bulk search can be used
+     * to load objects that will be then requested one by one (e.g. by provisioning).
+     */
+    public static boolean isLocalObjectCacheActive(@NotNull Class<? extends ObjectType> type) {
+        var localObjectCache = LocalRepoCacheCollection.getLocalObjectCache();
+        return localObjectCache != null && localObjectCache.supportsObjectType(type);
+    }
+
     //region --- GET, SEARCH and COUNT operations ------------------------------------------------------------------
 
     @NotNull
@@ -101,6 +125,14 @@ public class RepositoryCache implements RepositoryService, Cache {
         return getObjectOpHandler.getObject(type, oid, options, parentResult);
     }
 
+    @NotNull
+    @Override
+    public <T extends ObjectType> SearchResultList<PrismObject<T>> getObjects(@NotNull Class<T> type,
+            @NotNull Collection<String> oids, Collection<SelectorOptions<GetOperationOptions>> options,
+            OperationResult parentResult) throws SchemaException {
+        return getObjectOpHandler.getObjects(type, oids, options, parentResult);
+    }
+
     @Override
     public <T extends ObjectType> String getVersion(Class<T> type, String oid, OperationResult parentResult)
             throws ObjectNotFoundException, SchemaException {
@@ -215,6 +247,22 @@ public class RepositoryCache implements RepositoryService, Cache {
         return modificationOpHandler.modifyObject(type, oid, modifications, precondition, options, parentResult);
     }
 
+    @Override
+    public @NotNull List<RepoBatchItemResult> addObjects(
+            @NotNull List<? extends PrismObject<? extends ObjectType>> objects, @Nullable RepoAddOptions options,
+            boolean allOrNothing, @NotNull OperationResult parentResult)
+            throws ObjectAlreadyExistsException, SchemaException {
+        return modificationOpHandler.addObjects(objects, options, allOrNothing, parentResult);
+    }
+
+    @Override
+    public @NotNull List<RepoBatchItemResult> modifyObjects(
+            @NotNull List<? extends ObjectDelta<? extends ObjectType>> deltas, @Nullable RepoModifyOptions options,
+            boolean allOrNothing, @NotNull OperationResult parentResult)
+            throws ObjectNotFoundException, SchemaException, ObjectAlreadyExistsException {
+        return modificationOpHandler.modifyObjects(deltas, options, allOrNothing, parentResult);
+    }
+
     @Override
     public @NotNull <T extends ObjectType> ModifyObjectResult<T> modifyObjectDynamically(
             @NotNull Class<T> type,
@@ -286,6 +334,11 @@ public class RepositoryCache implements RepositoryService, Cache {
         return repositoryService.supports(type);
     }
 
+    @Override
+    public boolean supportsAllOrNothingBatches() {
+        return repositoryService.supportsAllOrNothingBatches();
+    }
+
     @Override
     public @NotNull RepositoryDiag getRepositoryDiag() {
         Long startTime = repoOpStart();
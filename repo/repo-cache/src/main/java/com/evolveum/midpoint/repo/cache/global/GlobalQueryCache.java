@@ -8,12 +8,14 @@
 package com.evolveum.midpoint.repo.cache.global;
 
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.cache.invalidation.QueryInvalidationStatistics;
 import com.evolveum.midpoint.repo.cache.local.QueryKey;
 import com.evolveum.midpoint.schema.SearchResultList;
 import com.evolveum.midpoint.schema.cache.CacheType;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCachePerformanceInformationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInformationType;
 
 import org.apache.commons.lang3.tuple.MutablePair;
@@ -149,10 +151,14 @@ public class GlobalQueryCache extends AbstractGlobalCache {
                 objects.addAndGet(resultingObjects);
                 return null;
             });
+            SingleCachePerformanceInformationType performance = new SingleCachePerformanceInformationType();
+            performance.setName(GlobalQueryCache.class.getName());
+            QueryInvalidationStatistics.GLOBAL.fillIn(performance);
             SingleCacheStateInformationType info = new SingleCacheStateInformationType(prismContext)
                     .name(GlobalQueryCache.class.getName())
                     .size(queries.get())
-                    .secondarySize(objects.get());
+                    .secondarySize(objects.get())
+                    .performance(performance);
             counts.forEach((type, pair) ->
                     info.beginComponent()
                             .name(type.getSimpleName())
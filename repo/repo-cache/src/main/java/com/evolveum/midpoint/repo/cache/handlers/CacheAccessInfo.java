@@ -61,6 +61,17 @@ class CacheAccessInfo<C, T extends ObjectType> {
      */
     final C cache;
 
+    /**
+     * Number of hits (including weak ones) in this cache during the current operation.
+     * Useful for operations that access the cache multiple times, like getObjects.
+     */
+    int hits;
+
+    /**
+     * Number of misses in this cache during the current operation.
+     */
+    int misses;
+
     CacheAccessInfo(C cache, CacheConfiguration configuration, Class<T> type, boolean available) {
         this.available = available;
         this.cache = cache;
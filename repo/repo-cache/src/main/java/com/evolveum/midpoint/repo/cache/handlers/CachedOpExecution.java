@@ -160,6 +160,7 @@ abstract class CachedOpExecution<RT extends RepositoryOperationTraceType, LC ext
     }
 
     void reportLocalMiss() {
+        local.misses++;
         local.cache.registerMiss();
         CachePerformanceCollector.INSTANCE.registerMiss(getLocalCacheClass(), type, local.statisticsLevel);
         log("Cache: MISS {} {}", local.traceMiss, opName, getDescription());
@@ -169,6 +170,7 @@ abstract class CachedOpExecution<RT extends RepositoryOperationTraceType, LC ext
     }
 
     private void reportLocalHitNoClone() {
+        local.hits++;
         local.cache.registerHit();
         CachePerformanceCollector.INSTANCE.registerHit(getLocalCacheClass(), type, local.statisticsLevel);
         log("Cache: HIT {} {}", false, opName, getDescription());
@@ -178,6 +180,7 @@ abstract class CachedOpExecution<RT extends RepositoryOperationTraceType, LC ext
     }
 
     private void reportLocalHitWithClone() {
+        local.hits++;
         local.cache.registerHit();
         CachePerformanceCollector.INSTANCE.registerHit(getLocalCacheClass(), type, local.statisticsLevel);
         log("Cache: HIT(clone) {} {}", false, opName, getDescription());
@@ -211,6 +214,7 @@ abstract class CachedOpExecution<RT extends RepositoryOperationTraceType, LC ext
     }
 
     void reportGlobalHit() {
+        global.hits++;
         CachePerformanceCollector.INSTANCE.registerHit(getGlobalCacheClass(), type, global.statisticsLevel);
         log("Cache (global): HIT {} {}", false, opName, getDescription());
         if (trace != null) {
@@ -219,6 +223,7 @@ abstract class CachedOpExecution<RT extends RepositoryOperationTraceType, LC ext
     }
 
     void reportGlobalMiss() {
+        global.misses++;
         CachePerformanceCollector.INSTANCE.registerMiss(getGlobalCacheClass(), type, global.statisticsLevel);
         log("Cache (global): MISS {} {}", global.traceMiss, opName, getDescription());
         if (trace != null) {
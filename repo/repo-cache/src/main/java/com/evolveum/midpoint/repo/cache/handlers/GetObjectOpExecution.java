@@ -59,6 +59,7 @@ class GetObjectOpExecution<O extends ObjectType>
     }
 
     void reportGlobalVersionChangedMiss() {
+        global.misses++;
         CachePerformanceCollector.INSTANCE.registerMiss(GlobalObjectCache.class, type, global.statisticsLevel);
         log("Cache (global): MISS because of version changed - getObject {}", global.traceMiss, getDescription());
         if (trace != null) {
@@ -68,6 +69,7 @@ class GetObjectOpExecution<O extends ObjectType>
     }
 
     void reportGlobalWeakHit() {
+        global.hits++;
         CachePerformanceCollector.INSTANCE.registerWeakHit(GlobalObjectCache.class, type, global.statisticsLevel);
         log("Cache (global): HIT with version check - getObject {}", global.traceMiss, getDescription());
         if (trace != null) {
@@ -12,8 +12,7 @@ import static com.evolveum.midpoint.repo.cache.other.MonitoringUtil.repoOpEnd;
 import static com.evolveum.midpoint.repo.cache.other.MonitoringUtil.repoOpStart;
 import static com.evolveum.midpoint.schema.util.TraceUtil.isAtLeastMinimal;
 
-import java.util.Collection;
-import java.util.Objects;
+import java.util.*;
 
 import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Component;
@@ -21,6 +20,7 @@ import org.springframework.stereotype.Component;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.repo.cache.global.GlobalCacheObjectValue;
 import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.SearchResultList;
 import com.evolveum.midpoint.schema.SelectorOptions;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
@@ -30,12 +30,13 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.RepositoryGetObjectT
 import com.evolveum.midpoint.xml.ns._public.common.common_3.TracingLevelType;
 
 /**
- * Handles getObject calls.
+ * Handles getObject and getObjects calls.
  */
 @Component
 public class GetObjectOpHandler extends CachedOpHandler {
 
     private static final String GET_OBJECT = CLASS_NAME_WITH_DOT + "getObject";
+    private static final String GET_OBJECTS = CLASS_NAME_WITH_DOT + "getObjects";
 
     @NotNull
     public <T extends ObjectType> PrismObject<T> getObject(Class<T> type, String oid,
@@ -115,6 +116,140 @@ public class GetObjectOpHandler extends CachedOpHandler {
         }
     }
 
+    /**
+     * Takes what it can from the local and global caches, and fetches the rest from the repository in one call.
+     * The fetched objects are put into the caches, just like in {@link #getObject}.
+     *
+     * Global cache entries that need version check are treated as misses, as checking their versions one by one
+     * would cost (at least) as much as fetching them along with the others.
+     */
+    public <T extends ObjectType> @NotNull SearchResultList<PrismObject<T>> getObjects(
+            @NotNull Class<T> type, @NotNull Collection<String> oids,
+            Collection<SelectorOptions<GetOperationOptions>> options, OperationResult parentResult)
+            throws SchemaException {
+
+        OperationResult result = parentResult.subresult(GET_OBJECTS)
+                .addQualifier(type.getSimpleName())
+                .addParam("type", type)
+                .addParam("oids", oids.size())
+                .addArbitraryObjectCollectionAsParam("options", options)
+                .build();
+        Set<String> distinctOids = new LinkedHashSet<>(oids);
+        GetObjectsOpExecution<T> exec = new GetObjectsOpExecution<>(
+                type, distinctOids, options, result, prismContext, cacheSetAccessInfoFactory.determine(type));
+        try {
+            PassReason passReason = PassReason.determine(options, type);
+            if (passReason != null) { // local nor global cache not interested in caching these objects
+                exec.reportLocalAndGlobalPass(passReason);
+                return getObjectsInternal(type, distinctOids, options, result);
+            }
+
+            Map<String, PrismObject<T>> cachedObjects = new HashMap<>(); // immutable
+            List<String> oidsToFetch = new ArrayList<>();
+            for (String oid : distinctOids) {
+                PrismObject<T> cachedObject = getFromCaches(exec, oid);
+                if (cachedObject != null) {
+                    cachedObjects.put(oid, cachedObject);
+                } else {
+                    oidsToFetch.add(oid);
+                }
+            }
+
+            Map<String, PrismObject<T>> fetchedObjects =
+                    !oidsToFetch.isEmpty() ? fetchAndCache(exec, oidsToFetch) : Map.of();
+
+            SearchResultList<PrismObject<T>> objects = new SearchResultList<>();
+            for (String oid : distinctOids) {
+                PrismObject<T> cachedObject = cachedObjects.get(oid);
+                if (cachedObject != null) {
+                    objects.add(exec.readOnly ? cachedObject : cachedObject.clone());
+                } else {
+                    PrismObject<T> fetchedObject = fetchedObjects.get(oid);
+                    if (fetchedObject != null) {
+                        objects.add(fetchedObject);
+                    }
+                }
+            }
+            result.addReturn("localHits", exec.local.hits);
+            result.addReturn("globalHits", exec.global.hits);
+            result.addReturn("fetched", fetchedObjects.size());
+            return objects;
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            throw t;
+        } finally {
+            result.close();
+        }
+    }
+
+    /** Returns immutable object from the local or global cache, or null if it's not there. */
+    private <T extends ObjectType> PrismObject<T> getFromCaches(GetObjectsOpExecution<T> exec, String oid) {
+        if (!exec.local.available) {
+            exec.reportLocalNotAvailable();
+        } else if (!exec.local.supports) {
+            exec.reportLocalPass();
+        } else {
+            PrismObject<T> cachedObject = exec.local.cache.get(oid);
+            if (cachedObject != null) {
+                exec.reportLocalHit();
+                return cachedObject;
+            } else {
+                exec.reportLocalMiss();
+            }
+        }
+
+        if (!exec.global.available) {
+            exec.reportGlobalNotAvailable();
+            return null;
+        } else if (!exec.global.supports) {
+            exec.reportGlobalPass();
+            return null;
+        }
+
+        GlobalCacheObjectValue<T> cachedValue = globalObjectCache.get(oid);
+        if (cachedValue == null || cachedValue.shouldCheckVersion()) {
+            exec.reportGlobalMiss();
+            return null;
+        } else {
+            exec.reportGlobalHit();
+            PrismObject<T> cachedObject = cachedValue.getObject();
+            cacheUpdater.storeImmutableObjectToAllLocal(cachedObject, exec.caches);
+            return cachedObject;
+        }
+    }
+
+    /** Returns directly returnable objects (frozen if readonly, mutable if not readonly), indexed by OID. */
+    private <T extends ObjectType> Map<String, PrismObject<T>> fetchAndCache(
+            GetObjectsOpExecution<T> exec, List<String> oids) throws SchemaException {
+        Map<String, PrismObject<T>> objects = new HashMap<>();
+        for (PrismObject<T> object : getObjectsInternal(exec.type, oids, exec.options, exec.result)) {
+            PrismObject<T> immutable = toImmutable(object);
+            cacheUpdater.storeImmutableObjectToObjectLocal(immutable, exec.caches);
+            cacheUpdater.storeImmutableObjectToObjectGlobal(immutable);
+            cacheUpdater.storeObjectToVersionGlobal(immutable, exec.caches.globalVersion);
+            cacheUpdater.storeObjectToVersionLocal(immutable, exec.caches.localVersion);
+            objects.put(object.getOid(), exec.readOnly ? immutable : object.cloneIfImmutable());
+        }
+        for (String oid : oids) {
+            if (!objects.containsKey(oid)) {
+                globalObjectCache.remove(oid);
+                globalVersionCache.remove(oid);
+            }
+        }
+        return objects;
+    }
+
+    private <T extends ObjectType> SearchResultList<PrismObject<T>> getObjectsInternal(Class<T> type,
+            Collection<String> oids, Collection<SelectorOptions<GetOperationOptions>> options, OperationResult parentResult)
+            throws SchemaException {
+        Long startTime = repoOpStart();
+        try {
+            return repositoryService.getObjects(type, oids, options, parentResult);
+        } finally {
+            repoOpEnd(startTime);
+        }
+    }
+
     private <T extends ObjectType> GetObjectOpExecution<T> initializeExecution(Class<T> type, String oid,
             Collection<SelectorOptions<GetOperationOptions>> options, OperationResult parentResult) {
         OperationResult result = parentResult.subresult(GET_OBJECT)
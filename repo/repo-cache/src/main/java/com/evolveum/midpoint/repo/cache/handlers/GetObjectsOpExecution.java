@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.cache.handlers;
+
+import java.util.Collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.repo.cache.global.GlobalObjectCache;
+import com.evolveum.midpoint.repo.cache.local.LocalObjectCache;
+import com.evolveum.midpoint.schema.GetOperationOptions;
+import com.evolveum.midpoint.schema.SelectorOptions;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RepositoryGetObjectTraceType;
+
+/**
+ * Execution of getObjects operation.
+ *
+ * The cache use is reported for each of the OIDs separately, just like for individual getObject calls.
+ * The numbers of hits and misses are summarized in {@link #local} and {@link #global}.
+ */
+class GetObjectsOpExecution<O extends ObjectType>
+        extends CachedOpExecution<RepositoryGetObjectTraceType, LocalObjectCache, GlobalObjectCache, O> {
+
+    @NotNull final Collection<String> oids;
+
+    GetObjectsOpExecution(@NotNull Class<O> type, @NotNull Collection<String> oids,
+            Collection<SelectorOptions<GetOperationOptions>> options, @NotNull OperationResult result,
+            @NotNull PrismContext prismContext, @NotNull CacheSetAccessInfo<O> caches) {
+        super(type, options, result, caches, caches.localObject, caches.globalObject, null, null, prismContext, "getObjects");
+        this.oids = oids;
+    }
+
+    @Override
+    String getDescription() {
+        return type.getSimpleName() + ": " + oids.size() + " OID(s)";
+    }
+
+    @Override
+    Class<LocalObjectCache> getLocalCacheClass() {
+        return LocalObjectCache.class;
+    }
+
+    @Override
+    Class<GlobalObjectCache> getGlobalCacheClass() {
+        return GlobalObjectCache.class;
+    }
+}
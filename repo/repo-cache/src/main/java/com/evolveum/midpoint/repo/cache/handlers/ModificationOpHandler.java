@@ -9,6 +9,7 @@ package com.evolveum.midpoint.repo.cache.handlers;
 
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.repo.api.*;
 import com.evolveum.midpoint.repo.cache.other.MonitoringUtil;
 import com.evolveum.midpoint.schema.DeltaConvertor;
@@ -24,6 +25,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 
 import static com.evolveum.midpoint.repo.cache.RepositoryCache.CLASS_NAME_WITH_DOT;
@@ -39,6 +41,8 @@ public class ModificationOpHandler extends BaseOpHandler {
 
     private static final String ADD_OBJECT = CLASS_NAME_WITH_DOT + "addObject";
     private static final String MODIFY_OBJECT = CLASS_NAME_WITH_DOT + "modifyObject";
+    private static final String ADD_OBJECTS = CLASS_NAME_WITH_DOT + "addObjects";
+    private static final String MODIFY_OBJECTS = CLASS_NAME_WITH_DOT + "modifyObjects";
     private static final String DELETE_OBJECT = CLASS_NAME_WITH_DOT + "deleteObject";
     private static final String ADVANCE_SEQUENCE = CLASS_NAME_WITH_DOT + "advanceSequence";
     private static final String RETURN_UNUSED_VALUES_TO_SEQUENCE = CLASS_NAME_WITH_DOT + "returnUnusedValuesToSequence";
@@ -148,6 +152,80 @@ public class ModificationOpHandler extends BaseOpHandler {
         }
     }
 
+    /** Invalidates the entries for all objects that were added, just like {@link #addObject} does. */
+    @NotNull
+    public List<RepoBatchItemResult> addObjects(@NotNull List<? extends PrismObject<? extends ObjectType>> objects,
+            RepoAddOptions options, boolean allOrNothing, OperationResult parentResult)
+            throws ObjectAlreadyExistsException, SchemaException {
+        OperationResult result = parentResult.subresult(ADD_OBJECTS)
+                .addParam("objects", objects.size())
+                .addParam("allOrNothing", allOrNothing)
+                .addArbitraryObjectAsParam("options", options)
+                .build();
+        try {
+            List<RepoBatchItemResult> itemResults;
+            Long startTime = MonitoringUtil.repoOpStart();
+            try {
+                itemResults = repositoryService.addObjects(objects, options, allOrNothing, result);
+            } finally {
+                MonitoringUtil.repoOpEnd(startTime);
+            }
+            // The objects are not cached here, for the same reasons as in addObject.
+            for (int i = 0; i < objects.size(); i++) {
+                RepoBatchItemResult itemResult = itemResults.get(i);
+                if (itemResult.isSuccess()) {
+                    invalidateAfterAdd(objects.get(i), itemResult.getOid(), result);
+                }
+            }
+            return itemResults;
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            throw t;
+        } finally {
+            result.computeStatusIfUnknown();
+        }
+    }
+
+    private <T extends ObjectType> void invalidateAfterAdd(PrismObject<T> object, String oid, OperationResult result) {
+        invalidator.invalidateCacheEntries(object.getCompileTimeClass(), oid, new AddObjectResult<>(object), result);
+    }
+
+    /**
+     * Invalidates the entries for all objects in the batch, just like {@link #modifyObject} does: also for the failed ones,
+     * and also if the whole batch failed.
+     */
+    @NotNull
+    public List<RepoBatchItemResult> modifyObjects(@NotNull List<? extends ObjectDelta<? extends ObjectType>> deltas,
+            RepoModifyOptions options, boolean allOrNothing, OperationResult parentResult)
+            throws ObjectNotFoundException, SchemaException, ObjectAlreadyExistsException {
+        OperationResult result = parentResult.subresult(MODIFY_OBJECTS)
+                .addParam("deltas", deltas.size())
+                .addParam("allOrNothing", allOrNothing)
+                .addArbitraryObjectAsParam("options", options)
+                .build();
+        try {
+            randomDelay();
+            Long startTime = MonitoringUtil.repoOpStart();
+            List<RepoBatchItemResult> itemResults = null;
+            try {
+                itemResults = repositoryService.modifyObjects(deltas, options, allOrNothing, result);
+                return itemResults;
+            } finally {
+                MonitoringUtil.repoOpEnd(startTime);
+                for (int i = 0; i < deltas.size(); i++) {
+                    ObjectDelta<? extends ObjectType> delta = deltas.get(i);
+                    ModifyObjectResult<?> modifyInfo = itemResults != null ? itemResults.get(i).getModifyObjectResult() : null;
+                    invalidator.invalidateCacheEntries(delta.getObjectTypeClass(), delta.getOid(), modifyInfo, result);
+                }
+            }
+        } catch (Throwable t) {
+            result.recordFatalError(t);
+            throw t;
+        } finally {
+            result.computeStatusIfUnknown();
+        }
+    }
+
     @NotNull
     public <T extends ObjectType> DeleteObjectResult deleteObject(Class<T> type, String oid, OperationResult parentResult)
             throws ObjectNotFoundException {
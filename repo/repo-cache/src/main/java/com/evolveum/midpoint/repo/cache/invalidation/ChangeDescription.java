@@ -12,8 +12,10 @@ import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.CacheInvalidationContext;
 import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismProperty;
 import com.evolveum.midpoint.prism.match.MatchingRuleRegistry;
 import com.evolveum.midpoint.prism.query.ObjectFilter;
+import com.evolveum.midpoint.prism.query.ObjectPaging;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
 import com.evolveum.midpoint.repo.api.DeleteObjectResult;
 import com.evolveum.midpoint.repo.api.ModifyObjectResult;
@@ -32,11 +34,29 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
  * - type
  * - OID
  * - additional information related object ADD/MODIFY/DELETE operation
+ *
+ * Decides whether a cached query result can be affected by the change by evaluating the query filter against
+ * the state of the object before and after the change, see {@link #evaluateImpact(QueryKey, SearchResultList, MatchingRuleRegistry)}.
  */
 public abstract class ChangeDescription {
 
     private static final Trace LOGGER = TraceManager.getTrace(ChangeDescription.class);
 
+    /**
+     * Impact of a change on a cached query result.
+     */
+    public enum QueryImpact {
+
+        /** The result cannot be affected by the change. */
+        NONE,
+
+        /** The result is (or may be) affected; determined from the query and the object state. */
+        MATCHED,
+
+        /** The result may be affected, but we could not find out precisely, so we evict it to be safe. */
+        FALLBACK
+    }
+
     /**
      * Type of the changed object.
      */
@@ -64,11 +84,17 @@ public abstract class ChangeDescription {
         }
 
         @Override
-        public boolean mayMatchAfterChange(@NotNull ObjectFilter filter, SearchResultList list, MatchingRuleRegistry matchingRuleRegistry)
+        Boolean matchesAfterChange(@NotNull ObjectFilter filter, MatchingRuleRegistry matchingRuleRegistry)
                 throws SchemaException {
             return filter.match(addInfo.getObject().getValue(), matchingRuleRegistry);
         }
 
+        @Override
+        Boolean matchesBeforeChange(@NotNull ObjectFilter filter, MatchingRuleRegistry matchingRuleRegistry) {
+            // There's no object before addition.
+            return false;
+        }
+
         @Override
         public String toString() {
             return "Add{" + addInfo + '}';
@@ -87,17 +113,44 @@ public abstract class ChangeDescription {
         }
 
         @Override
-        public boolean mayMatchAfterChange(@NotNull ObjectFilter filter, SearchResultList list, MatchingRuleRegistry matchingRuleRegistry)
+        boolean isNoOp() {
+            // Repository returns no objects when there was nothing to modify.
+            return modifyInfo.getObjectAfter() == null
+                    && (modifyInfo.getModifications() == null || modifyInfo.getModifications().isEmpty());
+        }
+
+        @Override
+        Boolean matchesAfterChange(@NotNull ObjectFilter filter, MatchingRuleRegistry matchingRuleRegistry)
+                throws SchemaException {
+            return matches(modifyInfo.getObjectAfter(), filter, matchingRuleRegistry);
+        }
+
+        @Override
+        Boolean matchesBeforeChange(@NotNull ObjectFilter filter, MatchingRuleRegistry matchingRuleRegistry)
                 throws SchemaException {
-            //noinspection SimplifiableIfStatement
-            if (modifyInfo.getObjectAfter() == null) {
+            return matches(modifyInfo.getObjectBefore(), filter, matchingRuleRegistry);
+        }
+
+        private Boolean matches(PrismObject<?> object, ObjectFilter filter, MatchingRuleRegistry matchingRuleRegistry)
+                throws SchemaException {
+            if (object == null) {
                 // This can occur only for lookup tables and certification cases. These are handled by evicting all related queries anyway.
-                return true;
+                return null;
+            } else if (hasIncompleteContainersOrReferences(object)) {
+                // The repository may not load separately stored items (e.g. assignments) not touched by the modification.
+                // We cannot evaluate the filter against such an object.
+                return null;
             } else {
-                return filter.match(modifyInfo.getObjectAfter().getValue(), matchingRuleRegistry);
+                return filter.match(object.getValue(), matchingRuleRegistry);
             }
         }
 
+        /** Incomplete properties (like `jpegPhoto` or task `result`) are not considered, as they are not used in queries. */
+        private boolean hasIncompleteContainersOrReferences(@NotNull PrismObject<?> object) {
+            return object.getValue().getItems().stream()
+                    .anyMatch(item -> item.isIncomplete() && !(item instanceof PrismProperty<?>));
+        }
+
         @Override
         public String toString() {
             return "Modify{" +
@@ -117,11 +170,17 @@ public abstract class ChangeDescription {
         }
 
         @Override
-        public boolean mayMatchAfterChange(@NotNull ObjectFilter filter, SearchResultList list, MatchingRuleRegistry matchingRuleRegistry) {
+        Boolean matchesAfterChange(@NotNull ObjectFilter filter, MatchingRuleRegistry matchingRuleRegistry) {
             // There's no object after deletion. :)
             return false;
         }
 
+        @Override
+        Boolean matchesBeforeChange(@NotNull ObjectFilter filter, MatchingRuleRegistry matchingRuleRegistry) {
+            // We have only a textual representation of the deleted object.
+            return null;
+        }
+
         @Override
         public String toString() {
             return "Delete{" +
@@ -140,9 +199,14 @@ public abstract class ChangeDescription {
         }
 
         @Override
-        public boolean mayMatchAfterChange(@NotNull ObjectFilter filter, SearchResultList list, MatchingRuleRegistry matchingRuleRegistry) {
-            // We know nothing about the object state after change, so we must say "yes" here.
-            return safeInvalidation;
+        Boolean matchesAfterChange(@NotNull ObjectFilter filter, MatchingRuleRegistry matchingRuleRegistry) {
+            // We know nothing about the object state after change, so we must say "don't know" here (if we are to be safe).
+            return safeInvalidation ? null : false;
+        }
+
+        @Override
+        Boolean matchesBeforeChange(@NotNull ObjectFilter filter, MatchingRuleRegistry matchingRuleRegistry) {
+            return safeInvalidation ? null : false;
         }
 
         @Override
@@ -211,36 +275,84 @@ public abstract class ChangeDescription {
      * Better be conservative and say "true" even if we are not sure.
      */
     boolean mayAffect(QueryKey<?> queryKey, SearchResultList list, MatchingRuleRegistry matchingRuleRegistry) {
-        if (!queryTypeMatches(queryKey)) {
-            return false;
+        return evaluateImpact(queryKey, list, matchingRuleRegistry) != QueryImpact.NONE;
+    }
+
+    /**
+     * Determines whether the given change may affect the (cached) result of a given query.
+     *
+     * The query result can change only if the object matched the filter before the change or matches it after the change.
+     * The "before" part is known precisely from the cached result itself if the result is complete (no paging):
+     * the object matched before the change if and only if it is in the result. For paged queries, the object
+     * could be outside the page, yet its change could shift the page; so the filter is evaluated against
+     * the original object state in that case.
+     *
+     * If anything cannot be determined (unsupported filter, missing object state), {@link QueryImpact#FALLBACK} is returned.
+     */
+    @NotNull QueryImpact evaluateImpact(QueryKey<?> queryKey, SearchResultList list, MatchingRuleRegistry matchingRuleRegistry) {
+        if (!queryTypeMatches(queryKey) || isNoOp()) {
+            return QueryImpact.NONE;
         }
         ObjectFilter filter = getFilter(queryKey);
         if (filter == null) {
             // We are interested in all objects; so probably in this one as well.
-            return true;
+            return QueryImpact.MATCHED;
         }
         if (listContainsOid(list, oid)) {
             // The original query result contains the object being changed or deleted.
             // (In very strange cases, also the object being added -- although this should never happen.)
-            return true;
+            return QueryImpact.MATCHED;
         }
         try {
-            return mayMatchAfterChange(filter, list, matchingRuleRegistry);
+            Boolean after = matchesAfterChange(filter, matchingRuleRegistry);
+            if (after == null) {
+                return QueryImpact.FALLBACK;
+            } else if (after) {
+                return QueryImpact.MATCHED;
+            } else if (!isPaged(queryKey.getQuery())) {
+                return QueryImpact.NONE;
+            }
+            Boolean before = matchesBeforeChange(filter, matchingRuleRegistry);
+            if (before == null) {
+                return QueryImpact.FALLBACK;
+            } else {
+                return before ? QueryImpact.MATCHED : QueryImpact.NONE;
+            }
         } catch (UnsupportedOperationException e) {
             LOGGER.debug("Couldn't match object being changed to cached query because the filter is not (yet) supported -- "
                     + "continuing as if there might be an overlap:\n"
                     + "change description = {}\nfilter = {}", this, filter, e);
-            return true;
+            return QueryImpact.FALLBACK;
         } catch (Throwable t) {
             LOGGER.warn("Couldn't match object being changed to cached query -- continuing as if there might be an overlap:\n"
                     + "change description = {}\nfilter = {}", this, filter, t);
-            return true;
+            return QueryImpact.FALLBACK;
         }
     }
 
-    public abstract boolean mayMatchAfterChange(@NotNull ObjectFilter filter, SearchResultList list, MatchingRuleRegistry matchingRuleRegistry)
+    /** True if the change did not modify anything. */
+    boolean isNoOp() {
+        return false;
+    }
+
+    /**
+     * Does the object match the filter after the change? Null means we don't know.
+     */
+    abstract Boolean matchesAfterChange(@NotNull ObjectFilter filter, MatchingRuleRegistry matchingRuleRegistry)
+            throws SchemaException;
+
+    /**
+     * Did the object match the filter before the change? Null means we don't know.
+     * Called only for paged queries; for complete results we know this from the result itself.
+     */
+    abstract Boolean matchesBeforeChange(@NotNull ObjectFilter filter, MatchingRuleRegistry matchingRuleRegistry)
             throws SchemaException;
 
+    private static boolean isPaged(ObjectQuery query) {
+        ObjectPaging paging = query != null ? query.getPaging() : null;
+        return paging != null && (paging.getOffset() != null || paging.getMaxSize() != null);
+    }
+
     @Nullable
     private ObjectFilter getFilter(QueryKey queryKey) {
         ObjectQuery query = queryKey.getQuery();
@@ -29,6 +29,7 @@ import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.repo.cache.global.GlobalObjectCache;
 import com.evolveum.midpoint.repo.cache.global.GlobalQueryCache;
 import com.evolveum.midpoint.repo.cache.global.GlobalVersionCache;
+import com.evolveum.midpoint.repo.cache.invalidation.ChangeDescription.QueryImpact;
 import com.evolveum.midpoint.repo.cache.local.LocalObjectCache;
 import com.evolveum.midpoint.repo.cache.local.LocalQueryCache;
 import com.evolveum.midpoint.repo.cache.local.LocalVersionCache;
@@ -125,30 +126,25 @@ public class Invalidator {
 
     private <T extends ObjectType> void clearQueryResultsLocally(LocalQueryCache cache, Class<T> type, String oid,
             Object additionalInfo, MatchingRuleRegistry matchingRuleRegistry) {
-        // TODO implement more efficiently
-
         ChangeDescription change = ChangeDescription.getFrom(type, oid, additionalInfo, true);
 
         long start = System.currentTimeMillis();
-        int all = 0;
-        int removed = 0;
-        Iterator<Map.Entry<QueryKey, SearchResultList>> iterator = cache.getEntryIterator();
-        while (iterator.hasNext()) {
-            Map.Entry<QueryKey, SearchResultList> entry = iterator.next();
-            QueryKey<?> queryKey = entry.getKey();
-            all++;
-            if (change.mayAffect(queryKey, entry.getValue(), matchingRuleRegistry)) {
-                LOGGER.trace("Removing (from local cache) query for type={}, change={}: {}", type, change, queryKey.getQuery());
-                iterator.remove();
-                removed++;
+        int all = cache.size();
+        int removed = cache.removeIf((queryKey, value) -> {
+            QueryImpact impact = change.evaluateImpact(queryKey, value, matchingRuleRegistry);
+            QueryInvalidationStatistics.LOCAL.record(impact);
+            if (impact != QueryImpact.NONE) {
+                LOGGER.trace("Removing (from local cache) query for type={}, change={}, impact={}: {}",
+                        type, change, impact, queryKey.getQuery());
+                return true;
+            } else {
+                return false;
             }
-        }
+        });
         LOGGER.trace("Removed (from local cache) {} (of {}) query result entries of type {} in {} ms", removed, all, type, System.currentTimeMillis() - start);
     }
 
     private <T extends ObjectType> void clearQueryResultsGlobally(Class<T> type, String oid, CacheInvalidationContext context) {
-        // TODO implement more efficiently
-
         // Safe invalidation means we evict queries without looking at details of the change.
         boolean safeIfUnknown =
                 context != null && !context.isFromRemoteNode()
@@ -162,8 +158,11 @@ public class Invalidator {
         globalQueryCache.deleteMatching(entry -> {
             QueryKey queryKey = entry.getKey();
             all.incrementAndGet();
-            if (change.mayAffect(queryKey, entry.getValue().getResult(), matchingRuleRegistry)) {
-                LOGGER.trace("Removing (from global cache) query for type={}, change={}: {}", type, change, queryKey.getQuery());
+            QueryImpact impact = change.evaluateImpact(queryKey, entry.getValue().getResult(), matchingRuleRegistry);
+            QueryInvalidationStatistics.GLOBAL.record(impact);
+            if (impact != QueryImpact.NONE) {
+                LOGGER.trace("Removing (from global cache) query for type={}, change={}, impact={}: {}",
+                        type, change, impact, queryKey.getQuery());
                 removed.incrementAndGet();
                 return true;
             } else {
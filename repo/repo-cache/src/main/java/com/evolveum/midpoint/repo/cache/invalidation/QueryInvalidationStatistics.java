@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.cache.invalidation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.repo.cache.invalidation.ChangeDescription.QueryImpact;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCachePerformanceInformationType;
+
+/**
+ * Counts how cached query results were treated on object changes: how many were checked, how many were
+ * evicted because the change matched the query, and how many were evicted only because we could not tell
+ * (see {@link QueryImpact#FALLBACK}).
+ *
+ * Together with hit/miss counts this shows how effective the query cache is for frequently changed types.
+ */
+public class QueryInvalidationStatistics {
+
+    /** Statistics for local (thread-bound) query caches. */
+    public static final QueryInvalidationStatistics LOCAL = new QueryInvalidationStatistics();
+
+    /** Statistics for the global query cache. */
+    public static final QueryInvalidationStatistics GLOBAL = new QueryInvalidationStatistics();
+
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong matched = new AtomicLong();
+    private final AtomicLong fallback = new AtomicLong();
+
+    void record(@NotNull QueryImpact impact) {
+        checked.incrementAndGet();
+        switch (impact) {
+            case MATCHED -> matched.incrementAndGet();
+            case FALLBACK -> fallback.incrementAndGet();
+            case NONE -> { }
+        }
+    }
+
+    /** Number of cached query results checked against a change. */
+    public long getChecked() {
+        return checked.get();
+    }
+
+    /** Number of cached query results evicted because the change matched the query. */
+    public long getMatched() {
+        return matched.get();
+    }
+
+    /** Number of cached query results evicted because the impact of the change could not be determined. */
+    public long getFallback() {
+        return fallback.get();
+    }
+
+    public void fillIn(@NotNull SingleCachePerformanceInformationType info) {
+        info.setInvalidationCheckCount(toInt(checked.get()));
+        info.setInvalidationCount(toInt(matched.get() + fallback.get()));
+        info.setInvalidationFallbackCount(toInt(fallback.get()));
+    }
+
+    private static int toInt(long value) {
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        return "checked=" + checked + ", matched=" + matched + ", fallback=" + fallback;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.cache.local;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Content of a local repo cache: a map limited to given number of entries, evicting the least recently used ones.
+ *
+ * Local caches are mostly accessed by a single thread, but a scope can be shared with child worker threads
+ * (see {@link LocalRepoCacheScope}), so all the access is synchronized. The lock is uncontended in the usual case.
+ */
+class BoundedCacheMap<K, V> {
+
+    private final int capacity;
+    private final LocalCacheStatistics statistics;
+    private final LinkedHashMap<K, V> data;
+
+    BoundedCacheMap(int capacity, LocalCacheStatistics statistics) {
+        this.capacity = capacity;
+        this.statistics = statistics;
+        this.data = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > BoundedCacheMap.this.capacity) {
+                    statistics.recordEviction();
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        };
+    }
+
+    synchronized V get(K key) {
+        V value = data.get(key);
+        if (value != null) {
+            statistics.recordHit();
+        } else {
+            statistics.recordMiss();
+        }
+        return value;
+    }
+
+    synchronized void put(K key, V value) {
+        if (capacity > 0) {
+            data.put(key, value);
+        }
+    }
+
+    synchronized void remove(K key) {
+        data.remove(key);
+    }
+
+    /** Removes all entries matching the predicate, returns the number of removed ones. */
+    synchronized int removeIf(BiPredicate<K, V> predicate) {
+        int removed = 0;
+        Iterator<Map.Entry<K, V>> iterator = data.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, V> entry = iterator.next();
+            if (predicate.test(entry.getKey(), entry.getValue())) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    synchronized int size() {
+        return data.size();
+    }
+
+    synchronized int sum(ToIntFunction<V> function) {
+        int sum = 0;
+        for (V value : data.values()) {
+            sum += function.applyAsInt(value);
+        }
+        return sum;
+    }
+
+    synchronized void forEach(BiConsumer<K, V> consumer) {
+        data.forEach(consumer);
+    }
+}
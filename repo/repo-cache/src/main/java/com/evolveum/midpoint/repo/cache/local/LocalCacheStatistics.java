@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.cache.local;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCachePerformanceInformationType;
+
+/**
+ * Node-wide hit/miss/eviction counters for a kind of local repo cache (object, version, query).
+ *
+ * Local caches come and go with their scopes, so the counters are kept per cache kind, not per instance.
+ */
+public class LocalCacheStatistics {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    void recordEviction() {
+        evictions.incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    SingleCachePerformanceInformationType toPerformanceInformation(String name) {
+        SingleCachePerformanceInformationType rv = new SingleCachePerformanceInformationType();
+        rv.setName(name);
+        rv.setHitCount(toInt(hits.get()));
+        rv.setMissCount(toInt(misses.get()));
+        rv.setEvictionCount(toInt(evictions.get()));
+        return rv;
+    }
+
+    private static int toInt(long value) {
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits + ", misses=" + misses + ", evictions=" + evictions;
+    }
+}
@@ -9,21 +9,26 @@ package com.evolveum.midpoint.repo.cache.local;
 
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.util.caching.AbstractThreadLocalCache;
+import com.evolveum.midpoint.util.caching.CacheConfiguration;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
- * Thread-local cache for storing objects.
+ * Local (scoped) cache for storing objects. Bounded, see {@link LocalRepoCacheScope}.
  */
 public class LocalObjectCache extends AbstractThreadLocalCache {
 
     private static final Trace LOGGER_CONTENT = TraceManager.getTrace(LocalObjectCache.class.getName() + ".content");
 
-    private final Map<String, PrismObject<? extends ObjectType>> data = new ConcurrentHashMap<>();
+    static final LocalCacheStatistics STATISTICS = new LocalCacheStatistics();
+
+    private final BoundedCacheMap<String, PrismObject<? extends ObjectType>> data;
+
+    LocalObjectCache(CacheConfiguration configuration) {
+        setConfiguration(configuration);
+        data = new BoundedCacheMap<>(LocalRepoCacheScope.getCapacity(configuration), STATISTICS);
+    }
 
     public <T extends ObjectType> PrismObject<T> get(String oid) {
         //noinspection unchecked
@@ -53,9 +58,9 @@ public class LocalObjectCache extends AbstractThreadLocalCache {
         return data.size();
     }
 
-    public void dumpContent(String threadName) {
+    public void dumpContent(String scopeName) {
         if (LOGGER_CONTENT.isInfoEnabled()) {
-            data.forEach((k, v) -> LOGGER_CONTENT.info("Cached object [{}] {}: {}", threadName, k, v));
+            data.forEach((k, v) -> LOGGER_CONTENT.info("Cached object [{}] {}: {}", scopeName, k, v));
         }
     }
 }
@@ -9,27 +9,33 @@ package com.evolveum.midpoint.repo.cache.local;
 
 import static com.evolveum.midpoint.repo.cache.handlers.SearchOpHandler.QUERY_RESULT_SIZE_LIMIT;
 
-import java.util.Iterator;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
 
 import org.jetbrains.annotations.NotNull;
 
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.schema.SearchResultList;
 import com.evolveum.midpoint.util.caching.AbstractThreadLocalCache;
+import com.evolveum.midpoint.util.caching.CacheConfiguration;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
 /**
- * Thread-local cache for storing query results.
+ * Local (scoped) cache for storing query results. Bounded, see {@link LocalRepoCacheScope}.
  */
 public class LocalQueryCache extends AbstractThreadLocalCache {
 
     private static final Trace LOGGER_CONTENT = TraceManager.getTrace(LocalQueryCache.class.getName() + ".content");
 
-    private final Map<QueryKey, SearchResultList> data = new ConcurrentHashMap<>();
+    static final LocalCacheStatistics STATISTICS = new LocalCacheStatistics();
+
+    private final BoundedCacheMap<QueryKey, SearchResultList> data;
+
+    LocalQueryCache(CacheConfiguration configuration) {
+        setConfiguration(configuration);
+        data = new BoundedCacheMap<>(LocalRepoCacheScope.getCapacity(configuration), STATISTICS);
+    }
 
     public <T extends ObjectType> SearchResultList<PrismObject<T>> get(QueryKey key) {
         //noinspection unchecked
@@ -48,6 +54,17 @@ public class LocalQueryCache extends AbstractThreadLocalCache {
         data.remove(key);
     }
 
+    /**
+     * Removes all query results matching the predicate. Returns the number of removed entries.
+     */
+    public int removeIf(BiPredicate<QueryKey, SearchResultList> predicate) {
+        return data.removeIf(predicate);
+    }
+
+    public int size() {
+        return data.size();
+    }
+
     @Override
     public String description() {
         return "Q:" + data.size();
@@ -55,34 +72,17 @@ public class LocalQueryCache extends AbstractThreadLocalCache {
 
     @Override
     protected int getSize() {
-        return data.size();
+        return size();
     }
 
-    public void dumpContent(String threadName) {
+    public void dumpContent(String scopeName) {
         if (LOGGER_CONTENT.isInfoEnabled()) {
-            data.forEach((k, v) -> LOGGER_CONTENT.info("Cached query [{}] of {} ({} object(s)): {}: {}", threadName,
+            data.forEach((k, v) -> LOGGER_CONTENT.info("Cached query [{}] of {} ({} object(s)): {}: {}", scopeName,
                     k.getType(), v.size(), k.getQuery(), v));
         }
     }
 
-    @SuppressWarnings("SameParameterValue")
-    static int getTotalCachedObjects(ConcurrentHashMap<Thread, LocalQueryCache> cacheInstances) {
-        int rv = 0;
-        for (LocalQueryCache cacheInstance : cacheInstances.values()) {
-            rv += cacheInstance.getCachedObjects();
-        }
-        return rv;
-    }
-
-    private int getCachedObjects() {
-        int rv = 0;
-        for (SearchResultList value : data.values()) {
-            rv += value.size();
-        }
-        return rv;
-    }
-
-    public Iterator<Map.Entry<QueryKey, SearchResultList>> getEntryIterator() {
-        return data.entrySet().iterator();
+    int getCachedObjects() {
+        return data.sum(SearchResultList::size);
     }
 }
@@ -12,12 +12,15 @@ import static com.evolveum.midpoint.schema.cache.CacheType.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.repo.cache.invalidation.QueryInvalidationStatistics;
 import com.evolveum.midpoint.schema.cache.CacheConfigurationManager;
 import com.evolveum.midpoint.util.caching.CacheConfiguration;
 import com.evolveum.midpoint.util.logging.Trace;
@@ -25,7 +28,11 @@ import com.evolveum.midpoint.util.logging.TraceManager;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCacheStateInformationType;
 
 /**
- * Set of three thread-local repo caches (object, version, query).
+ * Set of three local repo caches (object, version, query), organized into scopes - see {@link LocalRepoCacheScope}.
+ *
+ * The scope is bound to the current thread by a thread-local variable, so there is no global thread-keyed map:
+ * data of finished scopes are released as soon as the scope is exited, and the lookup does not contend with other threads.
+ * Active scopes are registered only to provide the monitoring information.
  */
 @Component
 public class LocalRepoCacheCollection {
@@ -34,83 +41,166 @@ public class LocalRepoCacheCollection {
 
     @Autowired private PrismContext prismContext;
 
-    private static final ConcurrentHashMap<Thread, LocalObjectCache> LOCAL_OBJECT_CACHE_INSTANCE = new ConcurrentHashMap<>();
-    private static final ConcurrentHashMap<Thread, LocalVersionCache> LOCAL_VERSION_CACHE_INSTANCE = new ConcurrentHashMap<>();
-    private static final ConcurrentHashMap<Thread, LocalQueryCache> LOCAL_QUERY_CACHE_INSTANCE = new ConcurrentHashMap<>();
+    private static final ThreadLocal<ScopeBinding> CURRENT_BINDING = new ThreadLocal<>();
+
+    private static final Set<LocalRepoCacheScope> ACTIVE_SCOPES = ConcurrentHashMap.newKeySet();
 
     public static LocalObjectCache getLocalObjectCache() {
-        return LOCAL_OBJECT_CACHE_INSTANCE.get(Thread.currentThread());
+        LocalRepoCacheScope scope = currentScope();
+        return scope != null ? scope.getObjectCache() : null;
     }
 
     public static LocalVersionCache getLocalVersionCache() {
-        return LOCAL_VERSION_CACHE_INSTANCE.get(Thread.currentThread());
+        LocalRepoCacheScope scope = currentScope();
+        return scope != null ? scope.getVersionCache() : null;
     }
 
     public static LocalQueryCache getLocalQueryCache() {
-        return LOCAL_QUERY_CACHE_INSTANCE.get(Thread.currentThread());
+        LocalRepoCacheScope scope = currentScope();
+        return scope != null ? scope.getQueryCache() : null;
     }
 
     public static List<LocalQueryCache> getLocalQueryCaches() {
         List<LocalQueryCache> caches = new ArrayList<>();
-        caches.addAll(LOCAL_QUERY_CACHE_INSTANCE.values());
-
+        for (LocalRepoCacheScope scope : ACTIVE_SCOPES) {
+            caches.add(scope.getQueryCache());
+        }
         return Collections.unmodifiableList(caches);
     }
 
+    /**
+     * Returns the scope the current thread is bound to (if any). It can be passed to child worker threads,
+     * see {@link #enter(LocalRepoCacheScope)}.
+     */
+    public static LocalRepoCacheScope currentScope() {
+        ScopeBinding binding = CURRENT_BINDING.get();
+        return binding != null ? binding.scope : null;
+    }
+
     public static void destroy() {
-        LocalObjectCache.destroy(LOCAL_OBJECT_CACHE_INSTANCE, LOGGER);
-        LocalVersionCache.destroy(LOCAL_VERSION_CACHE_INSTANCE, LOGGER);
-        LocalQueryCache.destroy(LOCAL_QUERY_CACHE_INSTANCE, LOGGER);
+        LOGGER.trace("Destroying local repo caches, active scopes: {}", ACTIVE_SCOPES.size());
+        ACTIVE_SCOPES.clear();
+        CURRENT_BINDING.remove();
     }
 
     public static void enter(CacheConfigurationManager mgr) {
+        ScopeBinding binding = CURRENT_BINDING.get();
+        if (binding != null) {
+            binding.depth++;
+            LOGGER.trace("Re-entering local repo caches {}, depth: {}", binding.scope, binding.depth);
+            return;
+        }
+
         // let's compute configuration first -- an exception can be thrown there; so if it happens, none of the caches
         // will be entered into upon exit of this method
         CacheConfiguration objectCacheConfig = mgr.getConfiguration(LOCAL_REPO_OBJECT_CACHE);
         CacheConfiguration versionCacheConfig = mgr.getConfiguration(LOCAL_REPO_VERSION_CACHE);
         CacheConfiguration queryCacheConfig = mgr.getConfiguration(LOCAL_REPO_QUERY_CACHE);
 
-        LocalObjectCache.enter(LOCAL_OBJECT_CACHE_INSTANCE, LocalObjectCache.class, objectCacheConfig, LOGGER);
-        LocalVersionCache.enter(LOCAL_VERSION_CACHE_INSTANCE, LocalVersionCache.class, versionCacheConfig, LOGGER);
-        LocalQueryCache.enter(LOCAL_QUERY_CACHE_INSTANCE, LocalQueryCache.class, queryCacheConfig, LOGGER);
+        bind(new LocalRepoCacheScope(objectCacheConfig, versionCacheConfig, queryCacheConfig));
+    }
+
+    /**
+     * Enters the local caches of given (parent) scope. Used by child worker threads that should share the caches
+     * with the operation that started them. If the current thread has already its own scope, that one is kept.
+     * Each call must be paired with {@link #exit()}.
+     */
+    public static void enter(@NotNull LocalRepoCacheScope parentScope) {
+        ScopeBinding binding = CURRENT_BINDING.get();
+        if (binding != null) {
+            binding.depth++;
+            LOGGER.trace("Re-entering local repo caches {} instead of inherited {}, depth: {}",
+                    binding.scope, parentScope, binding.depth);
+            return;
+        }
+        bind(parentScope);
+    }
+
+    private static void bind(LocalRepoCacheScope scope) {
+        scope.bind();
+        ACTIVE_SCOPES.add(scope);
+        CURRENT_BINDING.set(new ScopeBinding(scope));
+        LOGGER.trace("Entered local repo caches {}", scope);
     }
 
     public static void exit() {
-        LocalObjectCache.exit(LOCAL_OBJECT_CACHE_INSTANCE, LOGGER);
-        LocalVersionCache.exit(LOCAL_VERSION_CACHE_INSTANCE, LOGGER);
-        LocalQueryCache.exit(LOCAL_QUERY_CACHE_INSTANCE, LOGGER);
+        ScopeBinding binding = CURRENT_BINDING.get();
+        if (binding == null) {
+            LOGGER.error("Exiting local repo caches that were not entered in thread {}", Thread.currentThread().getName());
+            return;
+        }
+        if (--binding.depth > 0) {
+            LOGGER.trace("Exited local repo caches {}, remaining depth: {}", binding.scope, binding.depth);
+            return;
+        }
+        CURRENT_BINDING.remove();
+        if (binding.scope.unbind()) {
+            ACTIVE_SCOPES.remove(binding.scope);
+            LOGGER.trace("Closed local repo caches {}", binding.scope);
+        }
     }
 
     public static boolean exists() {
-        return LocalObjectCache.exists(LOCAL_OBJECT_CACHE_INSTANCE) ||
-                LocalVersionCache.exists(LOCAL_VERSION_CACHE_INSTANCE) ||
-                LocalQueryCache.exists(LOCAL_QUERY_CACHE_INSTANCE);
+        return CURRENT_BINDING.get() != null;
     }
 
     public static String debugDump() {
-        // TODO
-        return LocalObjectCache.debugDump(LOCAL_OBJECT_CACHE_INSTANCE) + "\n" +
-                LocalVersionCache.debugDump(LOCAL_VERSION_CACHE_INSTANCE) + "\n" +
-                LocalQueryCache.debugDump(LOCAL_QUERY_CACHE_INSTANCE);
+        StringBuilder sb = new StringBuilder();
+        for (LocalRepoCacheScope scope : ACTIVE_SCOPES) {
+            if (!sb.isEmpty()) {
+                sb.append("\n");
+            }
+            sb.append(scope);
+        }
+        return sb.toString();
     }
 
     public void getStateInformation(List<SingleCacheStateInformationType> rv) {
-        rv.add(new SingleCacheStateInformationType(prismContext)
-                .name(LocalObjectCache.class.getName())
-                .size(LocalObjectCache.getTotalSize(LOCAL_OBJECT_CACHE_INSTANCE)));
-        rv.add(new SingleCacheStateInformationType(prismContext)
-                .name(LocalVersionCache.class.getName())
-                .size(LocalVersionCache.getTotalSize(LOCAL_VERSION_CACHE_INSTANCE)));
-        rv.add(new SingleCacheStateInformationType(prismContext)
-                .name(LocalQueryCache.class.getName())
-                .size(LocalQueryCache.getTotalSize(LOCAL_QUERY_CACHE_INSTANCE))
-                .secondarySize(LocalQueryCache.getTotalCachedObjects(LOCAL_QUERY_CACHE_INSTANCE)));
+        int objects = 0;
+        int versions = 0;
+        int queries = 0;
+        int queryObjects = 0;
+        for (LocalRepoCacheScope scope : ACTIVE_SCOPES) {
+            objects += scope.getObjectCache().getSize();
+            versions += scope.getVersionCache().getSize();
+            queries += scope.getQueryCache().getSize();
+            queryObjects += scope.getQueryCache().getCachedObjects();
+        }
+        rv.add(createStateInformation(LocalObjectCache.class, objects, LocalObjectCache.STATISTICS));
+        rv.add(createStateInformation(LocalVersionCache.class, versions, LocalVersionCache.STATISTICS));
+        SingleCacheStateInformationType queryCacheInfo =
+                createStateInformation(LocalQueryCache.class, queries, LocalQueryCache.STATISTICS)
+                        .secondarySize(queryObjects);
+        QueryInvalidationStatistics.LOCAL.fillIn(queryCacheInfo.getPerformance());
+        rv.add(queryCacheInfo);
+    }
 
+    private SingleCacheStateInformationType createStateInformation(
+            Class<?> cacheClass, int size, LocalCacheStatistics statistics) {
+        return new SingleCacheStateInformationType(prismContext)
+                .name(cacheClass.getName())
+                .size(size)
+                .performance(statistics.toPerformanceInformation(cacheClass.getName()));
     }
 
     public void dumpContent() {
-        LocalObjectCache.dumpContent(LOCAL_OBJECT_CACHE_INSTANCE);
-        LocalVersionCache.dumpContent(LOCAL_VERSION_CACHE_INSTANCE);
-        LocalQueryCache.dumpContent(LOCAL_QUERY_CACHE_INSTANCE);
+        for (LocalRepoCacheScope scope : ACTIVE_SCOPES) {
+            scope.getObjectCache().dumpContent(scope.getName());
+            scope.getVersionCache().dumpContent(scope.getName());
+            scope.getQueryCache().dumpContent(scope.getName());
+        }
+    }
+
+    /** Binding of a scope to a thread. Accessed only by the owning thread. */
+    private static class ScopeBinding {
+
+        @NotNull private final LocalRepoCacheScope scope;
+
+        /** How many times the thread has entered (and not exited) the caches. */
+        private int depth = 1;
+
+        private ScopeBinding(@NotNull LocalRepoCacheScope scope) {
+            this.scope = scope;
+        }
     }
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.cache.local;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.util.caching.CacheConfiguration;
+
+/**
+ * Local repo caches (object, version, query) of a single operation, e.g. a clockwork run or processing of an item.
+ *
+ * A scope is created when the first thread enters local caches and closed when the last thread bound to it leaves them.
+ * Normally, only the creating thread is bound to the scope. Child worker threads can be bound to the scope
+ * explicitly (see {@link LocalRepoCacheCollection#enter(LocalRepoCacheScope)}), so they share the cached data
+ * with the parent operation.
+ *
+ * Each cache is limited to {@link CacheConfiguration#getMaxSize()} entries ({@link #DEFAULT_CAPACITY} if not set);
+ * the least recently used entries are evicted when the limit is reached.
+ */
+public class LocalRepoCacheScope {
+
+    /** Used if the cache configuration does not specify the maximal size. */
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    private static final AtomicLong ID_COUNTER = new AtomicLong();
+
+    private final long id = ID_COUNTER.incrementAndGet();
+    @NotNull private final String creatingThreadName;
+
+    @NotNull private final LocalObjectCache objectCache;
+    @NotNull private final LocalVersionCache versionCache;
+    @NotNull private final LocalQueryCache queryCache;
+
+    /** Number of threads bound to this scope. */
+    private final AtomicInteger boundThreads = new AtomicInteger();
+
+    LocalRepoCacheScope(CacheConfiguration objectCacheConfig, CacheConfiguration versionCacheConfig,
+            CacheConfiguration queryCacheConfig) {
+        creatingThreadName = Thread.currentThread().getName();
+        objectCache = new LocalObjectCache(objectCacheConfig);
+        versionCache = new LocalVersionCache(versionCacheConfig);
+        queryCache = new LocalQueryCache(queryCacheConfig);
+    }
+
+    static int getCapacity(CacheConfiguration configuration) {
+        if (configuration == null || configuration.getMaxSize() == null) {
+            return DEFAULT_CAPACITY;
+        } else {
+            return Math.max(configuration.getMaxSize(), 0);
+        }
+    }
+
+    @NotNull LocalObjectCache getObjectCache() {
+        return objectCache;
+    }
+
+    @NotNull LocalVersionCache getVersionCache() {
+        return versionCache;
+    }
+
+    @NotNull LocalQueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    void bind() {
+        boundThreads.incrementAndGet();
+    }
+
+    /** Returns true if this was the last thread bound to the scope, i.e. the scope is closed now. */
+    boolean unbind() {
+        return boundThreads.decrementAndGet() <= 0;
+    }
+
+    @NotNull String getName() {
+        return "#" + id + " (" + creatingThreadName + ")";
+    }
+
+    @Override
+    public String toString() {
+        return "LocalRepoCacheScope" + getName() + ": " + objectCache.description() + ", "
+                + versionCache.description() + ", " + queryCache.description() + ", threads: " + boundThreads;
+    }
+}
@@ -9,20 +9,25 @@ package com.evolveum.midpoint.repo.cache.local;
 
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.util.caching.AbstractThreadLocalCache;
+import com.evolveum.midpoint.util.caching.CacheConfiguration;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
- * Thread-local cache for object version.
+ * Local (scoped) cache for object version. Bounded, see {@link LocalRepoCacheScope}.
  */
 public class LocalVersionCache extends AbstractThreadLocalCache {
 
     private static final Trace LOGGER_CONTENT = TraceManager.getTrace(LocalVersionCache.class.getName() + ".content");
 
-    private final Map<String, String> data = new ConcurrentHashMap<>();
+    static final LocalCacheStatistics STATISTICS = new LocalCacheStatistics();
+
+    private final BoundedCacheMap<String, String> data;
+
+    LocalVersionCache(CacheConfiguration configuration) {
+        setConfiguration(configuration);
+        data = new BoundedCacheMap<>(LocalRepoCacheScope.getCapacity(configuration), STATISTICS);
+    }
 
     public String get(String oid) {
         return data.get(oid);
@@ -50,9 +55,9 @@ public class LocalVersionCache extends AbstractThreadLocalCache {
         return data.size();
     }
 
-    public void dumpContent(String threadName) {
+    public void dumpContent(String scopeName) {
         if (LOGGER_CONTENT.isInfoEnabled()) {
-            data.forEach((k, v) -> LOGGER_CONTENT.info("Cached version [{}] {}: {}", threadName, k, v));
+            data.forEach((k, v) -> LOGGER_CONTENT.info("Cached version [{}] {}: {}", scopeName, k, v));
         }
     }
 }
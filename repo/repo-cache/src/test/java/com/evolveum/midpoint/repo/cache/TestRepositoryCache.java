@@ -18,6 +18,7 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.evolveum.midpoint.schema.util.SchemaDebugUtil;
 
@@ -33,7 +34,9 @@ import org.testng.annotations.Test;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.path.ItemName;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.prism.query.builder.S_FilterExit;
 import com.evolveum.midpoint.prism.util.PrismTestUtil;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.repo.api.perf.OperationPerformanceInformation;
@@ -42,9 +45,14 @@ import com.evolveum.midpoint.repo.cache.global.GlobalCacheObjectValue;
 import com.evolveum.midpoint.repo.cache.global.GlobalObjectCache;
 import com.evolveum.midpoint.repo.cache.global.GlobalQueryCache;
 import com.evolveum.midpoint.repo.cache.global.GlobalVersionCache;
+import com.evolveum.midpoint.repo.cache.invalidation.QueryInvalidationStatistics;
+import com.evolveum.midpoint.repo.cache.local.LocalObjectCache;
+import com.evolveum.midpoint.repo.cache.local.LocalRepoCacheCollection;
+import com.evolveum.midpoint.repo.cache.local.LocalRepoCacheScope;
 import com.evolveum.midpoint.repo.cache.local.QueryKey;
 import com.evolveum.midpoint.repo.sqale.SqaleRepositoryService;
 import com.evolveum.midpoint.schema.*;
+import com.evolveum.midpoint.schema.cache.CacheConfigurationManager;
 import com.evolveum.midpoint.schema.constants.MidPointConstants;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.statistics.CachePerformanceInformationUtil;
@@ -58,6 +66,7 @@ import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ArchetypeType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SingleCachePerformanceInformationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 import com.evolveum.prism.xml.ns._public.types_3.PolyStringType;
@@ -73,6 +82,7 @@ public class TestRepositoryCache extends AbstractSpringTest implements InfraTest
     @Autowired GlobalVersionCache globalVersionCache;
     @Autowired GlobalQueryCache globalQueryCache;
     @Autowired PrismContext prismContext;
+    @Autowired CacheConfigurationManager cacheConfigurationManager;
 
     @SuppressWarnings("unused") // used when heap dumps are uncommented
     private final long identifier = System.currentTimeMillis();
@@ -132,6 +142,51 @@ public class TestRepositoryCache extends AbstractSpringTest implements InfraTest
         testSearchCachedObjectsIterative(ArchetypeType.class);
     }
 
+    /**
+     * Objects in the global cache are taken from there, the rest is fetched in a single search.
+     * Non-existing objects are simply skipped.
+     */
+    @Test
+    public void test240GetObjectsArchetypes() throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        given();
+        OperationResult result = createOperationResult();
+
+        deleteExistingObjects(ArchetypeType.class, result);
+
+        clearStatistics();
+        clearCaches();
+
+        Set<PrismObject<ArchetypeType>> objects = generateObjects(ArchetypeType.class, 3, result);
+        List<String> oids = objects.stream().map(PrismObject::getOid).toList();
+        repositoryCache.getObject(ArchetypeType.class, oids.get(0), null, result);
+
+        when("first call (one object cached, one not existing)");
+        List<String> oidsWithNonExisting = new ArrayList<>(oids);
+        oidsWithNonExisting.add(UUID.randomUUID().toString());
+        SearchResultList<PrismObject<ArchetypeType>> objects1 =
+                repositoryCache.getObjects(ArchetypeType.class, oidsWithNonExisting, null, result);
+
+        then("first call");
+        displayCollection("1st round of objects retrieved", objects1);
+        assertEquals("Wrong objects1", objects, new HashSet<>(objects1));
+        objects1.get(0).asObjectable().setDescription("garbage");
+
+        when("second call (all objects cached)");
+        SearchResultList<PrismObject<ArchetypeType>> objects2 =
+                repositoryCache.getObjects(ArchetypeType.class, oids, null, result);
+
+        then("second call");
+        displayCollection("2nd round of objects retrieved", objects2);
+        assertEquals("Wrong objects2", objects, new HashSet<>(objects2));
+
+        dumpStatistics();
+        assertGetOperations(1);
+        assertOperations(RepositoryService.OP_SEARCH_OBJECTS, 1);
+        for (String oid : oids) {
+            assertObjectAndVersionCached(oid, true);
+        }
+    }
+
     /**
      * MID-6250
      */
@@ -307,6 +362,145 @@ public class TestRepositoryCache extends AbstractSpringTest implements InfraTest
         assertThat(data.overSizedQueries.get()).as("over-sized counter").isEqualTo(2); // search + searchIterative
     }
 
+    /**
+     * Local caches scope shared with a child thread; hit/miss counters reported in the state information.
+     */
+    @Test
+    public void test400LocalCacheScopeInheritance() throws Exception {
+        given("local caches entered by the parent thread");
+        int missesBefore = getLocalObjectCachePerformance().getMissCount();
+        RepositoryCache.enterLocalCaches(cacheConfigurationManager);
+        try {
+            LocalRepoCacheScope scope = LocalRepoCacheCollection.currentScope();
+            assertThat(scope).as("current scope").isNotNull();
+            LocalObjectCache parentCache = LocalRepoCacheCollection.getLocalObjectCache();
+
+            when("child thread enters the scope of the parent and accesses the cache");
+            AtomicReference<LocalObjectCache> childCache = new AtomicReference<>();
+            Thread child = new Thread(() -> {
+                LocalRepoCacheCollection.enter(scope);
+                try {
+                    childCache.set(LocalRepoCacheCollection.getLocalObjectCache());
+                    childCache.get().get("00000000-0000-0000-0000-000000000000");
+                } finally {
+                    LocalRepoCacheCollection.exit();
+                }
+            });
+            child.start();
+            child.join();
+
+            then("child shares the caches with the parent");
+            assertThat(childCache.get()).as("child cache").isSameAs(parentCache);
+            assertThat(LocalRepoCacheCollection.currentScope()).isSameAs(scope);
+
+            and("the miss is counted");
+            assertThat(getLocalObjectCachePerformance().getMissCount()).isEqualTo(missesBefore + 1);
+        } finally {
+            RepositoryCache.exitLocalCaches();
+        }
+
+        and("caches are gone after exit");
+        assertThat(LocalRepoCacheCollection.exists()).isFalse();
+        assertThat(LocalRepoCacheCollection.debugDump()).isEmpty();
+    }
+
+    private SingleCachePerformanceInformationType getLocalObjectCachePerformance() {
+        return repositoryCache.getStateInformation().stream()
+                .filter(info -> LocalObjectCache.class.getName().equals(info.getName()))
+                .findFirst()
+                .orElseThrow()
+                .getPerformance();
+    }
+
+    /**
+     * Only the cached queries that can be affected by the change are invalidated.
+     * For paged queries, the state of the object before the change is considered as well.
+     */
+    @Test
+    public void test500QueryInvalidationByFilterMatching() throws Exception {
+        given("archetypes with two cost centers and cached queries for them");
+        OperationResult result = createOperationResult();
+        String a1 = addArchetype("t500-a1", "t500-a", result);
+        addArchetype("t500-b1", "t500-b", result);
+        String b2 = addArchetype("t500-b2", "t500-b", result);
+        clearCaches();
+
+        ObjectQuery queryA = costCenterQuery("t500-a").build();
+        ObjectQuery queryB = costCenterQuery("t500-b").build();
+        ObjectQuery queryBFirst = costCenterQuery("t500-b")
+                .asc(ArchetypeType.F_NAME)
+                .maxSize(1)
+                .build();
+        repositoryCache.searchObjects(ArchetypeType.class, queryA, null, result);
+        repositoryCache.searchObjects(ArchetypeType.class, queryB, null, result);
+        assertThat(repositoryCache.searchObjects(ArchetypeType.class, queryBFirst, null, result))
+                .extracting(o -> o.getName().getOrig())
+                .containsExactly("t500-b1");
+        assertQueryIsCached(ArchetypeType.class, queryA);
+        assertQueryIsCached(ArchetypeType.class, queryB);
+        assertQueryIsCached(ArchetypeType.class, queryBFirst);
+        long matchedBefore = QueryInvalidationStatistics.GLOBAL.getMatched();
+        long checkedBefore = QueryInvalidationStatistics.GLOBAL.getChecked();
+
+        when("archetype with the first cost center is modified");
+        modifyArchetype(a1, ArchetypeType.F_DESCRIPTION, "changed", result);
+
+        then("only the query containing it is invalidated");
+        assertQueryIsNotCached(ArchetypeType.class, queryA);
+        assertQueryIsCached(ArchetypeType.class, queryB);
+        assertQueryIsCached(ArchetypeType.class, queryBFirst);
+
+        when("archetype outside of the cached page is moved to another cost center");
+        repositoryCache.searchObjects(ArchetypeType.class, queryA, null, result);
+        modifyArchetype(b2, ArchetypeType.F_COST_CENTER, "t500-c", result);
+
+        then("both queries it matched before are invalidated, the other one is kept");
+        assertQueryIsCached(ArchetypeType.class, queryA);
+        assertQueryIsNotCached(ArchetypeType.class, queryB);
+        assertQueryIsNotCached(ArchetypeType.class, queryBFirst);
+
+        when("empty modification is executed");
+        repositoryCache.modifyObject(ArchetypeType.class, a1, List.of(), result);
+
+        then("nothing is invalidated");
+        assertQueryIsCached(ArchetypeType.class, queryA);
+
+        and("invalidation statistics are updated and reported");
+        assertThat(QueryInvalidationStatistics.GLOBAL.getMatched()).isEqualTo(matchedBefore + 3);
+        assertThat(QueryInvalidationStatistics.GLOBAL.getChecked()).isGreaterThan(checkedBefore);
+        SingleCachePerformanceInformationType performance = repositoryCache.getStateInformation().stream()
+                .filter(info -> GlobalQueryCache.class.getName().equals(info.getName()))
+                .findFirst()
+                .orElseThrow()
+                .getPerformance();
+        assertThat(performance.getInvalidationCount()).isGreaterThanOrEqualTo(3);
+        displayValue("global query cache invalidation statistics", String.valueOf(QueryInvalidationStatistics.GLOBAL));
+    }
+
+    private String addArchetype(String name, String costCenter, OperationResult result)
+            throws ObjectAlreadyExistsException, SchemaException {
+        return repositoryCache.addObject(
+                new ArchetypeType()
+                        .name(name)
+                        .costCenter(costCenter)
+                        .asPrismObject(),
+                null, result);
+    }
+
+    private S_FilterExit costCenterQuery(String costCenter) {
+        return prismContext.queryFor(ArchetypeType.class)
+                .item(ArchetypeType.F_COST_CENTER).eq(costCenter);
+    }
+
+    private void modifyArchetype(String oid, ItemName item, String value, OperationResult result)
+            throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        repositoryCache.modifyObject(ArchetypeType.class, oid,
+                prismContext.deltaFor(ArchetypeType.class)
+                        .item(item).replace(value)
+                        .asItemDeltas(),
+                result);
+    }
+
     // Must be executed last, because naive deletion such large number of archetypes fails on OOM
     @Test
     public void test900HeapUsage() throws Exception {
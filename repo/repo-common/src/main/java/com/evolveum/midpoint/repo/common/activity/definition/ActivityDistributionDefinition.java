@@ -70,6 +70,15 @@ public class ActivityDistributionDefinition implements DebugDumpable, Cloneable
         return or0(bean.getWorkerThreads());
     }
 
+    /** Returns the configured queue depth per worker thread, or null if the default should be used. */
+    public Integer getWorkerThreadsQueueDepth() {
+        return bean.getWorkerThreadsQueueDepth();
+    }
+
+    public boolean isVirtualWorkerThreads() {
+        return Boolean.TRUE.equals(bean.isVirtualWorkerThreads());
+    }
+
     void applyChangeTailoring(@NotNull ActivityTailoringType tailoring) {
         if (tailoring.getDistribution() != null) {
             bean = TailoringUtil.getTailoredBean(bean, tailoring.getDistribution());
@@ -227,6 +227,8 @@ public abstract class AbstractActivityRun<
 
         ActivityRunResult runResult = runTreatingExceptions(result);
 
+        releaseCounterReservations(result);
+
         noteEndTimestampIfNone();
         logEnd(runResult);
 
@@ -476,7 +478,22 @@ public abstract class AbstractActivityRun<
                 activityStateForCounters = determineActivityStateForCounters(result);
             }
         }
-        return activityStateForCounters.incrementCounters(counterGroup, countersIdentifiers, result);
+        if (activityStateForCounters == activityState) {
+            // The counters reside in this task only, so their values can be reserved in advance.
+            return activityState.incrementCountersUsingReservations(counterGroup, countersIdentifiers, result);
+        } else {
+            return activityStateForCounters.incrementCounters(counterGroup, countersIdentifiers, result);
+        }
+    }
+
+    /** Makes the counters in the repository exact, so they can be used by further runs or activities. */
+    private void releaseCounterReservations(OperationResult result) {
+        try {
+            activityState.releaseCounterReservations(result);
+        } catch (CommonException e) {
+            // The counters remain only somewhat higher than they should be, so let us continue.
+            LoggingUtils.logUnexpectedException(LOGGER, "Couldn't release counter reservations in {}", e, this);
+        }
     }
 
     protected @NotNull ActivityState determineActivityStateForCounters(@NotNull OperationResult result)
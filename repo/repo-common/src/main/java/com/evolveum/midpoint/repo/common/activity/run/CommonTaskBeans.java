@@ -11,6 +11,7 @@ import com.evolveum.midpoint.audit.api.AuditService;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.match.MatchingRuleRegistry;
 import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.repo.common.SystemObjectCache;
 import com.evolveum.midpoint.repo.common.activity.ActivityListener;
 import com.evolveum.midpoint.repo.common.activity.TaskActivityManager;
 import com.evolveum.midpoint.repo.common.activity.definition.WorkDefinitionFactory;
@@ -55,6 +56,7 @@ public class CommonTaskBeans {
     @Autowired @Qualifier("cacheRepositoryService") public RepositoryService repositoryService;
     @Autowired @Qualifier("repositoryService") public RepositoryService plainRepositoryService;
     @Autowired public AuditService auditService;
+    @Autowired public SystemObjectCache systemObjectCache;
     @Autowired public PrismContext prismContext;
     @Autowired public SchemaService schemaService;
     @Autowired public MatchingRuleRegistry matchingRuleRegistry;
@@ -13,6 +13,7 @@ import static com.evolveum.midpoint.schema.util.task.ActivityItemProcessingStati
 import static com.evolveum.midpoint.task.api.TaskRunResult.TaskRunResultStatus.PERMANENT_ERROR;
 
 import java.util.Objects;
+import java.util.function.Consumer;
 
 import com.evolveum.midpoint.prism.xml.XmlTypeConverter;
 
@@ -35,15 +36,18 @@ import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import com.evolveum.midpoint.repo.common.activity.definition.ActivityDistributionDefinition;
 import com.evolveum.midpoint.repo.common.activity.definition.WorkDefinition;
 import com.evolveum.midpoint.repo.common.activity.handlers.ActivityHandler;
 import com.evolveum.midpoint.repo.common.activity.run.state.ActivityBucketManagementStatistics;
 import com.evolveum.midpoint.repo.common.activity.run.state.ActivityItemProcessingStatistics;
 import com.evolveum.midpoint.repo.common.activity.run.state.ActivityState;
+import com.evolveum.midpoint.repo.common.activity.run.buckets.BucketingManager;
 import com.evolveum.midpoint.repo.common.activity.run.buckets.GetBucketOperationOptions;
 import com.evolveum.midpoint.repo.common.activity.run.buckets.GetBucketOperationOptions.GetBucketOperationOptionsBuilder;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.schema.result.OperationResultStatus;
+import com.evolveum.midpoint.schema.util.task.ActivityPath;
 import com.evolveum.midpoint.schema.util.task.BucketingUtil;
 import com.evolveum.midpoint.task.api.ExecutionSupport;
 import com.evolveum.midpoint.task.api.RunningTask;
@@ -103,6 +107,14 @@ public abstract class IterativeActivityRun<
      */
     protected WorkBucketType bucket;
 
+    /**
+     * Bucket that was obtained along with the completion of the previous one, and is to be processed next.
+     * It saves one update of the coordinator task per bucket; the buckets are still claimed in the coordinator task.
+     * See {@link BucketingManager#completeWorkBucketAndGetNext(String, String, ActivityPath, int, GetBucketOperationOptions,
+     * ActivityBucketManagementStatistics, Consumer, OperationResult)}.
+     */
+    private WorkBucketType nextBucket;
+
     /**
      * Expected progress (overall) if it was determined for the current run.
      * It is used to avoid re-counting objects if there's no bucketing.
@@ -228,37 +240,46 @@ public abstract class IterativeActivityRun<
 
         setExpectedTotal(result);
 
-        for (; task.canRun(); initialRun = false) {
-
-            bucket = getWorkBucket(initialRun, result);
-            if (bucket == null) {
-                LOGGER.trace("No (next) work bucket within {}, exiting", task);
-                break;
-            }
-
-            boolean complete = false;
-            try {
-                if (!task.canRun()) {
-                    break;
-                }
-
-                complete = processOrAnalyzeOrSkipSingleBucket(result);
-                pruneResult(result);
+        try {
+            for (; task.canRun(); initialRun = false) {
 
-                if (!complete) {
+                bucket = getWorkBucket(initialRun, result);
+                if (bucket == null) {
+                    LOGGER.trace("No (next) work bucket within {}, exiting", task);
                     break;
                 }
 
-            } finally {
-                if (!complete) {
-                    // This is either when the task was stopped (canRun is false or there's an stopping exception)
-                    // or an unhandled exception occurred.
-                    //
-                    // This most probably means that the task is going to be suspended. So let us release the buckets
-                    // to allow their processing by other workers.
-                    releaseAllBucketsWhenWorker(result);
+                boolean complete = false;
+                try {
+                    if (!task.canRun()) {
+                        break;
+                    }
+
+                    complete = processOrAnalyzeOrSkipSingleBucket(result);
+                    pruneResult(result);
+
+                    if (!complete) {
+                        break;
+                    }
+
+                } finally {
+                    if (!complete) {
+                        // This is either when the task was stopped (canRun is false or there's an stopping exception)
+                        // or an unhandled exception occurred.
+                        //
+                        // This most probably means that the task is going to be suspended. So let us release the buckets
+                        // to allow their processing by other workers.
+                        releaseAllBucketsWhenWorker(result);
+                    }
                 }
             }
+        } finally {
+            if (nextBucket != null) {
+                // The task is being stopped (or the processing failed), so the bucket obtained along with
+                // the completion of the last one will not be processed. Let us release it to allow its processing
+                // by other workers.
+                releaseNextBucketWhenWorker(result);
+            }
         }
     }
 
@@ -320,17 +341,16 @@ public abstract class IterativeActivityRun<
 
         WorkBucketType bucket;
         try {
-            GetBucketOperationOptions options = GetBucketOperationOptionsBuilder.anOptions()
-                    .withDistributionDefinition(activity.getDefinition().getDistributionDefinition())
-                    .withFreeBucketWaitTime(FREE_BUCKET_WAIT_TIME)
-                    .withCanRun(task::canRun)
-                    .withExecuteInitialWait(initialRun)
-                    .withImplicitSegmentationResolver(this)
-                    .withIsScavenger(isScavenger(task))
-                    .withBucketProgressConsumer(bucketProgressHolder)
-                    .build();
-            bucket = beans.bucketingManager.getWorkBucket(bucketingSituation.coordinatorTaskOid,
-                    bucketingSituation.workerTaskOid, activity.getPath(), options, getLiveBucketManagementStatistics(), result);
+            if (nextBucket != null) {
+                bucket = nextBucket;
+                nextBucket = null;
+                LOGGER.trace("Using bucket obtained along with the completion of the previous one: {}", bucket);
+            } else {
+                GetBucketOperationOptions options = createGetBucketOperationOptions(initialRun, bucketProgressHolder);
+                bucket = beans.bucketingManager.getWorkBucket(bucketingSituation.coordinatorTaskOid,
+                        bucketingSituation.workerTaskOid, activity.getPath(), options, getLiveBucketManagementStatistics(),
+                        result);
+            }
             task.refresh(result); // We want to have the most current state of the running task.
         } catch (InterruptedException e) {
             LOGGER.trace("InterruptedExecution in getWorkBucket for {}", task);
@@ -349,6 +369,20 @@ public abstract class IterativeActivityRun<
         return bucket;
     }
 
+    private GetBucketOperationOptions createGetBucketOperationOptions(
+            boolean initialRun, Consumer<BucketProgressOverviewType> bucketProgressConsumer) {
+        RunningTask task = taskRun.getRunningTask();
+        return GetBucketOperationOptionsBuilder.anOptions()
+                .withDistributionDefinition(activity.getDefinition().getDistributionDefinition())
+                .withFreeBucketWaitTime(FREE_BUCKET_WAIT_TIME)
+                .withCanRun(task::canRun)
+                .withExecuteInitialWait(initialRun)
+                .withImplicitSegmentationResolver(this)
+                .withIsScavenger(isScavenger(task))
+                .withBucketProgressConsumer(bucketProgressConsumer)
+                .build();
+    }
+
     private void announceNumberOfBuckets(BucketProgressOverviewType bucketProgress, OperationResult result)
             throws ActivityRunException {
         if (bucketProgress != null && !Objects.equals(bucketProgress.getTotalBuckets(), numberOfBucketsAnnounced)) {
@@ -366,15 +400,31 @@ public abstract class IterativeActivityRun<
             beans.bucketingManager.releaseAllWorkBucketsFromWorker(bucketingSituation.coordinatorTaskOid,
                     bucketingSituation.workerTaskOid, getActivityPath(), getLiveBucketManagementStatistics(), result);
         }
+        nextBucket = null; // released along with the others
     }
 
+    private void releaseNextBucketWhenWorker(OperationResult result) throws SchemaException, ObjectNotFoundException {
+        if (bucketingSituation.workerTaskOid != null) {
+            beans.bucketingManager.releaseWorkBucket(bucketingSituation.coordinatorTaskOid,
+                    bucketingSituation.workerTaskOid, getActivityPath(), nextBucket.getSequentialNumber(),
+                    getLiveBucketManagementStatistics(), result);
+        }
+        nextBucket = null;
+    }
+
+    /**
+     * Completes the current bucket. The next bucket is obtained in the same operation (if possible),
+     * to save one modification of the coordinator task.
+     */
     private void completeWorkBucketAndUpdateStatistics(OperationResult result) throws ActivityRunException {
         try {
 
             Holder<BucketProgressOverviewType> bucketProgressHolder = new Holder<>();
-            beans.bucketingManager.completeWorkBucket(bucketingSituation.coordinatorTaskOid, bucketingSituation.workerTaskOid,
-                    getActivityPath(), bucket.getSequentialNumber(), getLiveBucketManagementStatistics(),
-                    bucketProgressHolder, result);
+            nextBucket = beans.bucketingManager.completeWorkBucketAndGetNext(
+                    bucketingSituation.coordinatorTaskOid, bucketingSituation.workerTaskOid,
+                    getActivityPath(), bucket.getSequentialNumber(),
+                    createGetBucketOperationOptions(false, null),
+                    getLiveBucketManagementStatistics(), bucketProgressHolder, result);
 
             activityState.getLiveProgress().onCommitPoint();
             activityState.updateProgressAndStatisticsNoCommit();
@@ -640,7 +690,12 @@ public abstract class IterativeActivityRun<
      * Creates the processing coordinator and worker threads.
      */
     private ProcessingCoordinator<I> setupCoordinatorAndWorkerThreads() throws ConfigurationException {
-        ProcessingCoordinator<I> coordinator = new ProcessingCoordinator<>(getWorkerThreadsCount(), this);
+        ActivityDistributionDefinition distributionDefinition = getActivity().getDistributionDefinition();
+        ProcessingCoordinator<I> coordinator = new ProcessingCoordinator<>(
+                getWorkerThreadsCount(),
+                distributionDefinition.getWorkerThreadsQueueDepth(),
+                distributionDefinition.isVirtualWorkerThreads(),
+                this);
         coordinator.createWorkerThreads();
         return coordinator;
     }
@@ -41,7 +41,8 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.WorkBucketType;
  * Responsible for managing task work state:
  *
  * 1. Obtains new buckets to be processed: {@link #getWorkBucket(String, String, ActivityPath, GetBucketOperationOptions, ActivityBucketManagementStatistics, OperationResult)}.
- * 2. Marks buckets as complete: {@link #completeWorkBucket(String, String, ActivityPath, int, ActivityBucketManagementStatistics, Consumer, OperationResult)}.
+ * 2. Marks buckets as complete: {@link #completeWorkBucket(String, String, ActivityPath, int, ActivityBucketManagementStatistics, Consumer, OperationResult)},
+ * optionally obtaining the next bucket at once: {@link #completeWorkBucketAndGetNext(String, String, ActivityPath, int, GetBucketOperationOptions, ActivityBucketManagementStatistics, Consumer, OperationResult)}.
  * 3. Releases work buckets in case they are not going to be processed: {@link #releaseWorkBucket(String, String, ActivityPath, int, ActivityBucketManagementStatistics, OperationResult)}.
  * 4. Computes query narrowing for given work bucket: {@link #narrowQueryForWorkBucket(Class, ObjectQuery, ActivityDistributionDefinition, ItemDefinitionProvider, WorkBucketType)}.
  *
@@ -75,7 +76,39 @@ public class BucketingManager {
             @NotNull OperationResult result)
             throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException {
         new CompleteBucketOperation(coordinatorTaskOid, workerTaskOid, activityPath, statistics,
-                bucketProgressConsumer, beans, sequentialNumber)
+                bucketProgressConsumer, beans, sequentialNumber, null)
+                .execute(result);
+    }
+
+    /**
+     * Marks a work bucket as complete and tries to obtain the next one, both in a single modification
+     * of the coordinator task.
+     *
+     * Only a single attempt to get the bucket is made, i.e. there is no waiting for free buckets, nor marking
+     * the work as complete. So, if null is returned, the caller should continue with
+     * {@link #getWorkBucket(String, String, ActivityPath, GetBucketOperationOptions, ActivityBucketManagementStatistics, OperationResult)}.
+     *
+     * Note that this only halves the number of read-modify-write cycles of the coordinator task per bucket.
+     * The bucketing state is still kept in the coordinator task, so all the workers still serialize on it,
+     * and each cycle still rewrites the whole coordinator object. Keeping the buckets in a dedicated table
+     * of the native repository (with row-level claiming) is not implemented: it would need a new schema and its migration,
+     * a new repository API, a re-implementation of bucket creation, compression, scavenging and releasing on top of it,
+     * and a change of everything that reads the bucketing state from the task (GUI, progress reporting, workers management).
+     * For activities with many workers, it is better to keep the number of buckets moderate (i.e. to use larger buckets).
+     *
+     * @return The next bucket to be processed (if obtained)
+     */
+    public @Nullable WorkBucketType completeWorkBucketAndGetNext(@NotNull String coordinatorTaskOid,
+            @Nullable String workerTaskOid, @NotNull ActivityPath activityPath, int sequentialNumber,
+            @Nullable GetBucketOperationOptions nextBucketOptions,
+            @Nullable ActivityBucketManagementStatistics statistics,
+            @Nullable Consumer<BucketProgressOverviewType> bucketProgressConsumer,
+            @NotNull OperationResult result)
+            throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException {
+        GetBucketOperation nextBucketOperation =
+                new GetBucketOperation(coordinatorTaskOid, workerTaskOid, activityPath, statistics, nextBucketOptions, beans);
+        return new CompleteBucketOperation(coordinatorTaskOid, workerTaskOid, activityPath, statistics,
+                bucketProgressConsumer, beans, sequentialNumber, nextBucketOperation)
                 .execute(result);
     }
 
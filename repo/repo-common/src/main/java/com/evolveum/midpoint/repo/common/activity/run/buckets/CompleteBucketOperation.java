@@ -20,6 +20,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.delta.ItemDeltaCollectionsUtil;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.util.CloneUtil;
 import com.evolveum.midpoint.repo.api.ModifyObjectResult;
@@ -38,30 +39,88 @@ import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 
+/**
+ * Implements "complete bucket" operation.
+ *
+ * Optionally, the next bucket is obtained in the same (single) modification of the coordinator task, see
+ * {@link #nextBucketOperation}. This saves one read-modify-write cycle of the coordinator task per bucket,
+ * which matters when many workers share a single coordinator. The cycles themselves are not made cheaper:
+ * see {@link BucketingManager#completeWorkBucketAndGetNext(String, String, ActivityPath, int, GetBucketOperationOptions,
+ * ActivityBucketManagementStatistics, Consumer, OperationResult)} for the limits of this approach.
+ */
 public class CompleteBucketOperation extends BucketOperation {
 
     private static final Trace LOGGER = TraceManager.getTrace(CompleteBucketOperation.class);
 
     private final int sequentialNumber;
 
+    /**
+     * If not null, the next bucket is obtained (by a single attempt of this operation) right after the current one
+     * is completed. If the attempt yields no bucket, the caller has to use the regular "get bucket" operation,
+     * as waiting for free buckets, scavenging, and marking the work as complete is not done here.
+     */
+    @Nullable private final GetBucketOperation nextBucketOperation;
+
+    /** The attempt to get the next bucket, executed in the last (successful) invocation of the modifications supplier. */
+    private GetBucketOperationAttempt nextBucketAttempt;
+
     CompleteBucketOperation(@NotNull String coordinatorTaskOid, @Nullable String workerTaskOid,
             @NotNull ActivityPath activityPath, ActivityBucketManagementStatistics collector,
             @Nullable Consumer<BucketProgressOverviewType> bucketProgressConsumer, CommonTaskBeans beans,
-            int sequentialNumber) {
+            int sequentialNumber, @Nullable GetBucketOperation nextBucketOperation) {
         super(coordinatorTaskOid, workerTaskOid, activityPath, collector, bucketProgressConsumer, beans);
         this.sequentialNumber = sequentialNumber;
+        this.nextBucketOperation = nextBucketOperation;
     }
 
-    public void execute(OperationResult result)
+    /**
+     * @return The next bucket to be processed, if it was requested and obtained; null otherwise.
+     */
+    public @Nullable WorkBucketType execute(OperationResult result)
             throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException {
 
-        LOGGER.trace("Completing work bucket #{} in {} (worker {})", sequentialNumber, coordinatorTaskOid, workerTaskOid);
+        LOGGER.trace("Completing work bucket #{} in {} (worker {}), getting next one: {}",
+                sequentialNumber, coordinatorTaskOid, workerTaskOid, nextBucketOperation != null);
+        if (nextBucketOperation != null) {
+            nextBucketOperation.prepare();
+        }
         ModifyObjectResult<TaskType> modifyObjectResult =
                 plainRepositoryService.modifyObjectDynamically(TaskType.class, coordinatorTaskOid, null,
-                        this::computeCompletionModifications, null, result);
+                        this::computeModifications, null, result);
         bucketProgressHolder.passValue();
         statisticsKeeper.addToConflictCounts(modifyObjectResult);
         statisticsKeeper.register(BucketingConstants.COMPLETE_WORK_BUCKET);
+
+        if (nextBucketOperation != null) {
+            nextBucketOperation.bucketProgressHolder.passValue();
+        }
+        if (nextBucketAttempt != null && nextBucketAttempt.getBucketToUse() != null) {
+            assert nextBucketOperation != null;
+            nextBucketOperation.recordNonNullReturn(nextBucketAttempt);
+            return nextBucketAttempt.getBucketToUse();
+        } else {
+            return null;
+        }
+    }
+
+    private @NotNull Collection<ItemDelta<?, ?>> computeModifications(@NotNull TaskType task) throws SchemaException {
+        Collection<ItemDelta<?, ?>> completionModifications = computeCompletionModifications(task);
+        if (nextBucketOperation == null) {
+            return completionModifications;
+        }
+
+        // Both the completion and the next bucket are computed from the same (single) read of the coordinator task,
+        // and are written by a single update of it. The attempt has to see the state after the completion
+        // (and compression) of the current bucket.
+        TaskType taskAfterCompletion = task.clone();
+        ItemDeltaCollectionsUtil.applyTo(completionModifications, taskAfterCompletion.asPrismContainerValue());
+
+        nextBucketAttempt = nextBucketOperation.createAttempt(taskAfterCompletion);
+        nextBucketAttempt.execute();
+
+        List<ItemDelta<?, ?>> modifications = new ArrayList<>(completionModifications);
+        modifications.addAll(nextBucketAttempt.getModifications());
+        return modifications;
     }
 
     private @NotNull Collection<ItemDelta<?, ?>> computeCompletionModifications(@NotNull TaskType task) {
@@ -131,6 +190,7 @@ public class CompleteBucketOperation extends BucketOperation {
     @Override
     protected void extendDebugDump(StringBuilder sb, int indent) {
         sb.append("\n");
-        DebugUtil.debugDumpWithLabel(sb, "sequentialNumber", sequentialNumber, indent + 1);
+        DebugUtil.debugDumpWithLabelLn(sb, "sequentialNumber", sequentialNumber, indent + 1);
+        DebugUtil.debugDumpWithLabel(sb, "getting next bucket", nextBucketOperation != null, indent + 1);
     }
 }
@@ -84,12 +84,7 @@ public class GetBucketOperation extends BucketOperation {
     public WorkBucketType execute(OperationResult result) throws SchemaException, ObjectNotFoundException,
             ObjectAlreadyExistsException, InterruptedException {
 
-        bucketFactory = BucketFactory.create(
-                options.getDistributionDefinition(),
-                options.getImplicitSegmentationResolver(),
-                beans);
-
-        this.bucketsToGet = determineBucketsToGet();
+        prepare();
 
         try {
             if (isStandalone()) {
@@ -104,15 +99,33 @@ public class GetBucketOperation extends BucketOperation {
         }
     }
 
+    /** Prepares the bucket factory and the number of buckets to get. Must be called before creating attempts. */
+    void prepare() {
+        bucketFactory = BucketFactory.create(
+                options.getDistributionDefinition(),
+                options.getImplicitSegmentationResolver(),
+                beans);
+
+        this.bucketsToGet = determineBucketsToGet();
+    }
+
+    /**
+     * Creates an attempt to get a bucket from given state of the coordinator task.
+     * Besides this class, it is used when getting the next bucket along with completing the current one,
+     * see {@link CompleteBucketOperation}.
+     */
+    @NotNull GetBucketOperationAttempt createAttempt(@NotNull TaskType coordinatorTask) {
+        return new GetBucketOperationAttempt(
+                coordinatorTask, workerTaskOid, activityPath, bucketFactory, bucketsToGet, bucketProgressHolder);
+    }
+
     private WorkBucketType getBucketStandalone(OperationResult result)
             throws SchemaException, ObjectAlreadyExistsException, ObjectNotFoundException {
 
         TaskType coordinatorTask = plainRepositoryService.getObject(TaskType.class, coordinatorTaskOid, null, result)
                 .asObjectable();
 
-        GetBucketOperationAttempt attempt =
-                new GetBucketOperationAttempt(coordinatorTask, workerTaskOid, activityPath, bucketFactory,
-                        bucketsToGet, bucketProgressHolder);
+        GetBucketOperationAttempt attempt = createAttempt(coordinatorTask);
 
         attempt.execute();
         bucketProgressHolder.passValue();
@@ -143,9 +156,7 @@ public class GetBucketOperation extends BucketOperation {
             ModifyObjectResult<TaskType> modifyResult = plainRepositoryService.modifyObjectDynamically(TaskType.class,
                     coordinatorTaskOid, null,
                     coordinatorTask -> {
-                        GetBucketOperationAttempt attempt =
-                                new GetBucketOperationAttempt(coordinatorTask, workerTaskOid, activityPath,
-                                        bucketFactory, bucketsToGet, bucketProgressHolder);
+                        GetBucketOperationAttempt attempt = createAttempt(coordinatorTask);
                         lastAttemptHolder.setValue(attempt);
                         attempt.execute();
                         return attempt.getModifications();
@@ -197,7 +208,7 @@ public class GetBucketOperation extends BucketOperation {
      * Recording situation when there is a bucket to be returned.
      * (The cases where there is no bucket are treated separately for standalone/workers cases.
      */
-    private void recordNonNullReturn(@NotNull GetBucketOperationAttempt attempt) {
+    void recordNonNullReturn(@NotNull GetBucketOperationAttempt attempt) {
         @NotNull Situation situation = attempt.getSituationRequired();
         switch (situation) {
             case FOUND_DELEGATED_TO_ME:
@@ -45,8 +45,11 @@ public class ProcessingCoordinator<I> {
 
     private final int threadsCount;
     private final boolean multithreaded;
+
+    /** Whether worker threads are virtual threads. */
+    private final boolean virtualThreads;
     private final List<OperationResult> workerSpecificResults;
-    private final RequestsBuffer<I> requestsBuffer;
+    private final RequestsBuffer<ItemProcessingRequest<I>> requestsBuffer;
 
     @NotNull private final IterativeActivityRun<I, ?, ?, ?> activityRun;
 
@@ -58,20 +61,23 @@ public class ProcessingCoordinator<I> {
     private final AtomicBoolean stopRequestedByAnyWorker = new AtomicBoolean(false);
 
     /**
-     * Set to true when no more items are expected to arrive into the queue.
-     * It is informing worker threads that they can stop.
+     * Set to true when no more items are expected to arrive into the queue, after {@link #requestsBuffer} is closed.
+     * It is informing worker threads that they can stop after their queue is empty.
      */
     private final AtomicBoolean allItemsSubmitted = new AtomicBoolean(false);
 
-    public ProcessingCoordinator(int threadsCount, @NotNull IterativeActivityRun<I, ?, ?, ?> activityRun) {
+    public ProcessingCoordinator(int threadsCount, Integer queueDepth, boolean virtualThreads,
+            @NotNull IterativeActivityRun<I, ?, ?, ?> activityRun) {
         this.coordinatorTask = activityRun.getRunningTask();
         this.activityRun = activityRun;
 
         this.threadsCount = threadsCount;
+        this.virtualThreads = virtualThreads;
         if (threadsCount > 0) {
             multithreaded = true;
             workerSpecificResults = new ArrayList<>(threadsCount);
-            requestsBuffer = new RequestsBuffer<>(threadsCount);
+            requestsBuffer = new RequestsBuffer<>(threadsCount,
+                    queueDepth != null && queueDepth > 0 ? queueDepth : RequestsBuffer.DEFAULT_QUEUE_DEPTH);
         } else {
             multithreaded = false;
             workerSpecificResults = null;
@@ -165,13 +171,15 @@ public class ProcessingCoordinator<I> {
             workerSpecificResult.addContext("subtaskIndex", i+1);
             workerSpecificResults.add(workerSpecificResult);
 
-            RunningLightweightTask subtask = coordinatorTask.createSubtask(new WorkerHandler(workerSpecificResult));
+            RunningLightweightTask subtask = coordinatorTask.createSubtask(new WorkerHandler(i, workerSpecificResult));
             subtask.setResult(new OperationResult(OP_EXECUTE_WORKER, OperationResultStatus.IN_PROGRESS, (String) null));
             subtask.setName("Worker thread " + (i+1) + " of " + threadsCount);
             subtask.setExecutionEnvironment(CloneUtil.clone(coordinatorTask.getExecutionEnvironment()));
             subtask.setExecutionMode(activityRun.getTaskExecutionMode());
-            subtask.startLightweightHandler();
-            LOGGER.trace("Worker subtask {} created", subtask);
+            // Thread-local state (security context, statistics, caches) is set up by the task on its own thread,
+            // so it is the same for platform and virtual threads.
+            subtask.startLightweightHandler(virtualThreads);
+            LOGGER.trace("Worker subtask {} created (virtual thread: {})", subtask, virtualThreads);
         }
     }
 
@@ -187,6 +195,9 @@ public class ProcessingCoordinator<I> {
     public void finishProcessing(OperationResult result) {
         LOGGER.trace("ProcessingCoordinator: finishing processing. Coordinator task canRun = {}", coordinatorTask.canRun());
 
+        if (requestsBuffer != null) {
+            requestsBuffer.close();
+        }
         allItemsSubmitted.set(true);
         waitForWorkersFinish(result);
         nackQueuedRequests(result);
@@ -209,9 +220,12 @@ public class ProcessingCoordinator<I> {
     }
 
     private class WorkerHandler implements LightweightTaskHandler {
+        /** Index of the worker, determines its queue in {@link RequestsBuffer}. */
+        private final int workerIndex;
         private final OperationResult workerSpecificResult;
 
-        private WorkerHandler(OperationResult workerSpecificResult) {
+        private WorkerHandler(int workerIndex, OperationResult workerSpecificResult) {
+            this.workerIndex = workerIndex;
             this.workerSpecificResult = workerSpecificResult;
         }
 
@@ -225,12 +239,20 @@ public class ProcessingCoordinator<I> {
             workerTask.setName(workerTask.getName().getOrig() + " (" + Thread.currentThread().getName() + ")");
             workerSpecificResult.addArbitraryObjectAsContext("subtaskName", workerTask.getName());
 
-            String taskIdentifier = workerTask.getTaskIdentifier();
-
             while (canRun(workerTask)) {
 
                 workerTask.refreshThreadLocalStatistics();
-                ItemProcessingRequest<I> request = requestsBuffer.poll(taskIdentifier);
+                // Must be read before polling: a request offered after an empty poll but before the flag was set
+                // would be left in the queue otherwise. If the flag is set, the buffer is closed, so the poll is final.
+                boolean lastPoll = allItemsSubmitted.get();
+                ItemProcessingRequest<I> request;
+                try {
+                    // Returns as soon as a request arrives; the timeout is here to check canRun regularly.
+                    request = requestsBuffer.poll(workerIndex, lastPoll ? 0 : WORKER_THREAD_WAIT_FOR_REQUEST);
+                } catch (InterruptedException e) {
+                    LOGGER.trace("Waiting interrupted, exiting");
+                    break;
+                }
 
                 if (request != null) {
                     try {
@@ -238,30 +260,19 @@ public class ProcessingCoordinator<I> {
                             stopRequestedByAnyWorker.set(true);
                         }
                     } finally {
-                        requestsBuffer.markProcessed(request, taskIdentifier);
                         treatOperationResultAfterOperation();
                     }
+                } else if (lastPoll) {
+                    LOGGER.trace("Queue is empty and nothing more is expected - exiting");
+                    break;
                 } else {
-                    if (allItemsSubmitted.get()) {
-                        LOGGER.trace("Queue is empty and nothing more is expected - exiting");
-                        break;
-                    } else {
-                        LOGGER.trace("No requests to be processed but expecting some to come. Waiting for {} msecs",
-                                WORKER_THREAD_WAIT_FOR_REQUEST);
-                        try {
-                            //noinspection BusyWait
-                            Thread.sleep(WORKER_THREAD_WAIT_FOR_REQUEST);
-                        } catch (InterruptedException e) {
-                            LOGGER.trace("Waiting interrupted, exiting");
-                            break;
-                        }
-                    }
+                    LOGGER.trace("No requests to be processed but expecting some to come.");
                 }
             }
 
-            int reservedRequests = requestsBuffer.getReservedRequestsCount(taskIdentifier);
-            if (reservedRequests > 0) {
-                LOGGER.warn("Worker task exiting but it has {} reserved (pre-assigned) change requests", reservedRequests);
+            int queuedRequests = requestsBuffer.getQueuedRequestsCount(workerIndex);
+            if (queuedRequests > 0) {
+                LOGGER.warn("Worker task exiting but it has {} queued (pre-assigned) requests", queuedRequests);
             }
             workerTask.refreshThreadLocalStatistics();
         }
@@ -7,232 +7,207 @@
 
 package com.evolveum.midpoint.repo.common.activity.run.processing;
 
-import java.util.*;
+import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import com.evolveum.midpoint.schema.AcknowledgementSink;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.logging.Trace;
 import com.evolveum.midpoint.util.logging.TraceManager;
 
 /**
- * TODO fix the description
+ * Stores requests to be processed by worker threads.
  *
- * <p>Stores requests to be processed.</p>
+ * Each worker thread has its own bounded queue (a _shard_) of requests.
+ * There is no global lock: the submitting thread and each worker contend only on the queue they actually touch.
  *
- * <p>Its primary responsibility is that it has to ensure that changes related to given primary identifier are processed exactly
- * in the order in which they were fetched from the resource (recorded as {@link com.evolveum.midpoint.provisioning.ucf.api.Change#localSequenceNumber}).
- * This responsibility is ensured by the concepts of binding and reservation.</p>
+ * Its primary responsibility is that it has to ensure that changes related to given primary identifier are processed
+ * exactly in the order in which they were fetched from the resource (recorded as
+ * {@link com.evolveum.midpoint.provisioning.ucf.api.Change#localSequenceNumber}).
+ * This is ensured by putting all requests with the same correlation value (see {@link CorrelatableProcessingRequest})
+ * into the same shard, selected by the hash of the value. The shard is processed by a single worker in FIFO order,
+ * so the requests are processed in the order in which they were offered.
  *
- * <p>Primary identifier I is said to be _bound_ to task T if an object with this identifier it is being currently processed by T
- * or is waiting to be processed by T (reserved for T). See {@link #bind(ProcessChangeRequest, String)} and {@link #unbind(ProcessChangeRequest, String)}
- * methods.</p>
+ * Requests without correlation value can be processed in any order. They are put into the first shard with
+ * free space (starting at a rotating position), and idle workers may take them also from the heads of other shards.
  *
- * <p>Reservation is represented by a queue of requests waiting to be processed by specified subtask. A request gets
- * onto this queue if it's fetched from the global queue but cannot be processed because it is bound to a subtask different
- * from the current one. So it's put into "owning" task reserved requests queue. See {@link #reserve(ProcessChangeRequest, String)}.</p>
+ * Workers waiting for requests are woken up as soon as a request arrives to their shard.
+ *
+ * When no more requests are expected, the buffer is {@link #close()}d. After that, the content of the shards
+ * can only decrease, so a worker finding its shard empty after the close can safely finish.
+ *
+ * @param <R> Type of requests, normally {@link ItemProcessingRequest}.
  */
 @SuppressWarnings("JavadocReference")
-class RequestsBuffer<I> {
+class RequestsBuffer<R extends AcknowledgementSink> {
 
     private static final Trace LOGGER = TraceManager.getTrace(RequestsBuffer.class);
 
     private static final long REQUEST_QUEUE_OFFER_TIMEOUT = 1000L;
 
+    /** Default number of requests waiting for each worker. */
+    static final int DEFAULT_QUEUE_DEPTH = 2;
+
     /**
-     * Global queue of waiting requests.
+     * Queues of waiting requests, one per worker thread.
      */
-    private final BlockingQueue<ItemProcessingRequest<I>> globalQueue;
+    private final BlockingQueue<R>[] shards;
 
     /**
-     * Current bindings of resource objects (their identifiers) to subtasks.
-     *
-     * Entry key: primary resource object identifier (~ account ID)
-     * Entry value: task identifier
+     * Where to start looking for a free shard for requests without correlation value.
      */
-    private final Map<Object, String> bindingsMap = new HashMap<>();
+    private final AtomicInteger nextShard = new AtomicInteger();
 
     /**
-     * Change requests reserved to be processed by each subtask.
-     *
-     * Entry key: task identifier.
-     * Entry value: queue of requests. The requests are sorted by change identifier, to ensure processing in the correct order.
+     * Offers hold the read lock while putting the request into a shard, {@link #close()} takes the write lock.
+     * This makes sure no offer is in progress when the buffer is closed.
      */
-    private final Map<String, PriorityQueue<ItemProcessingRequest<I>>> reservedRequestsQueueMap = new HashMap<>();
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    /** True if no more requests are accepted. Guarded by {@link #closeLock}. */
+    private boolean closed;
 
-    RequestsBuffer(int threadsCount) {
-        int globalQueueSize = threadsCount*2; // actually, size of threadsCount should be sufficient but it doesn't hurt if queue is larger
-        globalQueue = new ArrayBlockingQueue<>(globalQueueSize);
+    @SuppressWarnings("unchecked")
+    RequestsBuffer(int threadsCount, int queueDepth) {
+        shards = new BlockingQueue[threadsCount];
+        for (int i = 0; i < threadsCount; i++) {
+            shards[i] = new ArrayBlockingQueue<>(queueDepth);
+        }
     }
 
     /**
      * Offers a request for processing.
      *
-     * This method is intentionally NOT synchronized.
+     * Correlatable requests wait for their shard only, as they cannot be processed by any other worker.
+     * Other requests go to any shard with free space; if there is none, they wait for one of them.
      *
+     * @return false if the request could not be put into a queue in a reasonable time
      * @throws InterruptedException If present, the request was not put into the queue.
+     * @throws IllegalStateException If the buffer was already closed.
      */
-    boolean offer(ItemProcessingRequest<I> request) throws InterruptedException {
-        return globalQueue.offer(request, REQUEST_QUEUE_OFFER_TIMEOUT, TimeUnit.MILLISECONDS);
-    }
-
-    /**
-     * Tries to obtain a request to be processed by the specified subtask.
-     * Does NOT wait, it just checks reserved requests and global queues.
-     *
-     * Post-conditions:
-     * - Returns null only if there are no reserved nor globally available requests.
-     * - If the request is not null, the primary identifier of the request is (successfully) bound to the specified task.
-     */
-    synchronized ItemProcessingRequest<I> poll(String taskIdentifier) {
-
-        ItemProcessingRequest<I> reserved = getNextReservedRequest(taskIdentifier);
-        if (reserved != null) {
-            LOGGER.trace("Got reserved (pre-assigned) request: {}", reserved);
-            if (bind(reserved, taskIdentifier)) {
-                return reserved;
-            } else {
-                throw new IllegalStateException("A reserved request couldn't be bound to the current task. Request = " +
-                        reserved + ", task = " + taskIdentifier);
+    boolean offer(R request) throws InterruptedException {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Requests buffer is closed, cannot accept " + request);
             }
+            return offerToShard(request);
+        } finally {
+            closeLock.readLock().unlock();
         }
+    }
 
-        for (;;) {
-            ItemProcessingRequest<I> request = globalQueue.poll();
-            LOGGER.trace("Got request from global queue: {}", request);
-
-            if (request == null) {
-                // Nothing in the queue for now. OK, let's try next time.
-                return null;
-            }
+    private boolean offerToShard(R request) throws InterruptedException {
+        Object correlationValue = getCorrelationValue(request);
+        if (correlationValue != null) {
+            int shard = Math.floorMod(correlationValue.hashCode(), shards.length);
+            LOGGER.trace("Offering {} (ID {}) to shard {}", request, correlationValue, shard);
+            return shards[shard].offer(request, REQUEST_QUEUE_OFFER_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
 
-            if (bind(request, taskIdentifier)) {
-                return request;
-            } else {
-                // The request couldn't be bound to the specified task. We have to go and try another one.
+        int start = Math.floorMod(nextShard.getAndIncrement(), shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[(start + i) % shards.length].offer(request)) {
+                return true;
             }
         }
+        return shards[start].offer(request, REQUEST_QUEUE_OFFER_TIMEOUT, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Binds a request identifier to specified subtask, if possible i.e. if the request identifier is not bound to another task.
-     * If the request identifier is bound to another task, the request is assigned to it.
-     *
-     * @return true if the request was successfully bound to the current task;
-     *         false if it was reassigned (so this task has to fetch another request).
+     * Stops accepting new requests. Waits for offers currently in progress, so when this method returns,
+     * each request is either in a shard or its offer failed.
      */
-    private boolean bind(ItemProcessingRequest<I> request, String taskIdentifier) {
+    void close() {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+    }
+
+    private Object getCorrelationValue(R request) {
         if (!(request instanceof CorrelatableProcessingRequest)) {
-            return true;
+            return null;
         }
 
         Object correlationValue = ((CorrelatableProcessingRequest) request).getCorrelationValue();
         if (correlationValue == null) {
             LOGGER.warn("Null correlationValue in request {}", request);
-            return true;
-        }
-
-        String boundTo = bindingsMap.get(correlationValue);
-        if (boundTo == null) {
-            LOGGER.trace("Binding {} to {}", correlationValue, taskIdentifier);
-            bindingsMap.put(correlationValue, taskIdentifier);
-            return true;
-        }
-
-        if (boundTo.equals(taskIdentifier)) {
-            LOGGER.trace("Processing {} as it is already bound to current task: {}", correlationValue, taskIdentifier);
-            return true;
-        }
-
-        LOGGER.trace("Request {} (ID {}) is already bound to another task {}. Moving it to the reserved"
-                + " requests queue for that task. Current task: {}", request, correlationValue, boundTo, taskIdentifier);
-        reserve(request, boundTo);
-        return false;
-    }
-
-    /**
-     * Gets a change reserved for given task (if there's any).
-     * REMOVES the reservation.
-     *
-     * @return Change reserved for given task; or null if there's nothing there.
-     */
-    private ItemProcessingRequest<I> getNextReservedRequest(String taskIdentifier) {
-        Queue<ItemProcessingRequest<I>> reservedRequests = reservedRequestsQueueMap.get(taskIdentifier);
-        if (reservedRequests != null) {
-            return reservedRequests.poll();
-        } else {
-            return null;
         }
+        return correlationValue;
     }
 
-    private void reserve(ItemProcessingRequest<I> request, String owningTaskIdentifier) {
-        reservedRequestsQueueMap
-                .computeIfAbsent(owningTaskIdentifier, key -> new PriorityQueue<>())
-                .offer(request);
+    private boolean hasCorrelationValue(R request) {
+        return request instanceof CorrelatableProcessingRequest correlatable
+                && correlatable.getCorrelationValue() != null;
     }
 
     /**
-     * Marks specified request as processed: Unbinds its primary identifier from the calling subtask.
+     * Obtains a request to be processed by the worker with specified index.
+     * Waits up to the specified time if there are no requests for the worker.
+     *
+     * Returns null only if there are no requests for the worker even after the wait.
      */
-    synchronized void markProcessed(ItemProcessingRequest<I> request, String taskIdentifier) {
-        unbind(request, taskIdentifier);
-    }
-
-    private void unbind(ItemProcessingRequest<I> request, String taskIdentifier) {
-        if (!(request instanceof CorrelatableProcessingRequest)) {
-            return;
-        }
-
-        Object correlationValue = ((CorrelatableProcessingRequest) request).getCorrelationValue();
-        LOGGER.trace("Trying to unbind {} from {}", correlationValue, taskIdentifier);
-        if (correlationValue == null) {
-            LOGGER.trace("correlationValue is null (warning has been already issued): {}", request);
-            return;
+    R poll(int workerIndex, long timeout) throws InterruptedException {
+        BlockingQueue<R> own = shards[workerIndex];
+        R request = own.poll();
+        if (request != null) {
+            LOGGER.trace("Got request from own queue: {}", request);
+            return request;
         }
 
-        if (isReserved(correlationValue, taskIdentifier)) {
-            LOGGER.trace("...but it is reserved to its owner (some relevant changes are waiting), so not unbinding now");
-            return;
+        request = stealUncorrelated(workerIndex);
+        if (request != null) {
+            LOGGER.trace("Got request from queue of another worker: {}", request);
+            return request;
         }
 
-        String previousOwner = bindingsMap.remove(correlationValue);
-        LOGGER.trace("Unbound (previous owner was: {})", previousOwner);
-        assert taskIdentifier.equals(previousOwner);
+        request = own.poll(timeout, TimeUnit.MILLISECONDS);
+        LOGGER.trace("Got request from own queue after waiting: {}", request);
+        return request;
     }
 
-    private boolean isReserved(Object primaryIdentifier, String taskIdentifier) {
-        Queue<ItemProcessingRequest<I>> reservedRequests = reservedRequestsQueueMap.get(taskIdentifier);
-        if (reservedRequests != null) {
-            for (ItemProcessingRequest<I> request : reservedRequests) {
-                if (request instanceof CorrelatableProcessingRequest &&
-                        primaryIdentifier.equals(((CorrelatableProcessingRequest) request).getCorrelationValue())) {
-                    return true;
-                }
+    /**
+     * Takes a request without correlation value from the head of another shard, if there is any.
+     * Correlatable requests are never taken, as this would break their ordering.
+     */
+    private R stealUncorrelated(int workerIndex) {
+        for (int i = 1; i < shards.length; i++) {
+            BlockingQueue<R> other = shards[(workerIndex + i) % shards.length];
+            R head = other.peek();
+            // remove() fails if the head was taken by its owner in the meantime
+            if (head != null && !hasCorrelationValue(head) && other.remove(head)) {
+                return head;
             }
         }
-        return false;
+        return null;
     }
 
-    synchronized int getReservedRequestsCount(String taskIdentifier) {
-        Queue<ItemProcessingRequest<I>> reservedRequests = reservedRequestsQueueMap.get(taskIdentifier);
-        return reservedRequests != null ? reservedRequests.size() : 0;
+    int getQueuedRequestsCount(int workerIndex) {
+        return shards[workerIndex].size();
     }
 
     // should be called when there's no concurrency
     int nackAllRequests(OperationResult result) {
         AtomicInteger nackCounter = new AtomicInteger();
 
-        nackAll(globalQueue, nackCounter, result);
-        reservedRequestsQueueMap.values().forEach(queue -> nackAll(queue, nackCounter, result));
+        for (Queue<R> shard : shards) {
+            nackAll(shard, nackCounter, result);
+        }
 
         return nackCounter.get();
     }
 
-    private void nackAll(Queue<ItemProcessingRequest<I>> queue, AtomicInteger counter, OperationResult result) {
+    private void nackAll(Queue<R> queue, AtomicInteger counter, OperationResult result) {
         for (;;) {
-            ItemProcessingRequest<I> request = queue.poll();
+            R request = queue.poll();
             if (request == null) {
                 break;
             } else {
@@ -12,6 +12,7 @@ import com.evolveum.midpoint.prism.ItemDefinition;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.repo.common.activity.run.ActivityRunException;
+import com.evolveum.midpoint.repo.common.activity.run.state.counters.CounterReservations;
 import com.evolveum.midpoint.repo.common.activity.run.state.counters.CountersIncrementOperation;
 import com.evolveum.midpoint.repo.common.activity.run.CommonTaskBeans;
 import com.evolveum.midpoint.schema.constants.ObjectTypes;
@@ -71,6 +72,14 @@ public abstract class ActivityState implements DebugDumpable {
      */
     ItemPath stateItemPath;
 
+    /**
+     * Reservations of counter values, by counter group. Used only if the counters are not shared with other tasks,
+     * see {@link #incrementCountersUsingReservations(ExecutionSupport.CountersGroup, Collection, OperationResult)}.
+     * Guarded by itself.
+     */
+    @NotNull private final Map<ExecutionSupport.CountersGroup, CounterReservations> counterReservations =
+            new EnumMap<>(ExecutionSupport.CountersGroup.class);
+
     protected ActivityState(@NotNull CommonTaskBeans beans) {
         this.beans = beans;
     }
@@ -552,9 +561,44 @@ public abstract class ActivityState implements DebugDumpable {
     public Map<String, Integer> incrementCounters(@NotNull ExecutionSupport.CountersGroup counterGroup,
             @NotNull Collection<String> countersIdentifiers, @NotNull OperationResult result)
             throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
-        ItemPath counterGroupItemPath = stateItemPath.append(ActivityStateType.F_COUNTERS, counterGroup.getItemName());
-        return new CountersIncrementOperation(getTask(), counterGroupItemPath, countersIdentifiers, beans)
+        return new CountersIncrementOperation(getTask(), getCounterGroupItemPath(counterGroup), countersIdentifiers, beans)
                 .execute(result);
     }
+
+    /**
+     * Increments the counters mostly in memory, by reserving ranges of their values in the repository.
+     * The caller must ensure the counters are not updated by any other task; see {@link CounterReservations}.
+     * The unused values have to be released by {@link #releaseCounterReservations(OperationResult)}.
+     */
+    public Map<String, Integer> incrementCountersUsingReservations(@NotNull ExecutionSupport.CountersGroup counterGroup,
+            @NotNull Collection<String> countersIdentifiers, @NotNull OperationResult result)
+            throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        CounterReservations reservations;
+        synchronized (counterReservations) {
+            reservations = counterReservations.get(counterGroup);
+            if (reservations == null) {
+                reservations = new CounterReservations(getTask(), getCounterGroupItemPath(counterGroup),
+                        CounterReservations.getConfiguredReservationSize(beans, result), beans);
+                counterReservations.put(counterGroup, reservations);
+            }
+        }
+        return reservations.increment(countersIdentifiers, result);
+    }
+
+    /** Returns the reserved but unused counter values, so the counters in the repository are exact. */
+    public void releaseCounterReservations(@NotNull OperationResult result)
+            throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        List<CounterReservations> reservationsList;
+        synchronized (counterReservations) {
+            reservationsList = new ArrayList<>(counterReservations.values());
+        }
+        for (CounterReservations reservations : reservationsList) {
+            reservations.releaseUnused(result);
+        }
+    }
+
+    private @NotNull ItemPath getCounterGroupItemPath(@NotNull ExecutionSupport.CountersGroup counterGroup) {
+        return stateItemPath.append(ActivityStateType.F_COUNTERS, counterGroup.getItemName());
+    }
     //endregion
 }
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.common.activity.run.state.counters;
+
+import static com.evolveum.midpoint.util.MiscUtil.argCheck;
+import static com.evolveum.midpoint.util.MiscUtil.or0;
+
+import java.util.*;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.prism.delta.ItemDelta;
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.repo.common.activity.run.CommonTaskBeans;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
+import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ActivityCounterType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.InternalsConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.SystemConfigurationType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.TaskType;
+
+/**
+ * Increments counters of a counter group mostly in memory, by reserving ranges of their values in the repository.
+ *
+ * When a counter has no reserved value left, a range of {@link #reservationSize} values is reserved for it
+ * in the repository by setting {@link ActivityCounterType#getReservedUpTo()}, and the values in the range are then
+ * handed out one by one, without going to the repository. The counter value itself is set to the number of values
+ * handed out at the time of the reservation, so the value shown to the user is never higher than the real one;
+ * it is made exact when the reserved values are no longer needed, see {@link #releaseUnused(OperationResult)}.
+ * The reserved bound is never lower than the values handed out, and it is the base of any further reservations.
+ *
+ * The values handed out are exact (i.e. without gaps) only if this object is the only one that updates the counters.
+ * Hence, it may be used only for counters that reside in the current task, not shared with other (e.g. worker) tasks.
+ * If the node crashes before the unused values are released, the counter continues from the reserved bound,
+ * so it is higher than it should be, by less than the reservation size. This errs on the safe side: the thresholds
+ * are reached sooner, not later.
+ *
+ * Thread safe: the counters may be incremented by multiple worker threads of the task.
+ */
+public class CounterReservations {
+
+    private static final Trace LOGGER = TraceManager.getTrace(CounterReservations.class);
+
+    /** See {@link InternalsConfigurationType#getActivityCounterReservationSize()}. */
+    public static final int DEFAULT_RESERVATION_SIZE = 10;
+
+    /** Task that hosts the counter group. */
+    @NotNull private final Task task;
+
+    /** Points directly to multi-valued "counter" sub-container in the group. */
+    @NotNull private final ItemPath countersItemPath;
+
+    /** How many values are reserved at once. 1 means that each increment goes to the repository. */
+    private final int reservationSize;
+
+    @NotNull private final CommonTaskBeans beans;
+
+    /** Reservations indexed by counter identifier. Guarded by "this". */
+    @NotNull private final Map<String, Reservation> reservations = new HashMap<>();
+
+    public CounterReservations(
+            @NotNull Task task, @NotNull ItemPath counterGroupItemPath, int reservationSize, @NotNull CommonTaskBeans beans) {
+        argCheck(reservationSize > 0, "Non-positive reservation size: %s", reservationSize);
+        this.task = task;
+        this.countersItemPath = CountersIncrementOperation.getCountersItemPath(counterGroupItemPath);
+        this.reservationSize = reservationSize;
+        this.beans = beans;
+    }
+
+    /** Returns the reservation size configured in the system configuration, or the default one. */
+    public static int getConfiguredReservationSize(@NotNull CommonTaskBeans beans, @NotNull OperationResult result)
+            throws SchemaException {
+        SystemConfigurationType systemConfiguration = beans.systemObjectCache.getSystemConfigurationBean(result);
+        InternalsConfigurationType internals = systemConfiguration != null ? systemConfiguration.getInternals() : null;
+        Integer configured = internals != null ? internals.getActivityCounterReservationSize() : null;
+        return configured != null ? Math.max(configured, 1) : DEFAULT_RESERVATION_SIZE;
+    }
+
+    /**
+     * Increments given counters, reserving new values in the repository if needed.
+     *
+     * @return Current values of the counters (after the update).
+     */
+    public synchronized Map<String, Integer> increment(
+            @NotNull Collection<String> countersIdentifiers, @NotNull OperationResult result)
+            throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+
+        List<String> toReserve = new ArrayList<>();
+        for (String identifier : countersIdentifiers) {
+            Reservation reservation = reservations.get(identifier);
+            if (reservation == null || reservation.isExhausted()) {
+                toReserve.add(identifier);
+            }
+        }
+
+        if (!toReserve.isEmpty()) {
+            reserve(toReserve, result);
+        }
+
+        Map<String, Integer> values = new HashMap<>();
+        for (String identifier : countersIdentifiers) {
+            values.put(identifier, reservations.get(identifier).next());
+        }
+        return values;
+    }
+
+    private void reserve(@NotNull List<String> identifiers, @NotNull OperationResult result)
+            throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        Map<String, Reservation> newReservations = new HashMap<>();
+        beans.plainRepositoryService.modifyObjectDynamically(TaskType.class, task.getOid(), null,
+                taskBean -> {
+                    newReservations.clear();
+                    List<ItemDelta<?, ?>> deltas = new ArrayList<>();
+                    for (String identifier : identifiers) {
+                        ActivityCounterType counter =
+                                CountersIncrementOperation.getCurrentCounter(taskBean, countersItemPath, identifier);
+                        int lastValue = counter != null ? getReservationBase(counter) : 0;
+                        Reservation reservation = new Reservation(lastValue, lastValue + reservationSize);
+                        deltas.addAll(createCounterDeltas(counter, identifier, reservation.lastValue, reservation.upperBound));
+                        newReservations.put(identifier, reservation);
+                    }
+                    return deltas;
+                },
+                null, result);
+        LOGGER.trace("Reserved {} value(s) of counters in {}: {}", reservationSize, task, newReservations);
+        reservations.putAll(newReservations);
+    }
+
+    /** All values up to this one may have been used already (by us, or by a run that did not release its reservation). */
+    private static int getReservationBase(@NotNull ActivityCounterType counter) {
+        return Math.max(or0(counter.getValue()), or0(counter.getReservedUpTo()));
+    }
+
+    /**
+     * Writes the exact values of the counters to the repository and removes the reservations.
+     * A counter is left untouched if it was changed by someone else in the meanwhile.
+     */
+    public synchronized void releaseUnused(@NotNull OperationResult result)
+            throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
+        if (reservations.isEmpty()) {
+            return;
+        }
+        beans.plainRepositoryService.modifyObjectDynamically(TaskType.class, task.getOid(), null,
+                taskBean -> {
+                    List<ItemDelta<?, ?>> deltas = new ArrayList<>();
+                    for (var entry : reservations.entrySet()) {
+                        String identifier = entry.getKey();
+                        Reservation reservation = entry.getValue();
+                        ActivityCounterType counter =
+                                CountersIncrementOperation.getCurrentCounter(taskBean, countersItemPath, identifier);
+                        if (counter == null || or0(counter.getReservedUpTo()) != reservation.upperBound) {
+                            LOGGER.debug("Counter {} in {} was changed in the meanwhile, not releasing the reservation: {}",
+                                    identifier, task, reservation);
+                            continue;
+                        }
+                        deltas.addAll(createCounterDeltas(counter, identifier, reservation.lastValue, null));
+                    }
+                    return deltas;
+                },
+                null, result);
+        LOGGER.trace("Released counter reservations in {}: {}", task, reservations);
+        reservations.clear();
+    }
+
+    private @NotNull Collection<? extends ItemDelta<?, ?>> createCounterDeltas(
+            @Nullable ActivityCounterType counter, @NotNull String identifier, int value, @Nullable Integer reservedUpTo)
+            throws SchemaException {
+        if (counter != null) {
+            ItemPath counterPath = countersItemPath.append(counter.getId());
+            var reservedUpToEntry = beans.prismContext.deltaFor(TaskType.class)
+                    .item(counterPath.append(ActivityCounterType.F_VALUE))
+                    .replace(value)
+                    .item(counterPath.append(ActivityCounterType.F_RESERVED_UP_TO));
+            return (reservedUpTo != null ? reservedUpToEntry.replace(reservedUpTo) : reservedUpToEntry.replace())
+                    .asItemDeltas();
+        } else {
+            return beans.prismContext.deltaFor(TaskType.class)
+                    .item(countersItemPath)
+                    .add(new ActivityCounterType()
+                            .identifier(identifier)
+                            .value(value)
+                            .reservedUpTo(reservedUpTo))
+                    .asItemDeltas();
+        }
+    }
+
+    /** Range of values (lastValue, upperBound] reserved for a counter. */
+    private static class Reservation {
+
+        /** The last value handed out (or the value before the reservation, if none was handed out yet). */
+        private int lastValue;
+
+        /** The value stored in the repository as {@link ActivityCounterType#getReservedUpTo()}. */
+        private final int upperBound;
+
+        private Reservation(int lastValue, int upperBound) {
+            this.lastValue = lastValue;
+            this.upperBound = upperBound;
+        }
+
+        private boolean isExhausted() {
+            return lastValue >= upperBound;
+        }
+
+        private int next() {
+            assert !isExhausted();
+            return ++lastValue;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + lastValue + ", " + upperBound + "]";
+        }
+    }
+}
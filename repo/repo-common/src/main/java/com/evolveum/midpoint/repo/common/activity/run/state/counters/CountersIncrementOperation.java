@@ -55,11 +55,15 @@ public class CountersIncrementOperation {
             @NotNull Collection<String> countersIdentifiers,
             @NotNull CommonTaskBeans beans) {
         this.task = task;
-        this.countersItemPath = counterGroupItemPath.append(ActivityCounterGroupType.F_COUNTER);
+        this.countersItemPath = getCountersItemPath(counterGroupItemPath);
         this.countersIdentifiers = countersIdentifiers;
         this.beans = beans;
     }
 
+    static @NotNull ItemPath getCountersItemPath(@NotNull ItemPath counterGroupItemPath) {
+        return counterGroupItemPath.append(ActivityCounterGroupType.F_COUNTER);
+    }
+
     public Map<String, Integer> execute(OperationResult result)
             throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException {
         incrementCountersInRepository(result);
@@ -76,7 +80,7 @@ public class CountersIncrementOperation {
         updatedValues.clear();
         List<ItemDelta<?, ?>> deltas = new ArrayList<>();
         for (String counterIdentifier : countersIdentifiers) {
-            ActivityCounterType currentCounter = getCurrentCounter(task, counterIdentifier);
+            ActivityCounterType currentCounter = getCurrentCounter(task, countersItemPath, counterIdentifier);
             ItemDelta<?, ?> itemDelta;
             int newValue;
             if (currentCounter != null) {
@@ -101,7 +105,7 @@ public class CountersIncrementOperation {
         return deltas;
     }
 
-    private ActivityCounterType getCurrentCounter(TaskType task, String identifier) {
+    static ActivityCounterType getCurrentCounter(TaskType task, ItemPath countersItemPath, String identifier) {
         //noinspection unchecked
         PrismContainer<ActivityCounterType> counterContainer =
                 (PrismContainer<ActivityCounterType>) task.asPrismContainerValue().findItem(countersItemPath);
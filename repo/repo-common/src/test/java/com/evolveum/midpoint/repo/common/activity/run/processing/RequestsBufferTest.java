@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.common.activity.run.processing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.schema.AcknowledgementSink;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.tools.testng.AbstractUnitTest;
+
+/**
+ * Tests for sharded {@link RequestsBuffer}: ordering of correlated requests and draining of the shards on finish.
+ * Workers are simulated the same way as in {@link ProcessingCoordinator}.
+ */
+public class RequestsBufferTest extends AbstractUnitTest {
+
+    private static final int WORKERS = 4;
+    private static final int KEYS = 10;
+    private static final int REQUESTS = 2000;
+
+    @Test
+    public void test100CorrelatedRequestsAreProcessedInOfferOrder() throws Exception {
+        RequestsBuffer<TestRequest> buffer = new RequestsBuffer<>(WORKERS, RequestsBuffer.DEFAULT_QUEUE_DEPTH);
+        AtomicBoolean allSubmitted = new AtomicBoolean();
+        Map<Object, List<Integer>> processedByKey = new ConcurrentHashMap<>();
+        AtomicInteger processedUncorrelated = new AtomicInteger();
+
+        ExecutorService workers = startWorkers(buffer, allSubmitted, request -> {
+            if (request instanceof CorrelatedTestRequest correlatedRequest) {
+                // Only one worker processes requests of a key, so there is no race between get and add.
+                processedByKey.computeIfAbsent(correlatedRequest.correlationValue, k -> new CopyOnWriteArrayList<>())
+                        .add(request.number);
+            } else {
+                processedUncorrelated.incrementAndGet();
+            }
+        });
+
+        // every third request is without correlation value, these can be stolen by other workers
+        int correlated = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            TestRequest request = i % 3 == 0
+                    ? new TestRequest(i)
+                    : new CorrelatedTestRequest(i, "key" + (i % KEYS));
+            if (request instanceof CorrelatedTestRequest) {
+                correlated++;
+            }
+            while (!buffer.offer(request)) {
+                // retrying, as ProcessingCoordinator does
+            }
+        }
+        finish(buffer, allSubmitted, workers);
+
+        assertThat(processedByKey).hasSize(KEYS);
+        assertThat(processedByKey.values().stream().mapToInt(List::size).sum()).isEqualTo(correlated);
+        assertThat(processedUncorrelated.get()).isEqualTo(REQUESTS - correlated);
+        for (List<Integer> numbers : processedByKey.values()) {
+            assertThat(numbers).isSorted();
+        }
+    }
+
+    /**
+     * Requests offered while the workers are going to finish must be processed, not left in the shards.
+     * Offers are done from more threads at once, with small shards to make the offers block.
+     */
+    @Test
+    public void test200RequestsOfferedBeforeFinishAreNotLeftInShards() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            RequestsBuffer<TestRequest> buffer = new RequestsBuffer<>(WORKERS, 1);
+            AtomicBoolean allSubmitted = new AtomicBoolean();
+            AtomicInteger processed = new AtomicInteger();
+            ExecutorService workers = startWorkers(buffer, allSubmitted, request -> processed.incrementAndGet());
+
+            int producers = 3;
+            int perProducer = 50;
+            ExecutorService producerPool = Executors.newFixedThreadPool(producers);
+            for (int p = 0; p < producers; p++) {
+                int base = p * perProducer;
+                producerPool.submit(() -> {
+                    for (int i = base; i < base + perProducer; i++) {
+                        while (!buffer.offer(new CorrelatedTestRequest(i, "key" + i))) {
+                            // retrying
+                        }
+                    }
+                    return null;
+                });
+            }
+            producerPool.shutdown();
+            assertThat(producerPool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+            finish(buffer, allSubmitted, workers);
+
+            assertThat(processed.get())
+                    .as("processed requests in round %d", round)
+                    .isEqualTo(producers * perProducer);
+            assertThat(buffer.nackAllRequests(new OperationResult("nack"))).isZero();
+        }
+    }
+
+    @Test
+    public void test300CloseWaitsForOfferInProgress() throws Exception {
+        RequestsBuffer<TestRequest> buffer = new RequestsBuffer<>(1, 1);
+        TestRequest first = new CorrelatedTestRequest(1, "key");
+        TestRequest second = new CorrelatedTestRequest(2, "key");
+        assertThat(buffer.offer(first)).isTrue();
+
+        // the only shard is full, so the offer of the second request waits
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Boolean> offer = executor.submit(() -> buffer.offer(second));
+        Thread.sleep(100);
+        Future<?> close = executor.submit(buffer::close);
+        Thread.sleep(100);
+        assertThat(close.isDone()).as("close finished while offer is in progress").isFalse();
+
+        // freeing the space lets the offer and then the close finish
+        assertThat(buffer.poll(0, 0)).isSameAs(first);
+        assertThat(offer.get(5, TimeUnit.SECONDS)).isTrue();
+        close.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // the request offered before the close is still available, nothing can be offered after it
+        assertThat(buffer.poll(0, 0)).isSameAs(second);
+        assertThat(buffer.poll(0, 0)).isNull();
+        assertThatThrownBy(() -> buffer.offer(new CorrelatedTestRequest(3, "key")))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void test400NackAllRequests() throws Exception {
+        RequestsBuffer<TestRequest> buffer = new RequestsBuffer<>(2, 2);
+        List<TestRequest> requests = List.of(
+                new CorrelatedTestRequest(1, "a"), new CorrelatedTestRequest(2, "b"), new TestRequest(3));
+        for (TestRequest request : requests) {
+            assertThat(buffer.offer(request)).isTrue();
+        }
+
+        assertThat(buffer.nackAllRequests(new OperationResult("nack"))).isEqualTo(3);
+        assertThat(requests).allMatch(r -> Boolean.FALSE.equals(r.acknowledged));
+        assertThat(buffer.getQueuedRequestsCount(0) + buffer.getQueuedRequestsCount(1)).isZero();
+    }
+
+    /** Starts workers polling the buffer in the same way as {@link ProcessingCoordinator} workers. */
+    private ExecutorService startWorkers(RequestsBuffer<TestRequest> buffer, AtomicBoolean allSubmitted,
+            Consumer<TestRequest> processor) {
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+        for (int i = 0; i < WORKERS; i++) {
+            int workerIndex = i;
+            workers.submit(() -> {
+                for (;;) {
+                    boolean lastPoll = allSubmitted.get();
+                    TestRequest request = buffer.poll(workerIndex, lastPoll ? 0 : 10);
+                    if (request != null) {
+                        processor.accept(request);
+                    } else if (lastPoll) {
+                        return null;
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        return workers;
+    }
+
+    /** Same as {@link ProcessingCoordinator#finishProcessing(OperationResult)}. */
+    private void finish(RequestsBuffer<TestRequest> buffer, AtomicBoolean allSubmitted, ExecutorService workers)
+            throws InterruptedException {
+        buffer.close();
+        allSubmitted.set(true);
+        assertThat(workers.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static class TestRequest implements AcknowledgementSink {
+
+        final int number;
+        volatile Boolean acknowledged;
+
+        TestRequest(int number) {
+            this.number = number;
+        }
+
+        @Override
+        public void acknowledge(boolean release, OperationResult result) {
+            acknowledged = release;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "#" + number;
+        }
+    }
+
+    private static class CorrelatedTestRequest extends TestRequest implements CorrelatableProcessingRequest {
+
+        final Object correlationValue;
+
+        CorrelatedTestRequest(int number, Object correlationValue) {
+            super(number);
+            this.correlationValue = correlationValue;
+        }
+
+        @Override
+        public Object getCorrelationValue() {
+            return correlationValue;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+
+package com.evolveum.midpoint.repo.common.activity.run.state.counters;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.repo.api.RepoAddOptions;
+import com.evolveum.midpoint.repo.common.AbstractRepoCommonTest;
+import com.evolveum.midpoint.repo.common.SystemObjectCache;
+import com.evolveum.midpoint.repo.common.activity.run.CommonTaskBeans;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.task.api.Task;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.*;
+
+/**
+ * Tests {@link CounterReservations} on a task stored in the repository, without running any activity.
+ * The behavior in activities (policy rules thresholds) is tested in `TestThresholds` and its subclasses in model.
+ */
+public class TestCounterReservations extends AbstractRepoCommonTest {
+
+    private static final String COUNTER = "counter";
+    private static final String OTHER_COUNTER = "other-counter";
+
+    private static final int RESERVATION_SIZE = 3;
+
+    private static final ItemPath COUNTER_GROUP_PATH = ItemPath.create(
+            TaskType.F_ACTIVITY_STATE, TaskActivityStateType.F_ACTIVITY,
+            ActivityStateType.F_COUNTERS, ActivityCounterGroupsType.F_PREVIEW_MODE_POLICY_RULES);
+
+    @Autowired private CommonTaskBeans beans;
+    @Autowired private SystemObjectCache systemObjectCache;
+
+    private Task task;
+
+    @Override
+    public void initSystem(Task initTask, OperationResult initResult) throws Exception {
+        super.initSystem(initTask, initResult);
+
+        String oid = plainRepositoryService.addObject(
+                new TaskType()
+                        .name("counters")
+                        .activityState(new TaskActivityStateType()
+                                .activity(new ActivityStateType()
+                                        .counters(new ActivityCounterGroupsType()
+                                                .previewModePolicyRules(new ActivityCounterGroupType()))))
+                        .asPrismObject(),
+                null, initResult);
+        task = taskManager.getTaskPlain(oid, initResult);
+    }
+
+    /** Values are handed out from memory; the repository is updated only when a new range is reserved. */
+    @Test
+    public void test100IncrementAndRelease() throws Exception {
+        OperationResult result = getTestOperationResult();
+        CounterReservations reservations = createReservations();
+
+        when("counter is incremented once");
+        Map<String, Integer> values = reservations.increment(List.of(COUNTER), result);
+
+        then("the whole range is reserved, but the value is not inflated");
+        assertThat(values).containsEntry(COUNTER, 1);
+        assertCounterInRepo(COUNTER, 0, RESERVATION_SIZE);
+
+        when("counter is incremented until the reservation is exhausted, and once more");
+        for (int i = 2; i <= RESERVATION_SIZE + 1; i++) {
+            assertThat(reservations.increment(List.of(COUNTER), result))
+                    .containsEntry(COUNTER, i);
+        }
+
+        then("the next range is reserved, the value is the one at the time of the reservation");
+        assertCounterInRepo(COUNTER, RESERVATION_SIZE, 2 * RESERVATION_SIZE);
+
+        when("unused values are released");
+        reservations.releaseUnused(result);
+
+        then("the counter is exact and there is no reservation");
+        assertCounterInRepo(COUNTER, RESERVATION_SIZE + 1, null);
+    }
+
+    /** The next run continues from the exact value. */
+    @Test
+    public void test110ContinueAfterRelease() throws Exception {
+        OperationResult result = getTestOperationResult();
+        CounterReservations reservations = createReservations();
+
+        when();
+        Map<String, Integer> values = reservations.increment(List.of(COUNTER, OTHER_COUNTER), result);
+        reservations.releaseUnused(result);
+
+        then();
+        assertThat(values)
+                .containsEntry(COUNTER, RESERVATION_SIZE + 2)
+                .containsEntry(OTHER_COUNTER, 1);
+        assertCounterInRepo(COUNTER, RESERVATION_SIZE + 2, null);
+        assertCounterInRepo(OTHER_COUNTER, 1, null);
+    }
+
+    /** If the reservation is not released (e.g. the node crashes), the next run continues from the reserved bound. */
+    @Test
+    public void test120ContinueAfterCrash() throws Exception {
+        OperationResult result = getTestOperationResult();
+        int before = RESERVATION_SIZE + 2;
+
+        given("values are reserved but not released");
+        createReservations().increment(List.of(COUNTER), result);
+        assertCounterInRepo(COUNTER, before, before + RESERVATION_SIZE);
+
+        when("counter is incremented by a new run");
+        CounterReservations reservations = createReservations();
+        Map<String, Integer> values = reservations.increment(List.of(COUNTER), result);
+        reservations.releaseUnused(result);
+
+        then("the unused values of the crashed run are skipped");
+        assertThat(values).containsEntry(COUNTER, before + RESERVATION_SIZE + 1);
+        assertCounterInRepo(COUNTER, before + RESERVATION_SIZE + 1, null);
+    }
+
+    /** A reservation is not released if the counter was changed in the meanwhile. */
+    @Test
+    public void test130NoReleaseOfChangedCounter() throws Exception {
+        OperationResult result = getTestOperationResult();
+        int before = RESERVATION_SIZE * 2 + 3;
+
+        given("two objects reserving values of the same counter");
+        CounterReservations first = createReservations();
+        CounterReservations second = createReservations();
+        first.increment(List.of(COUNTER), result);
+        second.increment(List.of(COUNTER), result);
+
+        when("the first one releases its values");
+        first.releaseUnused(result);
+
+        then("the reservation of the second one is kept");
+        assertCounterInRepo(COUNTER, before + RESERVATION_SIZE, before + 2 * RESERVATION_SIZE);
+
+        when("the second one releases its values");
+        second.releaseUnused(result);
+
+        then("the counter is set to the value of the second one");
+        assertCounterInRepo(COUNTER, before + RESERVATION_SIZE + 1, null);
+    }
+
+    /** Reservation size of 1 means each increment is stored in the repository immediately. */
+    @Test
+    public void test200ConfiguredReservationSize() throws Exception {
+        OperationResult result = getTestOperationResult();
+
+        given("reservation size is set to 1 in the system configuration");
+        repositoryService.addObject(
+                new SystemConfigurationType()
+                        .oid(SystemObjectsType.SYSTEM_CONFIGURATION.value())
+                        .name("system configuration")
+                        .internals(new InternalsConfigurationType()
+                                .activityCounterReservationSize(1))
+                        .asPrismObject(),
+                RepoAddOptions.createOverwrite(), result);
+        systemObjectCache.invalidateCaches();
+
+        when();
+        int size = CounterReservations.getConfiguredReservationSize(beans, result);
+        CounterReservations reservations = new CounterReservations(task, COUNTER_GROUP_PATH, size, beans);
+        Map<String, Integer> values = reservations.increment(List.of(OTHER_COUNTER), result);
+
+        then();
+        assertThat(size).isEqualTo(1);
+        assertThat(values).containsEntry(OTHER_COUNTER, 2);
+        assertCounterInRepo(OTHER_COUNTER, 1, 2);
+
+        when("the configuration is removed");
+        repositoryService.deleteObject(SystemConfigurationType.class, SystemObjectsType.SYSTEM_CONFIGURATION.value(), result);
+        systemObjectCache.invalidateCaches();
+
+        then("default size is used");
+        assertThat(CounterReservations.getConfiguredReservationSize(beans, result))
+                .isEqualTo(CounterReservations.DEFAULT_RESERVATION_SIZE);
+    }
+
+    private CounterReservations createReservations() {
+        return new CounterReservations(task, COUNTER_GROUP_PATH, RESERVATION_SIZE, beans);
+    }
+
+    private void assertCounterInRepo(String identifier, int expectedValue, Integer expectedReservedUpTo) throws Exception {
+        TaskType taskBean = plainRepositoryService
+                .getObject(TaskType.class, task.getOid(), null, getTestOperationResult())
+                .asObjectable();
+        ActivityCounterType counter = taskBean.getActivityState().getActivity().getCounters().getPreviewModePolicyRules()
+                .getCounter().stream()
+                .filter(c -> identifier.equals(c.getIdentifier()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No counter " + identifier));
+        displayValue("counter " + identifier, counter);
+        assertThat(counter.getValue()).as("value of " + identifier).isEqualTo(expectedValue);
+        assertThat(counter.getReservedUpTo()).as("reserved values of " + identifier).isEqualTo(expectedReservedUpTo);
+    }
+}
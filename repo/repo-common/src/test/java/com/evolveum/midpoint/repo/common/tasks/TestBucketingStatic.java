@@ -37,6 +37,7 @@ import com.evolveum.midpoint.repo.common.activity.definition.ActivityDistributio
 import com.evolveum.midpoint.repo.common.activity.run.CommonTaskBeans;
 import com.evolveum.midpoint.repo.common.activity.run.buckets.BucketingConfigurationOverrides;
 import com.evolveum.midpoint.repo.common.activity.run.buckets.BucketingManager;
+import com.evolveum.midpoint.repo.common.activity.run.buckets.GetBucketOperationOptions;
 import com.evolveum.midpoint.repo.common.activity.run.buckets.GetBucketOperationOptions.GetBucketOperationOptionsBuilder;
 import com.evolveum.midpoint.repo.common.activity.run.buckets.segmentation.BucketContentFactory;
 import com.evolveum.midpoint.repo.common.activity.run.buckets.segmentation.BucketContentFactoryGenerator;
@@ -97,6 +98,8 @@ public class TestBucketingStatic extends AbstractRepoCommonTest {
     private static final TestObject<TaskType> TASK_210_WORKER_3 = TestObject.file(TEST_DIR, "task-210-3.xml", "f9298cc6-174f-4a20-8703-bacc500fc53e");
     private static final TestObject<TaskType> TASK_210_WORKER_4 = TestObject.file(TEST_DIR, "task-210-4.xml", "f1bb0e85-abac-4e61-8a3a-f72d40f3e8d6");
     private static final TestObject<TaskType> TASK_210_WORKER_5 = TestObject.file(TEST_DIR, "task-210-5.xml", "81e31c90-6546-4055-8371-a34ef79f5117");
+    private static final TestObject<TaskType> TASK_220_COORDINATOR = TestObject.file(TEST_DIR, "task-220-c.xml", "4f0d5b7e-2c1a-4d8e-9b3f-6a7c8d9e0f12");
+    private static final TestObject<TaskType> TASK_220_WORKER = TestObject.file(TEST_DIR, "task-220-w.xml", "8b2e6c4a-1d3f-4a5b-9c7d-0e1f2a3b4c5d");
 
     @PostConstruct
     public void initialize() throws Exception {
@@ -844,6 +847,80 @@ public class TestBucketingStatic extends AbstractRepoCommonTest {
         assertNumericBucket(buckets.get(0), WorkBucketStateType.COMPLETE, 5, 4, 5);
     }
 
+    /**
+     * Checks "complete and get next" operation on task pair (coordinator + worker) with 3 buckets.
+     */
+    @Test
+    public void test220CompleteAndGetNextInWorker() throws Exception {
+        given();
+        OperationResult result = createOperationResult();
+        taskAdd(TASK_220_COORDINATOR, result); // suspended
+        taskAdd(TASK_220_WORKER, result); // suspended
+
+        String oidC = TASK_220_COORDINATOR.oid;
+        String oidW = TASK_220_WORKER.oid;
+
+        Task coordinator = taskManager.getTaskPlain(oidC, result);
+        GetBucketOperationOptions options = GetBucketOperationOptionsBuilder.anOptions()
+                .withDistributionDefinition(getDistributionDefinition(coordinator))
+                .build();
+
+        WorkBucketType bucket1 = getWorkBucket(coordinator, oidW, result);
+        assertNumericBucket(bucket1, null, 1, 0, 1);
+
+        when("complete bucket #1 and get next");
+
+        WorkBucketType bucket2 = bucketingManager.completeWorkBucketAndGetNext(
+                oidC, oidW, ActivityPath.empty(), 1, options, null, null, result);
+
+        then("complete bucket #1 and get next");
+
+        displayValue("next bucket", bucket2);
+        coordinator = taskManager.getTaskPlain(oidC, result);
+        displayDumpable("coordinator after completion of 1st bucket", coordinator);
+
+        assertNumericBucket(bucket2, null, 2, 1, 2);
+        List<WorkBucketType> buckets = new ArrayList<>(getBuckets(coordinator));
+        sortBucketsBySequentialNumber(buckets);
+        assertEquals(2, buckets.size());
+        assertNumericBucket(buckets.get(0), WorkBucketStateType.COMPLETE, 1, 0, 1);
+        assertNumericBucket(buckets.get(1), WorkBucketStateType.DELEGATED, 2, 1, 2);
+
+        when("complete bucket #2 and get next");
+
+        WorkBucketType bucket3 = bucketingManager.completeWorkBucketAndGetNext(
+                oidC, oidW, ActivityPath.empty(), 2, options, null, null, result);
+
+        then("complete bucket #2 and get next");
+
+        displayValue("next bucket", bucket3);
+        coordinator = taskManager.getTaskPlain(oidC, result);
+        displayDumpable("coordinator after completion of 2nd bucket", coordinator);
+
+        assertNumericBucket(bucket3, null, 3, 2, 3);
+        buckets = new ArrayList<>(getBuckets(coordinator));
+        sortBucketsBySequentialNumber(buckets);
+        assertEquals(2, buckets.size());
+        assertNumericBucket(buckets.get(0), WorkBucketStateType.COMPLETE, 2, 1, 2);
+        assertNumericBucket(buckets.get(1), WorkBucketStateType.DELEGATED, 3, 2, 3);
+
+        when("complete bucket #3 and get next");
+
+        WorkBucketType bucket4 = bucketingManager.completeWorkBucketAndGetNext(
+                oidC, oidW, ActivityPath.empty(), 3, options, null, null, result);
+
+        then("complete bucket #3 and get next");
+
+        assertNull("Non-null bucket obtained", bucket4);
+        coordinator = taskManager.getTaskPlain(oidC, result);
+        displayDumpable("coordinator after completion of 3rd bucket", coordinator);
+
+        buckets = new ArrayList<>(getBuckets(coordinator));
+        assertEquals(1, buckets.size());
+        assertNumericBucket(buckets.get(0), WorkBucketStateType.COMPLETE, 3, 2, 3);
+        assertOptimizedCompletedBuckets(coordinator, ActivityPath.empty());
+    }
+
     // TODO some test for batch allocation
 
     private WorkBucketType assumeNextValue(BucketFactory bucketFactory, ActivityStateType workState,
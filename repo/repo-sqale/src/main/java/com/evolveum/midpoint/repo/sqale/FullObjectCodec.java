@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.util.exception.SystemException;
+
+/**
+ * Encoding of the serialized form stored in `fullObject` columns.
+ *
+ * Plain format is the UTF-8 encoded Prism serialization (JSON, XML or YAML, see `fullObjectFormat`)
+ * and it is the default.
+ * Compact format (see {@link SqaleRepositoryConfiguration#isFullObjectCompact()}) starts with
+ * {@link #HEADER_LENGTH} bytes of header - zero byte, characters `mp` and the format version.
+ * The rest is raw deflate stream of the same Prism serialization, compressed with a preset dictionary
+ * of the version.
+ * The dictionary contains the most common namespaces and item names, so these are encoded as short
+ * back-references even in small objects.
+ *
+ * Plain serialized form never starts with zero byte, so both formats can be stored in the same column
+ * and {@link #decode} reads both, which allows to migrate existing rows gradually.
+ * Dictionary of the existing version must never be changed, new dictionary requires new version.
+ */
+public class FullObjectCodec {
+
+    public static final int HEADER_LENGTH = 4;
+
+    /** Current version of the compact format, used for writing. */
+    public static final byte COMPACT_VERSION = 1;
+
+    private static final byte HEADER_0 = 0;
+    private static final byte HEADER_1 = 'm';
+    private static final byte HEADER_2 = 'p';
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Dictionary for version 1, most frequent strings should be at the end, as these are encoded
+     * with shorter distances.
+     */
+    private static final byte[] DICTIONARY_V1 = String.join("",
+            "http://www.w3.org/2001/XMLSchema",
+            "http://www.w3.org/2001/04/xmlenc#aes256-cbc",
+            "http://midpoint.evolveum.com/xml/ns/public/connector/icf-1/resource-schema-3",
+            "http://midpoint.evolveum.com/xml/ns/public/resource/instance-3",
+            "http://midpoint.evolveum.com/xml/ns/public/common/extension-3",
+            "http://midpoint.evolveum.com/xml/ns/public/common/channels-3#",
+            "http://midpoint.evolveum.com/xml/ns/public/common/org-3",
+            "http://prism.evolveum.com/xml/ns/public/types-3",
+            "\"encryptedData\":{\"encryptionMethod\":{\"algorithm\":\"",
+            "\"keyInfo\":{\"keyName\":\"",
+            "\"cipherData\":{\"cipherValue\":\"",
+            "\"credentials\":{\"password\":{\"value\":{",
+            "\"synchronizationSituation\":\"linked\"",
+            "\"synchronizationTimestamp\":\"",
+            "\"fullSynchronizationTimestamp\":\"",
+            "\"objectClass\":\"ri:AccountObjectClass\"",
+            "\"kind\":\"account\",\"intent\":\"default\"",
+            "\"primaryIdentifierValue\":\"",
+            "\"attributes\":{",
+            "\"operationExecution\":[{\"@id\":",
+            "\"status\":\"success\"",
+            "\"recordType\":\"simple\"",
+            "\"activityRef\":{",
+            "\"taskRef\":{\"oid\":\"",
+            "\"iteration\":0,\"iterationToken\":\"\"",
+            "\"lifecycleState\":\"active\"",
+            "\"linkRef\":[{\"oid\":\"",
+            "\"parentOrgRef\":[{\"oid\":\"",
+            "\"archetypeRef\":[{\"oid\":\"",
+            "\"roleMembershipRef\":[{\"oid\":\"",
+            "\"@metadata\":{\"storage\":{",
+            "\"createTimestamp\":\"",
+            "\"creatorRef\":{\"oid\":\"",
+            "\"createChannel\":\"",
+            "\"modifyTimestamp\":\"",
+            "\"modifierRef\":{\"oid\":\"",
+            "\"modifyChannel\":\"",
+            "\"requestTimestamp\":\"",
+            "\"requestorRef\":{\"oid\":\"",
+            "\"activation\":{\"effectiveStatus\":\"enabled\",\"enableTimestamp\":\"",
+            "\"administrativeStatus\":\"enabled\"",
+            "\"assignment\":[{\"@id\":",
+            "\"targetRef\":{\"oid\":\"",
+            "\"relation\":\"org:default\"",
+            "\"type\":\"c:RoleType\"",
+            "\"type\":\"c:OrgType\"",
+            "\"type\":\"c:ArchetypeType\"",
+            "\"type\":\"c:UserType\"",
+            "\"resourceRef\":{\"oid\":\"",
+            "\"type\":\"c:ResourceType\"",
+            "\"extension\":{",
+            "\"description\":\"",
+            "\"name\":{\"orig\":\"",
+            "\",\"norm\":\"",
+            "{\"@ns\":\"http://midpoint.evolveum.com/xml/ns/public/common/common-3\",",
+            "\"oid\":\"",
+            "\",\"version\":\"")
+            .getBytes(StandardCharsets.UTF_8);
+
+    /** Returns true if the provided fullObject is in compact format of any version. */
+    public static boolean isCompact(byte[] fullObject) {
+        return fullObject != null
+                && fullObject.length >= HEADER_LENGTH
+                && fullObject[0] == HEADER_0
+                && fullObject[1] == HEADER_1
+                && fullObject[2] == HEADER_2;
+    }
+
+    /** Encodes the serialized form to the compact format of the current version. */
+    public static byte[] encodeCompact(@NotNull String serializedForm) {
+        byte[] input = serializedForm.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setDictionary(DICTIONARY_V1);
+            deflater.setInput(input);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 3 + HEADER_LENGTH);
+            out.write(HEADER_0);
+            out.write(HEADER_1);
+            out.write(HEADER_2);
+            out.write(COMPACT_VERSION);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Encodes the serialized form to the plain format (UTF-8 bytes). */
+    public static byte[] encodePlain(@NotNull String serializedForm) {
+        return serializedForm.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Decodes fullObject of any supported format to the serialized form. */
+    public static String decode(byte[] fullObject) {
+        if (fullObject == null) {
+            return null;
+        }
+        if (!isCompact(fullObject)) {
+            return new String(fullObject, StandardCharsets.UTF_8);
+        }
+
+        byte version = fullObject[3];
+        if (version != COMPACT_VERSION) {
+            throw new SystemException("Unsupported version " + version + " of compact fullObject format");
+        }
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setDictionary(DICTIONARY_V1);
+            inflater.setInput(fullObject, HEADER_LENGTH, fullObject.length - HEADER_LENGTH);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(fullObject.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new SystemException("Compact fullObject is truncated");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new SystemException("Compact fullObject is corrupted: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.repo.sqlbase.RepositoryObjectParseResult;
+import com.evolveum.midpoint.repo.sqlbase.perfmon.SqlPerformanceMonitorImpl;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Parallel parse stage for fullObject column of search results.
+ *
+ * When enabled (see {@link SqaleRepositoryConfiguration#getFullObjectParseParallelism()}),
+ * serialized forms of all the rows of the result list are parsed by the fork-join pool before
+ * the rows are transformed to the schema objects one by one.
+ * The rest of the row transformation (e.g. resolving reference names or loading of the related
+ * containers) still runs on the calling thread, because it uses the JDBC session of that thread.
+ *
+ * Pre-parsed results are available to the calling thread only and are picked up by
+ * {@link #takePreParsed} which is called when the fullObject is being parsed in the mapping.
+ * The results are identified by the fullObject byte array *instance*, so the result order
+ * is not affected and anything not pre-parsed (or not picked up) is parsed as usual.
+ *
+ * Parsing errors are ignored during pre-parsing, such rows are simply parsed again on the calling
+ * thread, which reports the error in the usual way.
+ */
+public class FullObjectParallelParser {
+
+    private static final Trace LOGGER = TraceManager.getTrace(FullObjectParallelParser.class);
+
+    /** Name of the operation reported to the performance monitor, with the parsed type. */
+    public static final String OP_PARSE_FULL_OBJECTS = "SqaleRepositoryService.parseFullObjects";
+
+    private static final ThreadLocal<Map<byte[], RepositoryObjectParseResult<?>>> PRE_PARSED =
+            new ThreadLocal<>();
+
+    private final SqaleRepoContext repositoryContext;
+    private final int minRows;
+    @Nullable private final ForkJoinPool pool;
+
+    private volatile SqlPerformanceMonitorImpl performanceMonitor;
+
+    FullObjectParallelParser(@NotNull SqaleRepoContext repositoryContext, int parallelism, int minRows) {
+        this.repositoryContext = repositoryContext;
+        this.minRows = minRows;
+        this.pool = parallelism > 1
+                ? new ForkJoinPool(parallelism, FullObjectParallelParser::newWorkerThread, null, false)
+                : null;
+    }
+
+    private static ForkJoinWorkerThread newWorkerThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("midpoint-full-object-parser-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /** Sets performance monitor used to report the parse time per type, can be null. */
+    public void setPerformanceMonitor(SqlPerformanceMonitorImpl performanceMonitor) {
+        this.performanceMonitor = performanceMonitor;
+    }
+
+    /** Returns true if the parallel parsing should be used for the result with specified number of rows. */
+    public boolean isEnabledFor(int rowCount) {
+        return pool != null && rowCount >= minRows;
+    }
+
+    /**
+     * Parses provided serialized forms in parallel and makes the results available for the current thread
+     * until the returned scope is closed.
+     * Scopes can be nested (e.g. search executed while the results of another search are transformed),
+     * closing the inner scope makes the results of the outer scope available again.
+     * Null items in the list are skipped.
+     * Always use this in try-with-resource construct.
+     */
+    public <T> @NotNull Scope preParse(@NotNull List<byte[]> fullObjects, @NotNull Class<T> schemaType) {
+        if (pool == null) {
+            throw new IllegalStateException("Parallel parsing of full objects is not enabled");
+        }
+
+        SqlPerformanceMonitorImpl monitor = performanceMonitor;
+        long opHandle = monitor != null ? monitor.registerOperationStart(OP_PARSE_FULL_OBJECTS, schemaType) : -1;
+        try {
+            Function<byte[], RepositoryObjectParseResult<?>> parseFunction = fullObject -> parse(fullObject, schemaType);
+            List<RepositoryObjectParseResult<?>> results = pool.submit(
+                    () -> fullObjects.parallelStream()
+                            .map(parseFunction)
+                            .toList())
+                    .get();
+
+            Map<byte[], RepositoryObjectParseResult<?>> preParsed = new IdentityHashMap<>();
+            for (int i = 0; i < results.size(); i++) {
+                RepositoryObjectParseResult<?> result = results.get(i);
+                if (result != null) {
+                    preParsed.put(fullObjects.get(i), result);
+                }
+            }
+            Map<byte[], RepositoryObjectParseResult<?>> previous = PRE_PARSED.get();
+            PRE_PARSED.set(preParsed);
+            return () -> restore(previous);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException("Interrupted while parsing full objects", e);
+        } catch (ExecutionException e) {
+            throw new SystemException("Unexpected problem while parsing full objects: " + e.getCause(), e.getCause());
+        } finally {
+            if (monitor != null) {
+                monitor.registerOperationFinish(opHandle, 1);
+            }
+        }
+    }
+
+    private static void restore(@Nullable Map<byte[], RepositoryObjectParseResult<?>> previous) {
+        if (previous != null) {
+            PRE_PARSED.set(previous);
+        } else {
+            PRE_PARSED.remove();
+        }
+    }
+
+    private @Nullable RepositoryObjectParseResult<?> parse(byte[] fullObject, Class<?> schemaType) {
+        if (fullObject == null) {
+            return null;
+        }
+        try {
+            return repositoryContext.parsePrismObject(repositoryContext.decodeFullObject(fullObject), schemaType);
+        } catch (Exception e) {
+            // Parsed again on the calling thread, which reports the problem properly.
+            LOGGER.trace("Pre-parsing of full object failed, it will be parsed again: {}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the pre-parsed result for the specified fullObject byte array instance and removes it,
+     * or returns null if there is no such result for the current thread.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> @Nullable RepositoryObjectParseResult<T> takePreParsed(
+            byte[] fullObject, @NotNull Class<T> schemaType) {
+        Map<byte[], RepositoryObjectParseResult<?>> preParsed = PRE_PARSED.get();
+        if (preParsed == null || fullObject == null) {
+            return null;
+        }
+        RepositoryObjectParseResult<?> result = preParsed.remove(fullObject);
+        if (result == null || !schemaType.isInstance(result.prismValue)) {
+            return null;
+        }
+        return (RepositoryObjectParseResult<T>) result;
+    }
+
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Scope of the pre-parsed results, closing it releases the results that were not used. */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
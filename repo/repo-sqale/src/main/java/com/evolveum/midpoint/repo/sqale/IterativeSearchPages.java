@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.evolveum.midpoint.repo.sqlbase.RepositoryException;
+import com.evolveum.midpoint.schema.SearchResultList;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Source of pages for iterative search, see `SqaleRepositoryService.executeSearchObjectsIterative`.
+ *
+ * Without prefetching, each page is fetched by {@link #next()} on the calling thread.
+ * With prefetching, pages are fetched (queried and parsed) by a background thread while the caller
+ * handles the previous page.
+ * The number of pages fetched ahead is bounded by the capacity of the queue between the fetching
+ * thread and the caller, so the memory usage does not depend on the total size of the result.
+ *
+ * Always use in try-with-resource construct, {@link #close()} stops the background fetching
+ * if the caller does not consume all the pages (e.g. handler stopped the iteration).
+ *
+ * @param <T> type of the objects in the pages
+ */
+class IterativeSearchPages<T> implements AutoCloseable {
+
+    private static final Trace LOGGER = TraceManager.getTrace(IterativeSearchPages.class);
+
+    /** How often the fetching thread checks whether the iteration was closed when the queue is full. */
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    /**
+     * Function fetching the next page based on the previous one.
+     * Returns null if there are no more pages to fetch.
+     */
+    @FunctionalInterface
+    interface PageFetcher<T> {
+        @Nullable SearchResultList<T> fetchPage(@Nullable SearchResultList<T> previousPage, int fetchedTotal)
+                throws SchemaException, RepositoryException;
+    }
+
+    /** Item of the queue, either a page, an error or the end of pages (both null). */
+    private record QueuedPage<T>(SearchResultList<T> page, Throwable error) {
+    }
+
+    @NotNull private final PageFetcher<T> fetcher;
+    @Nullable private final BlockingQueue<QueuedPage<T>> queue;
+
+    // used only without prefetching, with prefetching these are local to the fetching thread
+    private SearchResultList<T> lastPage;
+    private int fetchedTotal;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates the page source, prefetching is used only if `prefetchPages` is positive.
+     * The executor is not used in that case.
+     */
+    IterativeSearchPages(
+            @NotNull PageFetcher<T> fetcher, int prefetchPages, @NotNull ExecutorService executor) {
+        this.fetcher = fetcher;
+        if (prefetchPages > 0) {
+            queue = new ArrayBlockingQueue<>(prefetchPages);
+            executor.execute(this::fetchPages);
+        } else {
+            queue = null;
+        }
+    }
+
+    /** Returns the next page or null if there are no more pages. */
+    @Nullable SearchResultList<T> next() throws SchemaException, RepositoryException {
+        if (queue == null) {
+            SearchResultList<T> page = fetcher.fetchPage(lastPage, fetchedTotal);
+            if (page != null) {
+                lastPage = page;
+                fetchedTotal += page.size();
+            }
+            return page;
+        }
+
+        QueuedPage<T> queuedPage;
+        try {
+            queuedPage = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SystemException("Interrupted while waiting for the next page of iterative search", e);
+        }
+
+        Throwable error = queuedPage.error();
+        if (error != null) {
+            if (error instanceof SchemaException) {
+                throw (SchemaException) error;
+            } else if (error instanceof RepositoryException) {
+                throw (RepositoryException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else {
+                throw new SystemException(error.getMessage(), error);
+            }
+        }
+        return queuedPage.page();
+    }
+
+    /** Body of the background fetching thread. */
+    private void fetchPages() {
+        SearchResultList<T> previousPage = null;
+        int total = 0;
+        try {
+            while (!closed) {
+                SearchResultList<T> page = fetcher.fetchPage(previousPage, total);
+                if (page == null) {
+                    break;
+                }
+                if (!enqueue(new QueuedPage<>(page, null))) {
+                    return; // closed while waiting for space in the queue
+                }
+                previousPage = page;
+                total += page.size();
+            }
+            enqueue(new QueuedPage<>(null, null));
+        } catch (Throwable t) {
+            LOGGER.debug("Prefetching of the iterative search page failed", t);
+            enqueue(new QueuedPage<>(null, t));
+        }
+    }
+
+    /** Blocks until there is space in the queue, returns false if closed in the meantime. */
+    private boolean enqueue(QueuedPage<T> queuedPage) {
+        assert queue != null;
+        try {
+            while (!closed) {
+                if (queue.offer(queuedPage, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (queue != null) {
+            // releases prefetched pages and unblocks the fetching thread
+            queue.clear();
+        }
+    }
+}
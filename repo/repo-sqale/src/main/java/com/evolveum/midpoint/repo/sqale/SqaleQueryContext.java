@@ -6,10 +6,14 @@
  */
 package com.evolveum.midpoint.repo.sqale;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import javax.xml.namespace.QName;
 
+import com.querydsl.core.Tuple;
 import com.querydsl.core.types.Expression;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.Expressions;
@@ -25,6 +29,7 @@ import com.evolveum.midpoint.repo.sqale.filtering.*;
 import com.evolveum.midpoint.repo.sqale.mapping.SqaleNestedMapping;
 import com.evolveum.midpoint.repo.sqale.mapping.SqaleTableMapping;
 import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.repo.sqlbase.PageOf;
 import com.evolveum.midpoint.repo.sqlbase.QueryException;
 import com.evolveum.midpoint.repo.sqlbase.RepositoryException;
 import com.evolveum.midpoint.repo.sqlbase.SqlQueryContext;
@@ -42,12 +47,6 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 public class SqaleQueryContext<S, Q extends FlexibleRelationalPathBase<R>, R>
         extends SqlQueryContext<S, Q, R> {
 
-    /**
-     * Flag guarding whether we need to refresh organization closure before executing
-     * the actual query.
-     */
-    private boolean containsOrgFilter = false;
-
     /**
      * Enables {@link #loadObject} method that is used to fetch additional objects,
      * e.g. container owners (parents) or references targets.
@@ -158,14 +157,6 @@ public class SqaleQueryContext<S, Q extends FlexibleRelationalPathBase<R>, R>
         return repositoryContext().searchCachedRelationId(qName);
     }
 
-    public void markContainsOrgFilter() {
-        containsOrgFilter = true;
-        SqaleQueryContext<?, ?, ?> parentContext = parentContext();
-        if (parentContext != null) {
-            parentContext.markContainsOrgFilter();
-        }
-    }
-
     /** Returns derived {@link SqaleQueryContext} for JOIN. */
     @Override
     protected <TS, TQ extends FlexibleRelationalPathBase<TR>, TR> SqlQueryContext<TS, TQ, TR>
@@ -205,13 +196,29 @@ public class SqaleQueryContext<S, Q extends FlexibleRelationalPathBase<R>, R>
         return (SqaleQueryContext<?, ?, ?>) super.parentContext();
     }
 
+    /**
+     * Parses fullObject of all the rows in parallel first, if enabled and supported by the mapping.
+     * The rest of the transformation is the same, see {@link FullObjectParallelParser} for details.
+     */
     @Override
-    public void beforeQuery() {
-        if (containsOrgFilter) {
-            try (JdbcSession jdbcSession = repositoryContext().newJdbcSession().startTransaction()) {
-                jdbcSession.executeStatement("CALL m_refresh_org_closure()");
-                jdbcSession.commit();
-            }
+    public PageOf<S> transformToSchemaType(PageOf<Tuple> result, JdbcSession jdbcSession)
+            throws SchemaException, QueryException {
+        FullObjectParallelParser parser = repositoryContext().fullObjectParallelParser();
+        if (!parser.isEnabledFor(result.content().size())
+                || !(entityPathMapping instanceof SqaleTableMapping<S, Q, R> mapping)) {
+            return super.transformToSchemaType(result, jdbcSession);
+        }
+
+        List<byte[]> fullObjects = new ArrayList<>(result.content().size());
+        for (Tuple tuple : result.content()) {
+            fullObjects.add(mapping.fullObjectForParsing(tuple, entityPath));
+        }
+        if (fullObjects.stream().allMatch(Objects::isNull)) {
+            return super.transformToSchemaType(result, jdbcSession);
+        }
+
+        try (var ignored = parser.preParse(fullObjects, mapping.schemaType())) {
+            return super.transformToSchemaType(result, jdbcSession);
         }
     }
 
@@ -19,6 +19,7 @@ import com.evolveum.midpoint.xml.ns._public.common.audit_3.EffectivePrivilegesMo
 import com.querydsl.sql.types.ArrayType;
 import com.querydsl.sql.types.EnumAsObjectType;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.apache.commons.lang3.BooleanUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -69,6 +70,7 @@ public class SqaleRepoContext extends SqlRepoContext {
 
     private final UriCache uriCache;
     private final ExtItemCache extItemCache;
+    private final FullObjectParallelParser fullObjectParallelParser;
 
     private FullTextSearchConfigurationType fullTextSearchConfig;
 
@@ -125,6 +127,14 @@ public class SqaleRepoContext extends SqlRepoContext {
 
         uriCache = new UriCache();
         extItemCache = new ExtItemCache();
+
+        if (jdbcRepositoryConfiguration instanceof SqaleRepositoryConfiguration sqaleConfiguration) {
+            fullObjectParallelParser = new FullObjectParallelParser(this,
+                    sqaleConfiguration.getFullObjectParseParallelism(),
+                    sqaleConfiguration.getFullObjectParseParallelMinRows());
+        } else {
+            fullObjectParallelParser = new FullObjectParallelParser(this, 0, 0);
+        }
     }
 
     @PostConstruct
@@ -160,6 +170,15 @@ public class SqaleRepoContext extends SqlRepoContext {
         }
     }
 
+    @PreDestroy
+    public void destroy() {
+        fullObjectParallelParser.shutdown();
+    }
+
+    public FullObjectParallelParser fullObjectParallelParser() {
+        return fullObjectParallelParser;
+    }
+
     // This has nothing to do with "repo cache" which is higher than this.
     public void clearCaches() {
         uriCache.initialize(this::newJdbcSession);
@@ -248,8 +267,29 @@ public class SqaleRepoContext extends SqlRepoContext {
 
     public <S extends ObjectType> boolean requiresFullTextReindex(
             Collection<? extends ItemDelta<?, ?>> modifications, PrismObject<S> prismObject) {
+        return requiresFullTextReindex(modifications, prismObject.getCompileTimeClass());
+    }
+
+    public <S extends ObjectType> boolean requiresFullTextReindex(
+            Collection<? extends ItemDelta<?, ?>> modifications, Class<S> schemaType) {
         return FullTextSearchUtil.isObjectTextInfoRecomputationNeeded(
-                fullTextSearchConfig, prismObject.getCompileTimeClass(), modifications);
+                fullTextSearchConfig, schemaType, modifications);
+    }
+
+    /**
+     * Encodes serialized form of an object or a container for fullObject column.
+     * Compact format is used if configured, see {@link FullObjectCodec}.
+     */
+    public byte[] encodeFullObject(@NotNull String serializedForm) {
+        return getJdbcRepositoryConfiguration() instanceof SqaleRepositoryConfiguration sqaleConfiguration
+                && sqaleConfiguration.isFullObjectCompact()
+                ? FullObjectCodec.encodeCompact(serializedForm)
+                : FullObjectCodec.encodePlain(serializedForm);
+    }
+
+    /** Decodes fullObject column value in any supported format to the serialized form. */
+    public String decodeFullObject(byte[] fullObject) {
+        return FullObjectCodec.decode(fullObject);
     }
 
     public byte[] createFullResult(OperationResultType operationResult) {
@@ -15,6 +15,7 @@ import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 
+import com.evolveum.midpoint.common.configuration.api.MidpointConfiguration;
 import com.evolveum.midpoint.prism.PrismContext;
 import com.evolveum.midpoint.repo.api.RepositoryServiceFactoryException;
 import com.evolveum.midpoint.repo.sqlbase.JdbcRepositoryConfiguration;
@@ -31,6 +32,55 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
 
     private static final String PROPERTY_SQL_DURATION_WARNING_MS = "sqlDurationWarningMs";
 
+    /**
+     * Number of pages that iterative search fetches ahead in a background thread while
+     * the previous page is being handled.
+     * Value of 0 (default) means that pages are fetched sequentially, only when the previous page was handled.
+     */
+    private static final String PROPERTY_ITERATIVE_SEARCH_PREFETCH_PAGES = "iterativeSearchPrefetchPages";
+
+    /**
+     * Number of threads used to parse fullObject of search results in parallel.
+     * Value of 0 or 1 (default) means that all the results are parsed by the thread calling the search.
+     */
+    private static final String PROPERTY_FULL_OBJECT_PARSE_PARALLELISM = "fullObjectParseParallelism";
+
+    /** Minimal number of rows in the search result to use parallel parsing, smaller results are parsed serially. */
+    private static final String PROPERTY_FULL_OBJECT_PARSE_PARALLEL_MIN_ROWS = "fullObjectParseParallelMinRows";
+
+    /**
+     * If true, fullObject is written in compact binary format, see {@link FullObjectCodec}.
+     * Both formats are always readable, so switching this on or off does not require migration
+     * of the existing rows, but only newly written rows use the configured format.
+     */
+    private static final String PROPERTY_FULL_OBJECT_COMPACT = "fullObjectCompact";
+
+    /**
+     * Audit only: capacity of the in-memory queue of audit records written asynchronously in batches.
+     * Value of 0 (default) means that each audit record is written synchronously by the calling thread.
+     */
+    private static final String PROPERTY_ASYNC_QUEUE_SIZE = "asyncQueueSize";
+
+    /** Audit only: maximum number of audit records written by one asynchronous flush (one transaction). */
+    private static final String PROPERTY_ASYNC_BATCH_SIZE = "asyncBatchSize";
+
+    /**
+     * Audit only: what to do when the asynchronous queue is full.
+     * Value `block` (default) blocks the caller until there is space in the queue,
+     * value `spill` writes the audit record to a file in {@link #PROPERTY_ASYNC_SPILL_DIRECTORY}
+     * which is written to the database later.
+     */
+    private static final String PROPERTY_ASYNC_OVERFLOW = "asyncOverflow";
+
+    /**
+     * Audit only: directory for audit records spilled from the full asynchronous queue.
+     * Defaults to `audit-spill` under midPoint home directory.
+     */
+    private static final String PROPERTY_ASYNC_SPILL_DIRECTORY = "asyncSpillDirectory";
+
+    public static final String ASYNC_OVERFLOW_BLOCK = "block";
+    public static final String ASYNC_OVERFLOW_SPILL = "spill";
+
     private static final String DEFAULT_DRIVER = "org.postgresql.Driver";
     private static final SupportedDatabase DEFAULT_DATABASE = SupportedDatabase.POSTGRESQL;
     private static final String DEFAULT_JDBC_URL = "jdbc:postgresql://localhost:5432/midpoint";
@@ -58,6 +108,13 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
     private static final int DEFAULT_MAX_POOL_SIZE = 40;
 
     private static final int DEFAULT_ITERATIVE_SEARCH_PAGE_SIZE = 100;
+    private static final int DEFAULT_ITERATIVE_SEARCH_PREFETCH_PAGES = 0; // no prefetching
+    private static final int DEFAULT_FULL_OBJECT_PARSE_PARALLELISM = 0; // no parallel parsing
+    private static final int DEFAULT_FULL_OBJECT_PARSE_PARALLEL_MIN_ROWS = 20;
+
+    private static final int DEFAULT_ASYNC_QUEUE_SIZE = 0; // synchronous audit writes
+    private static final int DEFAULT_ASYNC_BATCH_SIZE = 100;
+    private static final String DEFAULT_ASYNC_SPILL_DIRECTORY_NAME = "audit-spill";
 
     private static final int DEFAULT_SQL_DURATION_WARNING_MS = 0; // 0 or less means no warning
 
@@ -80,13 +137,23 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
     private Long leakDetectionThreshold;
 
     private String fullObjectFormat;
+    private boolean fullObjectCompact;
 
     private String performanceStatisticsFile;
     private int performanceStatisticsLevel;
 
     private int iterativeSearchByPagingBatchSize;
+    private int iterativeSearchPrefetchPages;
+    private int fullObjectParseParallelism;
+    private int fullObjectParseParallelMinRows;
     private boolean createMissingCustomColumns;
 
+    // audit only
+    private int asyncQueueSize;
+    private int asyncBatchSize;
+    private String asyncOverflow;
+    private String asyncSpillDirectory;
+
     private long sqlDurationWarningMs; // 0 or less means no warning
 
     // Provided with configuration node "midpoint.repository".
@@ -130,6 +197,7 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
 
         fullObjectFormat = configuration.getString(PROPERTY_FULL_OBJECT_FORMAT, DEFAULT_FULL_OBJECT_FORMAT)
                 .toLowerCase(); // all language string constants are lower-cases
+        fullObjectCompact = configuration.getBoolean(PROPERTY_FULL_OBJECT_COMPACT, false);
 
         performanceStatisticsFile = configuration.getString(PROPERTY_PERFORMANCE_STATISTICS_FILE);
         performanceStatisticsLevel = configuration.getInt(PROPERTY_PERFORMANCE_STATISTICS_LEVEL,
@@ -137,15 +205,36 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
 
         iterativeSearchByPagingBatchSize = configuration.getInt(
                 PROPERTY_ITERATIVE_SEARCH_BY_PAGING_BATCH_SIZE, DEFAULT_ITERATIVE_SEARCH_PAGE_SIZE);
+        iterativeSearchPrefetchPages = Math.max(0, configuration.getInt(
+                PROPERTY_ITERATIVE_SEARCH_PREFETCH_PAGES, DEFAULT_ITERATIVE_SEARCH_PREFETCH_PAGES));
+        fullObjectParseParallelism = configuration.getInt(
+                PROPERTY_FULL_OBJECT_PARSE_PARALLELISM, DEFAULT_FULL_OBJECT_PARSE_PARALLELISM);
+        fullObjectParseParallelMinRows = configuration.getInt(
+                PROPERTY_FULL_OBJECT_PARSE_PARALLEL_MIN_ROWS, DEFAULT_FULL_OBJECT_PARSE_PARALLEL_MIN_ROWS);
         createMissingCustomColumns =
                 configuration.getBoolean(PROPERTY_CREATE_MISSING_CUSTOM_COLUMNS, false);
 
         sqlDurationWarningMs = configuration.getLong(
                 PROPERTY_SQL_DURATION_WARNING_MS, DEFAULT_SQL_DURATION_WARNING_MS);
 
+        initAsyncAuditWrites(configuration);
+
         validateConfiguration();
     }
 
+    private void initAsyncAuditWrites(Configuration configuration) {
+        asyncQueueSize = Math.max(0, configuration.getInt(PROPERTY_ASYNC_QUEUE_SIZE, DEFAULT_ASYNC_QUEUE_SIZE));
+        asyncBatchSize = Math.max(1, configuration.getInt(PROPERTY_ASYNC_BATCH_SIZE, DEFAULT_ASYNC_BATCH_SIZE));
+        asyncOverflow = configuration.getString(PROPERTY_ASYNC_OVERFLOW, ASYNC_OVERFLOW_BLOCK).toLowerCase();
+        asyncSpillDirectory = configuration.getString(PROPERTY_ASYNC_SPILL_DIRECTORY);
+        if (asyncSpillDirectory == null) {
+            String midpointHome = System.getProperty(MidpointConfiguration.MIDPOINT_HOME_PROPERTY);
+            if (midpointHome != null) {
+                asyncSpillDirectory = Path.of(midpointHome, DEFAULT_ASYNC_SPILL_DIRECTORY_NAME).toString();
+            }
+        }
+    }
+
     private void validateConfiguration() throws RepositoryServiceFactoryException {
         if (dataSource == null) {
             notEmpty(jdbcUrl, "JDBC URL is empty or not defined.");
@@ -153,6 +242,18 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
             // In case of configuration mismatch we let the JDBC driver to fail.
             notEmpty(driverClassName, "Driver class name is empty or not defined.");
         }
+        validateAsyncAuditWrites();
+    }
+
+    private void validateAsyncAuditWrites() throws RepositoryServiceFactoryException {
+        if (!ASYNC_OVERFLOW_BLOCK.equals(asyncOverflow) && !ASYNC_OVERFLOW_SPILL.equals(asyncOverflow)) {
+            throw new RepositoryServiceFactoryException("Unsupported value '" + asyncOverflow + "' of "
+                    + PROPERTY_ASYNC_OVERFLOW + ", use '" + ASYNC_OVERFLOW_BLOCK + "' or '" + ASYNC_OVERFLOW_SPILL + "'.");
+        }
+        if (asyncQueueSize > 0 && isAsyncOverflowSpill() && asyncSpillDirectory == null) {
+            throw new RepositoryServiceFactoryException(
+                    PROPERTY_ASYNC_SPILL_DIRECTORY + " must be set for '" + ASYNC_OVERFLOW_SPILL + "' overflow.");
+        }
     }
 
     public @NotNull SupportedDatabase getDatabaseType() {
@@ -214,6 +315,19 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
         return fullObjectFormat;
     }
 
+    /**
+     * Returns true if fullObject should be written in compact binary format.
+     * Also see {@link #PROPERTY_FULL_OBJECT_COMPACT}.
+     */
+    public boolean isFullObjectCompact() {
+        return fullObjectCompact;
+    }
+
+    // exists because of testing
+    public void setFullObjectCompact(boolean fullObjectCompact) {
+        this.fullObjectCompact = fullObjectCompact;
+    }
+
     @Override
     public boolean isEmbedded() {
         return false;
@@ -298,11 +412,79 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
         this.iterativeSearchByPagingBatchSize = iterativeSearchByPagingBatchSize;
     }
 
+    /**
+     * Returns number of pages fetched (and parsed) ahead by iterative search, 0 means no prefetching.
+     * Also see {@link #PROPERTY_ITERATIVE_SEARCH_PREFETCH_PAGES}.
+     */
+    public int getIterativeSearchPrefetchPages() {
+        return iterativeSearchPrefetchPages;
+    }
+
+    // exists because of testing
+    public void setIterativeSearchPrefetchPages(int iterativeSearchPrefetchPages) {
+        this.iterativeSearchPrefetchPages = iterativeSearchPrefetchPages;
+    }
+
+    /**
+     * Returns number of threads used for parallel parsing of fullObject in search results.
+     * Values lower than 2 mean no parallel parsing.
+     * Also see {@link #PROPERTY_FULL_OBJECT_PARSE_PARALLELISM}.
+     */
+    public int getFullObjectParseParallelism() {
+        return fullObjectParseParallelism;
+    }
+
+    /** Returns minimal number of rows in the search result to use parallel parsing of fullObject. */
+    public int getFullObjectParseParallelMinRows() {
+        return fullObjectParseParallelMinRows;
+    }
+
     @Override
     public boolean isCreateMissingCustomColumns() {
         return createMissingCustomColumns;
     }
 
+    /**
+     * Returns capacity of the queue for asynchronous audit writes, 0 means synchronous writes.
+     * Also see {@link #PROPERTY_ASYNC_QUEUE_SIZE}.
+     */
+    public int getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+
+    // exists because of testing
+    public void setAsyncQueueSize(int asyncQueueSize) {
+        this.asyncQueueSize = asyncQueueSize;
+    }
+
+    /** Returns maximum number of audit records written by one asynchronous flush. */
+    public int getAsyncBatchSize() {
+        return asyncBatchSize;
+    }
+
+    /**
+     * Returns true if audit records are spilled to a file when the asynchronous queue is full.
+     * Also see {@link #PROPERTY_ASYNC_OVERFLOW}.
+     */
+    public boolean isAsyncOverflowSpill() {
+        return ASYNC_OVERFLOW_SPILL.equals(asyncOverflow);
+    }
+
+    // exists because of testing
+    public void setAsyncOverflow(String asyncOverflow) {
+        this.asyncOverflow = asyncOverflow;
+    }
+
+    /** Returns directory for audit records spilled from the full asynchronous queue, can be null. */
+    public String getAsyncSpillDirectory() {
+        return asyncSpillDirectory;
+    }
+
+    // exists because of testing
+    public void setAsyncSpillDirectory(String asyncSpillDirectory) {
+        this.asyncSpillDirectory = asyncSpillDirectory;
+    }
+
     /**
      * Returns threshold duration for SQL, after which it should be logged on warning level.
      * Value of 0 or less means that this warning is disabled.
@@ -316,7 +498,8 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
      * This is used when the same data source is used by audit and repository.
      */
     public static SqaleRepositoryConfiguration initForAudit(
-            @NotNull SqaleRepositoryConfiguration mainRepoConfig, Configuration auditConfig) {
+            @NotNull SqaleRepositoryConfiguration mainRepoConfig, Configuration auditConfig)
+            throws RepositoryServiceFactoryException {
         SqaleRepositoryConfiguration config = new SqaleRepositoryConfiguration(auditConfig);
         config.fullObjectFormat =
                 auditConfig.getString(PROPERTY_FULL_OBJECT_FORMAT, mainRepoConfig.fullObjectFormat)
@@ -325,6 +508,9 @@ public class SqaleRepositoryConfiguration implements JdbcRepositoryConfiguration
                 PROPERTY_ITERATIVE_SEARCH_BY_PAGING_BATCH_SIZE, mainRepoConfig.iterativeSearchByPagingBatchSize);
         config.createMissingCustomColumns = auditConfig.getBoolean(
                 PROPERTY_CREATE_MISSING_CUSTOM_COLUMNS, mainRepoConfig.createMissingCustomColumns);
+        // async writes are audit only, these are never taken from the main repository configuration
+        config.initAsyncAuditWrites(auditConfig);
+        config.validateAsyncAuditWrites();
 
         // perf stats settings must be copied to allow proper perf monitoring of audit
         config.performanceStatisticsFile = mainRepoConfig.performanceStatisticsFile;
@@ -10,8 +10,10 @@ import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
 
 import static com.evolveum.midpoint.schema.GetOperationOptions.isAllowNotFound;
 
-import java.nio.charset.StandardCharsets;
+import java.sql.Savepoint;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -27,6 +29,7 @@ import com.evolveum.midpoint.util.logging.TraceManager;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ObjectArrays;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.querydsl.core.Tuple;
 import com.querydsl.core.types.Path;
 import com.querydsl.core.types.dsl.Expressions;
@@ -46,6 +49,7 @@ import com.evolveum.midpoint.prism.delta.ObjectDelta;
 import com.evolveum.midpoint.prism.delta.PropertyDelta;
 import com.evolveum.midpoint.prism.equivalence.EquivalenceStrategy;
 import com.evolveum.midpoint.prism.path.ItemPath;
+import com.evolveum.midpoint.prism.path.PathSet;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.query.*;
 import com.evolveum.midpoint.prism.query.builder.S_ConditionEntry;
@@ -56,6 +60,7 @@ import com.evolveum.midpoint.repo.sqale.mapping.SqaleTableMapping;
 import com.evolveum.midpoint.repo.sqale.qmodel.object.MObject;
 import com.evolveum.midpoint.repo.sqale.qmodel.object.MObjectType;
 import com.evolveum.midpoint.repo.sqale.qmodel.object.QObject;
+import com.evolveum.midpoint.repo.sqale.qmodel.object.QObjectMapping;
 import com.evolveum.midpoint.repo.sqale.qmodel.org.QOrg;
 import com.evolveum.midpoint.repo.sqale.qmodel.org.QOrgClosure;
 import com.evolveum.midpoint.repo.sqale.qmodel.org.QOrgMapping;
@@ -115,6 +120,13 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
 
     private final SqlQueryExecutor sqlQueryExecutor;
 
+    /** Runs background page fetching for iterative search, if enabled, see {@link IterativeSearchPages}. */
+    private final ExecutorService iterativeSearchPrefetchExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("midpoint-iterative-search-prefetch-%d")
+                    .setDaemon(true)
+                    .build());
+
     @Autowired private SystemConfigurationChangeDispatcher systemConfigurationChangeDispatcher;
 
     private final ThreadLocal<List<ConflictWatcherImpl>> conflictWatchersThreadLocal =
@@ -127,6 +139,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
             SqlPerformanceMonitorsCollection sqlPerformanceMonitorsCollection) {
         super(repositoryContext, sqlPerformanceMonitorsCollection);
         this.sqlQueryExecutor = new SqlQueryExecutor(repositoryContext);
+        repositoryContext.fullObjectParallelParser().setPerformanceMonitor(performanceMonitor);
     }
 
     // region getObject/getVersion
@@ -334,26 +347,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
                 .build();
 
         try {
-            PolyString name = object.getName();
-            if (name == null || Strings.isNullOrEmpty(name.getOrig())) {
-                throw new SchemaException("Attempt to add object without name.");
-            }
-
-            //noinspection ConstantConditions
-            logger.debug(
-                    "Adding object type '{}', overwrite={}, allowUnencryptedValues={}, name={} - {}",
-                    object.getCompileTimeClass().getSimpleName(), options.isOverwrite(),
-                    options.isAllowUnencryptedValues(), name.getOrig(), name.getNorm());
-
-            if (InternalsConfig.encryptionChecks && !RepoAddOptions.isAllowUnencryptedValues(options)) {
-                CryptoUtil.checkEncrypted(object);
-            }
-
-            if (InternalsConfig.consistencyChecks) {
-                object.checkConsistence(ConsistencyCheckScope.THOROUGH);
-            } else {
-                object.checkConsistence(ConsistencyCheckScope.MANDATORY_CHECKS_ONLY);
-            }
+            checkObjectToAdd(object, options);
 
             return object.getOid() == null || !options.isOverwrite()
                     ? executeAddObject(object)
@@ -369,6 +363,91 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         }
     }
 
+    /**
+     * Adds the objects in a single transaction. In all-or-nothing mode, the first failure rolls back the whole
+     * transaction and is thrown; the objects are left without OIDs (if they had none). This is meant for bulk loads
+     * (e.g. ninja import), where a transaction per object is the main cost.
+     * Otherwise, each object is guarded by a savepoint, see {@link #executeBatch}.
+     *
+     * Objects are checked the same way as in {@link #addObject}, but overwrite is not supported and conflict watchers
+     * are not invoked.
+     */
+    @Override
+    public @NotNull List<RepoBatchItemResult> addObjects(
+            @NotNull List<? extends PrismObject<? extends ObjectType>> objects,
+            @Nullable RepoAddOptions options,
+            boolean allOrNothing,
+            @NotNull OperationResult parentResult)
+            throws ObjectAlreadyExistsException, SchemaException {
+
+        Objects.requireNonNull(objects, "Objects must not be null.");
+        Objects.requireNonNull(parentResult, "Operation result must not be null.");
+
+        RepoAddOptions addOptions = options != null ? options : new RepoAddOptions();
+        MiscUtil.argCheck(!addOptions.isOverwrite(), "Overwrite is not supported when adding objects in a batch");
+
+        OperationResult operationResult = parentResult.subresult(opNamePrefix + OP_ADD_OBJECTS)
+                .addParam("objects", objects.size())
+                .addParam("allOrNothing", allOrNothing)
+                .addParam(OperationResult.PARAM_OPTIONS, addOptions.toString())
+                .build();
+
+        try {
+            if (allOrNothing) {
+                List<BatchItem> items = new ArrayList<>(objects.size());
+                for (PrismObject<? extends ObjectType> object : objects) {
+                    checkObjectToAdd(object, addOptions);
+                    items.add(new AddBatchItem(object));
+                }
+                return executeAllOrNothingBatch(OP_ADD_OBJECTS, ObjectType.class, items);
+            }
+
+            RepoBatchItemResult[] results = new RepoBatchItemResult[objects.size()];
+            Map<Integer, BatchItem> items = new LinkedHashMap<>();
+            for (int i = 0; i < objects.size(); i++) {
+                PrismObject<? extends ObjectType> object = objects.get(i);
+                try {
+                    checkObjectToAdd(object, addOptions);
+                    items.put(i, new AddBatchItem(object));
+                } catch (SchemaException | RuntimeException e) {
+                    results[i] = RepoBatchItemResult.failed(object.getOid(), e);
+                }
+            }
+            return executeBatch(OP_ADD_OBJECTS, ObjectType.class, items, results, operationResult);
+        } catch (ObjectNotFoundException | RepositoryException | RuntimeException e) { // not found should not happen
+            throw handledGeneralException(e, operationResult);
+        } catch (Throwable t) {
+            recordFatalError(operationResult, t);
+            throw t;
+        } finally {
+            operationResult.close();
+        }
+    }
+
+    private void checkObjectToAdd(@NotNull PrismObject<? extends ObjectType> object, @NotNull RepoAddOptions options)
+            throws SchemaException {
+        PolyString name = object.getName();
+        if (name == null || Strings.isNullOrEmpty(name.getOrig())) {
+            throw new SchemaException("Attempt to add object without name.");
+        }
+
+        //noinspection ConstantConditions
+        logger.debug(
+                "Adding object type '{}', overwrite={}, allowUnencryptedValues={}, name={} - {}",
+                object.getCompileTimeClass().getSimpleName(), options.isOverwrite(),
+                options.isAllowUnencryptedValues(), name.getOrig(), name.getNorm());
+
+        if (InternalsConfig.encryptionChecks && !RepoAddOptions.isAllowUnencryptedValues(options)) {
+            CryptoUtil.checkEncrypted(object);
+        }
+
+        if (InternalsConfig.consistencyChecks) {
+            object.checkConsistence(ConsistencyCheckScope.THOROUGH);
+        } else {
+            object.checkConsistence(ConsistencyCheckScope.MANDATORY_CHECKS_ONLY);
+        }
+    }
+
     private <T extends ObjectType> String executeAddObject(
             @NotNull PrismObject<T> object)
             throws SchemaException, ObjectAlreadyExistsException {
@@ -520,7 +599,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
             return executeRetriable(OP_MODIFY_OBJECT, oidUuid, opHandle, () -> {
                 try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
                     RootUpdateContext<T, QObject<MObject>, MObject> updateContext =
-                            prepareUpdateContext(jdbcSession, type, modifications, oidUuid, options);
+                            prepareUpdateContext(jdbcSession, type, modifications, oidUuid, options, precondition == null);
 
                     ModifyObjectResult<T> rv = modifyObjectInternal(
                             updateContext, modifications, precondition, options, parentResult);
@@ -542,6 +621,242 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         }
     }
 
+    /**
+     * Applies the deltas in a single transaction. In all-or-nothing mode, the first failure rolls back the whole
+     * transaction and is thrown. Otherwise, each delta is guarded by a savepoint, see {@link #executeBatch}.
+     *
+     * As for {@link #modifyObject}, the objects are read for update (i.e. locked) one by one, as the batch goes on.
+     */
+    @Override
+    public @NotNull List<RepoBatchItemResult> modifyObjects(
+            @NotNull List<? extends ObjectDelta<? extends ObjectType>> deltas,
+            @Nullable RepoModifyOptions options,
+            boolean allOrNothing,
+            @NotNull OperationResult parentResult)
+            throws ObjectNotFoundException, SchemaException, ObjectAlreadyExistsException {
+
+        Objects.requireNonNull(deltas, "Deltas must not be null.");
+        Objects.requireNonNull(parentResult, "Operation result must not be null.");
+        for (ObjectDelta<? extends ObjectType> delta : deltas) {
+            MiscUtil.argCheck(delta.isModify(), "Not a modify delta: %s", delta);
+            SqaleUtils.oidToUuidMandatory(delta.getOid());
+        }
+
+        OperationResult operationResult = parentResult.subresult(opNamePrefix + OP_MODIFY_OBJECTS)
+                .addParam("deltas", deltas.size())
+                .addParam("allOrNothing", allOrNothing)
+                .addParam(OperationResult.PARAM_OPTIONS, String.valueOf(options))
+                .build();
+
+        List<RepoBatchItemResult> results = List.of();
+        try {
+            Map<Integer, BatchItem> items = new LinkedHashMap<>();
+            for (int i = 0; i < deltas.size(); i++) {
+                items.put(i, new ModifyBatchItem<>(deltas.get(i), options, operationResult));
+            }
+            if (allOrNothing) {
+                results = executeAllOrNothingBatch(OP_MODIFY_OBJECTS, ObjectType.class, items.values());
+            } else {
+                results = executeBatch(OP_MODIFY_OBJECTS, ObjectType.class, items,
+                        new RepoBatchItemResult[deltas.size()], operationResult);
+            }
+            return results;
+        } catch (RepositoryException | RuntimeException e) {
+            throw handledGeneralException(e, operationResult);
+        } catch (Throwable t) {
+            recordFatalError(operationResult, t);
+            throw t;
+        } finally {
+            operationResult.close();
+            // Only the applied deltas are logged; nothing is applied if the batch failed as a whole.
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).isSuccess()) {
+                    ObjectDelta<? extends ObjectType> delta = deltas.get(i);
+                    OperationLogger.logModify(delta.getObjectTypeClass(), delta.getOid(), delta.getModifications(),
+                            null, options, operationResult);
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes the items in a single transaction, each of them guarded by a savepoint: a failed item is rolled back alone,
+     * its failure is recorded in its result, and the other items are executed nevertheless.
+     *
+     * Retriable exceptions (like serialization failures) are not treated this way: the whole transaction is rolled back
+     * and repeated, as for other operations.
+     *
+     * @param items Items to execute, indexed by their position in the results
+     * @param results Array for the results; items that failed before execution (e.g. in checks) are already filled in
+     */
+    private @NotNull List<RepoBatchItemResult> executeBatch(
+            @NotNull String opName,
+            @NotNull Class<? extends ObjectType> type,
+            @NotNull Map<Integer, BatchItem> items,
+            @NotNull RepoBatchItemResult[] results,
+            @NotNull OperationResult operationResult)
+            throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException, RepositoryException {
+        if (!items.isEmpty()) {
+            long opHandle = registerOperationStart(opName, type);
+            try {
+                executeRetriable(opName, null, opHandle, () -> {
+                    try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+                        for (var entry : items.entrySet()) {
+                            results[entry.getKey()] = executeBatchItemWithSavepoint(jdbcSession, entry.getValue());
+                        }
+                        jdbcSession.commit();
+                        return null;
+                    } catch (Exception e) {
+                        items.values().forEach(BatchItem::rolledBack);
+                        throw e;
+                    }
+                });
+            } finally {
+                registerOperationFinish(opHandle);
+            }
+        }
+        long failed = Arrays.stream(results).filter(r -> !r.isSuccess()).count();
+        if (failed > 0) {
+            operationResult.recordPartialError(failed + " of " + results.length + " item(s) failed");
+        }
+        return Arrays.asList(results);
+    }
+
+    private RepoBatchItemResult executeBatchItemWithSavepoint(@NotNull JdbcSession jdbcSession, @NotNull BatchItem item)
+            throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException, RepositoryException {
+        Savepoint savepoint = jdbcSession.setSavepoint();
+        try {
+            RepoBatchItemResult result = item.execute(jdbcSession);
+            jdbcSession.releaseSavepoint(savepoint);
+            return result;
+        } catch (SchemaException | ObjectNotFoundException | ObjectAlreadyExistsException | RepositoryException
+                | RuntimeException e) {
+            if (isRetriableException(e)) {
+                throw e;
+            }
+            logger.debug("Batch item for {} failed, rolling it back: {}", item.oid(), e.getMessage(), e);
+            jdbcSession.rollback(savepoint);
+            item.rolledBack();
+            return RepoBatchItemResult.failed(item.oid(), e);
+        }
+    }
+
+    /** Executes the items in a single transaction; the first failure rolls back the transaction and is thrown. */
+    private @NotNull List<RepoBatchItemResult> executeAllOrNothingBatch(
+            @NotNull String opName, @NotNull Class<? extends ObjectType> type, @NotNull Collection<BatchItem> items)
+            throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException, RepositoryException {
+        long opHandle = registerOperationStart(opName, type);
+        try {
+            return executeRetriable(opName, null, opHandle, () -> {
+                try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+                    List<RepoBatchItemResult> results = new ArrayList<>(items.size());
+                    for (BatchItem item : items) {
+                        results.add(item.execute(jdbcSession));
+                    }
+                    jdbcSession.commit();
+                    return results;
+                } catch (Exception e) {
+                    items.forEach(BatchItem::rolledBack);
+                    throw e;
+                }
+            });
+        } finally {
+            registerOperationFinish(opHandle);
+        }
+    }
+
+    /** A single item of {@link #addObjects} or {@link #modifyObjects} batch. */
+    private interface BatchItem {
+
+        @NotNull RepoBatchItemResult execute(@NotNull JdbcSession jdbcSession)
+                throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException, RepositoryException;
+
+        /** OID of the object, if known. */
+        @Nullable String oid();
+
+        /** Called when the changes done by the item were rolled back. */
+        default void rolledBack() {
+        }
+    }
+
+    private class AddBatchItem implements BatchItem {
+
+        @NotNull private final PrismObject<? extends ObjectType> object;
+
+        /** OID assigned in the transaction must not be kept if the transaction is rolled back. */
+        private final boolean hadOid;
+
+        AddBatchItem(@NotNull PrismObject<? extends ObjectType> object) {
+            this.object = object;
+            this.hadOid = object.getOid() != null;
+        }
+
+        @Override
+        public @NotNull RepoBatchItemResult execute(@NotNull JdbcSession jdbcSession)
+                throws SchemaException, ObjectAlreadyExistsException {
+            try {
+                return RepoBatchItemResult.added(
+                        new AddObjectContext<>(sqlRepoContext, object).execute(jdbcSession));
+            } catch (com.querydsl.core.QueryException e) {
+                if (e.getCause() instanceof PSQLException) {
+                    SqaleUtils.handlePostgresException(e);
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public @Nullable String oid() {
+            return object.getOid();
+        }
+
+        @Override
+        public void rolledBack() {
+            if (!hadOid) {
+                object.setOid(null);
+            }
+        }
+    }
+
+    private class ModifyBatchItem<T extends ObjectType> implements BatchItem {
+
+        @NotNull private final ObjectDelta<T> delta;
+        @Nullable private final RepoModifyOptions options;
+        @NotNull private final OperationResult operationResult;
+
+        ModifyBatchItem(
+                @NotNull ObjectDelta<T> delta, @Nullable RepoModifyOptions options, @NotNull OperationResult operationResult) {
+            this.delta = delta;
+            this.options = options;
+            this.operationResult = operationResult;
+        }
+
+        @Override
+        public @NotNull RepoBatchItemResult execute(@NotNull JdbcSession jdbcSession)
+                throws SchemaException, ObjectNotFoundException, ObjectAlreadyExistsException, RepositoryException {
+            Collection<? extends ItemDelta<?, ?>> modifications = delta.getModifications();
+            try {
+                RootUpdateContext<T, QObject<MObject>, MObject> updateContext = prepareUpdateContext(
+                        jdbcSession, delta.getObjectTypeClass(), modifications,
+                        SqaleUtils.oidToUuidMandatory(delta.getOid()), options, true);
+                return RepoBatchItemResult.modified(delta.getOid(),
+                        modifyObjectInternal(updateContext, modifications, null, options, operationResult));
+            } catch (PreconditionViolationException e) {
+                throw new AssertionError(e); // with null precondition we couldn't get this exception
+            } catch (com.querydsl.core.QueryException e) {
+                if (e.getCause() instanceof PSQLException) {
+                    SqaleUtils.handlePostgresException(e);
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public @Nullable String oid() {
+            return delta.getOid();
+        }
+    }
+
     @Override
     public @NotNull <T extends ObjectType> ModifyObjectResult<T> modifyObjectDynamically(
             @NotNull Class<T> type,
@@ -708,11 +1023,17 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
             @NotNull Class<S> schemaType,
             @NotNull UUID oid)
             throws SchemaException, ObjectNotFoundException {
-        return prepareUpdateContext(jdbcSession, schemaType, Collections.emptyList(), oid, null);
+        return prepareUpdateContext(jdbcSession, schemaType, Collections.emptyList(), oid, null, false);
     }
 
     /**
      * Read object for update and returns update context that contains it.
+     *
+     * If `partialRead` is true, separately stored items (e.g. assignments) not touched by the modifications
+     * are not loaded, so the cost of the update does not grow with their size.
+     * This is possible only if nothing needs the whole object - i.e. there is no precondition,
+     * no full-text index update and no reindex (even the one detected as needed during the read).
+     * Objects in the legacy format (split items stored inside the fullObject) are always read whole.
      **/
     private <S extends ObjectType, Q extends QObject<R>, R extends MObject>
     RootUpdateContext<S, Q, R> prepareUpdateContext(
@@ -720,17 +1041,42 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
             @NotNull Class<S> schemaType,
             @NotNull Collection<? extends ItemDelta<?, ?>> modifications,
             @NotNull UUID oid,
-            @Nullable RepoModifyOptions options)
+            @Nullable RepoModifyOptions options,
+            boolean partialRead)
             throws SchemaException, ObjectNotFoundException {
 
-        QueryTableMapping<S, FlexibleRelationalPathBase<Object>, Object> rootMapping =
-                sqlRepoContext.getMappingBySchemaType(schemaType);
+        QObjectMapping<S, Q, R> rootMapping = sqlRepoContext.getMappingBySchemaType(schemaType);
         Collection<SelectorOptions<GetOperationOptions>> getOptions =
                 rootMapping.updateGetOptions(
                         RepoModifyOptions.isForceReindex(options) ? GET_FOR_REINDEX_OPTIONS : GET_FOR_UPDATE_OPTIONS,
                         modifications);
 
-        return prepareUpdateContext(jdbcSession, schemaType, oid, getOptions, options);
+        PathSet notLoadedItems = partialRead
+                && !modifications.isEmpty()
+                && !RepoModifyOptions.isForceReindex(options)
+                && !sqlRepoContext.requiresFullTextReindex(modifications, schemaType)
+                ? rootMapping.separatelySerializedItemsNotTouchedBy(modifications)
+                : PathSet.empty();
+        if (notLoadedItems.isEmpty()) {
+            return prepareUpdateContext(jdbcSession, schemaType, oid, getOptions, options);
+        }
+
+        Collection<SelectorOptions<GetOperationOptions>> partialGetOptions = new ArrayList<>(getOptions);
+        partialGetOptions.addAll(SchemaService.get().getOperationOptionsBuilder()
+                .items(notLoadedItems.toArray())
+                .dontRetrieve()
+                .build());
+        RootUpdateContext<S, Q, R> updateContext =
+                prepareUpdateContext(jdbcSession, schemaType, oid, partialGetOptions, options);
+        if (updateContext.reindexNeeded()
+                || rootMapping.hasInlinedValues(updateContext.getPrismObject().asObjectable(), notLoadedItems)) {
+            // Reindex replaces the whole object, including the rows of separately stored items.
+            // Inlined values mean legacy (not split) format; the full read detects it and marks the object for reindex,
+            // otherwise the values would be dropped from the fullObject without being stored in their rows.
+            return prepareUpdateContext(jdbcSession, schemaType, oid, getOptions, options);
+        }
+        rootMapping.markNotLoadedItemsIncomplete(updateContext.getPrismObject().asObjectable(), notLoadedItems);
+        return updateContext;
     }
 
     /** Read object for update and returns update context that contains it with specific get options. */
@@ -901,7 +1247,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
                 .where(entityPath.oid.eq(oid))
                 .execute();
 
-        return new DeleteObjectResult(new String(fullObject, StandardCharsets.UTF_8));
+        return new DeleteObjectResult(sqlRepoContext.decodeFullObject(fullObject));
     }
     // endregion
 
@@ -980,7 +1326,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
             if (ObjectQueryUtil.isNoneQuery(finalQuery)) {
                 return new SearchResultList<>();
             }
-            return  executeSearchObjects(type, finalQuery, options, OP_SEARCH_OBJECTS);
+            return  executeSearchObjects(type, finalQuery, options, OP_SEARCH_OBJECTS, false);
         } catch (RepositoryException | RuntimeException e) {
             throw handledGeneralException(e, operationResult);
         } catch (Throwable t) {
@@ -992,18 +1338,27 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         }
     }
 
+    /**
+     * Executes the search, with retries and performance monitoring.
+     *
+     * @param pageOfIterativeSearch If true, the query is a page of iterative search, and the result contains
+     * the page statistics, see {@link SqlQueryExecutor#listPage}.
+     */
     private <T extends ObjectType> SearchResultList<PrismObject<T>> executeSearchObjects(
             @NotNull Class<T> type,
             ObjectQuery query,
             Collection<SelectorOptions<GetOperationOptions>> options,
-            String operationKind)
+            String operationKind,
+            boolean pageOfIterativeSearch)
             throws RepositoryException, SchemaException {
         long opHandle = registerOperationStart(operationKind, type);
         try {
-            SearchResultList<T> result = executeRetriable(operationKind, null, opHandle, () -> sqlQueryExecutor.list(
-                    SqaleQueryContext.from(type, sqlRepoContext),
-                    query,
-                    options));
+            SearchResultList<T> result = executeRetriable(operationKind, null, opHandle, () -> {
+                var queryContext = SqaleQueryContext.from(type, sqlRepoContext);
+                return pageOfIterativeSearch
+                        ? sqlQueryExecutor.listPage(queryContext, query, options)
+                        : sqlQueryExecutor.list(queryContext, query, options);
+            });
             //noinspection unchecked
             return result.map(
                     o -> (PrismObject<T>) o.asPrismObject());
@@ -1014,6 +1369,20 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         }
     }
 
+    /** Adds fetch/parse statistics of the page (if available) with the time spent by handling it. */
+    private void addPageStatistics(List<SearchResultMetadata.PageStatistics> pageStatistics,
+            SearchResultList<?> page, long handleStart) {
+        long handleNanos = System.nanoTime() - handleStart;
+        SearchResultMetadata metadata = page.getMetadata();
+        if (metadata != null && metadata.getPageStatistics() != null) {
+            for (SearchResultMetadata.PageStatistics statistics : metadata.getPageStatistics()) {
+                pageStatistics.add(statistics.withHandleNanos(handleNanos));
+            }
+        } else {
+            pageStatistics.add(new SearchResultMetadata.PageStatistics(page.size(), 0, 0, handleNanos));
+        }
+    }
+
     @Override
     public <T extends ObjectType> SearchResultMetadata searchObjectsIterative(
             Class<T> type, ObjectQuery query, ResultHandler<T> handler,
@@ -1096,53 +1465,73 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
             pagedQuery.getPaging().setMaxSize(pageSize);
             pagedQuery.getPaging().setOffset(offset);
 
-            PrismObject<T> lastProcessedObject = null;
-            int handledObjectsTotal = 0;
-
-            while (true) {
-                if (maxSize != null && maxSize - handledObjectsTotal < pageSize) {
+            // Fetches the next page based on the last fetched page, this may run in a background thread.
+            IterativeSearchPages.PageFetcher<PrismObject<T>> pageFetcher = (previousPage, fetchedTotal) -> {
+                if (previousPage != null && (previousPage.size() < pageSize
+                        || maxSize != null && fetchedTotal >= maxSize)) {
+                    return null; // previous page was the last one
+                }
+                if (maxSize != null && maxSize - fetchedTotal < pageSize) {
                     // relevant only for the last page
-                    pagedQuery.getPaging().setMaxSize(maxSize - handledObjectsTotal);
+                    pagedQuery.getPaging().setMaxSize(maxSize - fetchedTotal);
                 }
 
                 // null safe, even for both nulls - don't use filterAnd which mutates original AND filter
                 pagedQuery.setFilter(ObjectQueryUtil.filterAndImmutable(
                         originalQuery != null ? originalQuery.getFilter() : null,
-                        lastOidCondition(lastProcessedObject, providedOrdering)));
+                        lastOidCondition(previousPage != null && !previousPage.isEmpty()
+                                ? previousPage.get(previousPage.size() - 1) : null, providedOrdering)));
 
                 // we don't call public searchObject to avoid subresults and query simplification
                 logSearchInputParameters(type, pagedQuery, "Search object iterative page");
 
                 // Should we do retries here?
-                List<PrismObject<T>> objects = executeSearchObjects(
-                        type, pagedQuery, options, OP_SEARCH_OBJECTS_ITERATIVE_PAGE);
-
-                // process page results
-                for (PrismObject<T> object : objects) {
-                    lastProcessedObject = object;
-                    if (!handler.handle(object, operationResult)) {
-                        return new SearchResultMetadata()
-                                .approxNumberOfAllResults(handledObjectsTotal + 1)
-                                .pagingCookie(lastProcessedObject.getOid())
-                                .partialResults(true);
-                    }
-                    handledObjectsTotal += 1;
+                SearchResultList<PrismObject<T>> page = executeSearchObjects(
+                        type, pagedQuery, options, OP_SEARCH_OBJECTS_ITERATIVE_PAGE, true);
+                pagedQuery.getPaging().setOffset(null);
+                return page;
+            };
 
-                    if (maxSize != null && handledObjectsTotal >= maxSize) {
-                        return new SearchResultMetadata()
-                                .approxNumberOfAllResults(handledObjectsTotal)
-                                .pagingCookie(lastProcessedObject.getOid());
+            PrismObject<T> lastProcessedObject = null;
+            int handledObjectsTotal = 0;
+            List<SearchResultMetadata.PageStatistics> pageStatistics = new ArrayList<>();
+
+            try (IterativeSearchPages<PrismObject<T>> pages = new IterativeSearchPages<>(pageFetcher,
+                    repositoryConfiguration().getIterativeSearchPrefetchPages(), iterativeSearchPrefetchExecutor)) {
+                SearchResultList<PrismObject<T>> objects;
+                while ((objects = pages.next()) != null) {
+                    long handleStart = System.nanoTime();
+
+                    // process page results
+                    for (PrismObject<T> object : objects) {
+                        lastProcessedObject = object;
+                        if (!handler.handle(object, operationResult)) {
+                            addPageStatistics(pageStatistics, objects, handleStart);
+                            return new SearchResultMetadata()
+                                    .approxNumberOfAllResults(handledObjectsTotal + 1)
+                                    .pagingCookie(lastProcessedObject.getOid())
+                                    .partialResults(true)
+                                    .pageStatistics(pageStatistics);
+                        }
+                        handledObjectsTotal += 1;
+
+                        if (maxSize != null && handledObjectsTotal >= maxSize) {
+                            addPageStatistics(pageStatistics, objects, handleStart);
+                            return new SearchResultMetadata()
+                                    .approxNumberOfAllResults(handledObjectsTotal)
+                                    .pagingCookie(lastProcessedObject.getOid())
+                                    .pageStatistics(pageStatistics);
+                        }
                     }
+                    addPageStatistics(pageStatistics, objects, handleStart);
                 }
-
-                if (objects.isEmpty() || objects.size() < pageSize) {
-                    return new SearchResultMetadata()
-                            .approxNumberOfAllResults(handledObjectsTotal)
-                            .pagingCookie(lastProcessedObject != null
-                                    ? lastProcessedObject.getOid() : null);
-                }
-                pagedQuery.getPaging().setOffset(null);
             }
+
+            return new SearchResultMetadata()
+                    .approxNumberOfAllResults(handledObjectsTotal)
+                    .pagingCookie(lastProcessedObject != null
+                            ? lastProcessedObject.getOid() : null)
+                    .pageStatistics(pageStatistics);
         } finally {
             // This just counts the operation and adds zero/minimal time not to confuse user
             // with what could be possibly very long duration.
@@ -1916,9 +2305,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         long opHandle = registerOperationStart(OP_IS_DESCENDANT, OrgType.class);
         try {
             return executeRetriable(OP_IS_DESCENDANT, SqaleUtils.oidToUuid(object.getOid()), opHandle, () -> {
-                try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
-                    jdbcSession.executeStatement("CALL m_refresh_org_closure()");
-
+                try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startReadOnlyTransaction()) {
                     QOrgClosure oc = new QOrgClosure();
                     long count = jdbcSession.newQuery()
                             .from(oc)
@@ -1950,9 +2337,7 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         long opHandle = registerOperationStart(OP_IS_ANCESTOR, OrgType.class);
         try {
             return executeRetriable(OP_IS_ANCESTOR, SqaleUtils.oidToUuid(object.getOid()), opHandle, () -> {
-                try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
-                    jdbcSession.executeStatement("CALL m_refresh_org_closure()");
-
+                try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startReadOnlyTransaction()) {
                     QOrgClosure oc = new QOrgClosure();
                     long count = jdbcSession.newQuery()
                             .from(oc)
@@ -2178,9 +2563,10 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
                     sqlRepoContext.newJdbcSession().startReadOnlyTransaction()) {
                 QOrgClosure oc = new QOrgClosure();
                 closureCount = jdbcSession.newQuery().from(oc).fetchCount();
-                // this is CTE used also for m_org_closure materialized view (here with count)
+                // CTE computing the closure as it is maintained by triggers on m_org and parent-org refs:
+                // identity rows for all orgs + transitive parent-org refs between existing orgs
                 QOrg o = QOrgMapping.getOrgMapping().defaultAlias();
-                QObjectReference<?> ref = QObjectReferenceMapping.getForParentOrg().newAlias("ref");
+                QOrg target = QOrgMapping.getOrgMapping().newAlias("target");
                 QObjectReference<?> par = QObjectReferenceMapping.getForParentOrg().newAlias("par");
                 //noinspection unchecked
                 expectedCount = jdbcSession.newQuery()
@@ -2188,15 +2574,14 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
                         .as(new SQLQuery<>().union(
                                 // non-recursive term: initial select
                                 new SQLQuery<>().select(o.oid, o.oid)
-                                        .from(o)
-                                        .where(new SQLQuery<>().select(Expressions.ONE)
-                                                .from(ref)
-                                                .where(ref.targetOid.eq(o.oid)
-                                                        .or(ref.ownerOid.eq(o.oid)))
-                                                .exists()),
+                                        .from(o),
                                 new SQLQuery<>().select(par.targetOid, oc.descendantOid)
                                         .from(par, oc)
-                                        .where(par.ownerOid.eq(oc.ancestorOid))))
+                                        .where(par.ownerOid.eq(oc.ancestorOid)
+                                                .and(new SQLQuery<>().select(Expressions.ONE)
+                                                        .from(target)
+                                                        .where(target.oid.eq(par.targetOid))
+                                                        .exists()))))
                         .from(oc)
                         .fetchCount();
                 logger.info("Org closure consistency checked - closure count {}, expected count {}",
@@ -2475,6 +2860,18 @@ public class SqaleRepositoryService extends SqaleServiceBase implements Reposito
         return true;
     }
 
+    @Override
+    public boolean supportsAllOrNothingBatches() {
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        iterativeSearchPrefetchExecutor.shutdownNow();
+        sqlRepoContext.fullObjectParallelParser().setPerformanceMonitor(null);
+        super.destroy();
+    }
+
     // region Aggregate functions
 
     @Override
@@ -0,0 +1,505 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.PSQLState;
+
+import com.evolveum.midpoint.audit.api.AuditEventRecord;
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.SerializationOptions;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
+import com.evolveum.midpoint.repo.sqale.SqaleRepositoryConfiguration;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.MAuditEventRecord;
+import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.repo.sqlbase.perfmon.SqlPerformanceMonitorImpl;
+import com.evolveum.midpoint.schema.util.ExceptionUtil;
+import com.evolveum.midpoint.util.exception.SystemException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.evolveum.midpoint.xml.ns._public.common.audit_3.AuditEventRecordType;
+
+/**
+ * Writes audit records to the database asynchronously in batches, see {@link AuditBatchInsertion}.
+ *
+ * Audit records are prepared (converted to rows) by the calling thread and put into a bounded queue.
+ * Record IDs are allocated when the records are submitted (in blocks of batch size, one round-trip per block),
+ * so the order of the records by ID follows the order of submission, even for records written later
+ * from spill files or after a failed batch.
+ * Single background thread takes the records from the queue and writes them in batches of up to
+ * {@link SqaleRepositoryConfiguration#getAsyncBatchSize()} records, each batch in its own transaction.
+ *
+ * When the queue is full, the caller is either blocked until there is space in the queue,
+ * or the record is spilled to a file (see {@link SqaleRepositoryConfiguration#isAsyncOverflowSpill()}).
+ * Spilled records are written to the database by the background thread when the queue is empty,
+ * this also includes records spilled before the previous shutdown.
+ * With spilling, the records of the batch that failed to be written are also spilled and retried later.
+ * Spill file is written with {@link #OPEN_SPILL_FILE_SUFFIX} and it is closed and renamed under the lock
+ * before the replay; only closed files are replayed and deleted, records spilled during the replay go to a new file.
+ * Spilled records keep their IDs, so a record that is already in the database (e.g. the file was not deleted
+ * because of a crash) is not written twice.
+ * Without spilling, the records of the failed batch are written one by one and records that can't
+ * be written are logged as errors.
+ *
+ * On {@link #stop()}, all the queued records are written before the method returns.
+ * Records submitted after that are refused and the caller should write them synchronously.
+ *
+ * Flush latency is reported to the performance monitor as {@link #OP_FLUSH} operation,
+ * queue depth and other counters are available through getters.
+ */
+public class AuditAsyncWriter {
+
+    private static final Trace LOGGER = TraceManager.getTrace(AuditAsyncWriter.class);
+
+    /** Name of the operation reported to the performance monitor for each written batch. */
+    public static final String OP_FLUSH = "SqaleAuditService.asyncFlush";
+
+    private static final String SPILL_FILE_PREFIX = "audit-spill-";
+    private static final String SPILL_FILE_SUFFIX = ".dat";
+    private static final String OPEN_SPILL_FILE_SUFFIX = ".open";
+
+    /** How long the writer thread waits for the next record before checking for spilled records. */
+    private static final long POLL_TIMEOUT_MS = 500;
+
+    /** How often the blocked caller checks whether the writer was stopped. */
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private final SqaleRepoContext repositoryContext;
+    private final Supplier<SqlPerformanceMonitorImpl> performanceMonitorSupplier;
+    private final Consumer<AuditEventRecordType> spilledRecordWriter;
+    private final BlockingQueue<QueuedRecord> queue;
+    private final int batchSize;
+    @Nullable private final Path spillDirectory;
+    private final Thread writerThread;
+
+    private final Object spillLock = new Object();
+    private DataOutputStream spillOutput; // guarded by spillLock
+    private Path spillFile; // guarded by spillLock
+    private long spillFileCounter; // guarded by spillLock
+
+    private final Object idLock = new Object();
+    private final Deque<Long> allocatedIds = new ArrayDeque<>(); // guarded by idLock
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private volatile long lastFlushNanos;
+
+    private volatile boolean stopped;
+    private volatile boolean paused;
+
+    /** Queue item, original record is kept only for spilling. */
+    private record QueuedRecord(@NotNull MAuditEventRecord row, @NotNull AuditEventRecord record) {
+    }
+
+    /**
+     * Creates and starts the writer.
+     *
+     * @param spilledRecordWriter writes single spilled record synchronously, exception means failure
+     */
+    public AuditAsyncWriter(
+            @NotNull SqaleRepoContext repositoryContext,
+            @NotNull Supplier<SqlPerformanceMonitorImpl> performanceMonitorSupplier,
+            @NotNull Consumer<AuditEventRecordType> spilledRecordWriter) {
+        this.repositoryContext = repositoryContext;
+        this.performanceMonitorSupplier = performanceMonitorSupplier;
+        this.spilledRecordWriter = spilledRecordWriter;
+
+        SqaleRepositoryConfiguration configuration =
+                (SqaleRepositoryConfiguration) repositoryContext.getJdbcRepositoryConfiguration();
+        queue = new ArrayBlockingQueue<>(configuration.getAsyncQueueSize());
+        batchSize = configuration.getAsyncBatchSize();
+        if (configuration.isAsyncOverflowSpill()) {
+            spillDirectory = Path.of(configuration.getAsyncSpillDirectory());
+            try {
+                Files.createDirectories(spillDirectory);
+                closeLeftoverSpillFiles();
+            } catch (IOException e) {
+                throw new SystemException("Couldn't prepare audit spill directory " + spillDirectory, e);
+            }
+        } else {
+            spillDirectory = null;
+        }
+
+        writerThread = new Thread(this::run, "midpoint-audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        LOGGER.info("Asynchronous audit writer started, queue size {}, batch size {}, spill directory: {}",
+                configuration.getAsyncQueueSize(), batchSize, spillDirectory);
+    }
+
+    /**
+     * Submits prepared audit row for writing.
+     * Returns false if the record was not accepted (writer is stopped or the caller was interrupted),
+     * in which case the caller must write the record synchronously.
+     */
+    public boolean submit(@NotNull MAuditEventRecord row, @NotNull AuditEventRecord record) {
+        if (stopped) {
+            return false;
+        }
+        try {
+            assignId(row);
+        } catch (RuntimeException e) {
+            LOGGER.debug("Couldn't allocate audit record ID, the record will be written synchronously: {}", e.toString());
+            return false;
+        }
+
+        QueuedRecord item = new QueuedRecord(row, record);
+        try {
+            if (spillDirectory != null) {
+                if (!queue.offer(item)) {
+                    spill(item);
+                    return true;
+                }
+            } else {
+                while (!queue.offer(item, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    if (stopped) {
+                        return false;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        // Stopped in the meantime and the record may have missed the final flush - if we can still
+        // remove it from the queue, nobody else will write it.
+        return !stopped || !queue.remove(item);
+    }
+
+    /** Assigns the ID from the block of IDs allocated in advance, allocating new block if needed. */
+    private void assignId(MAuditEventRecord row) {
+        if (row.id != null) {
+            return;
+        }
+        synchronized (idLock) {
+            if (allocatedIds.isEmpty()) {
+                try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startTransaction()) {
+                    for (long id : AuditBatchInsertion.allocateIds(jdbcSession, batchSize)) {
+                        allocatedIds.add(id);
+                    }
+                    jdbcSession.commit();
+                }
+            }
+            row.id = allocatedIds.poll();
+        }
+    }
+
+    /** Paused writer does not write any records, so they stay in the queue or are spilled. */
+    @VisibleForTesting
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /** Stops the writer, writes all the queued records and waits for it. */
+    public void stop() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        LOGGER.info("Stopping asynchronous audit writer, {} records in the queue", queue.size());
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while waiting for the audit writer thread");
+        }
+        // Anything left after the writer thread finished, e.g. when it was interrupted.
+        flushQueued();
+        closeSpillOutput();
+        LOGGER.info("Asynchronous audit writer stopped, written {}, spilled {}, failed {} records",
+                writtenCount.get(), spilledCount.get(), failedCount.get());
+    }
+
+    private void run() {
+        try {
+            replaySpilled(); // leftovers from previous run
+            while (!stopped) {
+                if (paused) {
+                    //noinspection BusyWait
+                    Thread.sleep(OFFER_TIMEOUT_MS);
+                    continue;
+                }
+                QueuedRecord first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    replaySpilled();
+                    continue;
+                }
+
+                List<QueuedRecord> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            }
+            flushQueued();
+            replaySpilled();
+        } catch (InterruptedException e) {
+            LOGGER.warn("Audit writer thread interrupted, queued records will be written on stop");
+        } catch (RuntimeException e) {
+            LOGGER.error("Unexpected error in audit writer thread, queued records will be written on stop", e);
+        }
+    }
+
+    private void flushQueued() {
+        List<QueuedRecord> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    private void flush(List<QueuedRecord> batch) {
+        SqlPerformanceMonitorImpl monitor = performanceMonitorSupplier.get();
+        long opHandle = monitor != null ? monitor.registerOperationStart(OP_FLUSH, AuditEventRecordType.class) : -1;
+        long start = System.nanoTime();
+        try {
+            insertBatch(batch.stream().map(QueuedRecord::row).toList());
+            writtenCount.addAndGet(batch.size());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Writing batch of {} audit records failed, records will be {}: {}",
+                    batch.size(), spillDirectory != null ? "spilled" : "written one by one", e.toString());
+            handleFailedBatch(batch);
+        } finally {
+            lastFlushNanos = System.nanoTime() - start;
+            if (monitor != null) {
+                monitor.registerOperationFinish(opHandle, 1);
+            }
+            LOGGER.debug("Flushed {} audit records in {} ms, queue depth {}",
+                    batch.size(), lastFlushNanos / 1_000_000, queue.size());
+        }
+    }
+
+    private void insertBatch(List<MAuditEventRecord> rows) {
+        try (JdbcSession jdbcSession = repositoryContext.newJdbcSession().startTransaction()) {
+            new AuditBatchInsertion(rows, jdbcSession).execute();
+            jdbcSession.commit();
+        }
+    }
+
+    private void handleFailedBatch(List<QueuedRecord> batch) {
+        for (QueuedRecord item : batch) {
+            // The record keeps its ID, the failed transaction did not insert anything.
+            try {
+                if (spillDirectory != null) {
+                    spill(item);
+                } else {
+                    insertBatch(List.of(item.row()));
+                    writtenCount.incrementAndGet();
+                }
+            } catch (RuntimeException e) {
+                failedCount.incrementAndGet();
+                LOGGER.error("Couldn't write audit record, it is lost: {}", item.record(), e);
+            }
+        }
+    }
+
+    // region spilling
+    private void spill(QueuedRecord item) {
+        AuditEventRecordType record = item.record().createAuditEventRecordType(true);
+        record.setRepoId(item.row().id); // replayed record is written with the ID assigned on submit
+        byte[] serialized = serialize(record);
+        synchronized (spillLock) {
+            writeSpilled(serialized);
+        }
+        spilledCount.incrementAndGet();
+    }
+
+    private byte[] serialize(AuditEventRecordType record) {
+        try {
+            return PrismContext.get().jsonSerializer()
+                    .options(SerializationOptions.createSerializeReferenceNames()
+                            .escapeInvalidCharacters(true)
+                            .skipWhitespaces(true))
+                    .serialize(record.asPrismContainerValue())
+                    .getBytes(StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            throw new SystemException("Couldn't serialize audit record for spilling", e);
+        }
+    }
+
+    private void writeSpilled(byte[] serialized) {
+        assert spillDirectory != null;
+        try {
+            if (spillOutput == null) {
+                spillFile = spillDirectory.resolve(String.format("%s%d-%06d%s",
+                        SPILL_FILE_PREFIX, System.currentTimeMillis(), spillFileCounter++, OPEN_SPILL_FILE_SUFFIX));
+                spillOutput = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile)));
+            }
+            spillOutput.writeInt(serialized.length);
+            spillOutput.write(serialized);
+            spillOutput.flush();
+        } catch (IOException e) {
+            throw new SystemException("Couldn't spill audit record to " + spillDirectory, e);
+        }
+    }
+
+    /** Closes the spill file being written (if any) and renames it, so it can be replayed. */
+    private void closeSpillOutput() {
+        synchronized (spillLock) {
+            if (spillOutput != null) {
+                try {
+                    spillOutput.close();
+                    Files.move(spillFile, closedSpillFile(spillFile));
+                } catch (IOException e) {
+                    // If not renamed, it is renamed on the next start.
+                    LOGGER.warn("Couldn't close audit spill file {}", spillFile, e);
+                }
+                spillOutput = null;
+                spillFile = null;
+            }
+        }
+    }
+
+    /** Files left open by the previous run contain all the records written before it ended. */
+    private void closeLeftoverSpillFiles() throws IOException {
+        assert spillDirectory != null;
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(spillDirectory, SPILL_FILE_PREFIX + "*" + OPEN_SPILL_FILE_SUFFIX)) {
+            for (Path file : stream) {
+                Files.move(file, closedSpillFile(file));
+            }
+        }
+    }
+
+    private static Path closedSpillFile(Path openFile) {
+        String name = openFile.getFileName().toString();
+        return openFile.resolveSibling(
+                name.substring(0, name.length() - OPEN_SPILL_FILE_SUFFIX.length()) + SPILL_FILE_SUFFIX);
+    }
+
+    /**
+     * Writes all spilled records to the database, the file currently written to is closed first.
+     * Only closed files are replayed, so no record can be appended to the file after it was read.
+     */
+    private void replaySpilled() {
+        if (spillDirectory == null) {
+            return;
+        }
+
+        closeSpillOutput();
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(spillDirectory, SPILL_FILE_PREFIX + "*" + SPILL_FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            LOGGER.warn("Couldn't list audit spill directory {}", spillDirectory, e);
+            return;
+        }
+        files.sort(null);
+
+        for (Path file : files) {
+            if (stopped && !queue.isEmpty() || !replaySpilledFile(file)) {
+                return; // will be tried again later
+            }
+        }
+    }
+
+    /** Returns false if the replay failed and should be tried later. */
+    private boolean replaySpilledFile(Path file) {
+        LOGGER.debug("Writing spilled audit records from {}", file);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            boolean failed = false;
+            while (true) {
+                byte[] serialized;
+                try {
+                    serialized = new byte[input.readInt()];
+                    input.readFully(serialized);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                if (!failed) {
+                    try {
+                        spilledRecordWriter.accept(parse(serialized));
+                        writtenCount.incrementAndGet();
+                        continue;
+                    } catch (RuntimeException e) {
+                        if (isUniqueViolation(e)) {
+                            // Written before, but the file was not deleted (e.g. the node crashed).
+                            LOGGER.debug("Spilled audit record is already in the database, skipping it");
+                            continue;
+                        }
+                        LOGGER.warn("Writing spilled audit record failed, it will be tried later: {}", e.toString());
+                        failed = true;
+                    }
+                }
+                // After failure, the rest of the file is spilled again to the (new) open spill file.
+                synchronized (spillLock) {
+                    writeSpilled(serialized);
+                }
+            }
+            Files.delete(file);
+            return !failed;
+        } catch (IOException e) {
+            LOGGER.error("Couldn't read audit spill file {}", file, e);
+            return false;
+        }
+    }
+
+    private boolean isUniqueViolation(RuntimeException e) {
+        PSQLException psqlException = ExceptionUtil.findCause(e, PSQLException.class);
+        return psqlException != null && PSQLState.UNIQUE_VIOLATION.getState().equals(psqlException.getSQLState());
+    }
+
+    private AuditEventRecordType parse(byte[] serialized) {
+        try {
+            return PrismContext.get().parserFor(new String(serialized, StandardCharsets.UTF_8))
+                    .json()
+                    .parseRealValue(AuditEventRecordType.class);
+        } catch (Exception e) {
+            throw new SystemException("Couldn't parse spilled audit record", e);
+        }
+    }
+    // endregion
+
+    // region metrics
+    /** Returns number of records waiting in the queue. */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /** Returns number of records written to the database, including spilled records. */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /** Returns number of records spilled to a file. */
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    /** Returns number of records that could not be written and are lost. */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /** Returns duration of the last flush in milliseconds. */
+    public long getLastFlushDurationMs() {
+        return lastFlushNanos / 1_000_000;
+    }
+    // endregion
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.audit;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.dml.DefaultMapper;
+import com.querydsl.sql.dml.SQLInsertClause;
+
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.*;
+import com.evolveum.midpoint.repo.sqlbase.JdbcSession;
+import com.evolveum.midpoint.util.exception.SystemException;
+
+/**
+ * Throw-away object realizing DB insertion of multiple prepared {@link MAuditEventRecord} rows
+ * with their deltas and references, used by {@link AuditAsyncWriter}.
+ *
+ * Unlike single record insertion, IDs of the records are allocated from the sequence in advance
+ * (one round-trip for the whole batch), so the records and all their subentities can be inserted
+ * using multi-row inserts - that is three statements per batch regardless of its size.
+ */
+class AuditBatchInsertion {
+
+    private static final String ALLOCATE_IDS_SQL =
+            "select nextval('" + QAuditEventRecord.TABLE_NAME + "_id_seq') from generate_series(1, ?)";
+
+    private final Collection<MAuditEventRecord> rows;
+    private final JdbcSession jdbcSession;
+
+    AuditBatchInsertion(Collection<MAuditEventRecord> rows, JdbcSession jdbcSession) {
+        this.rows = rows;
+        this.jdbcSession = jdbcSession;
+    }
+
+    void execute() {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        allocateIds();
+        insertAuditEventRecords();
+        insertAuditDeltas();
+        insertReferences();
+    }
+
+    private void allocateIds() {
+        List<MAuditEventRecord> rowsWithoutId = new ArrayList<>();
+        for (MAuditEventRecord row : rows) {
+            if (row.id == null) {
+                rowsWithoutId.add(row);
+            }
+        }
+        if (rowsWithoutId.isEmpty()) {
+            return;
+        }
+
+        long[] ids = allocateIds(jdbcSession, rowsWithoutId.size());
+        for (int i = 0; i < ids.length; i++) {
+            rowsWithoutId.get(i).id = ids[i];
+        }
+    }
+
+    /** Allocates the specified number of audit record IDs from the sequence in one round-trip. */
+    static long[] allocateIds(JdbcSession jdbcSession, int count) {
+        long[] ids = new long[count];
+        try (PreparedStatement statement = jdbcSession.connection().prepareStatement(ALLOCATE_IDS_SQL)) {
+            statement.setInt(1, count);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                for (int i = 0; i < count; i++) {
+                    if (!resultSet.next()) {
+                        throw new SystemException("Audit record ID allocation returned less IDs than requested");
+                    }
+                    ids[i] = resultSet.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            throw new SystemException("Couldn't allocate audit record IDs: " + e.getMessage(), e);
+        }
+        return ids;
+    }
+
+    private void insertAuditEventRecords() {
+        QAuditEventRecordMapping aerMapping = QAuditEventRecordMapping.get();
+        QAuditEventRecord aer = aerMapping.defaultAlias();
+        Map<String, ColumnMetadata> customColumns = aerMapping.getExtensionColumns();
+
+        SQLInsertClause insertBatch = jdbcSession.newInsert(aer);
+        for (MAuditEventRecord row : rows) {
+            // NULLs are important to keep the value count consistent during the batch
+            insertBatch.populate(row, DefaultMapper.WITH_NULL_BINDINGS);
+            // All custom columns are set for each row, for the same reason.
+            for (String propertyName : customColumns.keySet()) {
+                String value = row.customColumnValues != null ? row.customColumnValues.get(propertyName) : null;
+                insertBatch.columns(aer.getPath(propertyName)).values(value);
+            }
+            insertBatch.addBatch();
+        }
+        insertBatch.setBatchToBulk(true);
+        insertBatch.execute();
+    }
+
+    private void insertAuditDeltas() {
+        SQLInsertClause insertBatch = jdbcSession.newInsert(QAuditDeltaMapping.get().defaultAlias());
+        for (MAuditEventRecord row : rows) {
+            if (row.deltas == null) {
+                continue;
+            }
+            for (MAuditDelta deltaRow : row.deltas) {
+                deltaRow.recordId = row.id;
+                deltaRow.timestamp = row.timestamp;
+
+                insertBatch.populate(deltaRow, DefaultMapper.WITH_NULL_BINDINGS).addBatch();
+            }
+        }
+        if (insertBatch.getBatchCount() == 0) {
+            return;
+        }
+
+        insertBatch.setBatchToBulk(true);
+        insertBatch.execute();
+    }
+
+    private void insertReferences() {
+        QAuditRefValue qr = QAuditRefValueMapping.get().defaultAlias();
+        SQLInsertClause insertBatch = jdbcSession.newInsert(qr);
+        for (MAuditEventRecord row : rows) {
+            if (row.refValues == null) {
+                continue;
+            }
+            for (List<MAuditRefValue> refValues : row.refValues.values()) {
+                for (MAuditRefValue refValue : refValues) {
+                    // id will be generated, but we're not interested in those here
+                    insertBatch.set(qr.recordId, row.id)
+                            .set(qr.timestamp, row.timestamp)
+                            .set(qr.name, refValue.name)
+                            .set(qr.targetOid, refValue.targetOid)
+                            .set(qr.targetType, refValue.targetType)
+                            .set(qr.targetNameOrig, refValue.targetNameOrig)
+                            .set(qr.targetNameNorm, refValue.targetNameNorm)
+                            .addBatch();
+                }
+            }
+        }
+        if (insertBatch.getBatchCount() == 0) {
+            return;
+        }
+
+        insertBatch.setBatchToBulk(true);
+        insertBatch.execute();
+    }
+}
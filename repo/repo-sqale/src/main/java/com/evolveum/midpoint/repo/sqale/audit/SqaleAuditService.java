@@ -74,11 +74,30 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
     private boolean escapeIllegalCharacters = false;
     @NotNull private OperationResultDetailLevel deltaSuccessExecutionResult = OperationResultDetailLevel.CLEANED_UP;
 
+    /** Writer for asynchronous audit, null if audit records are written synchronously. */
+    @Nullable private final AuditAsyncWriter asyncWriter;
+
     public SqaleAuditService(
             SqaleRepoContext sqlRepoContext,
             SqlPerformanceMonitorsCollection sqlPerformanceMonitorsCollection) {
         super(sqlRepoContext, sqlPerformanceMonitorsCollection);
         this.sqlQueryExecutor = new SqlQueryExecutor(sqlRepoContext);
+        this.asyncWriter = repositoryConfiguration().getAsyncQueueSize() > 0
+                ? new AuditAsyncWriter(sqlRepoContext, this::getPerformanceMonitor, this::executeAudit)
+                : null;
+    }
+
+    /** Returns writer for asynchronous audit (e.g. for its metrics) or null if audit is synchronous. */
+    public @Nullable AuditAsyncWriter getAsyncWriter() {
+        return asyncWriter;
+    }
+
+    @Override
+    public void destroy() {
+        if (asyncWriter != null) {
+            asyncWriter.stop();
+        }
+        super.destroy();
     }
 
     @Override
@@ -101,33 +120,38 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
 
     private void executeAudit(AuditEventRecord record) {
         long opHandle = registerOperationStart(OP_AUDIT);
-        try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+        try {
             record.setRepoId(null); // we want DB to assign the ID
-            MAuditEventRecord auditRow = insertAuditEventRecord(jdbcSession, record);
-            record.setRepoId(auditRow.id);
+            MAuditEventRecord auditRow = prepareAuditRow(record);
+            if (asyncWriter != null && asyncWriter.submit(auditRow, record)) {
+                return; // repo ID is not known for asynchronously written records
+            }
 
-            insertAuditDeltas(jdbcSession, auditRow);
-            insertReferences(jdbcSession, auditRow, record.getReferences());
+            try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startTransaction()) {
+                insertAuditEventRecord(jdbcSession, auditRow);
+                record.setRepoId(auditRow.id);
 
-            jdbcSession.commit();
+                insertAuditDeltas(jdbcSession, auditRow);
+                insertReferences(jdbcSession, auditRow);
+
+                jdbcSession.commit();
+            }
         } finally {
             registerOperationFinish(opHandle);
         }
     }
 
     /**
-     * Inserts audit event record aggregate root without any subentities.
+     * Prepares audit event record aggregate root with all the subentities for insertion.
      * Traditional Sqale "insert root first, then insert children" is not optimal here,
      * because to insert root we need to collect some information from children anyway.
      * So we prepare the subentities in collections, gather the needed information
      * (e.g. changed item paths) and then insert root entity.
-     * Subentities are inserted later out of this method.
-     *
-     * @return inserted row with transient deltas prepared for insertion
+     * This is done on the calling thread even for asynchronous writes, so any problem
+     * with the record is reported to the caller.
      */
-    private MAuditEventRecord insertAuditEventRecord(JdbcSession jdbcSession, AuditEventRecord record) {
+    private MAuditEventRecord prepareAuditRow(AuditEventRecord record) {
         QAuditEventRecordMapping aerMapping = QAuditEventRecordMapping.get();
-        QAuditEventRecord aer = aerMapping.defaultAlias();
         MAuditEventRecord row = aerMapping.toRowObject(record);
 
         Collection<MAuditDelta> deltaRows = prepareDeltas(record.getDeltas());
@@ -136,7 +160,6 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         Set<String> changedItemPaths = collectChangedItemPaths(deltaRows);
         row.changedItemPaths = changedItemPaths.isEmpty() ? null : changedItemPaths.toArray(String[]::new);
 
-        SQLInsertClause insert = jdbcSession.newInsert(aer).populate(row);
         Map<String, ColumnMetadata> customColumns = aerMapping.getExtensionColumns();
         for (Map.Entry<String, String> property : record.getCustomColumnProperty().entrySet()) {
             String propertyName = property.getKey();
@@ -144,14 +167,47 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
                 throw new IllegalArgumentException("Audit event record table doesn't"
                         + " contains column for property " + propertyName);
             }
-            // Like insert.set, but that one is too parameter-type-safe for our generic usage here.
-            insert.columns(aer.getPath(propertyName)).values(property.getValue());
+            if (row.customColumnValues == null) {
+                row.customColumnValues = new HashMap<>();
+            }
+            row.customColumnValues.put(propertyName, property.getValue());
+        }
+
+        Map<String, Set<AuditReferenceValue>> references = record.getReferences();
+        for (String refName : references.keySet()) {
+            for (AuditReferenceValue refValue : references.get(refName)) {
+                MAuditRefValue refRow = new MAuditRefValue();
+                PolyString targetName = refValue.getTargetName();
+                refRow.name = refName;
+                refRow.targetOid = SqaleUtils.oidToUuid(refValue.getOid());
+                refRow.targetType = refValue.getType() != null
+                        ? MObjectType.fromTypeQName(refValue.getType()) : null;
+                refRow.targetNameOrig = PolyString.getOrig(targetName);
+                refRow.targetNameNorm = PolyString.getNorm(targetName);
+                row.addRefValue(refRow);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Inserts prepared audit event record aggregate root without any subentities
+     * and sets the ID of the row.
+     * Subentities are inserted later out of this method.
+     */
+    private void insertAuditEventRecord(JdbcSession jdbcSession, MAuditEventRecord row) {
+        QAuditEventRecord aer = QAuditEventRecordMapping.get().defaultAlias();
+        SQLInsertClause insert = jdbcSession.newInsert(aer).populate(row);
+        if (row.customColumnValues != null) {
+            for (Map.Entry<String, String> property : row.customColumnValues.entrySet()) {
+                // Like insert.set, but that one is too parameter-type-safe for our generic usage here.
+                insert.columns(aer.getPath(property.getKey())).values(property.getValue());
+            }
         }
 
         Long returnedId = insert.executeWithKey(aer.id);
         // If returned ID is null, it was likely provided, so we use that one.
-        row.id = returnedId != null ? returnedId : record.getRepoId();
-        return row;
+        row.id = returnedId != null ? returnedId : row.id;
     }
 
     private Collection<MAuditDelta> prepareDeltas(Collection<ObjectDeltaOperation<?>> deltas) {
@@ -326,26 +382,23 @@ public class SqaleAuditService extends SqaleServiceBase implements AuditService
         }
     }
 
-    private void insertReferences(JdbcSession jdbcSession,
-            MAuditEventRecord auditRow, Map<String, Set<AuditReferenceValue>> references) {
-        if (references.isEmpty()) {
+    private void insertReferences(JdbcSession jdbcSession, MAuditEventRecord auditRow) {
+        if (auditRow.refValues == null) {
             return;
         }
 
         QAuditRefValue qr = QAuditRefValueMapping.get().defaultAlias();
         SQLInsertClause insertBatch = jdbcSession.newInsert(qr);
-        for (String refName : references.keySet()) {
-            for (AuditReferenceValue refValue : references.get(refName)) {
+        for (List<MAuditRefValue> refValues : auditRow.refValues.values()) {
+            for (MAuditRefValue refValue : refValues) {
                 // id will be generated, but we're not interested in those here
-                PolyString targetName = refValue.getTargetName();
                 insertBatch.set(qr.recordId, auditRow.id)
                         .set(qr.timestamp, auditRow.timestamp)
-                        .set(qr.name, refName)
-                        .set(qr.targetOid, SqaleUtils.oidToUuid(refValue.getOid()))
-                        .set(qr.targetType, refValue.getType() != null
-                                ? MObjectType.fromTypeQName(refValue.getType()) : null)
-                        .set(qr.targetNameOrig, PolyString.getOrig(targetName))
-                        .set(qr.targetNameNorm, PolyString.getNorm(targetName))
+                        .set(qr.name, refValue.name)
+                        .set(qr.targetOid, refValue.targetOid)
+                        .set(qr.targetType, refValue.targetType)
+                        .set(qr.targetNameOrig, refValue.targetNameOrig)
+                        .set(qr.targetNameNorm, refValue.targetNameNorm)
                         .addBatch();
             }
         }
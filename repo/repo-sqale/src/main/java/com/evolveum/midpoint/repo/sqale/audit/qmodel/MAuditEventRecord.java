@@ -62,6 +62,7 @@ public class MAuditEventRecord {
     // "transient" fields not used by Querydsl
     public Collection<MAuditDelta> deltas;
     public Map<String, List<MAuditRefValue>> refValues;
+    public Map<String, String> customColumnValues; // used for insertion only
 
     public void addDelta(MAuditDelta mAuditDelta) {
         if (deltas == null) {
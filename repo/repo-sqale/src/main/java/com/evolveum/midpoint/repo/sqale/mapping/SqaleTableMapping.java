@@ -6,7 +6,6 @@
  */
 package com.evolveum.midpoint.repo.sqale.mapping;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
@@ -25,6 +24,7 @@ import com.evolveum.midpoint.prism.SerializationOptions;
 import com.evolveum.midpoint.prism.path.ItemName;
 import com.evolveum.midpoint.prism.path.PathSet;
 import com.evolveum.midpoint.repo.sqale.ExtensionProcessor;
+import com.evolveum.midpoint.repo.sqale.FullObjectParallelParser;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoContext;
 import com.evolveum.midpoint.repo.sqale.SqaleUtils;
 import com.evolveum.midpoint.repo.sqale.delta.item.*;
@@ -478,12 +478,15 @@ public abstract class SqaleTableMapping<S, Q extends FlexibleRelationalPathBase<
     }
 
     protected <T> T parseSchemaObject(byte[] fullObject, String identifier, Class<T> clazz) throws SchemaException {
-        String serializedForm = fullObject != null
-                ? new String(fullObject, StandardCharsets.UTF_8)
+        // Object may be already parsed by the parallel parse stage, in that case we skip the string conversion.
+        RepositoryObjectParseResult<T> result = FullObjectParallelParser.takePreParsed(fullObject, clazz);
+        String serializedForm = result == null && fullObject != null
+                ? repositoryContext().decodeFullObject(fullObject)
                 : null;
         try {
-            RepositoryObjectParseResult<T> result =
-                    repositoryContext().parsePrismObject(serializedForm, clazz);
+            if (result == null) {
+                result = repositoryContext().parsePrismObject(serializedForm, clazz);
+            }
             T schemaObject = result.prismValue;
             if (result.parsingContext.hasWarnings()) {
                 logger.warn("Object {} parsed with {} warnings",
@@ -506,15 +509,24 @@ public abstract class SqaleTableMapping<S, Q extends FlexibleRelationalPathBase<
     /** Creates serialized (byte array) form of an object or a container. */
     public <C extends Containerable> byte[] createFullObject(C container) throws SchemaException {
         repositoryContext().normalizeAllRelations(container.asPrismContainerValue());
-        return repositoryContext().createStringSerializer()
-                .itemsToSkip(fullObjectItemsToSkip())
-                .options(SerializationOptions
-                        .createSerializeReferenceNamesForNullOids()
-                        .skipIndexOnly(true)
-                        .skipTransient(true)
-                        .skipWhitespaces(true))
-                .serialize(container.asPrismContainerValue())
-                .getBytes(StandardCharsets.UTF_8);
+        return repositoryContext().encodeFullObject(
+                repositoryContext().createStringSerializer()
+                        .itemsToSkip(fullObjectItemsToSkip())
+                        .options(SerializationOptions
+                                .createSerializeReferenceNamesForNullOids()
+                                .skipIndexOnly(true)
+                                .skipTransient(true)
+                                .skipWhitespaces(true))
+                        .serialize(container.asPrismContainerValue()));
+    }
+
+    /**
+     * Returns serialized form (fullObject) from the result row, if the mapping uses it to create the schema object.
+     * This is used for parallel parsing of search results, see {@link FullObjectParallelParser}.
+     * Returns null by default, which means that rows of this mapping are not parsed in parallel.
+     */
+    public byte[] fullObjectForParsing(Tuple tuple, Q entityPath) {
+        return null;
     }
 
     protected PathSet fullObjectItemsToSkip() {
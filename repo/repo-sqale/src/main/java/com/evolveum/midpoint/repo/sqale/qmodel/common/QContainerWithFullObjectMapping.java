@@ -61,6 +61,13 @@ public abstract class QContainerWithFullObjectMapping<S extends Containerable, Q
 
     protected abstract S toSchemaObjectLegacy(R row) throws SchemaException;
 
+    @Override
+    public byte[] fullObjectForParsing(Tuple tuple, Q entityPath) {
+        // Usually the tuple contains the whole row, which is also used by toSchemaObject(R).
+        R row = tuple.get(entityPath);
+        return row != null ? row.fullObject : tuple.get(entityPath.fullObject);
+    }
+
     @Override
     public Predicate allOwnedBy(Q q, Collection<UUID> oidList) {
         return q.ownerOid.in(oidList);
@@ -12,6 +12,7 @@ import java.util.*;
 import java.util.function.BiFunction;
 
 import com.evolveum.midpoint.prism.*;
+import com.evolveum.midpoint.prism.delta.ItemDelta;
 import com.evolveum.midpoint.prism.path.*;
 import com.evolveum.midpoint.repo.sqlbase.SqlBaseOperationTracker;
 import com.evolveum.midpoint.repo.sqale.mapping.SqaleMappingMixin;
@@ -220,6 +221,11 @@ public class QObjectMapping<S extends ObjectType, Q extends QObject<R>, R extend
         return ret;
     }
 
+    @Override
+    public byte[] fullObjectForParsing(Tuple tuple, Q entityPath) {
+        return tuple.get(entityPath.fullObject);
+    }
+
     /**
      * The same function as in overridden method, but softer exception handling.
      * This targets cases like {@link RepositoryService#searchObjects} where single wrong object
@@ -620,6 +626,65 @@ public class QObjectMapping<S extends ObjectType, Q extends QObject<R>, R extend
         };
     }
 
+    /**
+     * Returns paths of separately stored items (e.g. assignments) that are loaded by default,
+     * but are not touched by any of the modifications.
+     *
+     * These items are not part of the fullObject and their rows are not changed by the modifications,
+     * so they do not need to be loaded when the object is read for update.
+     */
+    public PathSet separatelySerializedItemsNotTouchedBy(
+            @NotNull Collection<? extends ItemDelta<?, ?>> modifications) {
+        var ret = new PathSet();
+        if (!storeSplitted) {
+            return ret;
+        }
+        for (var mapping : separatellySerializedItems.values()) {
+            if (!mapping.includedByDefault) {
+                continue;
+            }
+            ItemPath itemPath = mapping.getPath();
+            if (modifications.stream().noneMatch(m -> touches(m.getPath().namedSegmentsOnly(), itemPath))) {
+                ret.add(itemPath);
+            }
+        }
+        return ret;
+    }
+
+    private static boolean touches(ItemPath modificationPath, ItemPath itemPath) {
+        return modificationPath.startsWith(itemPath) || itemPath.startsWith(modificationPath);
+    }
+
+    /**
+     * Returns true if the object parsed from its fullObject already contains values of any of the provided
+     * separately stored items - which means it was stored before the items were split (legacy format).
+     */
+    public boolean hasInlinedValues(@NotNull S schemaObject, @NotNull PathSet paths) {
+        for (ItemPath path : paths) {
+            Item<?, ?> item = schemaObject.asPrismObject().findItem(path);
+            if (item != null && !item.hasNoValues()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks separately stored items that were not loaded as incomplete, so the object read for update
+     * (and the object before/after the modification provided to the clients) does not pretend they are empty.
+     */
+    public void markNotLoadedItemsIncomplete(@NotNull S schemaObject, @NotNull PathSet notLoadedItems)
+            throws SchemaException {
+        for (var mapping : separatellySerializedItems.values()) {
+            if (notLoadedItems.contains(mapping.getPath())) {
+                //noinspection unchecked
+                Item<?, ?> item = schemaObject.asPrismObject()
+                        .findOrCreateItem(mapping.getPath(), (Class) mapping.mapping.getPrismItemType());
+                item.setIncomplete(true);
+            }
+        }
+    }
+
     @VisibleForTesting
     public int additionalSelectsByDefault() {
         if (storeSplitted) {
@@ -15,6 +15,7 @@ public class MOrgClosure {
 
     public UUID ancestorOid;
     public UUID descendantOid;
+    public Long paths;
 
     @Override
     public String toString() {
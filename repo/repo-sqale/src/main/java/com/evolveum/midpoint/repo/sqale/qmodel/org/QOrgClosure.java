@@ -6,9 +6,11 @@
  */
 package com.evolveum.midpoint.repo.sqale.qmodel.org;
 
+import java.sql.Types;
+
+import com.querydsl.core.types.dsl.NumberPath;
 import com.querydsl.sql.ColumnMetadata;
 
-import com.evolveum.midpoint.repo.sqale.SqaleQueryContext;
 import com.evolveum.midpoint.repo.sqale.SqaleRepositoryService;
 import com.evolveum.midpoint.repo.sqlbase.querydsl.FlexibleRelationalPathBase;
 import com.evolveum.midpoint.repo.sqlbase.querydsl.UuidPath;
@@ -18,12 +20,10 @@ import com.evolveum.midpoint.repo.sqlbase.querydsl.UuidPath;
  * Can also be used for common table expression (CTE) representing org hierarchy on the fly.
  * This does not have to be under {@link FlexibleRelationalPathBase}, but is for convenience.
  *
- * [IMPORTANT]
- * *Be aware that the materialized view is refreshed only on demand!*
- * This is executed when {@link com.evolveum.midpoint.prism.query.OrgFilter} is used in
- * {@link SqaleQueryContext#beforeQuery()} or when executing
- * {@link SqaleRepositoryService#isAnySubordinate(java.lang.String, java.util.Collection)}.
- * If any access via other paths is done, use statement `CALL m_refresh_org_closure()` before.
+ * The table is maintained incrementally by DB triggers on `m_org` and `m_ref_object_parent_org`
+ * in the same transaction that changes the org hierarchy, so no refresh is needed before reading it.
+ * Full rebuild is possible with statement `CALL m_refresh_org_closure(true)`, see also
+ * {@link SqaleRepositoryService#testOrgClosureConsistency(boolean, com.evolveum.midpoint.schema.result.OperationResult)}.
  */
 @SuppressWarnings("unused")
 public class QOrgClosure extends FlexibleRelationalPathBase<MOrgClosure> {
@@ -39,8 +39,12 @@ public class QOrgClosure extends FlexibleRelationalPathBase<MOrgClosure> {
     public static final ColumnMetadata DESCENDANT_OID =
             ColumnMetadata.named("descendant_oid").ofType(UuidPath.UUID_TYPE);
 
+    public static final ColumnMetadata PATHS =
+            ColumnMetadata.named("paths").ofType(Types.BIGINT).notNull();
+
     public final UuidPath ancestorOid = createUuid("ancestorOid", ANCESTOR_OID);
     public final UuidPath descendantOid = createUuid("descendantOid", DESCENDANT_OID);
+    public final NumberPath<Long> paths = createLong("paths", PATHS);
 
     public QOrgClosure() {
         this(DEFAULT_ALIAS_NAME, DEFAULT_SCHEMA_NAME);
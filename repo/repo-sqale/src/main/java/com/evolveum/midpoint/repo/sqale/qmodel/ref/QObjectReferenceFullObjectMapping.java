@@ -24,7 +24,6 @@ import com.querydsl.core.types.Predicate;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
@@ -77,16 +76,16 @@ public class QObjectReferenceFullObjectMapping<OS extends ObjectType, OQ extends
     public <C extends Containerable> byte[] createFullObject(ObjectReferenceType ref) throws SchemaException {
         var pref = ref.asReferenceValue();
         ObjectTypeUtil.normalizeRelation(pref, SchemaService.get().relationRegistry());
-        return repositoryContext().createStringSerializer()
-                .itemsToSkip(fullObjectItemsToSkip())
-                .definition(itemDefinition.get())
-                .options(SerializationOptions
-                        .createSerializeReferenceNamesForNullOids()
-                        .skipIndexOnly(true)
-                        .skipTransient(true)
-                        .skipWhitespaces(true))
-                .serialize(pref)
-                .getBytes(StandardCharsets.UTF_8);
+        return repositoryContext().encodeFullObject(
+                repositoryContext().createStringSerializer()
+                        .itemsToSkip(fullObjectItemsToSkip())
+                        .definition(itemDefinition.get())
+                        .options(SerializationOptions
+                                .createSerializeReferenceNamesForNullOids()
+                                .skipIndexOnly(true)
+                                .skipTransient(true)
+                                .skipWhitespaces(true))
+                        .serialize(pref));
     }
 
     @Override
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.repo.sqale.qmodel.focus.QUser;
+import com.evolveum.midpoint.repo.sqlbase.RepositoryObjectParseResult;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests {@link FullObjectParallelParser} directly on fullObject values stored by the repository.
+ * Parser is created here, so it does not depend on the parallelism configured for the tests.
+ */
+public class FullObjectParallelParserTest extends SqaleRepoBaseTest {
+
+    private static final int USER_COUNT = 10;
+
+    private FullObjectParallelParser parser;
+    private final List<byte[]> fullObjects = new ArrayList<>();
+
+    @BeforeClass
+    public void initObjects() throws Exception {
+        OperationResult result = createOperationResult();
+        for (int i = 0; i < USER_COUNT; i++) {
+            String oid = repositoryService.addObject(
+                    new UserType()
+                            .name("parser-user-" + i)
+                            .fullName("Parser User " + i)
+                            .emailAddress("parser-user-" + i + "@example.com")
+                            .asPrismObject(),
+                    null, result);
+            fullObjects.add(selectObjectByOid(QUser.class, oid).fullObject);
+        }
+        assertThatOperationResult(result).isSuccess();
+
+        parser = new FullObjectParallelParser(sqlRepoContext, 4, 1);
+    }
+
+    @AfterClass
+    public void shutdownParser() {
+        if (parser != null) {
+            parser.shutdown();
+        }
+    }
+
+    @Test
+    public void test100PreParsedObjectsAreSameAsParsedOnCallingThread() throws Exception {
+        given("full objects parsed on the calling thread");
+        List<UserType> expected = new ArrayList<>();
+        for (byte[] fullObject : fullObjects) {
+            expected.add(parseOnCallingThread(fullObject));
+        }
+
+        when("full objects are pre-parsed");
+        List<UserType> actual = new ArrayList<>();
+        try (var ignored = parser.preParse(fullObjects, UserType.class)) {
+            for (byte[] fullObject : fullObjects) {
+                actual.add(takeMandatory(fullObject));
+            }
+        }
+
+        then("the objects are the same, in the same order");
+        assertThat(actual).hasSize(USER_COUNT);
+        for (int i = 0; i < USER_COUNT; i++) {
+            assertThat(actual.get(i).asPrismObject().equivalent(expected.get(i).asPrismObject()))
+                    .as("pre-parsed object #%d equivalent to the one parsed on the calling thread", i)
+                    .isTrue();
+        }
+    }
+
+    @Test
+    public void test110PreParsedObjectIsTakenOnlyOnce() {
+        given("pre-parsed objects");
+        byte[] fullObject = fullObjects.get(0);
+        try (var ignored = parser.preParse(fullObjects, UserType.class)) {
+            when("the same object is taken twice");
+            RepositoryObjectParseResult<UserType> first = FullObjectParallelParser.takePreParsed(fullObject, UserType.class);
+            RepositoryObjectParseResult<UserType> second = FullObjectParallelParser.takePreParsed(fullObject, UserType.class);
+
+            then("it is available only the first time");
+            assertThat(first).isNotNull();
+            assertThat(second).isNull();
+        }
+        assertThat(FullObjectParallelParser.takePreParsed(fullObjects.get(1), UserType.class))
+                .as("pre-parsed object after the scope is closed")
+                .isNull();
+    }
+
+    /**
+     * Nested search (e.g. during the transformation of the outer search results) must not discard
+     * the objects pre-parsed for the outer search.
+     */
+    @Test
+    public void test200NestedScopeRestoresOuterObjects() throws Exception {
+        given("outer and inner objects");
+        List<byte[]> outer = fullObjects.subList(0, USER_COUNT / 2);
+        List<byte[]> inner = fullObjects.subList(USER_COUNT / 2, USER_COUNT);
+
+        try (var ignoredOuter = parser.preParse(outer, UserType.class)) {
+            UserType firstOuter = takeMandatory(outer.get(0));
+
+            when("inner scope is opened and closed");
+            try (var ignoredInner = parser.preParse(inner, UserType.class)) {
+                for (byte[] fullObject : inner) {
+                    takeMandatory(fullObject);
+                }
+            }
+
+            then("the rest of the outer objects is still pre-parsed");
+            assertThat(firstOuter.getName().getOrig()).isEqualTo("parser-user-0");
+            for (int i = 1; i < outer.size(); i++) {
+                UserType user = takeMandatory(outer.get(i));
+                assertThat(user.asPrismObject().equivalent(parseOnCallingThread(outer.get(i)).asPrismObject()))
+                        .as("outer object #%d after the inner scope is closed", i)
+                        .isTrue();
+            }
+        }
+
+        and("nothing is left after the outer scope is closed");
+        assertThat(FullObjectParallelParser.takePreParsed(outer.get(0), UserType.class)).isNull();
+        assertThat(FullObjectParallelParser.takePreParsed(inner.get(0), UserType.class)).isNull();
+    }
+
+    private UserType takeMandatory(byte[] fullObject) {
+        RepositoryObjectParseResult<UserType> parsed = FullObjectParallelParser.takePreParsed(fullObject, UserType.class);
+        assertThat(parsed).as("pre-parsed object").isNotNull();
+        return parsed.prismValue;
+    }
+
+    private UserType parseOnCallingThread(byte[] fullObject) throws Exception {
+        return sqlRepoContext.parsePrismObject(sqlRepoContext.decodeFullObject(fullObject), UserType.class).prismValue;
+    }
+}
@@ -13,7 +13,6 @@ import static org.testng.Assert.assertNotNull;
 
 import static com.evolveum.midpoint.repo.sqale.SqaleUtils.oidToUuidMandatory;
 
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Stream;
@@ -637,7 +636,7 @@ public class SqaleRepoBaseTest extends AbstractSpringTest
     @NotNull
     protected <T> T parseFullObject(byte[] fullObject) {
         try {
-            return prismContext.parserFor(new String(fullObject, StandardCharsets.UTF_8))
+            return prismContext.parserFor(FullObjectCodec.decode(fullObject))
                     .parseRealValue();
         } catch (SchemaException e) {
             // to support lambdas
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.repo.sqale.func;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.audit.api.AuditEventRecord;
+import com.evolveum.midpoint.prism.polystring.PolyString;
+import com.evolveum.midpoint.repo.api.SqlPerformanceMonitorsCollection;
+import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
+import com.evolveum.midpoint.repo.sqale.audit.AuditAsyncWriter;
+import com.evolveum.midpoint.repo.sqale.audit.SqaleAuditService;
+import com.evolveum.midpoint.repo.sqale.audit.qmodel.*;
+import com.evolveum.midpoint.schema.ObjectDeltaOperation;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.schema.util.ObjectTypeUtil;
+import com.evolveum.midpoint.task.api.test.NullTaskImpl;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests asynchronous audit writes, see {@link AuditAsyncWriter}.
+ * Separate audit service is created for these tests, as the writer is set up in the constructor.
+ */
+public class AuditAsyncWriteTest extends SqaleRepoBaseTest {
+
+    @Autowired private SqlPerformanceMonitorsCollection sqlPerformanceMonitorsCollection;
+
+    @AfterMethod
+    public void resetAsyncConfiguration() {
+        repositoryConfiguration.setAsyncQueueSize(0);
+        repositoryConfiguration.setAsyncOverflow("block");
+    }
+
+    @Test
+    public void test100AsyncAuditRecordsAreWrittenInBatchesAndOnStop() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("clear audit and audit service with asynchronous writer");
+        clearAudit();
+        repositoryConfiguration.setAsyncQueueSize(100);
+        SqaleAuditService asyncAuditService =
+                new SqaleAuditService(sqlRepoContext, sqlPerformanceMonitorsCollection);
+        AuditAsyncWriter asyncWriter = asyncAuditService.getAsyncWriter();
+        assertThat(asyncWriter).isNotNull();
+
+        when("multiple audit records with deltas and references are stored");
+        String targetOid = UUID.randomUUID().toString();
+        for (int i = 0; i < 25; i++) {
+            AuditEventRecord record = new AuditEventRecord();
+            record.setParameter("async-" + i);
+            ObjectDeltaOperation<UserType> delta = new ObjectDeltaOperation<>();
+            delta.setObjectDelta(prismContext.deltaFor(UserType.class)
+                    .item(UserType.F_FULL_NAME).replace(new PolyString("Full name " + i))
+                    .asObjectDelta(UUID.randomUUID().toString()));
+            record.addDelta(delta);
+            record.addReferenceValue("ref",
+                    ObjectTypeUtil.createObjectRef(targetOid, ObjectTypes.USER).asReferenceValue());
+            record.getCustomColumnProperty().put("foo", "foo-" + i);
+            asyncAuditService.audit(record, NullTaskImpl.INSTANCE, result);
+        }
+
+        and("audit service is stopped");
+        asyncAuditService.destroy();
+
+        then("all records with subentities are in the database");
+        assertThatOperationResult(result).isSuccess();
+        QAuditEventRecord a = QAuditEventRecordMapping.get().defaultAlias();
+        List<MAuditEventRecord> rows = select(a);
+        assertThat(rows).hasSize(25)
+                .extracting(r -> r.parameter)
+                .contains("async-0", "async-24");
+        assertThat(count(QAuditDeltaMapping.get().defaultAlias())).isEqualTo(25);
+        assertThat(select(QAuditRefValueMapping.get().defaultAlias()))
+                .hasSize(25)
+                .allMatch(r -> r.targetOid.toString().equals(targetOid));
+        assertThat(asyncWriter.getWrittenCount()).isEqualTo(25);
+        assertThat(asyncWriter.getFailedCount()).isZero();
+        assertThat(asyncWriter.getQueueDepth()).isZero();
+
+        and("records submitted after stop are written synchronously");
+        AuditEventRecord record = new AuditEventRecord();
+        record.setParameter("after-stop");
+        asyncAuditService.audit(record, NullTaskImpl.INSTANCE, result);
+        assertThat(record.getRepoId()).isNotNull();
+        assertThat(count(a)).isEqualTo(26);
+    }
+
+    @Test
+    public void test200SpilledRecordsAreReplayedInSubmissionOrder() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("clear audit and paused asynchronous writer with small queue spilling to files");
+        clearAudit();
+        Path spillDirectory = Files.createTempDirectory("audit-spill");
+        repositoryConfiguration.setAsyncQueueSize(2);
+        repositoryConfiguration.setAsyncOverflow("spill");
+        repositoryConfiguration.setAsyncSpillDirectory(spillDirectory.toString());
+        SqaleAuditService asyncAuditService =
+                new SqaleAuditService(sqlRepoContext, sqlPerformanceMonitorsCollection);
+        AuditAsyncWriter asyncWriter = asyncAuditService.getAsyncWriter();
+        assertThat(asyncWriter).isNotNull();
+        asyncWriter.setPaused(true);
+
+        when("more records than the queue can hold are stored");
+        auditRecords(asyncAuditService, "first-", 10, result);
+
+        then("records over the queue size are spilled");
+        assertThat(asyncWriter.getQueueDepth()).isEqualTo(2);
+        assertThat(asyncWriter.getSpilledCount()).isEqualTo(8);
+        assertThat(listFiles(spillDirectory)).hasSize(1);
+
+        when("writer is resumed");
+        asyncWriter.setPaused(false);
+
+        then("queued and spilled records are written and the spill file is deleted");
+        waitForWrittenCount(asyncWriter, 10);
+        assertThat(listFiles(spillDirectory)).isEmpty();
+
+        when("more records are spilled and the writer is stopped");
+        asyncWriter.setPaused(true);
+        auditRecords(asyncAuditService, "second-", 10, result);
+        asyncAuditService.destroy();
+
+        then("all the records are written, ordered by ID as they were submitted");
+        assertThatOperationResult(result).isSuccess();
+        QAuditEventRecord a = QAuditEventRecordMapping.get().defaultAlias();
+        assertThat(select(a).stream()
+                .sorted(Comparator.comparing(r -> r.id))
+                .map(r -> r.parameter)
+                .toList())
+                .containsExactlyElementsOf(Stream.concat(
+                                IntStream.range(0, 10).mapToObj(i -> "first-" + i),
+                                IntStream.range(0, 10).mapToObj(i -> "second-" + i))
+                        .toList());
+        assertThat(asyncWriter.getWrittenCount()).isEqualTo(20);
+        assertThat(asyncWriter.getSpilledCount()).isEqualTo(16);
+        assertThat(asyncWriter.getFailedCount()).isZero();
+        assertThat(listFiles(spillDirectory)).isEmpty();
+    }
+
+    private void auditRecords(SqaleAuditService auditService, String prefix, int count, OperationResult result) {
+        for (int i = 0; i < count; i++) {
+            AuditEventRecord record = new AuditEventRecord();
+            record.setParameter(prefix + i);
+            auditService.audit(record, NullTaskImpl.INSTANCE, result);
+        }
+    }
+
+    private void waitForWrittenCount(AuditAsyncWriter asyncWriter, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (asyncWriter.getWrittenCount() < expected && System.currentTimeMillis() < deadline) {
+            //noinspection BusyWait
+            Thread.sleep(50);
+        }
+        assertThat(asyncWriter.getWrittenCount()).isEqualTo(expected);
+    }
+
+    private List<Path> listFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+}
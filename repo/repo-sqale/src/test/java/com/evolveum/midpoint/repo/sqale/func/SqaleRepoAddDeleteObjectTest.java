@@ -32,7 +32,10 @@ import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.prism.path.ItemName;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.repo.api.DeleteObjectResult;
+import com.evolveum.midpoint.repo.api.RepoBatchItemResult;
+import com.evolveum.midpoint.repo.api.RepoModifyOptions;
 import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.repo.sqale.FullObjectCodec;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
 import com.evolveum.midpoint.repo.sqale.SqaleRepositoryService;
 import com.evolveum.midpoint.repo.sqale.jsonb.Jsonb;
@@ -275,6 +278,55 @@ public class SqaleRepoAddDeleteObjectTest extends SqaleRepoBaseTest {
         }
     }
 
+    @Test
+    public void test120ModifyNotTouchingAssignmentsOfLegacyObjectReindexesIt() throws Exception {
+        OperationResult result = createOperationResult();
+        QUserMapping.getUserMapping().setStoreSplitted(false);
+        QAssignmentMapping.getAssignmentMapping().setStoreFullObject(false);
+
+        UserType user = new UserType().name("user" + getTestNumber())
+                .assignment(new AssignmentType().targetRef(UUID.randomUUID().toString(), RoleType.COMPLEX_TYPE));
+        String oid;
+        try {
+            given("user in the repository with legacy format (assignment inside the user fullObject)");
+            oid = repositoryService.addObject(user.asPrismObject(), null, result);
+        } finally {
+            QUserMapping.getUserMapping().setStoreSplitted(true);
+            QAssignmentMapping.getAssignmentMapping().setStoreFullObject(true);
+        }
+        QAssignment<?> a = QAssignmentMapping.getAssignmentMapping().defaultAlias();
+        MAssignment legacyRow = selectOne(a, a.ownerOid.eq(UUID.fromString(oid)));
+        assertThat(legacyRow.fullObject).isNull();
+
+        when("modification not touching assignments is applied");
+        repositoryService.modifyObject(UserType.class, oid,
+                prismContext.deltaFor(UserType.class)
+                        .item(UserType.F_DESCRIPTION).replace("description")
+                        .asItemDeltas(),
+                result);
+
+        then("operation is successful");
+        assertThatOperationResult(result).isSuccess();
+
+        and("the object is reindexed, assignment row has its fullObject now");
+        MAssignment row = selectOne(a, a.ownerOid.eq(UUID.fromString(oid)));
+        assertThat(row.fullObject).isNotNull();
+
+        and("assignment is still there, also after another unrelated modification and reindex");
+        repositoryService.modifyObject(UserType.class, oid,
+                prismContext.deltaFor(UserType.class)
+                        .item(UserType.F_DESCRIPTION).replace("description 2")
+                        .asItemDeltas(),
+                result);
+        UserType read = repositoryService.getObject(UserType.class, oid, null, result).asObjectable();
+        assertThat(read.getDescription()).isEqualTo("description 2");
+        assertThat(read.getAssignment()).hasSize(1);
+
+        repositoryService.modifyObject(UserType.class, oid, List.of(), RepoModifyOptions.createForceReindex(), result);
+        read = repositoryService.getObject(UserType.class, oid, null, result).asObjectable();
+        assertThat(read.getAssignment()).hasSize(1);
+    }
+
     // detailed container tests are from test200 on, this one has overwrite priority :-)
     @Test
     public void test115OverwriteWithContainers()
@@ -415,6 +467,129 @@ public class SqaleRepoAddDeleteObjectTest extends SqaleRepoBaseTest {
         assertThat(row.version).isEqualTo(SqaleRepositoryService.INITIAL_VERSION_NUMBER); // no change
     }
 
+    @Test
+    public void test125AddObjectsInBatchAddsAllButFailedOnes()
+            throws ObjectAlreadyExistsException, SchemaException {
+        OperationResult result = createOperationResult();
+
+        given("user with provided OID already exists");
+        UUID existingOid = UUID.randomUUID();
+        repositoryService.addObject(
+                new UserType().oid(existingOid.toString()).name("user" + getTestNumber()).asPrismObject(),
+                null, result);
+        long baseCount = count(QUser.class);
+
+        when("adding a batch of users, one of them with the existing OID");
+        UserType user1 = new UserType().name("user" + getTestNumber() + "-1");
+        UserType user2 = new UserType().oid(existingOid.toString()).name("user" + getTestNumber() + "-2");
+        UserType user3 = new UserType().name("user" + getTestNumber() + "-3");
+        List<RepoBatchItemResult> itemResults = repositoryService.addObjects(
+                List.of(user1.asPrismObject(), user2.asPrismObject(), user3.asPrismObject()), null, false, result);
+
+        then("the other users are added and the failure is reported for the problematic one");
+        assertThat(itemResults).hasSize(3);
+        assertThat(itemResults.get(0).isSuccess()).isTrue();
+        assertThat(itemResults.get(0).getOid()).isEqualTo(user1.getOid());
+        assertThat(itemResults.get(1).getException()).isInstanceOf(ObjectAlreadyExistsException.class);
+        assertThat(itemResults.get(2).isSuccess()).isTrue();
+        assertThat(itemResults.get(2).getOid()).isEqualTo(user3.getOid());
+        assertThatOperationResult(result).isPartialError();
+        assertCount(QUser.class, baseCount + 2);
+        selectObjectByOid(QUser.class, UUID.fromString(user3.getOid()));
+    }
+
+    @Test
+    public void test126AddObjectsInAllOrNothingBatchAddsNothingOnFailure()
+            throws ObjectAlreadyExistsException, SchemaException {
+        OperationResult result = createOperationResult();
+
+        given("user with provided OID already exists");
+        UUID existingOid = UUID.randomUUID();
+        repositoryService.addObject(
+                new UserType().oid(existingOid.toString()).name("user" + getTestNumber()).asPrismObject(),
+                null, result);
+        long baseCount = count(QUser.class);
+
+        when("adding an all-or-nothing batch of users, one of them with the existing OID");
+        UserType user1 = new UserType().name("user" + getTestNumber() + "-1");
+        UserType user2 = new UserType().oid(existingOid.toString()).name("user" + getTestNumber() + "-2");
+        OperationResult batchResult = createOperationResult();
+
+        then("operation fails, no user is added and no OID is left assigned");
+        assertThatThrownBy(() -> repositoryService.addObjects(
+                List.of(user1.asPrismObject(), user2.asPrismObject()), null, true, batchResult))
+                .isInstanceOf(ObjectAlreadyExistsException.class);
+        assertThatOperationResult(batchResult).isFatalError();
+        assertCount(QUser.class, baseCount);
+        assertThat(user1.getOid()).isNull();
+    }
+
+    @Test
+    public void test130AddUserWithCompactFullObject() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("compact fullObject format is enabled and user with assignment");
+        repositoryConfiguration.setFullObjectCompact(true);
+        String userName = "user" + getTestNumber();
+        UserType user = new UserType()
+                .name(userName)
+                .assignment(new AssignmentType()
+                        .targetRef(UUID.randomUUID().toString(), RoleType.COMPLEX_TYPE));
+
+        try {
+            when("adding it to the repository");
+            String oid = repositoryService.addObject(user.asPrismObject(), null, result);
+
+            then("fullObject is stored in compact format");
+            assertThatOperationResult(result).isSuccess();
+            MUser row = selectObjectByOid(QUser.class, UUID.fromString(oid));
+            assertThat(FullObjectCodec.isCompact(row.fullObject)).isTrue();
+            UserType fullObject = parseFullObject(row.fullObject);
+            assertThat(fullObject.getName().getOrig()).isEqualTo(userName);
+
+            and("object is read as usual");
+            UserType userObject = repositoryService.getObject(UserType.class, oid, null, result).asObjectable();
+            assertThat(userObject.getName().getOrig()).isEqualTo(userName);
+            assertThat(userObject.getAssignment()).hasSize(1);
+
+            and("deleted object has text representation");
+            DeleteObjectResult deleteResult = repositoryService.deleteObject(UserType.class, oid, result);
+            assertThat(deleteResult.getObjectTextRepresentation()).contains(userName);
+        } finally {
+            repositoryConfiguration.setFullObjectCompact(false);
+        }
+    }
+
+    @Test
+    public void test131PlainFullObjectIsRewrittenToCompactByReindex() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("user stored with plain fullObject");
+        String userName = "user" + getTestNumber();
+        String oid = repositoryService.addObject(
+                new UserType().name(userName).asPrismObject(), null, result);
+        MUser row = selectObjectByOid(QUser.class, UUID.fromString(oid));
+        assertThat(FullObjectCodec.isCompact(row.fullObject)).isFalse();
+
+        try {
+            when("compact format is enabled and the user is reindexed");
+            repositoryConfiguration.setFullObjectCompact(true);
+            UserType userObject = repositoryService.getObject(UserType.class, oid, null, result).asObjectable();
+            assertThat(userObject.getName().getOrig()).isEqualTo(userName);
+            repositoryService.modifyObject(UserType.class, oid, List.of(),
+                    RepoModifyOptions.createForceReindex(), result);
+
+            then("fullObject is stored in compact format and object is read as before");
+            assertThatOperationResult(result).isSuccess();
+            row = selectObjectByOid(QUser.class, UUID.fromString(oid));
+            assertThat(FullObjectCodec.isCompact(row.fullObject)).isTrue();
+            userObject = repositoryService.getObject(UserType.class, oid, null, result).asObjectable();
+            assertThat(userObject.getName().getOrig()).isEqualTo(userName);
+        } finally {
+            repositoryConfiguration.setFullObjectCompact(false);
+        }
+    }
+
     @Test
     public void test150AddOperationUpdatesPerformanceMonitor()
             throws ObjectAlreadyExistsException, SchemaException {
@@ -35,6 +35,8 @@ import com.evolveum.midpoint.prism.path.ItemName;
 import com.evolveum.midpoint.prism.path.ItemPath;
 import com.evolveum.midpoint.prism.polystring.PolyString;
 import com.evolveum.midpoint.prism.query.ObjectQuery;
+import com.evolveum.midpoint.repo.api.ModifyObjectResult;
+import com.evolveum.midpoint.repo.api.RepoBatchItemResult;
 import com.evolveum.midpoint.repo.api.RepoModifyOptions;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.repo.sqale.SqaleRepoBaseTest;
@@ -3059,6 +3061,51 @@ public class SqaleRepoModifyObjectTest extends SqaleRepoBaseTest {
         assertThat(changedRow.version).isEqualTo(originalRow.version);
     }
 
+    @Test
+    public void test345ModifyNotTouchingAssignmentsDoesNotLoadThem() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("user 1 with an assignment");
+        repositoryService.modifyObject(UserType.class, user1Oid,
+                prismContext.deltaFor(UserType.class)
+                        .item(UserType.F_ASSIGNMENT)
+                        .add(new AssignmentType()
+                                .targetRef(UUID.randomUUID().toString(), RoleType.COMPLEX_TYPE))
+                        .asItemDeltas(),
+                result);
+        QAssignment<?> a = QAssignmentMapping.getAssignmentMapping().defaultAlias();
+        List<MAssignment> originalAssignmentRows = select(a, a.ownerOid.eq(UUID.fromString(user1Oid)));
+        assertThat(originalAssignmentRows).isNotEmpty();
+        MUser originalRow = selectObjectByOid(QUser.class, user1Oid);
+
+        when("modifyObject not touching assignments is called");
+        ModifyObjectResult<UserType> modifyResult = repositoryService.modifyObject(UserType.class, user1Oid,
+                prismContext.deltaFor(UserType.class)
+                        .item(UserType.F_DESCRIPTION).replace("description " + getTestNumber())
+                        .asItemDeltas(),
+                result);
+
+        then("operation is successful");
+        assertThatOperationResult(result).isSuccess();
+
+        and("assignments were not loaded, they are marked as incomplete in the object after");
+        PrismContainer<AssignmentType> assignmentContainer =
+                modifyResult.getObjectAfter().findContainer(UserType.F_ASSIGNMENT);
+        assertThat(assignmentContainer).isNotNull();
+        assertThat(assignmentContainer.isIncomplete()).isTrue();
+        assertThat(assignmentContainer.hasNoValues()).isTrue();
+
+        and("assignment rows are untouched and the assignments are still returned with the object");
+        MUser row = selectObjectByOid(QUser.class, user1Oid);
+        assertThat(row.version).isEqualTo(originalRow.version + 1);
+        assertThat(select(a, a.ownerOid.eq(UUID.fromString(user1Oid))))
+                .hasSize(originalAssignmentRows.size());
+        UserType userObject = repositoryService.getObject(UserType.class, user1Oid, null, result)
+                .asObjectable();
+        assertThat(userObject.getDescription()).isEqualTo("description " + getTestNumber());
+        assertThat(userObject.getAssignment()).hasSize(originalAssignmentRows.size());
+    }
+
     @Test
     public void test399DeleteAllAssignments()
             throws ObjectAlreadyExistsException, ObjectNotFoundException, SchemaException {
@@ -3540,6 +3587,59 @@ public class SqaleRepoModifyObjectTest extends SqaleRepoBaseTest {
 
     // endregion
 
+    // region batch modifications
+    @Test
+    public void test820ModifyObjectsInBatchModifiesAllButFailedOnes() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("deltas for an existing and a non-existent user");
+        ObjectDelta<UserType> delta1 = prismContext.deltaFor(UserType.class)
+                .item(FocusType.F_EMAIL_ADDRESS).replace(getTestNumber() + "@email.com")
+                .asObjectDelta(user1Oid);
+        ObjectDelta<UserType> delta2 = prismContext.deltaFor(UserType.class)
+                .item(FocusType.F_EMAIL_ADDRESS).replace(getTestNumber() + "@email.com")
+                .asObjectDelta(TestUtil.NON_EXISTENT_OID);
+
+        when("modifyObjects is called");
+        List<RepoBatchItemResult> itemResults =
+                repositoryService.modifyObjects(List.of(delta2, delta1), null, false, result);
+
+        then("existing user is modified and the failure is reported for the other one");
+        assertThat(itemResults).hasSize(2);
+        assertThat(itemResults.get(0).getException()).isInstanceOf(ObjectNotFoundException.class);
+        assertThat(itemResults.get(1).isSuccess()).isTrue();
+        assertThat(itemResults.get(1).getModifyObjectResult()).isNotNull();
+        assertThatOperationResult(result).isPartialError();
+        MUser row = selectObjectByOid(QUser.class, user1Oid);
+        assertThat(row.emailAddress).isEqualTo(getTestNumber() + "@email.com");
+    }
+
+    @Test
+    public void test821ModifyObjectsInAllOrNothingBatchModifiesNothingOnFailure() {
+        OperationResult result = createOperationResult();
+        MUser originalRow = selectObjectByOid(QUser.class, user1Oid);
+
+        given("deltas for an existing and a non-existent user");
+        ObjectDelta<UserType> delta1 = prismContext.deltaFor(UserType.class)
+                .item(FocusType.F_EMAIL_ADDRESS).replace(getTestNumber() + "@email.com")
+                .asObjectDelta(user1Oid);
+        ObjectDelta<UserType> delta2 = prismContext.deltaFor(UserType.class)
+                .item(FocusType.F_EMAIL_ADDRESS).replace(getTestNumber() + "@email.com")
+                .asObjectDelta(TestUtil.NON_EXISTENT_OID);
+
+        expect("all-or-nothing modifyObjects fails");
+        Assertions.assertThatThrownBy(() ->
+                        repositoryService.modifyObjects(List.of(delta1, delta2), null, true, result))
+                .isInstanceOf(ObjectNotFoundException.class);
+
+        and("operation is fatal error and the existing user is not modified");
+        assertThatOperationResult(result).isFatalError();
+        MUser row = selectObjectByOid(QUser.class, user1Oid);
+        assertThat(row.version).isEqualTo(originalRow.version);
+        assertThat(row.emailAddress).isNotEqualTo(getTestNumber() + "@email.com");
+    }
+    // endregion
+
     // region other tests
     @Test
     public void test900ModificationsMustNotBeNull() {
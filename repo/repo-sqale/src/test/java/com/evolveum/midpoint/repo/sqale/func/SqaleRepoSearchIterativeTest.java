@@ -75,6 +75,7 @@ public class SqaleRepoSearchIterativeTest extends SqaleRepoBaseTest {
     public void resetTestHandler() {
         testHandler.reset();
         repositoryConfiguration.setIterativeSearchByPagingBatchSize(ITERATION_PAGE_SIZE);
+        repositoryConfiguration.setIterativeSearchPrefetchPages(0);
     }
 
     @AfterMethod
@@ -391,6 +392,73 @@ public class SqaleRepoSearchIterativeTest extends SqaleRepoBaseTest {
         assertThat(testHandler.getCounter()).isEqualTo(COUNT_OF_CREATED_USERS - 100);
     }
 
+    @Test
+    public void test140SearchIterativeWithPrefetching() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        given("prefetching of pages is enabled");
+        long totalCount = count(QUser.class);
+        int iterativePageSize = 47;
+        repositoryConfiguration.setIterativeSearchByPagingBatchSize(iterativePageSize);
+        repositoryConfiguration.setIterativeSearchPrefetchPages(2);
+
+        when("calling search iterative with null query");
+        SearchResultMetadata metadata = searchObjectsIterative(null, operationResult);
+
+        then("result metadata is not null and reports the handled objects");
+        assertThatOperationResult(operationResult).isSuccess();
+        assertThat(metadata).isNotNull();
+        assertThat(metadata.getApproxNumberOfAllResults()).isEqualTo(testHandler.getCounter());
+        assertThat(metadata.isPartialResults()).isFalse();
+
+        and("page statistics are provided for each page");
+        assertThat(metadata.getPageStatistics())
+                .hasSize((int) totalCount / iterativePageSize + 1)
+                .allMatch(s -> s.fetchNanos() > 0 && s.handleNanos() > 0 || s.objectCount() == 0);
+        assertThat(metadata.getPageStatistics().stream()
+                .mapToInt(SearchResultMetadata.PageStatistics::objectCount).sum())
+                .isEqualTo(totalCount);
+
+        and("all objects of the specified type were processed in the right order");
+        assertThat(testHandler.getCounter()).isEqualTo(totalCount);
+        QUser u = aliasFor(QUser.class);
+        try (JdbcSession jdbcSession = startReadOnlyTransaction()) {
+            List<String> result = jdbcSession.newQuery()
+                    .from(u)
+                    .orderBy(u.oid.asc())
+                    .select(u.employeeNumber)
+                    .fetch();
+
+            for (int i = 0; i < result.size(); i++) {
+                assertThat(result.get(i)).isEqualTo(getTestNumber() + "-" + i);
+            }
+        }
+    }
+
+    @Test
+    public void test141SearchIterativeWithPrefetchingStoppedByHandler() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        String midOid = "80000000-0000-0000-0000-000000000000";
+        given("prefetching of pages is enabled and condition that breaks iterative search");
+        repositoryConfiguration.setIterativeSearchByPagingBatchSize(10);
+        repositoryConfiguration.setIterativeSearchPrefetchPages(3);
+        testHandler.setStoppingPredicate(u -> u.getOid().compareTo(midOid) >= 0);
+
+        when("calling search iterative with null query");
+        SearchResultMetadata metadata = searchObjectsIterative(null, operationResult);
+
+        then("result metadata is not null and reports partial result (because of the break)");
+        assertThat(metadata).isNotNull();
+        assertThat(metadata.getApproxNumberOfAllResults()).isEqualTo(testHandler.getCounter());
+        assertThat(metadata.isPartialResults()).isTrue();
+
+        and("all objects up to specified UUID were processed");
+        QUser u = aliasFor(QUser.class);
+        assertThat(testHandler.getCounter())
+                .isEqualTo(count(u, u.oid.lt(UUID.fromString(midOid))) + 1);
+    }
+
     @SafeVarargs
     private SearchResultMetadata searchObjectsIterative(
             ObjectQuery query,
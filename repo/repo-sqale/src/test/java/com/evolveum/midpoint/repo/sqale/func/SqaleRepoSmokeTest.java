@@ -144,31 +144,39 @@ public class SqaleRepoSmokeTest extends SqaleRepoBaseTest {
                 .parentOrgRef(orgOid, OrgType.COMPLEX_TYPE);
         repositoryService.addObject(user.asPrismObject(), null, result);
 
+        and("closure rows of the root org are lost");
+        QOrgClosure oc = new QOrgClosure();
+        try (JdbcSession jdbcSession = startTransaction()) {
+            jdbcSession.newDelete(oc)
+                    .where(oc.ancestorOid.eq(UUID.fromString(rootOid)))
+                    .execute();
+            jdbcSession.commit();
+        }
+
         when("testOrgClosureConsistency() is called with rebuild flag");
         repositoryService.testOrgClosureConsistency(true, result);
 
         expect("operation is successful and contains info about closure");
         assertThatOperationResult(result).isSuccess();
         OperationResult subresult = result.getLastSubresult();
-        assertThat(subresult.getReturnSingle("closure-count")).isEqualTo(String.valueOf(baseCount));
-        assertThat(subresult.getReturnSingle("expected-count"))
-                // two equality rows for each org + 1 for parent reference
-                .isEqualTo(String.valueOf(baseCount + 3));
+        // two identity rows for the root and the org + 1 for parent reference, root ones are missing
+        assertThat(subresult.getReturnSingle("closure-count")).isEqualTo(String.valueOf(baseCount + 1));
+        assertThat(subresult.getReturnSingle("expected-count")).isEqualTo(String.valueOf(baseCount + 3));
         assertThat(subresult.getReturnSingle("rebuild-done")).isEqualTo("true");
 
         and("closure is rebuilt");
-        assertThat(count(new QOrgClosure())).isEqualTo(baseCount + 3); // as explained above
+        assertThat(count(oc)).isEqualTo(baseCount + 3); // as explained above
     }
 
     @Test
-    public void test021OrgClosureIsRefreshedBeforeOrgFilterQuery() throws Exception {
+    public void test021OrgClosureIsUpdatedWithParentOrgRefs() throws Exception {
         OperationResult result = createOperationResult();
 
         given("reset closure");
         refreshOrgClosureForce();
         long baseCount = count(new QOrgClosure());
 
-        given("user belonging to org hierarchy");
+        when("user belonging to org hierarchy is added");
         OrgType orgRoot = new OrgType().name("orgRoot" + getTestNumber());
         String rootOid = repositoryService.addObject(orgRoot.asPrismObject(), null, result);
         OrgType org = new OrgType().name("org" + getTestNumber())
@@ -177,21 +185,111 @@ public class SqaleRepoSmokeTest extends SqaleRepoBaseTest {
         UserType user = new UserType().name("user" + getTestNumber())
                 .parentOrgRef(orgOid, OrgType.COMPLEX_TYPE);
         String userOid = repositoryService.addObject(user.asPrismObject(), null, result);
-        assertThat(count(new QOrgClosure())).isEqualTo(baseCount); // not refreshed yet
 
-        when("query with org filter is used");
+        then("closure is updated immediately");
+        assertThat(count(new QOrgClosure())).isEqualTo(baseCount + 3); // see previous test
+
+        and("query with org filter returns proper results");
         SearchResultList<PrismObject<UserType>> users = repositoryService.searchObjects(
                 UserType.class, prismContext.queryFor(UserType.class).isChildOf(rootOid).build(),
                 null, result);
-
-        expect("operation is successful and returns proper results");
         assertThatOperationResult(result).isSuccess();
         assertThat(users).hasSize(1)
                 .extracting(p -> p.asObjectable().getOid())
                 .containsExactlyInAnyOrder(userOid);
 
-        and("closure is rebuilt");
-        assertThat(count(new QOrgClosure())).isEqualTo(baseCount + 3); // see previous test
+        when("parent org reference of the org is removed");
+        repositoryService.modifyObject(OrgType.class, orgOid,
+                prismContext.deltaFor(OrgType.class)
+                        .item(OrgType.F_PARENT_ORG_REF)
+                        .delete(new ObjectReferenceType().oid(rootOid).type(OrgType.COMPLEX_TYPE))
+                        .asItemDeltas(),
+                result);
+
+        then("closure is updated and the user is not under the root anymore");
+        assertThat(count(new QOrgClosure())).isEqualTo(baseCount + 2);
+        assertThat(repositoryService.searchObjects(
+                UserType.class, prismContext.queryFor(UserType.class).isChildOf(rootOid).build(),
+                null, result)).isEmpty();
+
+        when("the org is deleted");
+        repositoryService.deleteObject(OrgType.class, orgOid, result);
+
+        then("its closure rows are removed too");
+        assertThat(count(new QOrgClosure())).isEqualTo(baseCount + 1);
+        assertThatOperationResult(result).isSuccess();
+    }
+
+    @Test
+    public void test022OrgClosureAppliesEdgeIgnoredBecauseOfCycleLater() throws Exception {
+        OperationResult result = createOperationResult();
+
+        given("orgs A => B (A is the parent of B) and X");
+        String aOid = repositoryService.addObject(
+                new OrgType().name("orgA" + getTestNumber()).asPrismObject(), null, result);
+        String bOid = repositoryService.addObject(
+                new OrgType().name("orgB" + getTestNumber())
+                        .parentOrgRef(aOid, OrgType.COMPLEX_TYPE)
+                        .asPrismObject(), null, result);
+        String xOid = repositoryService.addObject(
+                new OrgType().name("orgX" + getTestNumber()).asPrismObject(), null, result);
+
+        when("B => A is added, creating a cycle");
+        modifyParentOrgRef(aOid, bOid, true, result);
+
+        then("the cyclic edge is not applied");
+        assertThat(closurePaths(aOid, bOid)).isEqualTo(1L);
+        assertThat(closurePaths(bOid, aOid)).isNull();
+
+        when("A => B is removed, breaking the cycle");
+        modifyParentOrgRef(bOid, aOid, false, result);
+
+        then("the previously ignored B => A is applied");
+        assertThat(closurePaths(aOid, bOid)).isNull();
+        assertThat(closurePaths(bOid, aOid)).isEqualTo(1L);
+
+        when("B => X => A is added as the second path from B to A");
+        modifyParentOrgRef(xOid, bOid, true, result);
+        modifyParentOrgRef(aOid, xOid, true, result);
+
+        then("both paths are counted");
+        assertThat(closurePaths(bOid, aOid)).isEqualTo(2L);
+
+        when("B => A is removed");
+        modifyParentOrgRef(aOid, bOid, false, result);
+
+        then("B is still an ancestor of A through X");
+        assertThat(closurePaths(bOid, aOid)).isEqualTo(1L);
+        assertThat(closurePaths(bOid, xOid)).isEqualTo(1L);
+        assertThat(closurePaths(xOid, aOid)).isEqualTo(1L);
+
+        and("the closure is consistent with the hierarchy");
+        repositoryService.testOrgClosureConsistency(false, result);
+        assertThatOperationResult(result).isSuccess();
+        OperationResult subresult = result.getLastSubresult();
+        assertThat(subresult.getReturnSingle("closure-count"))
+                .isEqualTo(subresult.getReturnSingle("expected-count"));
+    }
+
+    private void modifyParentOrgRef(String orgOid, String parentOid, boolean add, OperationResult result)
+            throws Exception {
+        ObjectReferenceType ref = new ObjectReferenceType().oid(parentOid).type(OrgType.COMPLEX_TYPE);
+        var itemDelta = prismContext.deltaFor(OrgType.class).item(OrgType.F_PARENT_ORG_REF);
+        repositoryService.modifyObject(OrgType.class, orgOid,
+                (add ? itemDelta.add(ref) : itemDelta.delete(ref)).asItemDeltas(), result);
+    }
+
+    /** Returns number of paths from the ancestor to the descendant in the closure or null if there is no row. */
+    private Long closurePaths(String ancestorOid, String descendantOid) {
+        QOrgClosure oc = new QOrgClosure();
+        try (JdbcSession jdbcSession = startReadOnlyTransaction()) {
+            return jdbcSession.newQuery()
+                    .select(oc.paths)
+                    .from(oc)
+                    .where(oc.ancestorOid.eq(UUID.fromString(ancestorOid))
+                            .and(oc.descendantOid.eq(UUID.fromString(descendantOid))))
+                    .fetchOne();
+        }
     }
 
     @Test
@@ -9,6 +9,7 @@ package com.evolveum.midpoint.repo.sqale.perf;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.security.SecureRandom;
+import java.util.List;
 
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -24,6 +25,7 @@ import com.evolveum.midpoint.util.MiscUtil;
 import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
 import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.MetadataType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectReferenceType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.OrgType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
@@ -87,12 +89,12 @@ public class OrgHierarchyPerfTest extends SqaleRepoBaseTest {
     }
 
     @Test
-    public void test100Xxx() throws Exception {
-        given("there are orgs and users, closure is not yet updated");
+    public void test100SearchUsersUnderOrg() throws Exception {
+        given("there are orgs and users, closure is maintained by the DB");
         OperationResult operationResult = createOperationResult();
         display("Orgs: " + count(QOrg.CLASS));
         display("Users: " + count(QUser.class));
-        assertThat(count(new QOrgClosure())).isZero();
+        assertThat(count(new QOrgClosure())).isPositive();
         OrgType org1x1x1 = searchObjects(OrgType.class,
                 prismContext.queryFor(OrgType.class)
                         .item(ObjectType.F_NAME).eq(PolyString.fromOrig("org1x1x1"))
@@ -106,11 +108,66 @@ public class OrgHierarchyPerfTest extends SqaleRepoBaseTest {
                         .build(),
                 operationResult);
 
-        then("non-empty result is returned and org closure has been initialized");
+        then("non-empty result is returned");
         assertThat(result).isNotEmpty();
-        assertThat(count(new QOrgClosure())).isPositive();
         display("Orgs: " + count(QOrg.CLASS));
         display("Org closure: " + count(new QOrgClosure()));
         display("Users: " + count(QUser.class));
     }
+
+    /**
+     * Compares incremental closure maintenance during org moves with the full closure rebuild,
+     * which was previously executed (lazily) after any change of the org hierarchy.
+     */
+    @Test
+    public void test200OrgChurnIncrementalVersusFullRefresh() throws Exception {
+        OperationResult operationResult = createOperationResult();
+
+        given("non-root orgs with names ending with x1 and the root orgs");
+        List<OrgType> orgs = searchObjects(OrgType.class,
+                prismContext.queryFor(OrgType.class)
+                        .item(ObjectType.F_NAME).startsWith("org")
+                        .and().item(ObjectType.F_NAME).endsWith("x1")
+                        .build(),
+                operationResult);
+        List<OrgType> roots = searchObjects(OrgType.class,
+                prismContext.queryFor(OrgType.class)
+                        .isRoot()
+                        .build(),
+                operationResult);
+        assertThat(orgs).isNotEmpty();
+        assertThat(roots).hasSizeGreaterThan(1);
+
+        when("orgs are moved under random roots");
+        // moved orgs are never roots, so this can't create a cycle
+        int moves = 0;
+        long start = System.nanoTime();
+        for (OrgType org : orgs) {
+            OrgType newParent = roots.get(RANDOM.nextInt(roots.size()));
+            repositoryService.modifyObject(OrgType.class, org.getOid(),
+                    prismContext.deltaFor(OrgType.class)
+                            .item(OrgType.F_PARENT_ORG_REF)
+                            .replace(new ObjectReferenceType().oid(newParent.getOid()).type(OrgType.COMPLEX_TYPE))
+                            .asItemDeltas(),
+                    operationResult);
+            moves++;
+        }
+        long incrementalMs = (System.nanoTime() - start) / 1_000_000;
+
+        and("full closure refresh is executed");
+        start = System.nanoTime();
+        refreshOrgClosureForce();
+        long fullRefreshMs = (System.nanoTime() - start) / 1_000_000;
+
+        then("incremental update per move is cheaper than the full refresh and the closure is consistent");
+        display("Org moves: " + moves + ", incremental total: " + incrementalMs + " ms"
+                + ", per move: " + (moves > 0 ? incrementalMs / (double) moves : 0) + " ms"
+                + ", full refresh: " + fullRefreshMs + " ms"
+                + ", closure size: " + count(new QOrgClosure()));
+        repositoryService.testOrgClosureConsistency(false, operationResult);
+        OperationResult subresult = operationResult.getLastSubresult();
+        assertThat(subresult.getReturnSingle("closure-count"))
+                .isEqualTo(subresult.getReturnSingle("expected-count"));
+        assertThatOperationResult(operationResult).isSuccess();
+    }
 }
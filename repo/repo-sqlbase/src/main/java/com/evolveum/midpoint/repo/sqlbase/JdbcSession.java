@@ -8,6 +8,7 @@ package com.evolveum.midpoint.repo.sqlbase;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.Objects;
@@ -180,6 +181,37 @@ public class JdbcSession implements AutoCloseable {
         }
     }
 
+    /**
+     * Creates a savepoint in the current transaction, so that a part of the transaction can be rolled back
+     * by {@link #rollback(Savepoint)} - e.g. a single failed item of a batch.
+     */
+    public Savepoint setSavepoint() {
+        try {
+            return connection.setSavepoint();
+        } catch (SQLException e) {
+            throw new SystemException("Couldn't set savepoint", e);
+        }
+    }
+
+    /** Rolls back the changes made after the savepoint was set. The transaction itself continues. */
+    public void rollback(Savepoint savepoint) {
+        try {
+            LOGGER.debug("Rolling back to savepoint (session {})", sessionId);
+            connection.rollback(savepoint);
+        } catch (SQLException e) {
+            throw new SystemException("Couldn't rollback to savepoint", e);
+        }
+    }
+
+    /** Releases the savepoint that is no longer needed. */
+    public void releaseSavepoint(Savepoint savepoint) {
+        try {
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            throw new SystemException("Couldn't release savepoint", e);
+        }
+    }
+
     /**
      * This is used for technical statements and throws {@link SystemException}.
      * Don't use this for unsafe concatenated statements with parameters!
@@ -55,6 +55,28 @@ public class SqlQueryExecutor {
             ObjectQuery query,
             Collection<SelectorOptions<GetOperationOptions>> options)
             throws RepositoryException, SchemaException {
+        return list(context, query, options, false);
+    }
+
+    /**
+     * Just like {@link #list(SqlQueryContext, ObjectQuery, Collection)}, but the returned metadata
+     * also contain {@link SearchResultMetadata.PageStatistics} with query and transformation times.
+     * This is used for pages of the iterative search.
+     */
+    public @NotNull <S, Q extends FlexibleRelationalPathBase<R>, R> SearchResultList<S> listPage(
+            @NotNull SqlQueryContext<S, Q, R> context,
+            ObjectQuery query,
+            Collection<SelectorOptions<GetOperationOptions>> options)
+            throws RepositoryException, SchemaException {
+        return list(context, query, options, true);
+    }
+
+    private @NotNull <S, Q extends FlexibleRelationalPathBase<R>, R> SearchResultList<S> list(
+            @NotNull SqlQueryContext<S, Q, R> context,
+            ObjectQuery query,
+            Collection<SelectorOptions<GetOperationOptions>> options,
+            boolean collectPageStatistics)
+            throws RepositoryException, SchemaException {
 
         if (query != null) {
             context.processFilter(query.getFilter());
@@ -66,11 +88,18 @@ public class SqlQueryExecutor {
         PageOf<Tuple> result;
         try (JdbcSession jdbcSession = sqlRepoContext.newJdbcSession().startReadOnlyTransaction()) {
             var opResult = SqlBaseOperationTracker.fetchMultiplePrimaries();
+            long fetchStart = System.nanoTime();
             try (var ignored = SqlBaseOperationTracker.fetchMultiplePrimaries()){
                 result = context.executeQuery(jdbcSession);
             }
+            long parseStart = System.nanoTime();
             PageOf<S> transformedResult = context.transformToSchemaType(result, jdbcSession);
-            return createSearchResultList(transformedResult);
+            SearchResultList<S> searchResultList = createSearchResultList(transformedResult);
+            if (collectPageStatistics) {
+                searchResultList.getMetadata().addPageStatistics(new SearchResultMetadata.PageStatistics(
+                        searchResultList.size(), parseStart - fetchStart, System.nanoTime() - parseStart, 0));
+            }
+            return searchResultList;
         }
     }
 
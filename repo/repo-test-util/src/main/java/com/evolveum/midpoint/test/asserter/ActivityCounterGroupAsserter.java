@@ -44,6 +44,14 @@ public class ActivityCounterGroupAsserter<RA> extends AbstractAsserter<RA> {
         return this;
     }
 
+    /** Checks that no counter values are reserved, i.e. the counters are exact. */
+    public ActivityCounterGroupAsserter<RA> assertNoReservations() {
+        assertThat(information.getCounter())
+                .as("counters with reserved values")
+                .allMatch(c -> c.getReservedUpTo() == null);
+        return this;
+    }
+
 
     @Override
     protected String desc() {
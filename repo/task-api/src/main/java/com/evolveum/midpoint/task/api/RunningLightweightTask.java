@@ -32,7 +32,18 @@ public interface RunningLightweightTask extends RunningTask {
      * Request the start of the execution of this task's handler.
      * The handler is executed asynchronously.
      */
-    void startLightweightHandler();
+    default void startLightweightHandler() {
+        startLightweightHandler(false);
+    }
+
+    /**
+     * Request the start of the execution of this task's handler, optionally on a virtual thread.
+     * The handler is executed asynchronously.
+     *
+     * Virtual threads are suitable for handlers that spend most of the time waiting for I/O.
+     * If the runtime does not support virtual threads, platform thread is used.
+     */
+    void startLightweightHandler(boolean virtualThread);
 
     /**
      * Was the task requested to start? (It may or may not actually started.)
@@ -20,6 +20,8 @@ import org.springframework.stereotype.Component;
 
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.task.api.RunningTask;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
 
 /**
  * Manages lightweight asynchronous tasks.
@@ -31,12 +33,49 @@ public class LightweightTaskManager {
 
     @Autowired private LocalNodeState localNodeState;
 
+    private static final Trace LOGGER = TraceManager.getTrace(LightweightTaskManager.class);
+
     private final ExecutorService lightweightHandlersExecutor = Executors.newCachedThreadPool();
 
-    Future<?> submit(Runnable r) {
+    /**
+     * Executor starting a new virtual thread for each handler; null if not supported by the runtime.
+     * Initialized lazily, see {@link #getVirtualThreadsExecutor()}.
+     */
+    private volatile ExecutorService virtualThreadsExecutor;
+    private volatile boolean virtualThreadsUnsupported;
+
+    Future<?> submit(Runnable r, boolean virtualThread) {
+        if (virtualThread) {
+            ExecutorService executor = getVirtualThreadsExecutor();
+            if (executor != null) {
+                return executor.submit(r);
+            }
+        }
         return lightweightHandlersExecutor.submit(r);
     }
 
+    /**
+     * Virtual threads are available since Java 21, but the code is compiled for an older version,
+     * so the executor is obtained reflectively.
+     */
+    private ExecutorService getVirtualThreadsExecutor() {
+        if (virtualThreadsExecutor == null && !virtualThreadsUnsupported) {
+            synchronized (this) {
+                if (virtualThreadsExecutor == null && !virtualThreadsUnsupported) {
+                    try {
+                        virtualThreadsExecutor = (ExecutorService)
+                                Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                    } catch (ReflectiveOperationException | RuntimeException e) {
+                        LOGGER.warn("Virtual threads are not supported by this Java runtime ({}),"
+                                + " lightweight tasks will use platform threads", e.toString());
+                        virtualThreadsUnsupported = true;
+                    }
+                }
+            }
+        }
+        return virtualThreadsExecutor;
+    }
+
     public void waitForTransientChildrenAndCloseThem(RunningTask task, OperationResult result) {
         for (RunningLightweightTaskImpl subtask : ((RunningTaskQuartzImpl) task).getRunnableOrRunningLightweightAsynchronousSubtasks()) {
             subtask.waitForCompletion(result);
@@ -41,7 +41,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
  *
  * @param <O> options class
  */
-public abstract class AbstractRepositorySearchAction<O extends ExportOptions, R> extends RepositoryAction<O, R> {
+public abstract class AbstractRepositorySearchAction<O extends BaseImportExportOptions, R> extends RepositoryAction<O, R> {
 
     private static final String DOT_CLASS = AbstractRepositorySearchAction.class.getName() + ".";
 
@@ -59,16 +59,26 @@ public abstract class AbstractRepositorySearchAction<O extends ExportOptions, R>
 
     protected abstract Callable<R> createConsumer(BlockingQueue<ObjectType> queue, OperationStatus operation);
 
+    /**
+     * Creates consumers running in parallel. By default, there is only one, see {@link #createConsumer}.
+     * The result of the action is the result of the first consumer.
+     */
+    protected List<Callable<R>> createConsumers(BlockingQueue<ObjectType> queue, OperationStatus operation) {
+        return List.of(createConsumer(queue, operation));
+    }
+
     @Override
     public R execute() throws Exception {
         OperationResult result = new OperationResult(getClass().getName());
         OperationStatus operation = new OperationStatus(context, result);
 
-        // "+ 2" will be used for consumer and progress reporter
-        ExecutorService executor = Executors.newFixedThreadPool(options.getMultiThread() + 2);
-
         BlockingQueue<ObjectType> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY_PER_THREAD * options.getMultiThread());
 
+        List<Callable<R>> consumers = createConsumers(queue, operation);
+
+        // "+ 1" will be used for progress reporter
+        ExecutorService executor = Executors.newFixedThreadPool(options.getMultiThread() + consumers.size() + 1);
+
         List<SearchProducerWorker> producers = createProducers(queue, operation);
 
         operation.start();
@@ -82,8 +92,10 @@ public abstract class AbstractRepositorySearchAction<O extends ExportOptions, R>
 
         executor.execute(new ProgressReporterWorker<>(context, options, queue, operation));
 
-        Callable<R> consumer = createConsumer(queue, operation);
-        Future<R> consumerFuture = executor.submit(consumer);
+        List<Future<R>> consumerFutures = new ArrayList<>();
+        for (Callable<R> consumer : consumers) {
+            consumerFutures.add(executor.submit(consumer));
+        }
 
         // execute rest of the producers
         for (int i = options.getMultiThread(); i < producers.size(); i++) {
@@ -96,7 +108,10 @@ public abstract class AbstractRepositorySearchAction<O extends ExportOptions, R>
             log.error("Executor did not finish before timeout");
         }
 
-        R consumerResult = consumerFuture.get();
+        R consumerResult = consumerFutures.get(0).get();
+        for (Future<R> consumerFuture : consumerFutures.subList(1, consumerFutures.size())) {
+            consumerFuture.get();
+        }
 
         handleResultOnFinish(consumerResult, operation, "Finished " + getOperationName());
 
@@ -105,7 +120,7 @@ public abstract class AbstractRepositorySearchAction<O extends ExportOptions, R>
 
     @Override
     public LogTarget getLogTarget() {
-        if (options.getOutput() != null) {
+        if (options instanceof BasicExportOptions exportOptions && exportOptions.getOutput() != null) {
             return LogTarget.SYSTEM_OUT;
         }
 
@@ -34,6 +34,8 @@ public class ExportOptions extends BaseImportExportOptions implements BasicExpor
     public static final String P_EXCLUDE_ITEMS = "-ei";
     public static final String P_EXCLUDE_ITEMS_LONG = "--exclude-item";
 
+    public static final String P_PARTS_LONG = "--parts";
+
     @Parameter(names = { P_OUTPUT, P_OUTPUT_LONG }, descriptionKey = "export.output")
     private File output;
 
@@ -47,6 +49,9 @@ public class ExportOptions extends BaseImportExportOptions implements BasicExpor
             validateWith = ItemPathConverter.class, converter = ItemPathConverter.class)
     private List<ItemPath> excludeItems = new ArrayList<>();
 
+    @Parameter(names = { P_PARTS_LONG }, descriptionKey = "export.parts")
+    private int parts = 1;
+
     @Override
     public File getOutput() {
         return output;
@@ -83,4 +88,17 @@ public class ExportOptions extends BaseImportExportOptions implements BasicExpor
     public void setExcludeItems(List<ItemPath> excludeItems) {
         this.excludeItems = excludeItems;
     }
+
+    /**
+     * Number of parallel writers, each writing its own compressed part files (one per object type) into the output
+     * directory. Values less than 2 mean the usual export into a single file.
+     */
+    public int getParts() {
+        return parts;
+    }
+
+    public ExportOptions setParts(int parts) {
+        this.parts = parts;
+        return this;
+    }
 }
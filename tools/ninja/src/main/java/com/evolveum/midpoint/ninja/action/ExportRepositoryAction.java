@@ -6,23 +6,92 @@
  */
 package com.evolveum.midpoint.ninja.action;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 
 import com.evolveum.midpoint.ninja.action.worker.ExportConsumerWorker;
+import com.evolveum.midpoint.ninja.action.worker.ExportPartsConsumerWorker;
+import com.evolveum.midpoint.ninja.util.ExportPartsManifest;
 import com.evolveum.midpoint.ninja.util.OperationStatus;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
 /**
  * Ninja action realizing "export" command.
+ *
+ * With `--parts N`, the objects are written by N parallel consumers into compressed part files (one per consumer
+ * and object type) in the output directory, and a manifest describing them is written at the end;
+ * see {@link ExportPartsManifest}. Such export can be imported in parallel by the "import" command.
  */
 public class ExportRepositoryAction extends AbstractRepositorySearchAction<ExportOptions, Void> {
 
+    private final List<ExportPartsConsumerWorker> partsConsumers = new ArrayList<>();
+
     @Override
     public String getOperationName() {
         return "export";
     }
 
+    @Override
+    public Void execute() throws Exception {
+        if (!isExportToParts()) {
+            return super.execute();
+        }
+
+        File directory = options.getOutput();
+        if (directory == null) {
+            log.error("Output directory must be specified for export into parts");
+            return null;
+        }
+        if (directory.exists() && !directory.isDirectory()) {
+            log.error("Output '{}' for export into parts is not a directory", directory.getPath());
+            return null;
+        }
+        if (ExportPartsManifest.exists(directory) && !options.isOverwrite()) {
+            log.error("Directory '{}' already contains an export, use overwrite option to replace it", directory.getPath());
+            return null;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            log.error("Couldn't create output directory '{}'", directory.getPath());
+            return null;
+        }
+
+        super.execute();
+
+        List<ExportPartsManifest.Part> parts = new ArrayList<>();
+        partsConsumers.forEach(c -> parts.addAll(c.getParts()));
+        ExportPartsManifest.write(directory, parts);
+
+        log.info("Written {} part files and manifest into '{}'", parts.size(), directory.getPath());
+
+        return null;
+    }
+
+    private boolean isExportToParts() {
+        return options.getParts() > 1;
+    }
+
+    @Override
+    protected List<Callable<Void>> createConsumers(BlockingQueue<ObjectType> queue, OperationStatus operation) {
+        if (!isExportToParts()) {
+            return super.createConsumers(queue, operation);
+        }
+
+        List<Callable<Void>> consumers = new ArrayList<>();
+        for (int i = 1; i <= options.getParts(); i++) {
+            ExportPartsConsumerWorker consumer = new ExportPartsConsumerWorker(
+                    context, options, queue, operation, partsConsumers, options.getOutput(), i);
+            partsConsumers.add(consumer);
+            consumers.add(() -> {
+                consumer.run();
+                return null;
+            });
+        }
+        return consumers;
+    }
+
     @Override
     protected Callable<Void> createConsumer(BlockingQueue<ObjectType> queue, OperationStatus operation) {
         return () -> {
@@ -6,6 +6,8 @@
  */
 package com.evolveum.midpoint.ninja.action;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
@@ -14,9 +16,9 @@ import com.evolveum.midpoint.ninja.action.worker.ImportProducerWorker;
 import com.evolveum.midpoint.ninja.action.worker.ImportRepositoryConsumerWorker;
 import com.evolveum.midpoint.ninja.action.worker.ProgressReporterWorker;
 import com.evolveum.midpoint.ninja.impl.LogTarget;
+import com.evolveum.midpoint.ninja.util.ExportPartsManifest;
 import com.evolveum.midpoint.ninja.util.NinjaUtils;
 import com.evolveum.midpoint.ninja.util.OperationStatus;
-import com.evolveum.midpoint.prism.query.InOidFilter;
 import com.evolveum.midpoint.prism.query.ObjectFilter;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
@@ -45,29 +47,46 @@ public class ImportRepositoryAction extends RepositoryAction<ImportOptions, Void
 
         BlockingQueue<ObjectType> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY_PER_THREAD * options.getMultiThread());
 
-        // "+ 2" will be used for producer and progress reporter
-        ExecutorService executor = Executors.newFixedThreadPool(options.getMultiThread() + 2);
-
-        ImportProducerWorker<ObjectType> producer;
+        ObjectFilter filter;
+        boolean stopAfterFound;
         if (options.getOid() != null) {
-            InOidFilter filter = context.getPrismContext().queryFactory().createInOid(options.getOid());
-            producer = importByFilter(filter, true, queue, progress);
+            filter = context.getPrismContext().queryFactory().createInOid(options.getOid());
+            stopAfterFound = true;
         } else {
-            ObjectFilter filter = NinjaUtils.createObjectFilter(options.getFilter(), context, ObjectType.class);
-            producer = importByFilter(filter, false, queue, progress);
+            filter = NinjaUtils.createObjectFilter(options.getFilter(), context, ObjectType.class);
+            stopAfterFound = false;
         }
 
-        executor.execute(producer);
+        List<ImportProducerWorker<ObjectType>> producers;
+        File input = options.getInput();
+        if (input != null && input.isDirectory() && ExportPartsManifest.exists(input)) {
+            producers = createPartProducers(input, filter, stopAfterFound, queue, progress);
+            if (producers.isEmpty()) {
+                log.warn("There are no part files in the manifest in '{}', nothing to import", input.getPath());
+                return null;
+            }
+        } else {
+            producers = List.of(importByFilter(filter, stopAfterFound, queue, progress));
+        }
+
+        // Parts are read by as many producers in parallel as there are consumer threads
+        ExecutorService producerExecutor = Executors.newFixedThreadPool(Math.min(producers.size(), options.getMultiThread()));
+        producers.forEach(producerExecutor::execute);
+        producerExecutor.shutdown();
 
         Thread.sleep(CONSUMERS_WAIT_FOR_START);
 
+        // "+ 1" will be used for progress reporter
+        ExecutorService executor = Executors.newFixedThreadPool(options.getMultiThread() + 1);
+
         executor.execute(new ProgressReporterWorker<>(context, options, queue, progress));
 
         List<ImportRepositoryConsumerWorker> consumers = createConsumers(queue, progress);
         consumers.forEach(c -> executor.execute(c));
 
         executor.shutdown();
-        boolean awaitResult = executor.awaitTermination(NinjaUtils.WAIT_FOR_EXECUTOR_FINISH, TimeUnit.DAYS);
+        boolean awaitResult = producerExecutor.awaitTermination(NinjaUtils.WAIT_FOR_EXECUTOR_FINISH, TimeUnit.DAYS)
+                && executor.awaitTermination(NinjaUtils.WAIT_FOR_EXECUTOR_FINISH, TimeUnit.DAYS);
         if (!awaitResult) {
             log.error("Executor did not finish before timeout");
         }
@@ -91,6 +110,20 @@ public class ImportRepositoryAction extends RepositoryAction<ImportOptions, Void
         return new ImportProducerWorker<>(context, options, queue, status, filter, stopAfterFound, options.isContinueOnInputError());
     }
 
+    /** Creates a producer for each part file of an export created with `--parts`, see {@link ExportPartsManifest}. */
+    private List<ImportProducerWorker<ObjectType>> createPartProducers(File directory, ObjectFilter filter,
+            boolean stopAfterFound, BlockingQueue<ObjectType> queue, OperationStatus status) throws IOException {
+        List<ExportPartsManifest.Part> parts = ExportPartsManifest.read(directory);
+        log.info("Importing {} part files from '{}'", parts.size(), directory.getPath());
+
+        List<ImportProducerWorker<ObjectType>> producers = new ArrayList<>();
+        for (ExportPartsManifest.Part part : parts) {
+            producers.add(new ImportProducerWorker<>(context, options, queue, status, producers,
+                    new File(directory, part.fileName()), filter, stopAfterFound, options.isContinueOnInputError()));
+        }
+        return producers;
+    }
+
     private List<ImportRepositoryConsumerWorker> createConsumers(
             BlockingQueue<ObjectType> queue, OperationStatus operation) {
         List<ImportRepositoryConsumerWorker> consumers = new ArrayList<>();
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.ninja.action;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+/**
+ * Options for "migrate-full-objects" command.
+ * Search options (type, filter, OID) and multi-threading are inherited; there are no output options, as nothing is written.
+ */
+@Parameters(resourceBundle = "messages", commandDescriptionKey = "migrateFullObjects")
+public class MigrateFullObjectsOptions extends BaseImportExportOptions {
+
+    public static final String P_PLAIN_LONG = "--plain";
+
+    @Parameter(names = { P_PLAIN_LONG }, descriptionKey = "migrateFullObjects.plain")
+    private boolean plain;
+
+    public boolean isPlain() {
+        return plain;
+    }
+
+    public MigrateFullObjectsOptions setPlain(boolean plain) {
+        this.plain = plain;
+        return this;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.ninja.action;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+
+import com.evolveum.midpoint.ninja.action.worker.MigrateFullObjectsConsumerWorker;
+import com.evolveum.midpoint.ninja.util.OperationStatus;
+import com.evolveum.midpoint.repo.sqale.SqaleRepositoryConfiguration;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Ninja action realizing "migrate-full-objects" command.
+ *
+ * Rewrites serialized form (fullObject) of the objects in the native repository to the compact
+ * format (or back to the plain format with `--plain`).
+ * Objects are reindexed which also writes fullObject in the format set for the repository configuration
+ * by this action, regardless of `fullObjectCompact` in the configuration file.
+ */
+public class MigrateFullObjectsRepositoryAction extends AbstractRepositorySearchAction<MigrateFullObjectsOptions, Void> {
+
+    @Override
+    public String getOperationName() {
+        return "migrate full objects";
+    }
+
+    @Override
+    public Void execute() throws Exception {
+        SqaleRepositoryConfiguration configuration = context.getApplicationContext()
+                .getBeanProvider(SqaleRepositoryConfiguration.class)
+                .getIfAvailable();
+        if (configuration == null) {
+            log.error("Migration of full objects is supported only for native repository");
+            return null;
+        }
+
+        configuration.setFullObjectCompact(!options.isPlain());
+        log.info("Full objects will be written in {} format", options.isPlain() ? "plain" : "compact");
+
+        return super.execute();
+    }
+
+    @Override
+    protected Callable<Void> createConsumer(BlockingQueue<ObjectType> queue, OperationStatus operation) {
+        return () -> {
+            new MigrateFullObjectsConsumerWorker(context, options, queue, operation).run();
+            return null;
+        };
+    }
+}
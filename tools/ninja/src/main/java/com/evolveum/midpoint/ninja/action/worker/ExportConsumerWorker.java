@@ -66,7 +66,7 @@ public class ExportConsumerWorker extends AbstractWriterConsumerWorker<ExportOpt
         return options.getExcludeItems();
     }
 
-    private static void removeItemPathsIfPresent(
+    static void removeItemPathsIfPresent(
             @NotNull List<ItemPath> itemsToSkip,
             PrismObject<? extends ObjectType> prismObject) throws SchemaException {
         if (!itemsToSkip.isEmpty()) {
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.ninja.action.worker;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+
+import com.evolveum.midpoint.ninja.action.ExportOptions;
+import com.evolveum.midpoint.ninja.impl.Log;
+import com.evolveum.midpoint.ninja.impl.NinjaContext;
+import com.evolveum.midpoint.ninja.util.ExportPartsManifest;
+import com.evolveum.midpoint.ninja.util.NinjaUtils;
+import com.evolveum.midpoint.ninja.util.OperationStatus;
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.prism.PrismSerializer;
+import com.evolveum.midpoint.prism.SerializationOptions;
+import com.evolveum.midpoint.schema.constants.ObjectTypes;
+import com.evolveum.midpoint.util.exception.SchemaException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Consumer writing the objects into compressed part files in the output directory, one file per object type.
+ * Several of these workers run in parallel (see {@link ExportOptions#getParts()}), each with its own serializer and files,
+ * so the serialization and compression is not bound to a single thread.
+ */
+public class ExportPartsConsumerWorker extends BaseWorker<ExportOptions, ObjectType> {
+
+    private final File directory;
+    private final int partIndex;
+
+    /** Writers of the part files, indexed by object type. */
+    private final Map<String, PartWriter> writers = new LinkedHashMap<>();
+
+    private PrismSerializer<String> serializer;
+
+    public ExportPartsConsumerWorker(NinjaContext context, ExportOptions options, BlockingQueue<ObjectType> queue,
+            OperationStatus operation, List<ExportPartsConsumerWorker> workers, File directory, int partIndex) {
+        super(context, options, queue, operation, workers);
+
+        this.directory = directory;
+        this.partIndex = partIndex;
+    }
+
+    @Override
+    public void run() {
+        Log log = context.getLog();
+
+        try {
+            serializer = context.getPrismContext()
+                    .xmlSerializer()
+                    .options(SerializationOptions.createSerializeForExport().skipContainerIds(options.isSkipContainerIds()));
+
+            while (!shouldConsumerStop()) {
+                ObjectType object = null;
+                try {
+                    object = queue.poll(CONSUMER_POLL_TIMEOUT, TimeUnit.SECONDS);
+                    if (object == null) {
+                        continue;
+                    }
+
+                    write(object);
+
+                    operation.incrementTotal();
+                } catch (Exception ex) {
+                    log.error("Couldn't store object {}, reason: {}", ex, object, ex.getMessage());
+                    operation.incrementError();
+                }
+            }
+
+            for (PartWriter writer : writers.values()) {
+                writer.finish();
+            }
+        } catch (IOException ex) {
+            log.error("Unexpected exception, reason: {}", ex, ex.getMessage());
+
+            operation.finish();
+        } finally {
+            writers.values().forEach(w -> IOUtils.closeQuietly(w.writer));
+
+            markDone();
+
+            if (isWorkersDone()) {
+                operation.finish();
+            }
+        }
+    }
+
+    private void write(ObjectType object) throws SchemaException, IOException {
+        PrismObject<? extends ObjectType> prismObject = object.asPrismObject();
+
+        ExportConsumerWorker.removeItemPathsIfPresent(options.getExcludeItems(), prismObject);
+
+        String xml = serializer.serialize(prismObject);
+
+        String type = ObjectTypes.getObjectType(object.getClass()).getRestType();
+        PartWriter writer = writers.get(type);
+        if (writer == null) {
+            writer = new PartWriter(ExportPartsManifest.createPartFileName(type, partIndex), type);
+            writers.put(type, writer);
+        }
+        writer.write(xml);
+    }
+
+    /** Describes the part files written by this worker. Call only after the worker is done. */
+    public List<ExportPartsManifest.Part> getParts() {
+        List<ExportPartsManifest.Part> parts = new ArrayList<>();
+        writers.values().forEach(w -> parts.add(new ExportPartsManifest.Part(w.fileName, w.type, w.objects)));
+        return parts;
+    }
+
+    private class PartWriter {
+
+        private final String fileName;
+        private final String type;
+        private final Writer writer;
+        private long objects;
+
+        private PartWriter(String fileName, String type) throws IOException {
+            this.fileName = fileName;
+            this.type = type;
+
+            File file = new File(directory, fileName);
+            if (!options.isOverwrite() && file.exists()) {
+                throw new IOException("Export file '" + file.getPath() + "' already exists");
+            }
+            this.writer = new BufferedWriter(
+                    new OutputStreamWriter(ExportPartsManifest.openPartOutputStream(file), context.getCharset()));
+            writer.write(NinjaUtils.XML_OBJECTS_PREFIX);
+        }
+
+        private void write(String xml) throws IOException {
+            writer.write(xml);
+            objects++;
+        }
+
+        private void finish() throws IOException {
+            writer.write(NinjaUtils.XML_OBJECTS_SUFFIX);
+            writer.flush();
+        }
+    }
+}
@@ -9,6 +9,7 @@ package com.evolveum.midpoint.ninja.action.worker;
 import java.io.*;
 import java.nio.charset.Charset;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -27,6 +28,7 @@ import com.evolveum.midpoint.ninja.action.BasicImportOptions;
 import com.evolveum.midpoint.ninja.impl.Log;
 import com.evolveum.midpoint.ninja.impl.NinjaContext;
 import com.evolveum.midpoint.ninja.impl.NinjaException;
+import com.evolveum.midpoint.ninja.util.ExportPartsManifest;
 import com.evolveum.midpoint.ninja.util.OperationStatus;
 import com.evolveum.midpoint.prism.Containerable;
 import com.evolveum.midpoint.prism.PrismContext;
@@ -42,6 +44,10 @@ import com.evolveum.midpoint.schema.result.OperationResult;
 public class ImportProducerWorker<T extends Containerable>
         extends BaseWorker<BasicImportOptions, T> {
 
+    private final File input;
+
+    /** Whether the input is a part file of an export (see {@link ExportPartsManifest}), i.e. gzip-compressed XML. */
+    private final boolean exportPart;
     private final ObjectFilter filter;
     private final boolean stopAfterFound;
     private final boolean continueOnInputError;
@@ -53,8 +59,31 @@ public class ImportProducerWorker<T extends Containerable>
     public ImportProducerWorker(
             NinjaContext context, BasicImportOptions options, BlockingQueue<T> queue,
             OperationStatus operation, ObjectFilter filter, boolean stopAfterFound, boolean continueOnInputError) {
-        super(context, options, queue, operation);
+        this(context, options, queue, operation, null, options.getInput(), false,
+                filter, stopAfterFound, continueOnInputError);
+    }
+
+    /**
+     * Producer reading a part file of an export, running in parallel with producers of other parts.
+     * The operation is started by the first producer (if not started before), and the producers are finished
+     * when the last one is done.
+     */
+    public ImportProducerWorker(
+            NinjaContext context, BasicImportOptions options, BlockingQueue<T> queue, OperationStatus operation,
+            List<ImportProducerWorker<T>> producers, File exportPart,
+            ObjectFilter filter, boolean stopAfterFound, boolean continueOnInputError) {
+        this(context, options, queue, operation, producers, exportPart, true,
+                filter, stopAfterFound, continueOnInputError);
+    }
+
+    private ImportProducerWorker(
+            NinjaContext context, BasicImportOptions options, BlockingQueue<T> queue, OperationStatus operation,
+            List<ImportProducerWorker<T>> producers, File input, boolean exportPart,
+            ObjectFilter filter, boolean stopAfterFound, boolean continueOnInputError) {
+        super(context, options, queue, operation, producers);
 
+        this.input = input;
+        this.exportPart = exportPart;
         this.filter = filter;
         this.stopAfterFound = stopAfterFound;
         this.continueOnInputError = continueOnInputError;
@@ -62,9 +91,13 @@ public class ImportProducerWorker<T extends Containerable>
 
     @Override
     public void run() {
-        operation.start();
+        synchronized (operation) {
+            if (operation.getState() == OperationStatus.State.NOT_STARTED) {
+                operation.start();
+            }
+        }
 
-        File inputFile = options.getInput();
+        File inputFile = input;
         try {
             if (!inputFile.exists()) {
                 context.getLog().error("Input file '{}' doesn't exist", inputFile.getPath());
@@ -76,8 +109,8 @@ public class ImportProducerWorker<T extends Containerable>
         } finally {
             markDone();
 
-            if (isWorkersDone()) {
-                if (!operation.isFinished()) {
+            synchronized (operation) {
+                if (isWorkersDone() && operation.isStarted()) {
                     operation.producerFinish();
                 }
             }
@@ -88,7 +121,7 @@ public class ImportProducerWorker<T extends Containerable>
         Log log = context.getLog();
 
         try (InputStream input = openInputStream(inputFile)) {
-            if (!options.isZip()) {
+            if (exportPart || !options.isZip()) {
                 processStream(input);
             } else {
                 ZipInputStream zis = new ZipInputStream(input);
@@ -132,7 +165,7 @@ public class ImportProducerWorker<T extends Containerable>
                 throw new NinjaException("Import file '" + input.getPath() + "' doesn't exist");
             }
 
-            is = new FileInputStream(input);
+            is = exportPart ? ExportPartsManifest.openPartInputStream(input) : new FileInputStream(input);
         } else {
             is = System.in;
         }
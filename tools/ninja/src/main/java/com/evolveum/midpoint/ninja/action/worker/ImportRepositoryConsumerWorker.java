@@ -6,12 +6,11 @@
  */
 package com.evolveum.midpoint.ninja.action.worker;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
-import com.evolveum.midpoint.ninja.util.NinjaUtils;
-
 import org.springframework.context.ApplicationContext;
 
 import com.evolveum.midpoint.common.crypto.CryptoUtil;
@@ -23,9 +22,18 @@ import com.evolveum.midpoint.prism.crypto.Protector;
 import com.evolveum.midpoint.repo.api.RepoAddOptions;
 import com.evolveum.midpoint.repo.api.RepositoryService;
 import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.util.exception.ObjectAlreadyExistsException;
+import com.evolveum.midpoint.util.exception.SchemaException;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 
 /**
+ * Adds the objects from the queue to the repository.
+ *
+ * If batch size is greater than one (and the repository supports it), the objects are added in batches,
+ * each in a single transaction, see {@link RepositoryService#addObjects} in the all-or-nothing mode.
+ * If the batch can't be added (e.g. because some of the objects already exist), its objects are added one by one,
+ * so the errors are reported for individual objects as usual.
+ *
  * Created by Viliam Repan (lazyman).
  */
 public class ImportRepositoryConsumerWorker extends BaseWorker<ImportOptions, ObjectType> {
@@ -41,23 +49,28 @@ public class ImportRepositoryConsumerWorker extends BaseWorker<ImportOptions, Ob
         ApplicationContext ctx = context.getApplicationContext();
         Protector protector = ctx.getBean(Protector.class);
 
+        RepositoryService repository = context.getRepository();
+        RepoAddOptions opts = createRepoAddOptions(options);
+
+        boolean batched = isBatched(repository, opts);
+        List<PrismObject<? extends ObjectType>> batch = new ArrayList<>();
+
         try {
             while (!shouldConsumerStop()) {
                 ObjectType object = null;
                 try {
                     object = queue.poll(CONSUMER_POLL_TIMEOUT, TimeUnit.SECONDS);
                     if (object == null) {
+                        // Nothing more is coming for now, so we do not keep the objects waiting.
+                        addBatch(repository, batch, opts);
                         continue;
                     }
                     PrismObject<? extends ObjectType> prismObject = object.asPrismObject();
 
-                    RepoAddOptions opts = createRepoAddOptions(options);
-
                     if (!opts.isAllowUnencryptedValues()) {
                         CryptoUtil.encryptValues(protector, prismObject);
                     }
 
-                    RepositoryService repository = context.getRepository();
                     Class<? extends ObjectType> type = prismObject.getCompileTimeClass();
                     if (!repository.supports(type)) {
                         context.getLog().warn("Repository doesn't support import operation for objects of type '{}' ({}, {})",
@@ -67,14 +80,21 @@ public class ImportRepositoryConsumerWorker extends BaseWorker<ImportOptions, Ob
                         continue;
                     }
 
-                    repository.addObject(prismObject, opts, new OperationResult("Import object"));
-
-                    operation.incrementTotal();
+                    if (batched) {
+                        batch.add(prismObject);
+                        if (batch.size() >= options.getBatchSize()) {
+                            addBatch(repository, batch, opts);
+                        }
+                    } else {
+                        addObject(repository, prismObject, opts);
+                    }
                 } catch (Exception ex) {
                     context.getLog().error("Couldn't add object {}, reason: {}", ex, object, ex.getMessage());
                     operation.incrementError();
                 }
             }
+
+            addBatch(repository, batch, opts);
         } catch (Exception ex) {
             operation.finish();
 
@@ -88,6 +108,59 @@ public class ImportRepositoryConsumerWorker extends BaseWorker<ImportOptions, Ob
         }
     }
 
+    /** Returns false if the objects are to be added one by one. */
+    private boolean isBatched(RepositoryService repository, RepoAddOptions opts) {
+        if (options.getBatchSize() <= 1) {
+            return false;
+        }
+
+        if (!repository.supportsAllOrNothingBatches()) {
+            context.getLog().warn("Batch import is not supported by the repository, objects will be imported one by one");
+            return false;
+        }
+
+        if (opts.isOverwrite()) {
+            context.getLog().warn("Batch import is not supported with overwrite, objects will be imported one by one");
+            return false;
+        }
+
+        return true;
+    }
+
+    private void addBatch(
+            RepositoryService repository, List<PrismObject<? extends ObjectType>> batch, RepoAddOptions opts) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            repository.addObjects(batch, opts, true, new OperationResult("Import objects"));
+
+            operation.incrementTotal(batch.size());
+        } catch (Exception ex) {
+            context.getLog().debug("Couldn't add batch of {} objects, adding them one by one, reason: {}",
+                    batch.size(), ex.getMessage());
+
+            for (PrismObject<? extends ObjectType> object : batch) {
+                try {
+                    addObject(repository, object, opts);
+                } catch (Exception e) {
+                    context.getLog().error("Couldn't add object {}, reason: {}", e, object, e.getMessage());
+                    operation.incrementError();
+                }
+            }
+        }
+
+        batch.clear();
+    }
+
+    private void addObject(RepositoryService repository, PrismObject<? extends ObjectType> object, RepoAddOptions opts)
+            throws ObjectAlreadyExistsException, SchemaException {
+        repository.addObject(object, opts, new OperationResult("Import object"));
+
+        operation.incrementTotal();
+    }
+
     private RepoAddOptions createRepoAddOptions(ImportOptions options) {
         RepoAddOptions opts = new RepoAddOptions();
         opts.setOverwrite(options.isOverwrite());
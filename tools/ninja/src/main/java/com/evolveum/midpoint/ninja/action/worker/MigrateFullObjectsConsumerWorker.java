@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.ninja.action.worker;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.evolveum.midpoint.ninja.action.MigrateFullObjectsOptions;
+import com.evolveum.midpoint.ninja.impl.Log;
+import com.evolveum.midpoint.ninja.impl.NinjaContext;
+import com.evolveum.midpoint.ninja.util.OperationStatus;
+import com.evolveum.midpoint.repo.api.RepoModifyOptions;
+import com.evolveum.midpoint.repo.api.RepositoryService;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
+
+/**
+ * Consumer rewriting serialized form of the objects from the queue by reindexing them.
+ */
+public class MigrateFullObjectsConsumerWorker extends BaseWorker<MigrateFullObjectsOptions, ObjectType> {
+
+    private static final String OPERATION_MIGRATE_FULL_OBJECT =
+            MigrateFullObjectsConsumerWorker.class.getName() + ".migrateFullObject";
+
+    public MigrateFullObjectsConsumerWorker(NinjaContext context, MigrateFullObjectsOptions options,
+            BlockingQueue<ObjectType> queue, OperationStatus operation) {
+        super(context, options, queue, operation);
+    }
+
+    @Override
+    public void run() {
+        Log log = context.getLog();
+        RepositoryService repository = context.getRepository();
+
+        try {
+            while (!shouldConsumerStop()) {
+                ObjectType object = null;
+                try {
+                    object = queue.poll(CONSUMER_POLL_TIMEOUT, TimeUnit.SECONDS);
+                    if (object == null) {
+                        continue;
+                    }
+
+                    OperationResult result = new OperationResult(OPERATION_MIGRATE_FULL_OBJECT);
+                    repository.modifyObject(object.getClass(), object.getOid(), List.of(),
+                            RepoModifyOptions.createForceReindex(), result);
+
+                    operation.incrementTotal();
+                } catch (Exception ex) {
+                    log.error("Couldn't migrate object {}, reason: {}", ex, object, ex.getMessage());
+                    operation.incrementError();
+                }
+            }
+        } finally {
+            markDone();
+
+            if (isWorkersDone()) {
+                operation.finish();
+            }
+        }
+    }
+}
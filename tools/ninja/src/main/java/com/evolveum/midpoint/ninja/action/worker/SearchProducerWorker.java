@@ -9,7 +9,7 @@ package com.evolveum.midpoint.ninja.action.worker;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 
-import com.evolveum.midpoint.ninja.action.ExportOptions;
+import com.evolveum.midpoint.ninja.action.BaseImportExportOptions;
 import com.evolveum.midpoint.ninja.impl.NinjaContext;
 import com.evolveum.midpoint.ninja.impl.NinjaException;
 import com.evolveum.midpoint.ninja.impl.Log;
@@ -28,13 +28,13 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
  *
  * Created by Viliam Repan (lazyman).
  */
-public class SearchProducerWorker extends BaseWorker<ExportOptions, ObjectType> {
+public class SearchProducerWorker extends BaseWorker<BaseImportExportOptions, ObjectType> {
 
     private final ObjectTypes type;
     private final ObjectQuery query;
 
     public SearchProducerWorker(
-            NinjaContext context, ExportOptions options, BlockingQueue<ObjectType> queue,
+            NinjaContext context, BaseImportExportOptions options, BlockingQueue<ObjectType> queue,
             OperationStatus operation, List<SearchProducerWorker> producers, ObjectTypes type, ObjectQuery query) {
         super(context, options, queue, operation, producers);
 
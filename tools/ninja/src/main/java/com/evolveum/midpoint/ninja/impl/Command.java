@@ -34,6 +34,8 @@ public enum Command {
 
     VERIFY("verify", VerifyOptions.class, VerifyAction.class),
 
+    MIGRATE_FULL_OBJECTS("migrate-full-objects", MigrateFullObjectsOptions.class, MigrateFullObjectsRepositoryAction.class),
+
     KEYS("keys", ListKeysOptions.class, ListKeysRepositoryAction.class),
 
     INFO("info", InfoOptions.class, InfoRepositoryAction.class),
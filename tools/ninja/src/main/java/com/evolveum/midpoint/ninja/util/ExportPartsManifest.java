@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.ninja.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.evolveum.midpoint.ninja.impl.NinjaException;
+
+/**
+ * Manifest of an export split into compressed part files (see `export --parts`).
+ *
+ * It is a simple text file in the export directory, with one line per part file: file name, object type and the number
+ * of objects, separated by tabs. Lines starting with `#` are comments.
+ */
+public class ExportPartsManifest {
+
+    public static final String FILE_NAME = "manifest.txt";
+
+    public static final String PART_FILE_SUFFIX = ".xml.gz";
+
+    private static final String HEADER = "# midPoint export parts\n# file\ttype\tobjects\n";
+
+    public record Part(@NotNull String fileName, @NotNull String type, long objects) {
+    }
+
+    private ExportPartsManifest() {
+    }
+
+    public static boolean exists(@NotNull File directory) {
+        return new File(directory, FILE_NAME).isFile();
+    }
+
+    public static @NotNull String createPartFileName(@NotNull String type, int partIndex) {
+        return String.format("%s-%03d%s", type, partIndex, PART_FILE_SUFFIX);
+    }
+
+    public static void write(@NotNull File directory, @NotNull List<Part> parts) throws IOException {
+        List<Part> sorted = new ArrayList<>(parts);
+        sorted.sort(Comparator.comparing(Part::fileName));
+
+        StringBuilder sb = new StringBuilder(HEADER);
+        for (Part part : sorted) {
+            sb.append(part.fileName()).append('\t')
+                    .append(part.type()).append('\t')
+                    .append(part.objects()).append('\n');
+        }
+        Files.writeString(new File(directory, FILE_NAME).toPath(), sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    public static @NotNull List<Part> read(@NotNull File directory) throws IOException {
+        List<Part> parts = new ArrayList<>();
+        for (String line : Files.readAllLines(new File(directory, FILE_NAME).toPath(), StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] columns = line.split("\t");
+            if (columns.length != 3) {
+                throw new NinjaException("Invalid line in export manifest in '" + directory.getPath() + "': " + line);
+            }
+            parts.add(new Part(columns[0], columns[1], Long.parseLong(columns[2])));
+        }
+        return parts;
+    }
+
+    public static @NotNull OutputStream openPartOutputStream(@NotNull File file) throws IOException {
+        return new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    }
+
+    public static @NotNull InputStream openPartInputStream(@NotNull File file) throws IOException {
+        InputStream is = new BufferedInputStream(new FileInputStream(file));
+        return file.getName().endsWith(".gz") ? new GZIPInputStream(is) : is;
+    }
+}
@@ -36,6 +36,7 @@ public class OperationStatus {
     private long finishTime;
 
     private int lastPrintoutCount;
+    private long lastPrintoutTime;
 
     private final OperationResult result;
 
@@ -114,6 +115,10 @@ public class OperationStatus {
         totalCount.incrementAndGet();
     }
 
+    public void incrementTotal(int count) {
+        totalCount.addAndGet(count);
+    }
+
     public void incrementError() {
         errorCount.incrementAndGet();
     }
@@ -138,6 +143,20 @@ public class OperationStatus {
         return totalCount.get() / span;
     }
 
+    /**
+     * Returns the throughput since the last printout (or since the start), i.e. the current one, as opposed
+     * to the average one which changes slowly during long operations.
+     */
+    public double getCurrentRequestPerSecond() {
+        long since = lastPrintoutTime != 0 ? lastPrintoutTime : startTime;
+        double span = (System.currentTimeMillis() - since) / 1000d;
+        if (span <= 0) {
+            return 0d;
+        }
+
+        return (totalCount.get() - lastPrintoutCount) / span;
+    }
+
     public String print() {
         return "Processed: "
                 + totalCount.get()
@@ -151,15 +170,20 @@ public class OperationStatus {
     }
 
     public void print(Log log) {
+        String message = print();
+        if (state != State.FINISHED) {
+            message += ", current: " + NinjaUtils.DECIMAL_FORMAT.format(getCurrentRequestPerSecond()) + "obj/s";
+        }
         log.info(
                 ConsoleFormat.rewriteConsoleLine(
-                        ConsoleFormat.formatLogMessage(LogLevel.INFO, print())));
+                        ConsoleFormat.formatLogMessage(LogLevel.INFO, message)));
 
         lastPrintoutNow();
     }
 
     public void lastPrintoutNow() {
-        this.lastPrintoutCount = totalCount.get() - lastPrintoutCount;
+        this.lastPrintoutCount = totalCount.get();
+        this.lastPrintoutTime = System.currentTimeMillis();
     }
 
     private void debug(String message) {
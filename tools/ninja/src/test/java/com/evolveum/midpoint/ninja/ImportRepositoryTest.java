@@ -7,6 +7,9 @@
 package com.evolveum.midpoint.ninja;
 
 import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.assertj.core.api.Assertions;
 import org.springframework.test.annotation.DirtiesContext;
@@ -16,12 +19,15 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Listeners;
 import org.testng.annotations.Test;
 
+import com.evolveum.midpoint.ninja.util.ExportPartsManifest;
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.schema.RepositoryDiag;
 import com.evolveum.midpoint.schema.result.OperationResult;
 import com.evolveum.midpoint.util.exception.ObjectNotFoundException;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.ObjectType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.OrgType;
 import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
 
 /**
  * Created by Viliam Repan (lazyman).
@@ -168,4 +174,90 @@ public class ImportRepositoryTest extends NinjaSpringTest {
         role = repository.getObject(RoleType.class, ROLE_2_OID, null, result);
         Assertions.assertThat(role).isNotNull();
     }
+
+    @Test
+    public void test150ImportInBatches() throws Exception {
+        given();
+
+        OperationResult result = new OperationResult("test150ImportInBatches");
+
+        int orgCount = repository.countObjects(OrgType.class, null, null, result);
+        Assertions.assertThat(orgCount).isEqualTo(2);
+        int userCount = repository.countObjects(UserType.class, null, null, result);
+
+        when("all objects are imported in batches, some of them already existing");
+
+        executeTest(null, null,
+                "-m", getMidpointHome(), "import", "-i", PATH_MONKEY_ISLAND_SIMPLE_ZIP, "-z", "--batch-size", "5");
+
+        then("batches with the existing objects are imported one by one, and all the other objects are added");
+
+        orgCount = repository.countObjects(OrgType.class, null, null, result);
+        Assertions.assertThat(orgCount).isEqualTo(9);
+        Assertions.assertThat(repository.countObjects(UserType.class, null, null, result))
+                .isEqualTo(userCount + 8);
+    }
+
+    @Test
+    public void test160ExportAndImportParts() throws Exception {
+        given();
+
+        OperationResult result = new OperationResult("test160ExportAndImportParts");
+
+        int orgCount = repository.countObjects(OrgType.class, null, null, result);
+        int userCount = repository.countObjects(UserType.class, null, null, result);
+        File directory = new File("./target/export-parts");
+
+        when("objects are exported into parts");
+
+        executeTest(null, null,
+                "-m", getMidpointHome(), "export", "-t", "org", "-t", "user", "-o", directory.getPath(),
+                "--parts", "2", "-O", "-l", "2");
+
+        then("there is a manifest describing all the objects");
+
+        List<ExportPartsManifest.Part> parts = ExportPartsManifest.read(directory);
+        Assertions.assertThat(parts).isNotEmpty();
+        Assertions.assertThat(parts.stream().mapToLong(ExportPartsManifest.Part::objects).sum())
+                .isEqualTo(orgCount + userCount);
+        for (ExportPartsManifest.Part part : parts) {
+            Assertions.assertThat(new File(directory, part.fileName())).isFile();
+        }
+
+        given("the exported objects are deleted");
+
+        Set<String> exportedOids = new HashSet<>();
+        exportedOids.addAll(deleteAllObjects(OrgType.class, result));
+        exportedOids.addAll(deleteAllObjects(UserType.class, result));
+        Assertions.assertThat(repository.countObjects(OrgType.class, null, null, result)).isZero();
+        Assertions.assertThat(repository.countObjects(UserType.class, null, null, result)).isZero();
+
+        when("the parts are imported back");
+
+        executeTest(null, null,
+                "-m", getMidpointHome(), "import", "-i", directory.getPath(), "-l", "2");
+
+        then("all the objects are imported");
+
+        Assertions.assertThat(repository.countObjects(OrgType.class, null, null, result)).isEqualTo(orgCount);
+        Assertions.assertThat(repository.countObjects(UserType.class, null, null, result)).isEqualTo(userCount);
+        Set<String> importedOids = new HashSet<>();
+        importedOids.addAll(getAllOids(OrgType.class, result));
+        importedOids.addAll(getAllOids(UserType.class, result));
+        Assertions.assertThat(importedOids).isEqualTo(exportedOids);
+    }
+
+    private <O extends ObjectType> List<String> deleteAllObjects(Class<O> type, OperationResult result) throws Exception {
+        List<String> oids = getAllOids(type, result);
+        for (String oid : oids) {
+            repository.deleteObject(type, oid, result);
+        }
+        return oids;
+    }
+
+    private <O extends ObjectType> List<String> getAllOids(Class<O> type, OperationResult result) throws Exception {
+        return repository.searchObjects(type, null, null, result).stream()
+                .map(PrismObject::getOid)
+                .toList();
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2010-2024 Evolveum and contributors
+ *
+ * This work is dual-licensed under the Apache License 2.0
+ * and European Union Public License. See LICENSE file for details.
+ */
+package com.evolveum.midpoint.ninja;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.assertj.core.api.Assertions;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Listeners;
+import org.testng.annotations.Test;
+
+import com.evolveum.midpoint.prism.PrismObject;
+import com.evolveum.midpoint.repo.sqale.FullObjectCodec;
+import com.evolveum.midpoint.schema.result.OperationResult;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.AssignmentType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.RoleType;
+import com.evolveum.midpoint.xml.ns._public.common.common_3.UserType;
+
+/**
+ * Tests "migrate-full-objects" command, which rewrites fullObject of the existing rows to the compact format
+ * (or back to the plain one) by reindexing the objects.
+ *
+ * Ninja runs with its own application context, so the format is switched only in the repository configuration
+ * of that context, the repository used by this test still writes the plain format.
+ */
+@ContextConfiguration(locations = "classpath:ctx-ninja-test.xml")
+@DirtiesContext
+@Listeners({ com.evolveum.midpoint.tools.testng.AlphabeticalMethodInterceptor.class })
+public class MigrateFullObjectsTest extends NinjaSpringTest {
+
+    private static final int USER_COUNT = 5;
+
+    private final List<PrismObject<UserType>> users = new ArrayList<>();
+
+    @BeforeClass(
+            dependsOnMethods = {"springTestContextPrepareTestInstance"}
+    )
+    @Override
+    public void beforeClass() throws Exception {
+        if (!repository.isNative()) {
+            throw new SkipException("Skipping tests because repository is not using native PostgreSQL implementation.");
+        }
+
+        super.beforeClass();
+    }
+
+    @Test
+    public void test100MigrateToCompact() throws Exception {
+        given("users stored with plain fullObject");
+
+        OperationResult result = new OperationResult("test100MigrateToCompact");
+
+        for (int i = 0; i < USER_COUNT; i++) {
+            PrismObject<UserType> user = new UserType()
+                    .name("migrated-user-" + i)
+                    .fullName("Migrated User " + i)
+                    .assignment(new AssignmentType()
+                            .targetRef(UUID.randomUUID().toString(), RoleType.COMPLEX_TYPE))
+                    .asPrismObject();
+            repository.addObject(user, null, result);
+            users.add(user);
+        }
+        assertFullObjects(false);
+
+        when("full objects are migrated");
+
+        MainResult<?> mainResult = executeTest(null, null,
+                "-m", getMidpointHome(), "migrate-full-objects", "-t", "user", "-l", "2");
+        Assertions.assertThat(mainResult.exitCode()).isEqualTo(MainResult.DEFAULT_EXIT_CODE_SUCCESS);
+
+        then("all the rows have the compact header and the objects are the same");
+
+        assertFullObjects(true);
+        assertUsersReadBack(result);
+    }
+
+    @Test
+    public void test110MigrateBackToPlain() throws Exception {
+        given();
+
+        OperationResult result = new OperationResult("test110MigrateBackToPlain");
+
+        when("full objects are migrated with --plain");
+
+        MainResult<?> mainResult = executeTest(null, null,
+                "-m", getMidpointHome(), "migrate-full-objects", "-t", "user", "--plain");
+        Assertions.assertThat(mainResult.exitCode()).isEqualTo(MainResult.DEFAULT_EXIT_CODE_SUCCESS);
+
+        then("all the rows are plain text again and the objects are the same");
+
+        assertFullObjects(false);
+        assertUsersReadBack(result);
+    }
+
+    private void assertFullObjects(boolean compact) throws Exception {
+        for (PrismObject<UserType> user : users) {
+            byte[] fullObject = selectFullObject(user.getOid());
+            Assertions.assertThat(FullObjectCodec.isCompact(fullObject))
+                    .as("fullObject of %s is compact", user)
+                    .isEqualTo(compact);
+
+            PrismObject<UserType> stored = prismContext.parserFor(FullObjectCodec.decode(fullObject)).parse();
+            Assertions.assertThat(stored.getName().getOrig()).isEqualTo(user.getName().getOrig());
+            Assertions.assertThat(stored.asObjectable().getAssignment()).hasSize(1);
+        }
+    }
+
+    private void assertUsersReadBack(OperationResult result) throws Exception {
+        for (PrismObject<UserType> user : users) {
+            UserType read = repository.getObject(UserType.class, user.getOid(), null, result).asObjectable();
+            Assertions.assertThat(read.getName().getOrig()).isEqualTo(user.getName().getOrig());
+            Assertions.assertThat(read.getFullName().getOrig()).isEqualTo(user.asObjectable().getFullName().getOrig());
+            Assertions.assertThat(read.getAssignment()).hasSize(1);
+            Assertions.assertThat(read.getAssignment().get(0).getTargetRef().getOid())
+                    .isEqualTo(user.asObjectable().getAssignment().get(0).getTargetRef().getOid());
+        }
+    }
+
+    private byte[] selectFullObject(String oid) throws Exception {
+        try (Connection connection = repositoryDataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT fullObject FROM m_user WHERE oid = ?")) {
+            statement.setObject(1, UUID.fromString(oid));
+            try (ResultSet rs = statement.executeQuery()) {
+                Assertions.assertThat(rs.next()).as("row for " + oid).isTrue();
+                return rs.getBytes(1);
+            }
+        }
+    }
+}